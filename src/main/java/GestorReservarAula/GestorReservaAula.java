@@ -9,6 +9,12 @@ package GestorReservarAula;
  * @author dawia
  */
 
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
 import java.util.Scanner;
 import java.time.LocalDate;
 import java.time.LocalTime;
@@ -18,24 +24,58 @@ import java.util.Optional;
 import java.util.Collection;
 
 import GestorReservarAula.models.Aula;
+import GestorReservarAula.models.ImpactoCambioAula;
 import GestorReservarAula.models.Reserva;
 import GestorReservarAula.services.GestorReservas;
+import GestorReservarAula.services.GestorReservasFragmentado;
+import GestorReservarAula.services.GeneradorIdTemporal;
+import GestorReservarAula.interfaces.GeneradorIds;
+import GestorReservarAula.interfaces.ServicioReservas;
+import GestorReservarAula.persistence.GestorArchivos;
+import GestorReservarAula.persistence.ModoPersistencia;
+import GestorReservarAula.persistence.SecuenciaArrendada;
 import GestorReservarAula.util.TipoAula;
 import GestorReservarAula.util.TipoEvento;
+import GestorReservarAula.util.EstadoReserva;
+import GestorReservarAula.util.FormatoExportacion;
+import GestorReservarAula.util.PoliticaCambioAula;
+import GestorReservarAula.util.RegistroFases;
+import GestorReservarAula.util.TipoReporte;
 import GestorReservarAula.exceptions.ConflictoDeHorarioException;
+import GestorReservarAula.exceptions.NoEncontradoException;
 import GestorReservarAula.exceptions.ValidacionDeReservaException;
 
 /*Clase principal que contiene la interfaz de consola para el usuario.
 Se encarga de la interaccion (I/O) y maneja las excepciones lanzadas por el servicio.*/
 public class GestorReservaAula {
-    private static GestorReservas gestor;
+    private static ServicioReservas gestor;
     private static Scanner scanner;
 
+    /*Opciones de linea de comandos:
+      --fragmentos A,B,C        reparte las aulas por prefijo de codigo en varios almacenes
+      --persistencia MODO       ARCHIVO (por defecto), DIFERIDA (escritura en segundo plano) o MEMORIA
+      --grabar archivo          graba la latencia por fase (ver tools.AnalizadorFases)
+      --retencion DIAS          archiva a diario las reservas anteriores a hoy - DIAS
+      --sin-barrido             no marca automaticamente como completadas las reservas que ya terminaron
+      --ids arrendado[:archivo[:bloque]]  IDs unicos entre procesos con un contador compartido (contador_ids.txt)
+      --ids temporal:NODO       IDs de 64 bits ordenados por tiempo; cada proceso con un NODO distinto (0-1023)
+      --recarga                 aplica sin reiniciar las ediciones externas de aulas.txt y reservas.txt
+      --lote [archivo|-] [n]    modo no interactivo para operaciones programadas
+      --servidor [puerto]       API HTTP/JSON para kioscos y portales (ver ModoServidor)*/
     public static void main(String[] args) {
+        if (Arrays.asList(args).contains("--lote")) {
+            ModoLote.main(args);
+            return;
+        }
+        if (Arrays.asList(args).contains("--servidor")) {
+            ModoServidor.main(args);
+            return;
+        }
+
         System.out.println("=== Gestor de Reservas de Aulas ITCA ===");
         try {
             //Inicializa el gestor, carga datos
-            gestor = new GestorReservas(); 
+            gestor = crearServicio(new ArrayList<>(Arrays.asList(args))); 
             scanner = new Scanner(System.in);
             int opcion;
 
@@ -57,6 +97,7 @@ public class GestorReservaAula {
                     case 0:
                         System.out.println("Guardando datos y saliendo...");
                         gestor.guardarDatos();
+                        gestor.close();
                         break;
                     default:
                         if (opcion != -1) System.out.println("Opcion no valida. Intente de nuevo");
@@ -72,6 +113,112 @@ public class GestorReservaAula {
         }
     }
 
+    /*Crea el servicio segun las opciones. Consume "--persistencia MODO", "--grabar archivo", "--retencion DIAS",
+    "--sin-barrido", "--ids GENERADOR", "--recarga" y "--fragmentos A,B,C" de la lista
+    si estan presentes: con fragmentos cada prefijo (mas GENERAL) tiene sus propios archivos en el directorio actual.*/
+    static ServicioReservas crearServicio(List<String> opciones) throws ValidacionDeReservaException {
+        ModoPersistencia modo = ModoPersistencia.ARCHIVO;
+        int posModo = opciones.indexOf("--persistencia");
+        if (posModo >= 0) {
+            if (posModo + 1 >= opciones.size()) {
+                throw new ValidacionDeReservaException("--persistencia requiere un modo: ARCHIVO, DIFERIDA o MEMORIA");
+            }
+            try {
+                modo = ModoPersistencia.valueOf(opciones.get(posModo + 1).toUpperCase());
+            } catch (IllegalArgumentException e) {
+                throw new ValidacionDeReservaException("Modo de persistencia no valido: " + opciones.get(posModo + 1));
+            }
+            opciones.remove(posModo + 1);
+            opciones.remove(posModo);
+        }
+
+        int posGrabar = opciones.indexOf("--grabar");
+        if (posGrabar >= 0) {
+            if (posGrabar + 1 >= opciones.size()) {
+                throw new ValidacionDeReservaException("--grabar requiere un archivo, ej: --grabar fases.rec");
+            }
+            try {
+                RegistroFases.iniciar(opciones.get(posGrabar + 1)); //Antes de crear el servicio, para medir la carga inicial
+            } catch (IOException e) {
+                throw new ValidacionDeReservaException("No se pudo iniciar la grabacion de fases: " + e.getMessage());
+            }
+            opciones.remove(posGrabar + 1);
+            opciones.remove(posGrabar);
+        }
+
+        //Barrido del ciclo de vida: activo salvo --sin-barrido; --retencion DIAS archiva lo anterior a hoy - DIAS
+        boolean barrido = !opciones.remove("--sin-barrido");
+        boolean recarga = opciones.remove("--recarga");
+        int diasRetencion = -1;
+        int posRetencion = opciones.indexOf("--retencion");
+        if (posRetencion >= 0) {
+            try {
+                diasRetencion = Integer.parseInt(opciones.get(posRetencion + 1));
+            } catch (IndexOutOfBoundsException | NumberFormatException e) {
+                throw new ValidacionDeReservaException("--retencion requiere una cantidad de dias, ej: --retencion 30");
+            }
+            opciones.remove(posRetencion + 1);
+            opciones.remove(posRetencion);
+        }
+
+        String generadorIds = null;
+        int posIds = opciones.indexOf("--ids");
+        if (posIds >= 0) {
+            if (posIds + 1 >= opciones.size()) {
+                throw new ValidacionDeReservaException("--ids requiere un generador, ej: --ids arrendado o --ids temporal:1");
+            }
+            generadorIds = opciones.get(posIds + 1);
+            opciones.remove(posIds + 1);
+            opciones.remove(posIds);
+        }
+
+        ServicioReservas servicio;
+        int pos = opciones.indexOf("--fragmentos");
+        if (pos < 0) {
+            servicio = new GestorReservas(GestorArchivos.Aulas_File, GestorArchivos.Reservas_File, modo);
+        } else {
+            if (pos + 1 >= opciones.size()) {
+                throw new ValidacionDeReservaException("--fragmentos requiere una lista de prefijos, ej: --fragmentos A,B,C");
+            }
+            String[] prefijos = opciones.get(pos + 1).split(",");
+            opciones.remove(pos + 1);
+            opciones.remove(pos);
+            servicio = GestorReservasFragmentado.porPrefijo(".", modo, prefijos);
+        }
+        if (generadorIds != null) {
+            try {
+                servicio.usarGeneradorIds(crearGeneradorIds(generadorIds, servicio));
+            } catch (ValidacionDeReservaException e) {
+                servicio.close();
+                throw e;
+            }
+        }
+        if (barrido) servicio.iniciarBarridoCicloVida(diasRetencion);
+        if (recarga) servicio.iniciarRecargaArchivos();
+        return servicio;
+    }
+
+    //"arrendado[:archivo[:bloque]]" o "temporal:nodo". Sin --ids, el servicio usa su contador en memoria.
+    private static GeneradorIds crearGeneradorIds(String opcion, ServicioReservas servicio) throws ValidacionDeReservaException {
+        String[] partes = opcion.split(":");
+        try {
+            switch (partes[0].toLowerCase()) {
+                case "arrendado":
+                    String archivo = partes.length > 1 && !partes[1].isEmpty() ? partes[1] : GestorArchivos.ContadorIds_File;
+                    int bloque = partes.length > 2 ? Integer.parseInt(partes[2]) : SecuenciaArrendada.TAMANIO_BLOQUE_DEFECTO;
+                    return new SecuenciaArrendada(archivo, bloque, servicio::siguienteIdLocal);
+                case "temporal":
+                    return new GeneradorIdTemporal(Integer.parseInt(partes[1]));
+                default:
+                    throw new ValidacionDeReservaException("Generador de IDs no valido: " + opcion + " (arrendado o temporal:NODO)");
+            }
+        } catch (IOException e) {
+            throw new ValidacionDeReservaException("No se pudo abrir el contador de IDs: " + e.getMessage());
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            throw new ValidacionDeReservaException("Opcion --ids no valida: " + opcion + " (" + e.getMessage() + ")");
+        }
+    }
+
     private static void mostrarMenuPrincipal() {
         System.out.println("\n=== MENU PRINCIPAL ===");
         System.out.println("1. Gestion de Aulas");
@@ -258,8 +405,23 @@ public class GestorReservaAula {
         if (nuevoTipo == null || nuevaCapacidad == -1) return; //Validacion de error en lectura
         
         try {
-            //Llama al metodo implementado en GestorReservas
-            gestor.modificarAula(codigo, nuevoNombre, nuevaCapacidad, nuevoTipo);
+            //Primero se intenta sin afectar reservas; si alguna deja de ser valida se muestra el impacto
+            ImpactoCambioAula impacto = gestor.modificarAula(codigo, nuevoNombre, nuevaCapacidad, nuevoTipo, PoliticaCambioAula.RECHAZAR);
+            if (!impacto.isAplicado()) {
+                System.out.println(impacto);
+                System.out.println("1. Aplicar y marcar las reservas para revision");
+                System.out.println("2. Aplicar y reubicar las reservas en aulas equivalentes");
+                System.out.println("0. No aplicar el cambio");
+                System.out.print("Seleccione una opcion: ");
+                int opcion = leerOpcionMenu(0);
+                if (opcion != 1 && opcion != 2) {
+                    System.out.println("El aula no fue modificada.");
+                    return;
+                }
+                PoliticaCambioAula politica = opcion == 1 ? PoliticaCambioAula.MARCAR : PoliticaCambioAula.REUBICAR;
+                impacto = gestor.modificarAula(codigo, nuevoNombre, nuevaCapacidad, nuevoTipo, politica);
+                System.out.println(impacto);
+            }
             System.out.println("Aula " + codigo + " modificada exitosamente.");
         } catch (ValidacionDeReservaException e) {
             System.err.println("Error al modificar aula: " + e.getMessage());
@@ -291,6 +453,7 @@ public class GestorReservaAula {
             System.out.println("2. Listar y Buscar Reservas");
             System.out.println("3. Modificar Reserva");
             System.out.println("4. Cancelar Reserva");
+            System.out.println("5. Cambiar Estado de Reserva");
             System.out.println("0. Volver al Menu Principal");
             System.out.print("Seleccione una opcion: ");
             
@@ -309,6 +472,9 @@ public class GestorReservaAula {
                 case 4: 
                     cancelarReserva();
                     break;
+                case 5:
+                    cambiarEstadoReserva();
+                    break;
                 case 0:
                     break;
                 case -1: 
@@ -396,7 +562,11 @@ public class GestorReservaAula {
                 materia, numEstudiantes
             );
             System.out.println("Reserva de Clase registrada exitosamente.");
-        } catch (ConflictoDeHorarioException | ValidacionDeReservaException e) {
+        } catch (ConflictoDeHorarioException e) {
+            System.err.println("Error al registrar: " + e.getMessage());
+            mostrarAlternativas(e);
+            ofrecerListaEspera(e);
+        } catch (ValidacionDeReservaException e) {
             System.err.println("Error al registrar: " + e.getMessage());
         }
     }
@@ -419,7 +589,11 @@ public class GestorReservaAula {
                 tipoEvento, asistentes
             );
             System.out.println("Reserva de Evento registrada exitosamente.");
-        } catch (ConflictoDeHorarioException | ValidacionDeReservaException e) {
+        } catch (ConflictoDeHorarioException e) {
+            System.err.println("Error al registrar: " + e.getMessage());
+            mostrarAlternativas(e);
+            ofrecerListaEspera(e);
+        } catch (ValidacionDeReservaException e) {
             System.err.println("Error al registrar: " + e.getMessage());
         }
     }
@@ -441,11 +615,44 @@ public class GestorReservaAula {
                 descripcion, numEquipos
             );
             System.out.println("Reserva de Practica registrada exitosamente.");
-        } catch (ConflictoDeHorarioException | ValidacionDeReservaException e) {
+        } catch (ConflictoDeHorarioException e) {
+            System.err.println("Error al registrar: " + e.getMessage());
+            mostrarAlternativas(e);
+            ofrecerListaEspera(e);
+        } catch (ValidacionDeReservaException e) {
             System.err.println("Error al registrar: " + e.getMessage());
         }
     }
     
+    //Muestra los horarios libres sugeridos para una reserva en conflicto
+    private static void mostrarAlternativas(ConflictoDeHorarioException e) {
+        if (e.getAlternativas().isEmpty()) return;
+        System.out.println("Horarios disponibles sugeridos:");
+        e.getAlternativas().forEach(a -> System.out.println(" - " + a));
+    }
+
+    //Ofrece encolar una reserva rechazada por conflicto en la lista de espera
+    private static void ofrecerListaEspera(ConflictoDeHorarioException e) {
+        if (e.getReservaRechazada() == null) return;
+        String respuesta = leerString("Desea agregarse a la lista de espera? (S/N - [N]): ", "N");
+        if (!respuesta.toUpperCase().startsWith("S")) return;
+
+        try {
+            if (gestor.encolarEnListaEspera(e.getReservaRechazada())) {
+                System.out.println("El horario quedo libre. Reserva " + e.getReservaRechazada().getIdReserva() + " registrada exitosamente.");
+            } else {
+                System.out.println("Reserva " + e.getReservaRechazada().getIdReserva() + " agregada a la lista de espera.");
+            }
+        } catch (ValidacionDeReservaException ex) {
+            System.err.println("Error al encolar: " + ex.getMessage());
+        }
+    }
+
+    //Informa las reservas que pasaron de la lista de espera a activas
+    private static void mostrarPromovidas(List<Reserva> promovidas) {
+        promovidas.forEach(r -> System.out.println("Promovida desde la lista de espera: " + r));
+    }
+
     //====================== Busqueda, Listado y Modificacion =======================
 
     private static void menuBusquedaListadoReservas() {
@@ -456,6 +663,7 @@ public class GestorReservaAula {
             System.out.println("1. Listar todas las Reservas");
             System.out.println("2. Buscar por ID");
             System.out.println("3. Buscar por Responsable");
+            System.out.println("4. Ver Lista de Espera");
             System.out.println("0. Volver al menu anterior");
             System.out.print("Seleccione una opcion: ");
             
@@ -471,6 +679,9 @@ public class GestorReservaAula {
                 case 3:
                     buscarReservasPorResponsable();
                     break;
+                case 4:
+                    listarListaEspera();
+                    break;
                 case 0:
                     break;
                 case -1:
@@ -529,6 +740,16 @@ public class GestorReservaAula {
         reservas.forEach(System.out::println);
     }
 
+    private static void listarListaEspera() {
+        List<Reserva> enEspera = gestor.listarListaEspera();
+        if (enEspera.isEmpty()) {
+            System.out.println("La lista de espera esta vacia.");
+            return;
+        }
+        System.out.println("\n=== LISTA DE ESPERA ===");
+        enEspera.forEach(System.out::println);
+    }
+
     //Funcion simplificada para la Modificacion de Reserva (Requisito 3).
     private static void modificarReserva() {
         System.out.println("\n=== MODIFICAR RESERVA ===");
@@ -537,7 +758,7 @@ public class GestorReservaAula {
 
         try {
             Reserva reservaActual = gestor.buscarReservaPorId(id)
-                .orElseThrow(() -> new ValidacionDeReservaException("Reserva no encontrada: " + id));
+                .orElseThrow(() -> new NoEncontradoException("Reserva no encontrada: " + id));
 
             System.out.println("Datos actuales: " + reservaActual.toString());
 
@@ -550,10 +771,14 @@ public class GestorReservaAula {
             //Validar si algun campo clave es nulo (error de I/O)
             if (nuevaFecha == null || nuevoHInicio == null || nuevoHFin == null) return;
             
-            gestor.modificarReserva(id, nuevaFecha, nuevoHInicio, nuevoHFin, nuevoResponsable);
+            List<Reserva> promovidas = gestor.modificarReserva(id, nuevaFecha, nuevoHInicio, nuevoHFin, nuevoResponsable);
             System.out.println("Reserva " + id + " modificada exitosamente.");
+            mostrarPromovidas(promovidas);
 
-        } catch (ConflictoDeHorarioException | ValidacionDeReservaException e) {
+        } catch (ConflictoDeHorarioException e) {
+            System.err.println("Error al modificar: " + e.getMessage());
+            mostrarAlternativas(e);
+        } catch (ValidacionDeReservaException e) {
             System.err.println("Error al modificar: " + e.getMessage());
         }
     }
@@ -564,13 +789,33 @@ public class GestorReservaAula {
         String id = scanner.nextLine();
 
         try {
-            gestor.cancelarReserva(id);
+            List<Reserva> promovidas = gestor.cancelarReserva(id);
             System.out.println("Reserva " + id + " cancelada exitosamente.");
+            mostrarPromovidas(promovidas);
         } catch (ValidacionDeReservaException e) {
             System.err.println("Error al cancelar: " + e.getMessage());
         }
     }
 
+    //Marca una reserva activa como completada o no presentada (o cancelada)
+    private static void cambiarEstadoReserva() {
+        System.out.println("\n=== CAMBIAR ESTADO DE RESERVA ===");
+        System.out.println("Reservas por estado: " + gestor.contarPorEstado());
+        System.out.print("Ingrese el ID de la reserva (ej: R1): ");
+        String id = scanner.nextLine();
+
+        EstadoReserva nuevoEstado = leerTipoEnum("Nuevo Estado (Cancelada, Completada, No_Presentado): ", EstadoReserva.class, null);
+        if (nuevoEstado == null) return;
+
+        try {
+            List<Reserva> promovidas = gestor.cambiarEstadoReserva(id, nuevoEstado);
+            System.out.println("Reserva " + id + " ahora esta en estado " + nuevoEstado + ".");
+            mostrarPromovidas(promovidas);
+        } catch (ValidacionDeReservaException e) {
+            System.err.println("Error al cambiar estado: " + e.getMessage());
+        }
+    }
+
     //====================== Menu de Reportes (I/O) ======================
 
     private static void menuReportes() {
@@ -581,6 +826,9 @@ public class GestorReservaAula {
             System.out.println("1. Top 3 Aulas con mas Horas Reservadas");
             System.out.println("2. Ocupacion por Tipo de Aula");
             System.out.println("3. Distribucion por Tipo de Reserva");
+            System.out.println("4. Exportar Calendario (ICS/CSV)");
+            System.out.println("5. Utilizacion por Rango de Fechas");
+            System.out.println("6. Todos los Reportes (una sola pasada)");
             System.out.println("0. Volver al Menu Principal");
             System.out.print("Seleccione una opcion: ");
             
@@ -599,6 +847,16 @@ public class GestorReservaAula {
                     //Se usa la implementacion del gestor: generarReporteDistribucionPorTipoReserva
                     System.out.println(gestor.generarReporteDistribucionPorTipoReserva());
                     break;
+                case 4:
+                    exportarCalendario();
+                    break;
+                case 5:
+                    reporteUtilizacion();
+                    break;
+                case 6:
+                    //Un conjunto vacio pide todos los reportes del motor
+                    gestor.generarReportes(EnumSet.noneOf(TipoReporte.class)).values().forEach(r -> System.out.println(r + "\n"));
+                    break;
                 case 0:
                     break;
                 case -1:
@@ -608,4 +866,53 @@ public class GestorReservaAula {
             }
         } while (opcion != 0);
     }
-}
\ No newline at end of file
+
+    //Utilizacion entre dos fechas; por defecto el mes actual
+    private static void reporteUtilizacion() {
+        LocalDate inicioMes = LocalDate.now().withDayOfMonth(1);
+        LocalDate desde = leerFecha("Desde [" + inicioMes + "]", inicioMes);
+        if (desde == null) return;
+        LocalDate finMes = desde.withDayOfMonth(desde.lengthOfMonth());
+        LocalDate hasta = leerFecha("Hasta [" + finMes + "]", finMes);
+        if (hasta == null) return;
+        if (hasta.isBefore(desde)) {
+            System.err.println("La fecha final debe ser posterior a la inicial.");
+            return;
+        }
+        System.out.println(gestor.generarReporteUtilizacion(desde, hasta));
+    }
+
+    //Exporta las reservas de un aula o de un responsable a un archivo .ics o .csv
+    private static void exportarCalendario() {
+        System.out.println("\n=== EXPORTAR CALENDARIO ===");
+        int porAula = leerEntero("Exportar por 1. Aula o 2. Responsable: ", -1);
+        if (porAula != 1 && porAula != 2) {
+            System.out.println("Opcion no valida.");
+            return;
+        }
+        String valor = leerString(porAula == 1 ? "Codigo del Aula: " : "Texto del Responsable: ", "");
+        if (valor.trim().isEmpty()) return;
+
+        //Las fechas vacias no limitan el rango
+        LocalDate desde = leerFecha("Desde (vacio = sin limite)", LocalDate.MIN);
+        if (desde == null) return;
+        LocalDate hasta = leerFecha("Hasta (vacio = sin limite)", LocalDate.MAX);
+        if (hasta == null) return;
+
+        FormatoExportacion formato = leerTipoEnum("Formato (ICS, CSV) [ICS]: ", FormatoExportacion.class, FormatoExportacion.ICS);
+        if (formato == null) return;
+        String archivo = leerString("Archivo de salida [reservas." + formato.name().toLowerCase() + "]: ",
+            "reservas." + formato.name().toLowerCase());
+
+        try (OutputStream salida = new FileOutputStream(archivo)) {
+            if (porAula == 1) {
+                gestor.exportarReservasAula(valor.trim(), desde, hasta, formato, salida, ServicioReservas.SIN_CAMBIOS);
+            } else {
+                gestor.exportarReservasResponsable(valor, desde, hasta, formato, salida, ServicioReservas.SIN_CAMBIOS);
+            }
+            System.out.println("Reservas exportadas exitosamente a: " + archivo);
+        } catch (IOException e) {
+            System.err.println("Error al exportar: " + e.getMessage());
+        }
+    }
+}
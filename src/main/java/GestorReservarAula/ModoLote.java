@@ -0,0 +1,374 @@
+package GestorReservarAula;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import GestorReservarAula.models.ImpactoCambioAula;
+import GestorReservarAula.models.Reserva;
+import GestorReservarAula.models.Ubicacion;
+import GestorReservarAula.interfaces.ServicioReservas;
+import GestorReservarAula.persistence.ArchivoBloques;
+import GestorReservarAula.util.FormatoExportacion;
+import GestorReservarAula.util.Json;
+import GestorReservarAula.util.PoliticaCambioAula;
+import GestorReservarAula.util.TipoAula;
+import GestorReservarAula.util.TipoEvento;
+import GestorReservarAula.util.TipoReporte;
+import GestorReservarAula.util.EstadoReserva;
+import GestorReservarAula.exceptions.ConflictoDeHorarioException;
+import GestorReservarAula.exceptions.ValidacionDeReservaException;
+
+/*Modo no interactivo: ejecuta un archivo (o stdin) de comandos contra GestorReservas.
+Cada linea es un comando separado por comas, igual que los archivos de persistencia:
+  AULA,codigo,nombre,capacidad,tipo[,edificio,piso,x,y]
+  UBICAR,codigo,edificio,piso,x,y
+  CERCANAS,aula|edificio,fecha,hInicio,hFin,tipo|*,capacidadMinima,k   (k aulas libres mas cercanas)
+  MODIFICAR_AULA,codigo,nombre,capacidad,tipo[,RECHAZAR|MARCAR|REUBICAR]
+  CLASE,aula,fecha,hInicio,hFin,responsable,materia,numEstudiantes
+  EVENTO,aula,fecha,hInicio,hFin,responsable,tipoEvento,asistentes
+  PRACTICA,aula,fecha,hInicio,hFin,responsable,descripcion,numEquipos
+  EVENTO_MULTIPLE,fecha,hInicio,hFin,responsable,tipoEvento,aula:asistentes+aula:asistentes...   (todas las aulas o ninguna)
+  MODIFICAR,id,fecha,hInicio,hFin,responsable
+  CANCELAR,id
+  ESTADO,id,CANCELADA|COMPLETADA|NO_PRESENTADO
+  BUSCAR,id
+  BUSCAR_RESPONSABLE,texto
+  LISTAR,campo,ASC|DESC
+  REPORTE,TOP|TIPO_AULA|DISTRIBUCION|UTILIZACION[,desde,hasta]
+  REPORTES[,TOP_AULAS+OCUPACION_TIPO_AULA+DISTRIBUCION_TIPO_RESERVA+DISTRIBUCION_ESTADO]   (sin lista = todos, una pasada)
+  COMPLETAR_VENCIDAS         (marca como completadas las reservas activas que ya terminaron)
+  MINUTOS,aula,desde,hasta   (fechas vacias = sin limite)
+  EXPORTAR,AULA|RESPONSABLE,valor,desde,hasta,ICS|CSV,archivo[,versionConocida]   (fechas vacias = sin limite)
+Las lineas vacias y las que empiezan con # se ignoran.
+Por cada comando se emite una linea JSON (los rechazos por reglas de la reserva incluyen su "codigo") y al final una linea de resumen con el rendimiento.*/
+public class ModoLote {
+    private static final int TAMANIO_LOTE_DEFECTO = 1000;
+
+    private final ServicioReservas gestor;
+    private final PrintWriter salida;
+    private final int tamanioLote; //Operaciones entre guardados
+    private long exitosas = 0;
+    private long fallidas = 0;
+
+    public ModoLote(ServicioReservas gestor, PrintWriter salida, int tamanioLote) {
+        this.gestor = gestor;
+        this.salida = salida;
+        this.tamanioLote = tamanioLote;
+    }
+
+    /*Punto de entrada desde main: GestorReservaAula [--persistencia MODO] [--fragmentos A,B] --lote [archivo|-] [tamanioLote]
+    La salida JSON va a stdout; los mensajes informativos del sistema se desvian a stderr.*/
+    public static void main(String[] args) {
+        List<String> opciones = Arrays.asList(args);
+        int pos = opciones.indexOf("--lote");
+        List<String> previas = new ArrayList<>(opciones.subList(0, Math.max(0, pos))); //Opciones del servicio
+        List<String> posicionales = opciones.subList(pos + 1, opciones.size());
+        String origen = posicionales.size() > 0 ? posicionales.get(0) : "-";
+        int tamanioLote = TAMANIO_LOTE_DEFECTO;
+        if (posicionales.size() > 1) {
+            try {
+                tamanioLote = Math.max(1, Integer.parseInt(posicionales.get(1)));
+            } catch (NumberFormatException e) {
+                System.err.println("Tamanio de lote no valido, se usa " + TAMANIO_LOTE_DEFECTO);
+            }
+        }
+
+        PrintStream stdout = System.out;
+        System.setOut(System.err); //Los mensajes de GestorArchivos no deben mezclarse con el JSON
+        PrintWriter salida = new PrintWriter(new BufferedWriter(new OutputStreamWriter(stdout, StandardCharsets.UTF_8), 1 << 16));
+        try (BufferedReader entrada = origen.equals("-")
+                ? new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8))
+                : new BufferedReader(new FileReader(origen))) {
+            try (ServicioReservas gestor = GestorReservaAula.crearServicio(previas)) {
+                new ModoLote(gestor, salida, tamanioLote).ejecutar(entrada);
+            }
+        } catch (IOException | ValidacionDeReservaException e) {
+            salida.println(new Json().campo("ok", false).campo("error", "fatal").campo("mensaje", e.getMessage()));
+        } finally {
+            salida.flush();
+            System.setOut(stdout);
+        }
+    }
+
+    //Ejecuta todos los comandos de la entrada y emite el resumen final
+    public void ejecutar(BufferedReader entrada) throws IOException {
+        long inicio = System.nanoTime();
+        long numLinea = 0;
+        long desdeUltimoGuardado = 0;
+        String linea;
+
+        gestor.iniciarLote();
+        try {
+            while ((linea = entrada.readLine()) != null) {
+                numLinea++;
+                String limpia = linea.trim();
+                if (limpia.isEmpty() || limpia.startsWith("#")) continue;
+
+                salida.println(ejecutarComando(numLinea, limpia));
+                if (++desdeUltimoGuardado >= tamanioLote && gestor.hayCambiosPendientes()) {
+                    gestor.guardarDatos();
+                    desdeUltimoGuardado = 0;
+                }
+            }
+        } finally {
+            gestor.finalizarLote(); //Guarda lo pendiente una sola vez
+        }
+
+        long nanos = System.nanoTime() - inicio;
+        long total = exitosas + fallidas;
+        salida.println(new Json()
+            .campo("resumen", true)
+            .campo("operaciones", total)
+            .campo("exitosas", exitosas)
+            .campo("fallidas", fallidas)
+            .campo("ms", nanos / 1_000_000)
+            .campo("opsPorSegundo", nanos == 0 ? 0 : total * 1e9 / nanos));
+    }
+
+    //Ejecuta un comando y devuelve su resultado como JSON. Nunca lanza excepciones de negocio.
+    private String ejecutarComando(long numLinea, String linea) {
+        String[] partes = linea.split(",", -1);
+        String op = partes[0].trim().toUpperCase();
+        Json resultado = new Json().campo("linea", numLinea).campo("op", op);
+        try {
+            switch (op) {
+                case "AULA":
+                    requerir(partes, 5);
+                    gestor.registrarAula(partes[1].trim(), partes[2], entero(partes[3]), TipoAula.valueOf(partes[4].trim().toUpperCase()),
+                        partes.length >= 9 ? ubicacion(partes, 5) : null);
+                    break;
+                case "UBICAR":
+                    requerir(partes, 6);
+                    gestor.ubicarAula(partes[1].trim(), ubicacion(partes, 2));
+                    break;
+                case "CERCANAS":
+                    requerir(partes, 8);
+                    String tipoCercana = partes[5].trim();
+                    resultado.campoJson("aulas", gestor.buscarAulasLibresCercanas(partes[1].trim(), fecha(partes[2]), hora(partes[3]),
+                        hora(partes[4]), tipoCercana.equals("*") || tipoCercana.isEmpty() ? null : TipoAula.valueOf(tipoCercana.toUpperCase()),
+                        entero(partes[6]), entero(partes[7])).stream().map(Json::aulaCercana).collect(Collectors.joining(",", "[", "]")));
+                    break;
+                case "MODIFICAR_AULA":
+                    requerir(partes, 5);
+                    PoliticaCambioAula politica = partes.length > 5 && !partes[5].trim().isEmpty()
+                        ? PoliticaCambioAula.valueOf(partes[5].trim().toUpperCase()) : PoliticaCambioAula.RECHAZAR;
+                    ImpactoCambioAula impacto = gestor.modificarAula(partes[1].trim(), partes[2], entero(partes[3]),
+                        TipoAula.valueOf(partes[4].trim().toUpperCase()), politica);
+                    resultado.campo("revisadas", impacto.getRevisadas())
+                        .campoJson("invalidas", ids(new ArrayList<>(impacto.getInvalidas().keySet())))
+                        .campoJson("marcadas", ids(impacto.getMarcadas()))
+                        .campoJson("reubicadas", ids(new ArrayList<>(impacto.getReubicadas().keySet())));
+                    if (!impacto.isAplicado()) throw new ValidacionDeReservaException(impacto.resumen());
+                    break;
+                case "CLASE":
+                    requerir(partes, 8);
+                    resultado.campo("id", gestor.registrarReservaClase(partes[1].trim(), fecha(partes[2]), hora(partes[3]), hora(partes[4]),
+                        partes[5], partes[6], entero(partes[7])));
+                    break;
+                case "EVENTO":
+                    requerir(partes, 8);
+                    resultado.campo("id", gestor.registrarReservaEvento(partes[1].trim(), fecha(partes[2]), hora(partes[3]), hora(partes[4]),
+                        partes[5], TipoEvento.valueOf(partes[6].trim().toUpperCase()), entero(partes[7])));
+                    break;
+                case "PRACTICA":
+                    requerir(partes, 8);
+                    resultado.campo("id", gestor.registrarReservaPractica(partes[1].trim(), fecha(partes[2]), hora(partes[3]), hora(partes[4]),
+                        partes[5], partes[6], entero(partes[7])));
+                    break;
+                case "EVENTO_MULTIPLE":
+                    requerir(partes, 7);
+                    Map<String, Integer> asistentesPorAula = new LinkedHashMap<>();
+                    for (String par : partes[6].split("\\+")) {
+                        String[] kv = par.split(":", 2);
+                        if (kv.length < 2) throw new ValidacionDeReservaException("Aula sin asistentes: " + par.trim() + " (formato aula:asistentes)");
+                        if (asistentesPorAula.put(kv[0].trim(), entero(kv[1])) != null) {
+                            throw new ValidacionDeReservaException("El aula " + kv[0].trim() + " esta repetida en el evento.");
+                        }
+                    }
+                    resultado.campoJson("ids", textos(gestor.registrarReservaEventoMultiple(asistentesPorAula, fecha(partes[1]), hora(partes[2]),
+                        hora(partes[3]), partes[4], TipoEvento.valueOf(partes[5].trim().toUpperCase()))));
+                    break;
+                case "MODIFICAR":
+                    requerir(partes, 6);
+                    resultado.campoJson("promovidas", ids(gestor.modificarReserva(partes[1].trim(), fecha(partes[2]), hora(partes[3]),
+                        hora(partes[4]), partes[5])));
+                    break;
+                case "CANCELAR":
+                    requerir(partes, 2);
+                    resultado.campoJson("promovidas", ids(gestor.cancelarReserva(partes[1].trim())));
+                    break;
+                case "ESTADO":
+                    requerir(partes, 3);
+                    resultado.campoJson("promovidas", ids(gestor.cambiarEstadoReserva(partes[1].trim(), EstadoReserva.desdeTexto(partes[2]))));
+                    break;
+                case "BUSCAR":
+                    requerir(partes, 2);
+                    Optional<Reserva> encontrada = gestor.buscarReservaPorId(partes[1].trim());
+                    resultado.campoJson("reserva", encontrada.map(Json::reserva).orElse("null"));
+                    break;
+                case "BUSCAR_RESPONSABLE":
+                    requerir(partes, 2);
+                    resultado.campoJson("reservas", arreglo(gestor.buscarReservasPorResponsable(partes[1])));
+                    break;
+                case "LISTAR":
+                    String campo = partes.length > 1 ? partes[1].trim() : "id";
+                    boolean ascendente = partes.length < 3 || !partes[2].trim().toUpperCase().startsWith("D");
+                    resultado.campoJson("reservas", arreglo(gestor.listarReservas(campo, ascendente)));
+                    break;
+                case "REPORTE":
+                    requerir(partes, 2);
+                    resultado.campo("reporte", generarReporte(partes));
+                    break;
+                case "REPORTES":
+                    Set<TipoReporte> tipos = EnumSet.noneOf(TipoReporte.class);
+                    if (partes.length > 1 && !partes[1].trim().isEmpty()) {
+                        for (String nombre : partes[1].split("\\+")) tipos.add(TipoReporte.valueOf(nombre.trim().toUpperCase()));
+                    }
+                    Json reportes = new Json();
+                    gestor.generarReportes(tipos).forEach((tipo, texto) -> reportes.campo(tipo.name(), texto));
+                    resultado.campoJson("reportes", reportes.toString());
+                    break;
+                case "COMPLETAR_VENCIDAS":
+                    resultado.campo("completadas", gestor.completarVencidas());
+                    break;
+                case "MINUTOS":
+                    requerir(partes, 4);
+                    resultado.campo("minutos", gestor.minutosReservados(partes[1].trim(), fechaOpcional(partes[2]), fechaOpcional(partes[3])));
+                    break;
+                case "EXPORTAR":
+                    requerir(partes, 7);
+                    exportar(partes, resultado);
+                    break;
+                default:
+                    throw new ValidacionDeReservaException("Comando desconocido: " + op);
+            }
+            exitosas++;
+            return resultado.campo("ok", true).toString();
+        } catch (ConflictoDeHorarioException e) {
+            fallidas++;
+            return resultado.campo("ok", false).campo("error", "conflicto").campo("mensaje", e.getMessage())
+                .campoJson("alternativas", e.getAlternativas().stream().map(Json::alternativa).collect(Collectors.joining(",", "[", "]")))
+                .toString();
+        } catch (ValidacionDeReservaException e) {
+            fallidas++;
+            resultado.campo("ok", false).campo("error", "validacion");
+            if (e.getCodigo() != null) resultado.campo("codigo", e.getCodigo().name()); //Regla de la tabla incumplida
+            return resultado.campo("mensaje", e.getMessage()).toString();
+        } catch (DateTimeParseException | IllegalArgumentException e) {
+            //NumberFormatException es subclase de IllegalArgumentException (enums y enteros mal escritos)
+            fallidas++;
+            return resultado.campo("ok", false).campo("error", "formato").campo("mensaje", e.getMessage()).toString();
+        }
+    }
+
+    private String generarReporte(String[] partes) throws ValidacionDeReservaException {
+        String tipo = partes[1].trim().toUpperCase();
+        switch (tipo) {
+            case "UTILIZACION":
+                return gestor.generarReporteUtilizacion(partes.length > 2 ? fechaOpcional(partes[2]) : null,
+                    partes.length > 3 ? fechaOpcional(partes[3]) : null);
+            case "TOP":
+                return gestor.generarReporteTopAulas();
+            case "TIPO_AULA":
+                return gestor.generarReporteOcupacionPorTipoAula();
+            case "DISTRIBUCION":
+                return gestor.generarReporteDistribucionPorTipoReserva();
+            default:
+                throw new ValidacionDeReservaException("Reporte desconocido: " + tipo);
+        }
+    }
+
+    //Exportacion condicional: si nada cambio desde versionConocida no se toca el archivo
+    private void exportar(String[] partes, Json resultado) throws ValidacionDeReservaException {
+        boolean porAula = partes[1].trim().equalsIgnoreCase("AULA");
+        if (!porAula && !partes[1].trim().equalsIgnoreCase("RESPONSABLE")) {
+            throw new ValidacionDeReservaException("Exportacion desconocida: " + partes[1].trim());
+        }
+        LocalDate desde = partes[3].trim().isEmpty() ? null : fecha(partes[3]);
+        LocalDate hasta = partes[4].trim().isEmpty() ? null : fecha(partes[4]);
+        FormatoExportacion formato = FormatoExportacion.valueOf(partes[5].trim().toUpperCase());
+        long versionConocida = partes.length > 7 && !partes[7].trim().isEmpty()
+            ? Long.parseLong(partes[7].trim()) : ServicioReservas.SIN_CAMBIOS;
+
+        //Se escribe en un temporal y solo se reemplaza el archivo si hubo exportacion
+        File destino = new File(partes[6].trim());
+        File temporal = new File(destino.getPath() + ".tmp");
+        long version;
+        try (OutputStream salidaArchivo = new FileOutputStream(temporal)) {
+            version = porAula
+                ? gestor.exportarReservasAula(partes[2].trim(), desde, hasta, formato, salidaArchivo, versionConocida)
+                : gestor.exportarReservasResponsable(partes[2], desde, hasta, formato, salidaArchivo, versionConocida);
+        } catch (IOException e) {
+            temporal.delete();
+            throw new ValidacionDeReservaException("Error al exportar: " + e.getMessage());
+        }
+        if (version == ServicioReservas.SIN_CAMBIOS) {
+            temporal.delete();
+            resultado.campo("escrito", false).campo("version", versionConocida);
+            return;
+        }
+        try {
+            ArchivoBloques.reemplazar(temporal, destino);
+        } catch (IOException e) {
+            throw new ValidacionDeReservaException("No se pudo reemplazar el archivo: " + destino);
+        }
+        resultado.campo("escrito", true).campo("version", version);
+    }
+
+    private static void requerir(String[] partes, int minimo) throws ValidacionDeReservaException {
+        if (partes.length < minimo) {
+            throw new ValidacionDeReservaException(String.format("El comando %s requiere %d campos, recibidos %d.",
+                partes[0], minimo, partes.length));
+        }
+    }
+
+    private static int entero(String texto) {
+        return Integer.parseInt(texto.trim());
+    }
+
+    private static LocalDate fecha(String texto) {
+        return LocalDate.parse(texto.trim());
+    }
+
+    private static LocalDate fechaOpcional(String texto) {
+        return texto.trim().isEmpty() ? null : fecha(texto);
+    }
+
+    //Columnas edificio,piso,x,y desde la posicion indicada
+    private static Ubicacion ubicacion(String[] partes, int desde) {
+        return new Ubicacion(partes[desde].trim(), entero(partes[desde + 1]), Double.parseDouble(partes[desde + 2].trim()),
+            Double.parseDouble(partes[desde + 3].trim()));
+    }
+
+    private static LocalTime hora(String texto) {
+        return LocalTime.parse(texto.trim());
+    }
+
+    private static String arreglo(List<Reserva> reservas) {
+        return reservas.stream().map(Json::reserva).collect(Collectors.joining(",", "[", "]"));
+    }
+
+    private static String ids(List<Reserva> reservas) {
+        return textos(reservas.stream().map(Reserva::getIdReserva).collect(Collectors.toList()));
+    }
+
+    private static String textos(List<String> textos) {
+        return textos.stream().map(t -> {
+            StringBuilder sb = new StringBuilder();
+            Json.escapar(t, sb);
+            return sb.toString();
+        }).collect(Collectors.joining(",", "[", "]"));
+    }
+}
@@ -0,0 +1,385 @@
+package GestorReservarAula;
+
+import java.io.*;
+import java.lang.reflect.Method;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import GestorReservarAula.models.Reserva;
+import GestorReservarAula.models.Ubicacion;
+import GestorReservarAula.interfaces.ServicioReservas;
+import GestorReservarAula.util.Json;
+import GestorReservarAula.util.TipoAula;
+import GestorReservarAula.util.TipoEvento;
+import GestorReservarAula.util.TipoReporte;
+import GestorReservarAula.exceptions.ConflictoDeHorarioException;
+import GestorReservarAula.exceptions.NoEncontradoException;
+import GestorReservarAula.exceptions.ValidacionDeReservaException;
+
+/*Modo servidor: API HTTP/JSON sobre el servidor incluido en el JDK (com.sun.net.httpserver), para kioscos y portales.
+Uso: GestorReservaAula [opciones del servicio] --servidor [puerto]
+
+Los datos de entrada van como parametros de la URL o del cuerpo (application/x-www-form-urlencoded);
+las respuestas son JSON con los mismos campos que el modo lote. Las listas se escriben reserva por reserva
+(respuesta por bloques), sin armar el documento completo en memoria. Las conexiones se reutilizan (keep-alive).
+  GET    /salud
+  GET    /aulas                          POST /aulas  codigo,nombre,capacidad,tipo[,edificio,piso,x,y]
+  GET    /aulas?cerca=aula|edificio&fecha&horaInicio&horaFin[&tipo&capacidad&k=5]   (k aulas libres mas cercanas)
+  POST   /reservas  tipo=CLASE|EVENTO|PRACTICA,aula,fecha,horaInicio,horaFin,responsable y segun el tipo:
+                    materia,numEstudiantes | tipoEvento,asistentes | descripcion,numEquipos       -> 201 {id}
+  GET    /reservas?responsable=texto     (busqueda)     GET /reservas?orden=campo&dir=ASC|DESC (listado)
+  GET    /reservas/{id}                  PUT /reservas/{id} fecha,horaInicio,horaFin,responsable
+  DELETE /reservas/{id}                  (cancelar)
+  POST /reservas y DELETE aceptan la cabecera Idempotency-Key: un reintento con la misma clave recibe la respuesta original.
+  GET    /reportes?tipos=TOP_AULAS,DISTRIBUCION_ESTADO   (sin tipos = todos, una sola pasada)
+Errores: 400 datos invalidos, 404 no encontrada, 405 metodo no permitido, 409 conflicto (con alternativas),
+413 cuerpo mayor que MAX_CUERPO.*/
+public class ModoServidor {
+    static final int PUERTO_DEFECTO = 8080;
+    private static final int COLA_MAXIMA = 1024; //Pedidos en espera antes de que el hilo aceptador los atienda el mismo
+    static final int MAX_CUERPO = 64 * 1024; //Bytes; un formulario de reserva ocupa unos cientos
+
+    static {
+        //Sin TCP_NODELAY cada respuesta corta sobre una conexion keep-alive espera el ACK diferido del cliente (~40 ms)
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
+    //Accion de un endpoint; las excepciones de negocio se traducen a codigos HTTP
+    private interface Accion {
+        void ejecutar(HttpExchange intercambio, Map<String, String> parametros) throws Exception;
+    }
+
+    //El cuerpo del pedido supera MAX_CUERPO: se responde 413 sin leer el resto
+    private static class CuerpoExcedidoException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        private CuerpoExcedidoException() {
+            super("El cuerpo del pedido supera " + MAX_CUERPO + " bytes.");
+        }
+    }
+
+    private final ServicioReservas gestor;
+    private final HttpServer servidor;
+    private final ExecutorService ejecutor;
+
+    public ModoServidor(ServicioReservas gestor, int puerto) throws IOException {
+        this.gestor = gestor;
+        this.servidor = HttpServer.create(new InetSocketAddress(puerto), 256);
+        this.ejecutor = crearEjecutor();
+        servidor.setExecutor(ejecutor);
+        servidor.createContext("/salud", ex -> manejar(ex, (e, p) -> responder(e, 200, new Json().campo("ok", true).toString())));
+        servidor.createContext("/aulas", ex -> manejar(ex, this::aulas));
+        servidor.createContext("/reservas", ex -> manejar(ex, this::reservas));
+        servidor.createContext("/reportes", ex -> manejar(ex, this::reportes));
+    }
+
+    public void iniciar() {
+        servidor.start();
+    }
+
+    //Deja de aceptar pedidos, espera hasta 'segundos' a los que estan en curso y libera los hilos
+    public void detener(int segundos) {
+        servidor.stop(segundos);
+        ejecutor.shutdown();
+    }
+
+    public int getPuerto() {
+        return servidor.getAddress().getPort();
+    }
+
+    public static void main(String[] args) {
+        List<String> opciones = Arrays.asList(args);
+        int pos = opciones.indexOf("--servidor");
+        List<String> previas = new ArrayList<>(opciones.subList(0, Math.max(0, pos)));
+        int puerto = PUERTO_DEFECTO;
+        if (pos >= 0 && pos + 1 < opciones.size()) {
+            try {
+                puerto = Integer.parseInt(opciones.get(pos + 1));
+            } catch (NumberFormatException e) {
+                System.err.println("Puerto no valido, se usa " + PUERTO_DEFECTO);
+            }
+        }
+        try {
+            ServicioReservas gestor = GestorReservaAula.crearServicio(previas);
+            ModoServidor modo = new ModoServidor(gestor, puerto);
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                modo.detener(2);
+                gestor.close();
+            }, "servidor-apagado"));
+            modo.iniciar();
+            System.out.printf("Servidor escuchando en http://localhost:%d (Ctrl+C para detener)%n", modo.getPuerto());
+        } catch (IOException | ValidacionDeReservaException e) {
+            System.err.println("No se pudo iniciar el servidor: " + e.getMessage());
+        }
+    }
+
+    /*Hilos virtuales si la JVM los tiene (Java 21+, se buscan por reflexion porque el proyecto compila para Java 8);
+    si no, un pool acotado. Con la cola llena el hilo aceptador atiende el pedido, lo que frena la entrada.*/
+    static ExecutorService crearEjecutor() {
+        try {
+            Method virtuales = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) virtuales.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            int hilos = Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+            AtomicInteger numero = new AtomicInteger();
+            return new ThreadPoolExecutor(hilos, hilos, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(COLA_MAXIMA), r -> {
+                Thread t = new Thread(r, "servidor-" + numero.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }, new ThreadPoolExecutor.CallerRunsPolicy());
+        }
+    }
+
+    //====================== Endpoints ======================
+
+    private void aulas(HttpExchange ex, Map<String, String> p) throws Exception {
+        switch (ex.getRequestMethod()) {
+            case "GET":
+                if (p.containsKey("cerca")) {
+                    String tipo = p.get("tipo");
+                    responderLista(ex, gestor.buscarAulasLibresCercanas(p.get("cerca"), LocalDate.parse(requerido(p, "fecha")),
+                        LocalTime.parse(requerido(p, "horaInicio")), LocalTime.parse(requerido(p, "horaFin")),
+                        tipo == null || tipo.isEmpty() ? null : TipoAula.valueOf(tipo.toUpperCase()),
+                        p.containsKey("capacidad") ? entero(p, "capacidad") : 0, p.containsKey("k") ? entero(p, "k") : 5), Json::aulaCercana);
+                } else {
+                    responderLista(ex, new ArrayList<>(gestor.listarAulas()), Json::aula);
+                }
+                break;
+            case "POST":
+                Ubicacion ubicacion = p.containsKey("edificio") ? new Ubicacion(requerido(p, "edificio"), entero(p, "piso"),
+                    Double.parseDouble(requerido(p, "x")), Double.parseDouble(requerido(p, "y"))) : null;
+                gestor.registrarAula(requerido(p, "codigo"), requerido(p, "nombre"), entero(p, "capacidad"),
+                    TipoAula.valueOf(requerido(p, "tipo").toUpperCase()), ubicacion);
+                responder(ex, 201, new Json().campo("ok", true).campo("codigo", requerido(p, "codigo")).toString());
+                break;
+            default:
+                noPermitido(ex);
+        }
+    }
+
+    private void reservas(HttpExchange ex, Map<String, String> p) throws Exception {
+        String id = subruta(ex, "/reservas");
+        String metodo = ex.getRequestMethod();
+        if (id.isEmpty()) {
+            if (metodo.equals("POST")) {
+                responder(ex, 201, new Json().campo("ok", true).campo("id", registrar(p, claveIdempotencia(ex))).toString());
+            } else if (metodo.equals("GET") && p.containsKey("responsable")) {
+                responderLista(ex, gestor.buscarReservasPorResponsable(p.get("responsable")), Json::reserva);
+            } else if (metodo.equals("GET")) {
+                boolean ascendente = !p.getOrDefault("dir", "ASC").toUpperCase().startsWith("D");
+                responderLista(ex, gestor.listarReservas(p.getOrDefault("orden", "id"), ascendente), Json::reserva);
+            } else {
+                noPermitido(ex);
+            }
+            return;
+        }
+        switch (metodo) {
+            case "GET":
+                Optional<Reserva> reserva = gestor.buscarReservaPorId(id);
+                if (reserva.isPresent()) {
+                    responder(ex, 200, Json.reserva(reserva.get()));
+                } else {
+                    responder(ex, 404, error("no_encontrada", "Reserva no encontrada: " + id));
+                }
+                break;
+            case "PUT":
+                List<Reserva> promovidas = gestor.modificarReserva(id, LocalDate.parse(requerido(p, "fecha")),
+                    LocalTime.parse(requerido(p, "horaInicio")), LocalTime.parse(requerido(p, "horaFin")), requerido(p, "responsable"));
+                responder(ex, 200, new Json().campo("ok", true).campoJson("promovidas", ids(promovidas)).toString());
+                break;
+            case "DELETE":
+                responder(ex, 200, new Json().campo("ok", true).campoJson("promovidas", ids(gestor.cancelarReserva(claveIdempotencia(ex), id))).toString());
+                break;
+            default:
+                noPermitido(ex);
+        }
+    }
+
+    private String registrar(Map<String, String> p, String clave) throws ConflictoDeHorarioException, ValidacionDeReservaException {
+        String aula = requerido(p, "aula");
+        LocalDate fecha = LocalDate.parse(requerido(p, "fecha"));
+        LocalTime inicio = LocalTime.parse(requerido(p, "horaInicio"));
+        LocalTime fin = LocalTime.parse(requerido(p, "horaFin"));
+        String responsable = requerido(p, "responsable");
+        String tipo = requerido(p, "tipo").toUpperCase();
+        switch (tipo) {
+            case "CLASE":
+                return gestor.registrarReservaClase(clave, aula, fecha, inicio, fin, responsable, requerido(p, "materia"), entero(p, "numEstudiantes"));
+            case "EVENTO":
+                return gestor.registrarReservaEvento(clave, aula, fecha, inicio, fin, responsable,
+                    TipoEvento.valueOf(requerido(p, "tipoEvento").toUpperCase()), entero(p, "asistentes"));
+            case "PRACTICA":
+                return gestor.registrarReservaPractica(clave, aula, fecha, inicio, fin, responsable, requerido(p, "descripcion"), entero(p, "numEquipos"));
+            default:
+                throw new ValidacionDeReservaException("Tipo de reserva desconocido: " + tipo);
+        }
+    }
+
+    //Clave de idempotencia del pedido (cabecera Idempotency-Key), o null si no la trae
+    private static String claveIdempotencia(HttpExchange ex) {
+        String clave = ex.getRequestHeaders().getFirst("Idempotency-Key");
+        return clave == null || clave.trim().isEmpty() ? null : clave.trim();
+    }
+
+    private void reportes(HttpExchange ex, Map<String, String> p) throws Exception {
+        if (!ex.getRequestMethod().equals("GET")) {
+            noPermitido(ex);
+            return;
+        }
+        Set<TipoReporte> tipos = EnumSet.noneOf(TipoReporte.class);
+        for (String nombre : p.getOrDefault("tipos", "").split(",")) {
+            if (!nombre.trim().isEmpty()) tipos.add(TipoReporte.valueOf(nombre.trim().toUpperCase()));
+        }
+        Json reportes = new Json();
+        gestor.generarReportes(tipos).forEach((tipo, texto) -> reportes.campo(tipo.name(), texto));
+        responder(ex, 200, reportes.toString());
+    }
+
+    //====================== Protocolo ======================
+
+    //Lee los parametros, ejecuta la accion y traduce las excepciones. Siempre cierra el intercambio.
+    private static void manejar(HttpExchange ex, Accion accion) {
+        try {
+            Map<String, String> parametros;
+            try {
+                parametros = parametros(ex);
+            } catch (CuerpoExcedidoException e) {
+                ex.getResponseHeaders().set("Connection", "close"); //El resto del cuerpo no se lee
+                responder(ex, 413, error("cuerpo_demasiado_grande", e.getMessage()));
+                return;
+            }
+            try {
+                accion.ejecutar(ex, parametros);
+            } catch (ConflictoDeHorarioException e) {
+                responder(ex, 409, new Json().campo("ok", false).campo("error", "conflicto").campo("mensaje", e.getMessage())
+                    .campoJson("alternativas", listaJson(e.getAlternativas(), Json::alternativa)).toString());
+            } catch (NoEncontradoException e) {
+                responder(ex, 404, error("no_encontrada", e.getMessage()));
+            } catch (ValidacionDeReservaException e) {
+                responder(ex, 400, error("validacion", e.getMessage()));
+            } catch (DateTimeParseException | IllegalArgumentException e) {
+                //NumberFormatException es subclase de IllegalArgumentException (enums y enteros mal escritos)
+                responder(ex, 400, error("formato", e.getMessage()));
+            } catch (RuntimeException e) {
+                responder(ex, 500, error("interno", e.toString()));
+            }
+        } catch (Exception e) {
+            //La respuesta ya empezo a enviarse o el cliente cerro la conexion: no se puede informar nada mas
+        } finally {
+            ex.close();
+        }
+    }
+
+    /*Parametros de la URL y, si el cuerpo es un formulario, tambien del cuerpo. El cuerpo se lee completo para reutilizar
+    la conexion, hasta MAX_CUERPO bytes: uno mas grande (por su Content-Length o al leerlo) lanza CuerpoExcedidoException.*/
+    private static Map<String, String> parametros(HttpExchange ex) throws IOException {
+        Map<String, String> parametros = new HashMap<>();
+        agregarParametros(ex.getRequestURI().getRawQuery(), parametros);
+        String largo = ex.getRequestHeaders().getFirst("Content-Length");
+        try {
+            if (largo != null && Long.parseLong(largo.trim()) > MAX_CUERPO) throw new CuerpoExcedidoException();
+        } catch (NumberFormatException e) {
+            //Content-Length invalido: el servidor ya lo rechaza; el limite se controla al leer
+        }
+        ByteArrayOutputStream cuerpo = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        try (InputStream entrada = ex.getRequestBody()) {
+            int leidos;
+            while ((leidos = entrada.read(buffer)) != -1) {
+                if (cuerpo.size() + leidos > MAX_CUERPO) throw new CuerpoExcedidoException();
+                cuerpo.write(buffer, 0, leidos);
+            }
+        }
+        String tipo = ex.getRequestHeaders().getFirst("Content-Type");
+        if (cuerpo.size() > 0 && (tipo == null || tipo.startsWith("application/x-www-form-urlencoded"))) {
+            agregarParametros(new String(cuerpo.toByteArray(), StandardCharsets.UTF_8), parametros);
+        }
+        return parametros;
+    }
+
+    private static void agregarParametros(String texto, Map<String, String> parametros) throws UnsupportedEncodingException {
+        if (texto == null || texto.isEmpty()) return;
+        for (String par : texto.split("&")) {
+            int igual = par.indexOf('=');
+            if (igual <= 0) continue;
+            parametros.put(URLDecoder.decode(par.substring(0, igual), "UTF-8"), URLDecoder.decode(par.substring(igual + 1), "UTF-8"));
+        }
+    }
+
+    private static void responder(HttpExchange ex, int codigo, String json) throws IOException {
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        ex.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        ex.sendResponseHeaders(codigo, bytes.length);
+        try (OutputStream salida = ex.getResponseBody()) {
+            salida.write(bytes);
+        }
+    }
+
+    //Respuesta por bloques: cada elemento se convierte y se escribe sin construir el arreglo completo
+    private static <T> void responderLista(HttpExchange ex, List<T> elementos, Function<T, String> json) throws IOException {
+        ex.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        ex.sendResponseHeaders(200, 0);
+        try (Writer salida = new BufferedWriter(new OutputStreamWriter(ex.getResponseBody(), StandardCharsets.UTF_8), 8192)) {
+            salida.write('[');
+            for (int i = 0; i < elementos.size(); i++) {
+                if (i > 0) salida.write(',');
+                salida.write(json.apply(elementos.get(i)));
+            }
+            salida.write(']');
+        }
+    }
+
+    private static void noPermitido(HttpExchange ex) throws IOException {
+        responder(ex, 405, error("metodo", "Metodo no permitido: " + ex.getRequestMethod()));
+    }
+
+    private static String error(String tipo, String mensaje) {
+        return new Json().campo("ok", false).campo("error", tipo).campo("mensaje", mensaje).toString();
+    }
+
+    //Lo que sigue al prefijo del contexto, sin barras (ej. el ID en /reservas/R12)
+    private static String subruta(HttpExchange ex, String contexto) {
+        String ruta = ex.getRequestURI().getPath().substring(contexto.length());
+        while (ruta.startsWith("/")) ruta = ruta.substring(1);
+        while (ruta.endsWith("/")) ruta = ruta.substring(0, ruta.length() - 1);
+        return ruta;
+    }
+
+    private static String requerido(Map<String, String> p, String nombre) throws ValidacionDeReservaException {
+        String valor = p.get(nombre);
+        if (valor == null || valor.trim().isEmpty()) throw new ValidacionDeReservaException("Falta el parametro: " + nombre);
+        return valor.trim();
+    }
+
+    private static int entero(Map<String, String> p, String nombre) throws ValidacionDeReservaException {
+        return Integer.parseInt(requerido(p, nombre));
+    }
+
+    private static <T> String listaJson(List<T> elementos, Function<T, String> json) {
+        StringBuilder sb = new StringBuilder("[");
+        for (T e : elementos) {
+            if (sb.length() > 1) sb.append(',');
+            sb.append(json.apply(e));
+        }
+        return sb.append(']').toString();
+    }
+
+    private static String ids(List<Reserva> reservas) {
+        return listaJson(reservas, r -> {
+            StringBuilder sb = new StringBuilder();
+            Json.escapar(r.getIdReserva(), sb);
+            return sb.toString();
+        });
+    }
+}
@@ -1,9 +1,35 @@
 package GestorReservarAula.exceptions;
 
+import java.util.Collections;
+import java.util.List;
+
+import GestorReservarAula.models.AlternativaHorario;
+import GestorReservarAula.models.Reserva;
+
 //Excepcion personalizada que maneja conflictos de horarios
 public class ConflictoDeHorarioException extends Exception{
-    
+    private final Reserva reservaRechazada; //Reserva que no pudo registrarse, para poder encolarla
+    private final List<AlternativaHorario> alternativas; //Horarios libres sugeridos, de mejor a peor
+
     public ConflictoDeHorarioException(String mensaje){
+        this(mensaje, null);
+    }
+
+    public ConflictoDeHorarioException(String mensaje, Reserva reservaRechazada){
+        this(mensaje, reservaRechazada, Collections.emptyList());
+    }
+
+    public ConflictoDeHorarioException(String mensaje, Reserva reservaRechazada, List<AlternativaHorario> alternativas){
         super(mensaje);
+        this.reservaRechazada = reservaRechazada;
+        this.alternativas = Collections.unmodifiableList(alternativas);
+    }
+
+    public Reserva getReservaRechazada() {
+        return reservaRechazada;
+    }
+
+    public List<AlternativaHorario> getAlternativas() {
+        return alternativas;
     }
 }
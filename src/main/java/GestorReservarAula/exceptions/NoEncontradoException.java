@@ -0,0 +1,10 @@
+package GestorReservarAula.exceptions;
+
+//Validacion que falla porque el aula, la reserva o el fragmento pedido no existe (el servidor HTTP responde 404)
+public class NoEncontradoException extends ValidacionDeReservaException {
+    private static final long serialVersionUID = 1L;
+
+    public NoEncontradoException(String mensaje) {
+        super(mensaje);
+    }
+}
@@ -1,9 +1,38 @@
 package GestorReservarAula.exceptions;
 
+import GestorReservarAula.models.Reserva;
+import GestorReservarAula.util.CodigoValidacion;
+
 //Excepcion personalizada que maneja validaciones funcionales y asegurar mensajes descriptivos del usuario
 public class ValidacionDeReservaException extends Exception{
+    private final CodigoValidacion codigo; //null si no viene de la tabla de reglas
+    private transient Reserva reserva; //Solo para armar el mensaje cuando se pide
+    private String mensaje;
     
     public ValidacionDeReservaException(String mensaje){
         super(mensaje);
+        this.codigo = null;
+        this.mensaje = mensaje;
+    }
+
+    /*Regla incumplida de la tabla de reglas. Es un resultado esperado (por ejemplo, rechazos en una importacion masiva),
+    asi que no captura la pila de llamadas y el mensaje se arma recien cuando se pide.*/
+    public ValidacionDeReservaException(CodigoValidacion codigo, Reserva reserva){
+        super(null, null, false, false);
+        this.codigo = codigo;
+        this.reserva = reserva;
+    }
+
+    public CodigoValidacion getCodigo() {
+        return codigo;
+    }
+
+    @Override
+    public String getMessage() {
+        if (mensaje == null && codigo != null) {
+            mensaje = codigo.mensaje(reserva);
+            reserva = null;
+        }
+        return mensaje;
     }
 }
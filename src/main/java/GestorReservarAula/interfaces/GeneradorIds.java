@@ -0,0 +1,10 @@
+package GestorReservarAula.interfaces;
+
+/*Origen de los numeros de ID de reserva (el gestor los muestra como R<n>).
+Las implementaciones deben ser seguras para varios hilos y no repetir numeros: GestorReservas puede compartir
+un mismo generador entre fragmentos, y SecuenciaArrendada o GeneradorIdTemporal entre procesos.*/
+@FunctionalInterface
+public interface GeneradorIds {
+    //Siguiente numero de ID (positivo, nunca repetido)
+    long siguiente();
+}
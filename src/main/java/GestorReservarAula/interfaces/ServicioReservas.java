@@ -0,0 +1,125 @@
+package GestorReservarAula.interfaces;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+import GestorReservarAula.models.Aula;
+import GestorReservarAula.models.AulaCercana;
+import GestorReservarAula.models.ImpactoCambioAula;
+import GestorReservarAula.models.Reserva;
+import GestorReservarAula.models.Ubicacion;
+import GestorReservarAula.util.TipoAula;
+import GestorReservarAula.util.TipoEvento;
+import GestorReservarAula.util.EstadoReserva;
+import GestorReservarAula.util.FormatoExportacion;
+import GestorReservarAula.util.PoliticaCambioAula;
+import GestorReservarAula.util.TipoReporte;
+import GestorReservarAula.exceptions.ConflictoDeHorarioException;
+import GestorReservarAula.exceptions.ValidacionDeReservaException;
+
+/*Operaciones del gestor de reservas que usan las interfaces de usuario (consola, modo lote).
+La implementan GestorReservas (un solo almacen) y GestorReservasFragmentado (varios campus).*/
+public interface ServicioReservas extends AutoCloseable {
+    long SIN_CAMBIOS = -1; //Resultado de una exportacion condicional que no escribio nada
+
+    //Gestion de aulas
+    void registrarAula(String codigo, String nombre, int capacidad, TipoAula tipo) throws ValidacionDeReservaException;
+    Collection<Aula> listarAulas();
+    void modificarAula(String codigo, String nuevoNombre, int nuevaCapacidad, TipoAula nuevoTipo) throws ValidacionDeReservaException;
+    //Revalida las reservas futuras del aula y aplica la politica a las que dejan de ser validas
+    ImpactoCambioAula modificarAula(String codigo, String nuevoNombre, int nuevaCapacidad, TipoAula nuevoTipo,
+                                    PoliticaCambioAula politica) throws ValidacionDeReservaException;
+
+    //Ubicacion de las aulas (edificio, piso, coordenadas en metros) y busqueda de las k aulas libres mas cercanas
+    void registrarAula(String codigo, String nombre, int capacidad, TipoAula tipo, Ubicacion ubicacion) throws ValidacionDeReservaException;
+    void ubicarAula(String codigo, Ubicacion ubicacion) throws ValidacionDeReservaException;
+    //La referencia es el codigo de un aula o el nombre de un edificio; tipo null = cualquiera
+    List<AulaCercana> buscarAulasLibresCercanas(String referencia, LocalDate fecha, LocalTime hInicio, LocalTime hFin,
+                                                TipoAula tipo, int capacidadMinima, int k) throws ValidacionDeReservaException;
+    List<AulaCercana> buscarAulasLibresCercanas(Ubicacion origen, LocalDate fecha, LocalTime hInicio, LocalTime hFin,
+                                                TipoAula tipo, int capacidadMinima, int k) throws ValidacionDeReservaException;
+
+    //Registro de reservas. Devuelven el ID asignado.
+    String registrarReservaClase(String codigoAula, LocalDate fecha, LocalTime hInicio, LocalTime hFin, String responsable,
+                                 String materia, int numEstudiantes) throws ConflictoDeHorarioException, ValidacionDeReservaException;
+    String registrarReservaEvento(String codigoAula, LocalDate fecha, LocalTime hInicio, LocalTime hFin, String responsable,
+                                  TipoEvento tipoEvento, int asistentesEsperados) throws ConflictoDeHorarioException, ValidacionDeReservaException;
+    String registrarReservaPractica(String codigoAula, LocalDate fecha, LocalTime hInicio, LocalTime hFin, String responsable,
+                                    String descripcionPractica, int numEquipos) throws ConflictoDeHorarioException, ValidacionDeReservaException;
+
+    //Evento en varias aulas a la vez (asistentes por aula): se reservan todas o ninguna. Devuelve los IDs en el orden del mapa.
+    List<String> registrarReservaEventoMultiple(Map<String, Integer> asistentesPorAula, LocalDate fecha, LocalTime hInicio, LocalTime hFin,
+                                                String responsable, TipoEvento tipoEvento) throws ConflictoDeHorarioException, ValidacionDeReservaException;
+
+    /*Variantes con clave de idempotencia del cliente (null = sin clave): un reintento con la misma clave
+    devuelve el resultado original (ID o error) sin volver a ejecutar la operacion.*/
+    String registrarReservaClase(String claveIdempotencia, String codigoAula, LocalDate fecha, LocalTime hInicio, LocalTime hFin, String responsable,
+                                 String materia, int numEstudiantes) throws ConflictoDeHorarioException, ValidacionDeReservaException;
+    String registrarReservaEvento(String claveIdempotencia, String codigoAula, LocalDate fecha, LocalTime hInicio, LocalTime hFin, String responsable,
+                                  TipoEvento tipoEvento, int asistentesEsperados) throws ConflictoDeHorarioException, ValidacionDeReservaException;
+    String registrarReservaPractica(String claveIdempotencia, String codigoAula, LocalDate fecha, LocalTime hInicio, LocalTime hFin, String responsable,
+                                    String descripcionPractica, int numEquipos) throws ConflictoDeHorarioException, ValidacionDeReservaException;
+    List<Reserva> cancelarReserva(String claveIdempotencia, String id) throws ValidacionDeReservaException;
+
+    //Busqueda, modificacion y cancelacion. Modificar y cancelar devuelven las reservas promovidas de la lista de espera.
+    Optional<Reserva> buscarReservaPorId(String id);
+    List<Reserva> buscarReservasPorResponsable(String texto);
+    List<Reserva> modificarReserva(String id, LocalDate nuevaFecha, LocalTime nuevoHInicio, LocalTime nuevoHFin, String nuevoResponsable)
+        throws ConflictoDeHorarioException, ValidacionDeReservaException;
+    List<Reserva> cancelarReserva(String id) throws ValidacionDeReservaException;
+    List<Reserva> cambiarEstadoReserva(String id, EstadoReserva nuevoEstado) throws ValidacionDeReservaException;
+    Map<EstadoReserva, Integer> contarPorEstado();
+
+    //Lista de espera
+    boolean encolarEnListaEspera(Reserva reserva) throws ValidacionDeReservaException;
+    List<Reserva> listarListaEspera();
+
+    //Listados y reportes
+    List<Reserva> listarReservas(String campoOrden, boolean ascendente);
+    String generarReporteTopAulas();
+    String generarReporteDistribucionPorTipoReserva();
+    String generarReporteOcupacionPorTipoAula();
+    String generarReporteUtilizacion(LocalDate desde, LocalDate hasta);
+    //Varios reportes calculados en una sola pasada (todos si el conjunto esta vacio), exportados juntos
+    Map<TipoReporte, String> generarReportes(Set<TipoReporte> tipos);
+
+    //Ocupacion por rango de fechas (null = sin limite), resuelta con sumas por prefijo en O(log D)
+    long minutosReservados(String codigoAula, LocalDate desde, LocalDate hasta);
+    Map<TipoAula, Long> minutosReservadosPorTipoAula(LocalDate desde, LocalDate hasta);
+
+    /*Exportacion en streaming (ICS o CSV) de las reservas de un aula o de un responsable entre dos fechas.
+    Devuelven la version exportada, o SIN_CAMBIOS si nada cambio desde versionConocida (no se escribe nada).*/
+    long exportarReservasAula(String codigoAula, LocalDate desde, LocalDate hasta, FormatoExportacion formato,
+                              OutputStream salida, long versionConocida) throws IOException;
+    long exportarReservasResponsable(String responsable, LocalDate desde, LocalDate hasta, FormatoExportacion formato,
+                                     OutputStream salida, long versionConocida) throws IOException;
+
+    /*Ciclo de vida: las reservas activas pasan a COMPLETADA al terminar y salen de la agenda en memoria
+    (siguen por ID y en el historico); tras diasRetencion, si es >= 0, se archivan*/
+    void iniciarBarridoCicloVida(int diasRetencion);
+    int completarVencidas();
+    //Aplica sin reiniciar las ediciones externas de los archivos de aulas y reservas (solo las filas que cambiaron)
+    void iniciarRecargaArchivos();
+
+    /*IDs de reserva. Por defecto un contador en memoria que parte del mayor ID cargado (unico solo dentro del proceso);
+    SecuenciaArrendada y GeneradorIdTemporal los hacen unicos entre procesos. Se configura antes de registrar reservas.*/
+    void usarGeneradorIds(GeneradorIds generador);
+    long siguienteIdLocal(); //Siguiente numero de ID segun los datos cargados (recorre reservas e historico)
+
+    //Persistencia
+    void guardarDatos();
+    void iniciarLote();
+    void finalizarLote();
+    boolean hayCambiosPendientes();
+    CompletableFuture<Void> confirmarPersistencia(); //Se completa cuando los cambios hechos hasta ahora estan en disco
+    @Override
+    void close(); //Guarda lo pendiente y libera los hilos en segundo plano
+}
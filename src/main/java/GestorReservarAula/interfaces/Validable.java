@@ -1,9 +1,12 @@
 package GestorReservarAula.interfaces;
 
 import GestorReservarAula.exceptions.ValidacionDeReservaException;
+import GestorReservarAula.util.CodigoValidacion;
 
 public interface Validable {
-    
+    //Valida las reglas especificas sin lanzar excepciones: OK o el codigo de la regla incumplida
+    CodigoValidacion validarReglas();
+
     //Metodo que valida las reglas especificas de la reserva
     void validarReglasEspecificas() throws ValidacionDeReservaException;
 }
@@ -0,0 +1,52 @@
+package GestorReservarAula.models;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+
+import GestorReservarAula.util.TipoAlternativa;
+
+/*Horario libre sugerido cuando una reserva entra en conflicto.
+La distancia mide cuanto se aleja de lo pedido: minutos de desplazamiento (MISMA_AULA), dias (OTRO_DIA) o 0 (OTRA_AULA).*/
+public class AlternativaHorario {
+    private final TipoAlternativa tipo;
+    private final Aula aula;
+    private final LocalDate fecha;
+    private final LocalTime horaInicio;
+    private final LocalTime horaFin;
+    private final long distancia;
+
+    public AlternativaHorario(TipoAlternativa tipo, Aula aula, LocalDate fecha, LocalTime horaInicio, LocalTime horaFin, long distancia) {
+        this.tipo = tipo;
+        this.aula = aula;
+        this.fecha = fecha;
+        this.horaInicio = horaInicio;
+        this.horaFin = horaFin;
+        this.distancia = distancia;
+    }
+
+    //Getters
+    public TipoAlternativa getTipo() {
+        return tipo;
+    }
+    public Aula getAula() {
+        return aula;
+    }
+    public LocalDate getFecha() {
+        return fecha;
+    }
+    public LocalTime getHoraInicio() {
+        return horaInicio;
+    }
+    public LocalTime getHoraFin() {
+        return horaFin;
+    }
+    public long getDistancia() {
+        return distancia;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s %s %s-%s (%s)", aula.getCodigo(), fecha, horaInicio, horaFin,
+            tipo == TipoAlternativa.MISMA_AULA ? "misma aula" : tipo == TipoAlternativa.OTRA_AULA ? "otra aula" : "otro dia");
+    }
+}
@@ -8,6 +8,7 @@ public class Aula {
     private String nombre;
     private int capacidad;
     private TipoAula tipo; //Uso de TipoAula
+    private Ubicacion ubicacion; //Edificio, piso y coordenadas (null si no se cargaron)
 
     //Constructor
     public Aula(String codigo, String nombre, int capacidad, TipoAula tipo) {
@@ -35,6 +36,9 @@ public class Aula {
     public TipoAula getTipo() {
         return tipo;
     }
+    public Ubicacion getUbicacion() {
+        return ubicacion;
+    }
 
     //Setters
     public void setCodigo(String codigo) {
@@ -49,14 +53,20 @@ public class Aula {
     public void setTipo(TipoAula tipo) {
         this.tipo = tipo;
     }
+    public void setUbicacion(Ubicacion ubicacion) {
+        this.ubicacion = ubicacion;
+    }
     
     //Metodo para simplificar la representacion en listados
     @Override
     public String toString(){
-        return String.format("Aula [Codigo: %s, Nombre: %s, Capacidad: %d, Tipo: %s]", codigo, nombre, capacidad, tipo);
+        return String.format("Aula [Codigo: %s, Nombre: %s, Capacidad: %d, Tipo: %s%s]", codigo, nombre, capacidad, tipo,
+            ubicacion == null ? "" : ", Ubicacion: " + ubicacion);
     }
-    //Metodo para la persistencia en formato CSV/TXT
+    /*Metodo para la persistencia en formato CSV/TXT. La ubicacion va en columnas al final y solo si existe,
+    asi los archivos anteriores se siguen leyendo y las aulas sin ubicacion se escriben igual que antes.*/
     public String toCsvString(){
-        return String.format("%s,%s,%d,%s", codigo, nombre, capacidad, tipo);
+        String csv = String.format("%s,%s,%d,%s", codigo, nombre, capacidad, tipo);
+        return ubicacion == null ? csv : csv + "," + ubicacion.toCsvString();
     }  
 }
\ No newline at end of file
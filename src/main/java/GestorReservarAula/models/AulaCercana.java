@@ -0,0 +1,25 @@
+package GestorReservarAula.models;
+
+//Aula libre encontrada en una busqueda por cercania, con su distancia en metros al punto de referencia
+public class AulaCercana {
+    private final Aula aula;
+    private final double distancia;
+
+    public AulaCercana(Aula aula, double distancia) {
+        this.aula = aula;
+        this.distancia = distancia;
+    }
+
+    //Getters
+    public Aula getAula() {
+        return aula;
+    }
+    public double getDistancia() {
+        return distancia;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s a %.0f m (%s)", aula.getCodigo(), distancia, aula.getUbicacion());
+    }
+}
@@ -0,0 +1,86 @@
+package GestorReservarAula.models;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import GestorReservarAula.util.PoliticaCambioAula;
+
+/*Reporte de impacto de modificar un aula: cuantas reservas futuras se revisaron,
+cuales dejaron de ser validas (con el motivo) y que se hizo con ellas segun la politica.*/
+public class ImpactoCambioAula {
+    private final String codigoAula;
+    private final PoliticaCambioAula politica;
+    private boolean aplicado = true;
+    private int revisadas = 0;
+    private final Map<Reserva, String> invalidas = new LinkedHashMap<>();
+    private final List<Reserva> marcadas = new ArrayList<>();
+    private final Map<Reserva, String> reubicadas = new LinkedHashMap<>(); //Reserva -> aula anterior
+
+    public ImpactoCambioAula(String codigoAula, PoliticaCambioAula politica) {
+        this.codigoAula = codigoAula;
+        this.politica = politica;
+    }
+
+    //Registro de resultados (lo usa el gestor)
+    public void agregarRevisada() {
+        revisadas++;
+    }
+    public void agregarInvalida(Reserva reserva, String motivo) {
+        invalidas.put(reserva, motivo);
+    }
+    public void agregarMarcada(Reserva reserva) {
+        marcadas.add(reserva);
+    }
+    public void agregarReubicada(Reserva reserva, String aulaAnterior) {
+        reubicadas.put(reserva, aulaAnterior);
+    }
+    public void rechazar() {
+        aplicado = false;
+    }
+
+    //Getters
+    public String getCodigoAula() {
+        return codigoAula;
+    }
+    public PoliticaCambioAula getPolitica() {
+        return politica;
+    }
+    public boolean isAplicado() {
+        return aplicado;
+    }
+    public int getRevisadas() {
+        return revisadas;
+    }
+    public Map<Reserva, String> getInvalidas() {
+        return Collections.unmodifiableMap(invalidas);
+    }
+    public List<Reserva> getMarcadas() {
+        return Collections.unmodifiableList(marcadas);
+    }
+    public Map<Reserva, String> getReubicadas() {
+        return Collections.unmodifiableMap(reubicadas);
+    }
+
+    //Resumen de una linea, usado como mensaje de error cuando se rechaza el cambio
+    public String resumen() {
+        return String.format("Aula %s: %d reservas futuras revisadas, %d no serian validas con el cambio%s.", codigoAula, revisadas,
+            invalidas.size(), aplicado ? "" : " (cambio rechazado)");
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("=== Impacto del cambio en el aula ").append(codigoAula).append(" ===\n");
+        sb.append(resumen()).append("\n");
+        invalidas.forEach((r, motivo) -> {
+            sb.append(" - ").append(r.getIdReserva()).append(" (").append(r.getFecha()).append(" ")
+              .append(r.getHoraInicio()).append("-").append(r.getHoraFin()).append("): ").append(motivo);
+            if (reubicadas.containsKey(r)) sb.append(" -> reubicada en ").append(r.getAula().getCodigo());
+            else if (marcadas.contains(r)) sb.append(" -> marcada para revision");
+            sb.append("\n");
+        });
+        return sb.toString();
+    }
+}
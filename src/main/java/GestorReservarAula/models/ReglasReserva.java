@@ -0,0 +1,65 @@
+package GestorReservarAula.models;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Map;
+
+import GestorReservarAula.util.CodigoValidacion;
+import GestorReservarAula.util.TipoAula;
+import GestorReservarAula.util.UsoAula;
+
+/*Tabla de reglas de las reservas: que tipos de aula admite cada uso y que usos controlan la capacidad.
+Validar es consultar un EnumSet y comparar dos enteros; no se crean objetos ni excepciones.*/
+public final class ReglasReserva {
+    private static final Map<UsoAula, EnumSet<TipoAula>> AULAS_ADMITIDAS = new EnumMap<>(UsoAula.class);
+    private static final Map<UsoAula, CodigoValidacion> AULA_NO_APTA = new EnumMap<>(UsoAula.class);
+    //Usos cuya cantidad requerida (estudiantes, asistentes) no puede superar la capacidad del aula
+    //Cuanto adelante se puede reservar
+    public static final int ANIOS_HORIZONTE = 5;
+    private static final EnumSet<UsoAula> CONTROLAN_CAPACIDAD = EnumSet.of(UsoAula.CLASE, UsoAula.CONFERENCIA, UsoAula.TALLER, UsoAula.REUNION);
+
+    static {
+        //Clases en aulas teoricas o laboratorios; practicas solo en laboratorios
+        regla(UsoAula.CLASE, EnumSet.of(TipoAula.TEORICA, TipoAula.LABORATORIO), CodigoValidacion.AULA_NO_APTA_CLASE);
+        regla(UsoAula.PRACTICA, EnumSet.of(TipoAula.LABORATORIO), CodigoValidacion.AULA_NO_APTA_PRACTICA);
+        //Conferencias y talleres requieren un auditorio o laboratorio; las reuniones admiten cualquier aula
+        regla(UsoAula.CONFERENCIA, EnumSet.of(TipoAula.AUDITORIO, TipoAula.LABORATORIO), CodigoValidacion.AULA_NO_APTA_EVENTO);
+        regla(UsoAula.TALLER, EnumSet.of(TipoAula.AUDITORIO, TipoAula.LABORATORIO), CodigoValidacion.AULA_NO_APTA_EVENTO);
+        regla(UsoAula.REUNION, EnumSet.allOf(TipoAula.class), CodigoValidacion.AULA_NO_APTA_EVENTO);
+    }
+
+    private ReglasReserva() {
+    }
+
+    private static void regla(UsoAula uso, EnumSet<TipoAula> admitidas, CodigoValidacion siNoApta) {
+        AULAS_ADMITIDAS.put(uso, admitidas);
+        AULA_NO_APTA.put(uso, siNoApta);
+    }
+
+    //Reglas de aula y capacidad de un uso en un aula
+    public static CodigoValidacion validar(UsoAula uso, Aula aula, int cantidadRequerida) {
+        if (!AULAS_ADMITIDAS.get(uso).contains(aula.getTipo())) return AULA_NO_APTA.get(uso);
+        if (CONTROLAN_CAPACIDAD.contains(uso) && cantidadRequerida > aula.getCapacidad()) return CodigoValidacion.CAPACIDAD_INSUFICIENTE;
+        return CodigoValidacion.OK;
+    }
+
+    //Capacidad minima que un aula necesita para el uso: la cantidad requerida si el uso controla la capacidad
+    public static int capacidadMinima(UsoAula uso, int cantidadRequerida) {
+        return CONTROLAN_CAPACIDAD.contains(uso) ? cantidadRequerida : 0;
+    }
+
+    //Reglas de horario: inicio antes del fin, fecha no pasada y dentro del horizonte de reservas
+    public static CodigoValidacion validarHorario(LocalDate fecha, LocalTime horaInicio, LocalTime horaFin, LocalDate hoy) {
+        if (!horaInicio.isBefore(horaFin)) return CodigoValidacion.HORARIO_INVALIDO;
+        if (fecha.isBefore(hoy)) return CodigoValidacion.FECHA_PASADA;
+        if (fecha.isAfter(hoy.plusYears(ANIOS_HORIZONTE))) return CodigoValidacion.FECHA_FUERA_DE_HORIZONTE;
+        return CodigoValidacion.OK;
+    }
+
+    //Tipos de aula que admite un uso (copia)
+    public static EnumSet<TipoAula> aulasAdmitidas(UsoAula uso) {
+        return EnumSet.copyOf(AULAS_ADMITIDAS.get(uso));
+    }
+}
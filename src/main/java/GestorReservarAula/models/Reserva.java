@@ -1,6 +1,10 @@
 package GestorReservarAula.models;
 
 import GestorReservarAula.interfaces.Validable;
+import GestorReservarAula.util.CodigoValidacion;
+import GestorReservarAula.util.EstadoReserva;
+import GestorReservarAula.util.UsoAula;
+import GestorReservarAula.exceptions.ValidacionDeReservaException;
 import java.time.LocalDate;
 import java.time.LocalTime;
 
@@ -13,7 +17,8 @@ public abstract class Reserva implements Validable{
     private LocalTime horaInicio;
     private LocalTime horaFin;
     private String responsable;
-    private String estado; //Control de estado: activa, cancelada
+    private EstadoReserva estado; //Control de estado: activa, cancelada, completada, no presentado
+    private String alerta; //Motivo por el que la reserva requiere revision (null si no tiene), ej. el aula cambio
 
     //Constructor
     public Reserva(String idReserva, Aula aula, LocalDate fecha, LocalTime horaInicio, LocalTime horaFin, String responsable) {
@@ -23,7 +28,7 @@ public abstract class Reserva implements Validable{
         this.horaInicio = horaInicio;
         this.horaFin = horaFin;
         this.responsable = responsable;
-        this.estado = "activa"; //Por defecto es activa
+        this.estado = EstadoReserva.ACTIVA; //Por defecto es activa
     }
 
     //Getters
@@ -45,9 +50,12 @@ public abstract class Reserva implements Validable{
     public String getResponsable() {
         return responsable;
     }
-    public String getEstado() {
+    public EstadoReserva getEstado() {
         return estado;
     }
+    public String getAlerta() {
+        return alerta;
+    }
     
     //Setters
     public void setFecha(LocalDate fecha) {
@@ -62,17 +70,51 @@ public abstract class Reserva implements Validable{
     public void setResponsable(String responsable) {
         this.responsable = responsable;
     }
-    public void setEstado(String estado) {
+    public void setEstado(EstadoReserva estado) {
         this.estado = estado;
     }
+    public void setAula(Aula aula) {
+        this.aula = aula;
+    }
+    //Las comas y saltos de linea se reemplazan para no romper el formato CSV
+    public void setAlerta(String alerta) {
+        this.alerta = alerta == null ? null : alerta.replace(',', ';').replaceAll("[\\r\\n]+", " ");
+    }
+
+    //Columnas finales comunes del CSV: estado y, si la hay, la alerta
+    protected String columnasFinalesCsv() {
+        return alerta == null ? String.valueOf(estado) : estado + "," + alerta;
+    }
 
     //Metodo para la persistencia, sera sobrescrito por las subclases para incluir sus datos especificos
     public abstract String toCsvString();
 
+    //Uso que la reserva hace del aula y cantidad que requiere (estudiantes, asistentes o equipos), para la tabla de reglas
+    public abstract UsoAula getUso();
+    public abstract int getCantidadRequerida();
+
+    //Reglas especificas (tipo de aula y capacidad) consultadas en la tabla, sin excepciones
+    @Override
+    public CodigoValidacion validarReglas() {
+        return ReglasReserva.validar(getUso(), aula, getCantidadRequerida());
+    }
+
+    //Las mismas reglas como si la reserva estuviera en otra aula, sin modificarla
+    public CodigoValidacion validarReglasEn(Aula otraAula) {
+        return ReglasReserva.validar(getUso(), otraAula, getCantidadRequerida());
+    }
+
+    //Version con excepcion para la API existente; el mensaje se arma solo si se consulta
+    @Override
+    public void validarReglasEspecificas() throws ValidacionDeReservaException {
+        CodigoValidacion codigo = validarReglas();
+        if (codigo != CodigoValidacion.OK) throw new ValidacionDeReservaException(codigo, this);
+    }
+
     //Metodo general de la reserva para mostrar sus datos
     @Override
     public String toString() {
-        return String.format("Reserva [ID: %s, Aula: %s, Fecha: %s, Horario: %s-%s, Resp: %s, Estado: %s]",
-        idReserva, aula, fecha, horaInicio, horaFin, responsable, estado);
+        return String.format("Reserva [ID: %s, Aula: %s, Fecha: %s, Horario: %s-%s, Resp: %s, Estado: %s%s]",
+        idReserva, aula, fecha, horaInicio, horaFin, responsable, estado, alerta == null ? "" : ", Alerta: " + alerta);
     }
 }
@@ -1,9 +1,8 @@
 package GestorReservarAula.models;
 
-import GestorReservarAula.exceptions.ValidacionDeReservaException;
 import java.time.LocalDate;
 import java.time.LocalTime;
-import GestorReservarAula.util.TipoAula;
+import GestorReservarAula.util.UsoAula;
 
 /*Clase para reserva de clase
 Aplica reglas: solo puede en aulas teoricas o laboratorio*/
@@ -19,24 +18,30 @@ public class ReservaClase extends Reserva {
         this.numEstudiantes = numEstudiantes;
     }
 
-    //Regla de validación específica: Solo TEORICA o LABORATORIO, y capacidad.
+    //Reglas: solo TEORICA o LABORATORIO, y capacidad (ver ReglasReserva)
     @Override
-    public void validarReglasEspecificas() throws ValidacionDeReservaException {
-        TipoAula tipo = this.getAula().getTipo();
-        if (tipo.equals(TipoAula.AUDITORIO)) {
-            throw new ValidacionDeReservaException("Las clases solo pueden reservarse en aulas TEORICAS o LABORATORIO.");
-        }
-        if (this.numEstudiantes > this.getAula().getCapacidad()) {
-             throw new ValidacionDeReservaException(String.format("Capacidad insuficiente. Aula '%s' tiene %d, requeridos %d.",
-                this.getAula().getCodigo(), this.getAula().getCapacidad(), this.numEstudiantes));
-        }
+    public UsoAula getUso() {
+        return UsoAula.CLASE;
+    }
+
+    @Override
+    public int getCantidadRequerida() {
+        return numEstudiantes;
+    }
+
+    //Getters
+    public String getMateria() {
+        return materia;
+    }
+    public int getNumEstudiantes() {
+        return numEstudiantes;
     }
 
     //Metodo para la persistencia, será sobrescrito por las subclases para incluir sus datos especificos
     @Override
     public String toCsvString() {
-        return String.format("CLASE,%s,%s,%s,%s,%s,%s,%s,%s,%d",
-                getIdReserva(), getAula().getCodigo(), getFecha(), getHoraInicio(), getHoraFin(), getResponsable(), getEstado(),
-                materia, numEstudiantes);
+        return String.format("CLASE,%s,%s,%s,%s,%s,%s,%s,%d,%s",
+                getIdReserva(), getAula().getCodigo(), getFecha(), getHoraInicio(), getHoraFin(), getResponsable(),
+                materia, numEstudiantes, columnasFinalesCsv());
     }
 }
\ No newline at end of file
@@ -1,9 +1,8 @@
 package GestorReservarAula.models;
 
-import GestorReservarAula.exceptions.ValidacionDeReservaException;
 import java.time.LocalDate;
 import java.time.LocalTime;
-import GestorReservarAula.util.TipoAula;
+import GestorReservarAula.util.UsoAula;
 import GestorReservarAula.util.TipoEvento;
 
 /*Clase para reserva de Evento
@@ -18,20 +17,15 @@ public class ReservaEvento extends Reserva{
         this.asistentesEsperados = asistentesEsperados;
     }
 
-    //Regla especifica para ReservaEvento
+    //Reglas: dependen del tipo de evento y la capacidad (ver ReglasReserva)
     @Override
-    public void validarReglasEspecificas() throws ValidacionDeReservaException {
-        TipoAula tipoAula = this.getAula().getTipo();
-        //Conferencias y talleres requieren un auditorio o laboratorio
-        if ((tipoEvento.equals(TipoEvento.CONFERENCIA) || tipoEvento.equals(TipoEvento.TALLER)) 
-        && !(tipoAula.equals(TipoAula.AUDITORIO) || tipoAula.equals(TipoAula.LABORATORIO))){
-            throw new ValidacionDeReservaException("Conferencias o Talleres solo pueden reservarse en aulas de tipo Auditorio o Laboratorio.");
-        }
-        //La capacidad del aula debe ser suficiente
-        if (this.asistentesEsperados > this.getAula().getCapacidad()){
-            throw new ValidacionDeReservaException(String.format("Capacidad insuficiente. Aula '%s' tiene %d, requeridos %d.",
-            this.getAula().getCodigo(), this.getAula().getCapacidad(), this.asistentesEsperados));
-        }
+    public UsoAula getUso() {
+        return UsoAula.de(tipoEvento);
+    }
+
+    @Override
+    public int getCantidadRequerida() {
+        return asistentesEsperados;
     }
 
     //Getters
@@ -45,7 +39,7 @@ public class ReservaEvento extends Reserva{
     //Persistencia
     @Override
     public String toCsvString() {
-        return String.format("Evento,%s,%s,%s,%s,%s,%s,%s,%d", getIdReserva(), getAula().getCodigo(), 
-            getFecha(), getHoraInicio(), getHoraFin(), getResponsable(), tipoEvento, asistentesEsperados);
+        return String.format("Evento,%s,%s,%s,%s,%s,%s,%s,%d,%s", getIdReserva(), getAula().getCodigo(), 
+            getFecha(), getHoraInicio(), getHoraFin(), getResponsable(), tipoEvento, asistentesEsperados, columnasFinalesCsv());
     }
 }
@@ -2,8 +2,7 @@ package GestorReservarAula.models;
 
 import java.time.LocalDate;
 import java.time.LocalTime;
-import GestorReservarAula.util.TipoAula;
-import GestorReservarAula.exceptions.ValidacionDeReservaException;
+import GestorReservarAula.util.UsoAula;
 
 /*Clase para reserva de Practica
 Aplica reglas: solo se puede en laboratorios*/
@@ -18,15 +17,15 @@ public class ReservaPractica extends Reserva {
         this.numEquipos = numEquipos;
     }
 
-    //Regla específica para ReservaPractica
+    //Regla: solo en laboratorios (ver ReglasReserva). Los equipos no se comparan con la capacidad.
     @Override
-    public void validarReglasEspecificas() throws ValidacionDeReservaException {
-        TipoAula tipo = this.getAula().getTipo();
-        //Una práctica solo puede ser en un Laboratorio.
-        if (!tipo.equals(TipoAula.LABORATORIO)) {
-            throw new ValidacionDeReservaException("Las practicas solo pueden reservarse en aulas de tipo LABORATORIO.");
-        }
-        //Se podría añadir una validación sobre la capacidad de equipos si fuera relevante.
+    public UsoAula getUso() {
+        return UsoAula.PRACTICA;
+    }
+
+    @Override
+    public int getCantidadRequerida() {
+        return numEquipos;
     }
 
     //Getters
@@ -40,7 +39,7 @@ public class ReservaPractica extends Reserva {
     //Persistencia
     @Override
     public String toCsvString() {
-        return String.format("Practica,%s,%s,%s,%s,%s,%s,%s,%d", getIdReserva(), getAula().getCodigo(), 
-            getFecha(), getHoraInicio(), getHoraFin(), getResponsable(), descripcionPractica, numEquipos);
+        return String.format("Practica,%s,%s,%s,%s,%s,%s,%s,%d,%s", getIdReserva(), getAula().getCodigo(), 
+            getFecha(), getHoraInicio(), getHoraFin(), getResponsable(), descripcionPractica, numEquipos, columnasFinalesCsv());
     }
 }
@@ -0,0 +1,70 @@
+package GestorReservarAula.models;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import GestorReservarAula.util.TipoResultado;
+import GestorReservarAula.exceptions.ConflictoDeHorarioException;
+
+/*Resultado tipado de una operacion del servicio asincrono: exito con su valor, conflicto o error de validacion.
+Se entrega apenas se decide la operacion; 'persistido' se completa despues, cuando el cambio llega al disco.*/
+public class ResultadoOperacion<T> {
+    private final TipoResultado tipo;
+    private final T valor;
+    private final String mensaje;
+    private final List<AlternativaHorario> alternativas;
+    private final CompletableFuture<Void> persistido;
+
+    private ResultadoOperacion(TipoResultado tipo, T valor, String mensaje, List<AlternativaHorario> alternativas,
+                               CompletableFuture<Void> persistido) {
+        this.tipo = tipo;
+        this.valor = valor;
+        this.mensaje = mensaje;
+        this.alternativas = alternativas;
+        this.persistido = persistido;
+    }
+
+    public static <T> ResultadoOperacion<T> exito(T valor, CompletableFuture<Void> persistido) {
+        return new ResultadoOperacion<>(TipoResultado.EXITO, valor, null, Collections.emptyList(), persistido);
+    }
+
+    public static <T> ResultadoOperacion<T> conflicto(ConflictoDeHorarioException e) {
+        return new ResultadoOperacion<>(TipoResultado.CONFLICTO, null, e.getMessage(), e.getAlternativas(), CompletableFuture.completedFuture(null));
+    }
+
+    public static <T> ResultadoOperacion<T> validacion(String mensaje) {
+        return new ResultadoOperacion<>(TipoResultado.VALIDACION, null, mensaje, Collections.emptyList(), CompletableFuture.completedFuture(null));
+    }
+
+    public boolean isExito() {
+        return tipo == TipoResultado.EXITO;
+    }
+
+    //Getters
+    public TipoResultado getTipo() {
+        return tipo;
+    }
+
+    public T getValor() {
+        return valor;
+    }
+
+    public String getMensaje() {
+        return mensaje;
+    }
+
+    public List<AlternativaHorario> getAlternativas() {
+        return alternativas;
+    }
+
+    //Se completa cuando el cambio esta en disco (ya completo si la operacion no cambio nada)
+    public CompletableFuture<Void> getPersistido() {
+        return persistido;
+    }
+
+    @Override
+    public String toString() {
+        return isExito() ? tipo + ": " + valor : tipo + ": " + mensaje;
+    }
+}
@@ -0,0 +1,51 @@
+package GestorReservarAula.models;
+
+/*Ubicacion de un aula en el campus: edificio, piso y coordenadas del plano en metros.
+La distancia suma la altura de los pisos, asi que un aula en el mismo piso queda mas cerca que la de arriba.*/
+public class Ubicacion {
+    public static final double ALTURA_PISO = 4.0; //Metros entre pisos
+
+    private final String edificio;
+    private final int piso;
+    private final double x;
+    private final double y;
+
+    public Ubicacion(String edificio, int piso, double x, double y) {
+        this.edificio = edificio;
+        this.piso = piso;
+        this.x = x;
+        this.y = y;
+    }
+
+    //Getters
+    public String getEdificio() {
+        return edificio;
+    }
+    public int getPiso() {
+        return piso;
+    }
+    public double getX() {
+        return x;
+    }
+    public double getY() {
+        return y;
+    }
+
+    //Distancia en metros, contando los pisos de diferencia
+    public double distancia(Ubicacion otra) {
+        double dx = x - otra.x;
+        double dy = y - otra.y;
+        double dz = (piso - otra.piso) * ALTURA_PISO;
+        return Math.sqrt(dx * dx + dy * dy + dz * dz);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Edificio %s, piso %d (%.1f, %.1f)", edificio, piso, x, y);
+    }
+
+    //Columnas del CSV de aulas: edificio,piso,x,y
+    public String toCsvString() {
+        return edificio + "," + piso + "," + x + "," + y;
+    }
+}
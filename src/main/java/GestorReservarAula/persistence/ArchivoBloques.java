@@ -0,0 +1,294 @@
+package GestorReservarAula.persistence;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.zip.CRC32;
+
+/*Instantaneas de texto a prueba de caidas para los archivos de aulas, reservas y claves.
+
+Estructura del archivo (sigue siendo CSV legible, una fila por linea):
+  cabecera   #GestorReservaAula bloques v1
+  bloques    hasta FILAS_POR_BLOQUE filas, seguidas de una linea de control: #bloque,numero,filas,crc32
+El CRC cubre los bytes UTF-8 de cada fila con su salto de linea. La instantanea se escribe en un temporal,
+se sincroniza con el disco y reemplaza al archivo con un renombrado atomico: una caida a mitad de la escritura
+deja intacta la version anterior.
+
+Al leer, los bloques se verifican en paralelo. Los intactos se conservan y los danados (checksum distinto,
+cantidad de filas distinta o bloque sin linea de control) se informan con sus lineas exactas, para perder solo
+lo minimo. Si el archivo se edito por fuera (el lector lo decide, ver ArchivoObservado.escrituraPropia), un bloque
+que no coincide con su linea de control pero cuyas filas se pueden interpretar todas se toma como editado a mano
+y se conserva; en un archivo que nadie toco desde la ultima escritura, el mismo bloque esta danado. Los archivos anteriores, sin cabecera, se leen como antes.*/
+public class ArchivoBloques {
+    static final String CABECERA = "#GestorReservaAula bloques v1";
+    private static final String CONTROL = "#bloque,";
+    static final int FILAS_POR_BLOQUE = 1024;
+
+    //Bloque que no paso la verificacion: sus filas no se cargan, salvo que se conserve como editado
+    public static class Perdida {
+        private final int bloque;
+        private final int primeraLinea; //Numeros de linea del archivo, desde 1
+        private final int ultimaLinea;
+        private final String motivo;
+        private final List<String> filas;
+
+        private Perdida(int bloque, int primeraLinea, int ultimaLinea, String motivo, List<String> filas) {
+            this.bloque = bloque;
+            this.primeraLinea = primeraLinea;
+            this.ultimaLinea = ultimaLinea;
+            this.motivo = motivo;
+            this.filas = filas;
+        }
+
+        public int getBloque() {
+            return bloque;
+        }
+
+        public int getPrimeraLinea() {
+            return primeraLinea;
+        }
+
+        public int getUltimaLinea() {
+            return ultimaLinea;
+        }
+
+        public String getMotivo() {
+            return motivo;
+        }
+
+        public List<String> getFilas() {
+            return filas;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("bloque %s (lineas %d-%d, %d filas): %s", bloque >= 0 ? Integer.toString(bloque) : "final",
+                primeraLinea, ultimaLinea, filas.size(), motivo);
+        }
+    }
+
+    //Resultado de una lectura: filas de los bloques intactos y editados, en orden, y bloques perdidos
+    public static class Lectura {
+        private final List<String> filas;
+        private final List<Perdida> perdidas;
+        private final List<Perdida> editados; //No pasaron la verificacion, pero sus filas estan en 'filas'
+
+        private Lectura(List<String> filas, List<Perdida> perdidas, List<Perdida> editados) {
+            this.filas = filas;
+            this.perdidas = perdidas;
+            this.editados = editados;
+        }
+
+        public List<String> getFilas() {
+            return filas;
+        }
+
+        public List<Perdida> getPerdidas() {
+            return perdidas;
+        }
+
+        public List<Perdida> getEditados() {
+            return editados;
+        }
+
+        public int filasPerdidas() {
+            return perdidas.stream().mapToInt(p -> p.filas.size()).sum();
+        }
+    }
+
+    //Tramo de filas leido hasta una linea de control (o hasta el final del archivo)
+    private static class Tramo {
+        private final int primeraLinea;
+        private final List<String> filas = new ArrayList<>();
+        private String control; //null si el archivo termino antes de la linea de control
+
+        private Tramo(int primeraLinea) {
+            this.primeraLinea = primeraLinea;
+        }
+    }
+
+    //====================== Escritura ======================
+
+    //Escribe todas las filas (sobrescribe) en bloques con checksum, reemplazando el archivo de forma atomica
+    public static void escribir(List<String> filas, String archivo) throws IOException {
+        File destino = new File(archivo);
+        File temporal = new File(archivo + ".tmp");
+        try (FileOutputStream flujo = new FileOutputStream(temporal);
+             Writer salida = new BufferedWriter(new OutputStreamWriter(flujo, StandardCharsets.UTF_8), 1 << 16)) {
+            salida.write(CABECERA);
+            salida.write('\n');
+            CRC32 crc = new CRC32();
+            for (int inicio = 0, numero = 0; inicio < filas.size(); inicio += FILAS_POR_BLOQUE, numero++) {
+                int fin = Math.min(filas.size(), inicio + FILAS_POR_BLOQUE);
+                crc.reset();
+                for (int i = inicio; i < fin; i++) {
+                    String fila = filas.get(i);
+                    actualizar(crc, fila);
+                    salida.write(fila);
+                    salida.write('\n');
+                }
+                salida.write(CONTROL + numero + "," + (fin - inicio) + "," + Long.toHexString(crc.getValue()) + "\n");
+            }
+            salida.flush();
+            flujo.getFD().sync(); //Los datos deben estar en disco antes del renombrado
+        } catch (IOException e) {
+            temporal.delete();
+            throw e;
+        }
+        reemplazar(temporal, destino);
+    }
+
+    //Reemplaza el destino por el temporal con un renombrado atomico (o el mejor disponible en el sistema de archivos)
+    public static void reemplazar(File temporal, File destino) throws IOException {
+        try {
+            Files.move(temporal.toPath(), destino.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temporal.toPath(), destino.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    //====================== Lectura ======================
+
+    //Lee el archivo verificando los bloques en paralelo. Lanza FileNotFoundException si no existe.
+    public static Lectura leer(String archivo) throws IOException {
+        return leer(archivo, null);
+    }
+
+    /*Como leer(archivo), pero un bloque danado cuyas filas cumplen todas 'interpretable' se conserva como editado
+    por fuera (ver Lectura.getEditados) en lugar de perderse. null = no se conserva ningun bloque danado.*/
+    public static Lectura leer(String archivo, Predicate<String> interpretable) throws IOException {
+        List<Tramo> tramos = new ArrayList<>();
+        try (BufferedReader entrada = new BufferedReader(new InputStreamReader(new FileInputStream(archivo), StandardCharsets.UTF_8), 1 << 16)) {
+            String linea = entrada.readLine();
+            if (linea == null) return new Lectura(new ArrayList<>(), Collections.emptyList(), Collections.emptyList());
+            if (!linea.equals(CABECERA)) {
+                //Formato anterior: todas las filas, sin verificacion
+                List<String> filas = new ArrayList<>();
+                do {
+                    filas.add(linea);
+                } while ((linea = entrada.readLine()) != null);
+                return new Lectura(filas, Collections.emptyList(), Collections.emptyList());
+            }
+            int numeroLinea = 1;
+            Tramo actual = new Tramo(2);
+            while ((linea = entrada.readLine()) != null) {
+                numeroLinea++;
+                if (linea.startsWith(CONTROL)) {
+                    actual.control = linea;
+                    tramos.add(actual);
+                    actual = new Tramo(numeroLinea + 1);
+                } else {
+                    actual.filas.add(linea);
+                }
+            }
+            if (!actual.filas.isEmpty()) tramos.add(actual); //Final truncado
+        }
+
+        //Verificacion en paralelo; el resultado conserva el orden de los tramos
+        List<Verificacion> resultados = (tramos.size() > 1 ? tramos.parallelStream() : tramos.stream())
+            .map(ArchivoBloques::verificar)
+            .collect(Collectors.toList());
+
+        List<String> filas = new ArrayList<>();
+        List<Perdida> perdidas = new ArrayList<>();
+        List<Perdida> editados = new ArrayList<>();
+        int esperado = 0; //-1: numeracion desconocida tras un bloque sin numero valido
+        for (int i = 0; i < tramos.size(); i++) {
+            Tramo tramo = tramos.get(i);
+            Verificacion v = resultados.get(i);
+            if (v.perdida != null) {
+                if (editado(v.perdida, interpretable)) {
+                    filas.addAll(v.perdida.filas); //Preceden a las filas conservadas del tramo
+                    editados.add(v.perdida);
+                } else {
+                    perdidas.add(v.perdida);
+                }
+            } else if (esperado >= 0 && v.numero > esperado) {
+                //Bloques borrados junto con sus lineas de control: no queda ninguna fila que informar
+                perdidas.add(new Perdida(esperado, tramo.primeraLinea, tramo.primeraLinea - 1,
+                    "faltan los bloques " + esperado + " a " + (v.numero - 1), Collections.emptyList()));
+            }
+            filas.addAll(tramo.filas.subList(v.conservarDesde, tramo.filas.size()));
+            esperado = v.numero >= 0 ? v.numero + 1 : -1;
+        }
+        return new Lectura(filas, perdidas, editados);
+    }
+
+    //Un bloque con filas que se interpretan todas fue editado a mano, no danado: sus filas valen
+    private static boolean editado(Perdida perdida, Predicate<String> interpretable) {
+        return interpretable != null && !perdida.filas.isEmpty() && perdida.filas.stream().allMatch(interpretable);
+    }
+
+    /*Lee todas las filas de un archivo editado a mano (recarga en caliente), sin la cabecera ni las lineas de control
+    y sin verificar los checksums: un bloque editado por fuera ya no coincide con su linea de control, pero sus filas
+    son justamente los cambios. Lanza FileNotFoundException si el archivo no existe.*/
+    public static List<String> leerTodas(String archivo) throws IOException {
+        List<String> filas = new ArrayList<>();
+        try (BufferedReader entrada = new BufferedReader(new InputStreamReader(new FileInputStream(archivo), StandardCharsets.UTF_8), 1 << 16)) {
+            String linea;
+            while ((linea = entrada.readLine()) != null) {
+                if (linea.isEmpty() || linea.equals(CABECERA) || linea.startsWith(CONTROL)) continue;
+                filas.add(linea);
+            }
+        }
+        return filas;
+    }
+
+    //Resultado de verificar un tramo: las filas desde 'conservarDesde' estan intactas
+    private static class Verificacion {
+        private final int numero;
+        private final int conservarDesde;
+        private final Perdida perdida;
+
+        private Verificacion(int numero, int conservarDesde, Perdida perdida) {
+            this.numero = numero;
+            this.conservarDesde = conservarDesde;
+            this.perdida = perdida;
+        }
+    }
+
+    /*Verifica un tramo contra su linea de control. Si una linea de control anterior se dano, el tramo une varios
+    bloques: las ultimas filas se verifican contra esta linea y solo se pierden las anteriores.*/
+    private static Verificacion verificar(Tramo tramo) {
+        int total = tramo.filas.size();
+        int ultimaLinea = tramo.primeraLinea + total - 1;
+        if (tramo.control == null) {
+            return new Verificacion(-1, total, new Perdida(-1, tramo.primeraLinea, ultimaLinea,
+                "bloque final incompleto (falta la linea de control)", tramo.filas));
+        }
+        String[] partes = tramo.control.split(",");
+        int numero = -1;
+        try {
+            numero = Integer.parseInt(partes[1]);
+            int filas = Integer.parseInt(partes[2]);
+            long esperado = Long.parseLong(partes[3], 16);
+            if (filas > total || crc(tramo.filas.subList(total - filas, total)) != esperado) {
+                String motivo = filas == total ? "checksum invalido" : "se esperaban " + filas + " filas y hay " + total;
+                return new Verificacion(numero, total, new Perdida(numero, tramo.primeraLinea, ultimaLinea, motivo, tramo.filas));
+            }
+            if (filas == total) return new Verificacion(numero, 0, null);
+            int sobrantes = total - filas;
+            return new Verificacion(numero, sobrantes, new Perdida(numero - 1, tramo.primeraLinea, tramo.primeraLinea + sobrantes - 1,
+                "linea de control danada, filas sin verificar", tramo.filas.subList(0, sobrantes)));
+        } catch (RuntimeException e) {
+            return new Verificacion(numero, total, new Perdida(numero, tramo.primeraLinea, ultimaLinea,
+                "linea de control danada: " + tramo.control, tramo.filas));
+        }
+    }
+
+    private static long crc(List<String> filas) {
+        CRC32 crc = new CRC32();
+        filas.forEach(f -> actualizar(crc, f));
+        return crc.getValue();
+    }
+
+    private static void actualizar(CRC32 crc, String fila) {
+        crc.update(fila.getBytes(StandardCharsets.UTF_8));
+        crc.update('\n');
+    }
+}
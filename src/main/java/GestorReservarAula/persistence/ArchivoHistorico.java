@@ -0,0 +1,512 @@
+package GestorReservarAula.persistence;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import GestorReservarAula.models.*;
+import GestorReservarAula.util.EstadoReserva;
+import GestorReservarAula.util.TipoEvento;
+
+/*Formato binario compacto para reservas de periodos cerrados (historico).
+
+Estructura del archivo:
+  cabecera   "GRAH" + version(1 byte)
+  bloques    cada bloque contiene filas de una sola aula, ordenadas por fecha y hora, comprimidas con Deflater
+  indice     por bloque: aula, dia minimo, dia maximo, posicion, longitud comprimida, longitud original, filas, ID maximo,
+             ID minimo (version 2); luego un filtro de Bloom de todos los IDs del archivo y uno por bloque (version 2)
+  cola       posicion del indice (8 bytes) + "GRAI"
+
+Codificacion de cada fila dentro del bloque (enteros como varint):
+  delta de dia epoch respecto a la fila anterior (la primera respecto al dia minimo del bloque)
+  minuto de inicio del dia y duracion en minutos
+  un byte con tipo (bits 0-1) y estado (bits 2-4)
+  numero de ID + 1 (0 = ID no numerico, sigue como texto del diccionario)
+  responsable, y materia/descripcion (o el ordinal del tipo de evento), como referencias al diccionario
+  numero de estudiantes/asistentes/equipos
+El diccionario es propio de cada bloque: una referencia igual al tamanio actual define un texto nuevo a continuacion.
+Asi cada bloque se decodifica por separado y el lector usa el indice para saltar a un aula o rango de fechas.
+Cada archivo es un segmento del historico. Su filtro descarta sin leer nada los IDs que no estan; como los bloques
+son por aula sus rangos de IDs se superponen, asi que el filtro de cada bloque elige el bloque a leer (ver Resumen).
+Los archivos de la version 1 se siguen leyendo, sin filtro (sus bloques se acotan solo por el ID maximo).*/
+public class ArchivoHistorico {
+    private static final byte[] MAGIA = {'G', 'R', 'A', 'H'};
+    private static final byte[] MAGIA_INDICE = {'G', 'R', 'A', 'I'};
+    private static final int VERSION = 2;
+    private static final int FILAS_POR_BLOQUE = 4096;
+    private static final int BITS_FILTRO_SEGMENTO = 10; //~1% de falsos positivos: fallos sin leer el disco
+    private static final int BITS_FILTRO_BLOQUE = 16; //~0.05% por bloque: un acierto lee casi siempre un solo bloque
+
+    private static final int TIPO_CLASE = 0;
+    private static final int TIPO_EVENTO = 1;
+    private static final int TIPO_PRACTICA = 2;
+
+    private static final Comparator<Reserva> ORDEN = Comparator
+        .comparing((Reserva r) -> r.getAula().getCodigo())
+        .thenComparing(Reserva::getFecha)
+        .thenComparing(Reserva::getHoraInicio);
+
+    //Entrada del indice de bloques
+    public static class Bloque {
+        private final String codigoAula;
+        private final long diaMinimo;
+        private final long diaMaximo;
+        private final long posicion;
+        private final int longitudComprimida;
+        private final int longitudOriginal;
+        private final int filas;
+        private final long idMaximo; //Mayor numero de ID R<n> del bloque, para no reutilizar IDs archivados
+        private final long idMinimo; //Menor numero de ID R<n> (0 en archivos de la version 1)
+        private FiltroBloom filtro; //IDs del bloque (null en la version 1)
+
+        private Bloque(String codigoAula, long diaMinimo, long diaMaximo, long posicion, int longitudComprimida,
+                       int longitudOriginal, int filas, long idMaximo, long idMinimo) {
+            this.codigoAula = codigoAula;
+            this.diaMinimo = diaMinimo;
+            this.diaMaximo = diaMaximo;
+            this.posicion = posicion;
+            this.longitudComprimida = longitudComprimida;
+            this.longitudOriginal = longitudOriginal;
+            this.filas = filas;
+            this.idMaximo = idMaximo;
+            this.idMinimo = idMinimo;
+        }
+
+        //Indica si el bloque puede contener filas del aula y rango pedidos (null = sin filtro)
+        private boolean coincide(String aula, LocalDate desde, LocalDate hasta) {
+            if (aula != null && !codigoAula.equalsIgnoreCase(aula)) return false;
+            if (desde != null && diaMaximo < desde.toEpochDay()) return false;
+            return hasta == null || diaMinimo <= hasta.toEpochDay();
+        }
+
+        public String getCodigoAula() {
+            return codigoAula;
+        }
+        public LocalDate getDesde() {
+            return LocalDate.ofEpochDay(diaMinimo);
+        }
+        public LocalDate getHasta() {
+            return LocalDate.ofEpochDay(diaMaximo);
+        }
+        public int getLongitudComprimida() {
+            return longitudComprimida;
+        }
+        public int getLongitudOriginal() {
+            return longitudOriginal;
+        }
+        public int getFilas() {
+            return filas;
+        }
+        public long getIdMaximo() {
+            return idMaximo;
+        }
+        public long getIdMinimo() {
+            return idMinimo;
+        }
+    }
+
+    /*Lo que se guarda en memoria de cada segmento: el indice de bloques y los filtros de Bloom (null en la version 1),
+    unos 3 bytes por reserva archivada. Alcanza para saber, sin tocar el disco, en que bloque puede estar un ID.*/
+    public static class Resumen {
+        private final List<Bloque> bloques;
+        private final FiltroBloom filtro;
+
+        private Resumen(List<Bloque> bloques, FiltroBloom filtro) {
+            this.bloques = bloques;
+            this.filtro = filtro;
+        }
+
+        public List<Bloque> getBloques() {
+            return bloques;
+        }
+
+        public long idMaximo() {
+            return bloques.stream().mapToLong(Bloque::getIdMaximo).max().orElse(0);
+        }
+
+        //Bloques que pueden contener el ID; vacio si seguro no esta. Los IDs que no son R<n> se buscan en todos los bloques.
+        public List<Bloque> candidatos(String id) {
+            if (filtro != null && !filtro.puedeContener(id)) return Collections.emptyList();
+            long numero = numeroId(id);
+            if (numero < 0) {
+                return bloques.stream().filter(b -> b.filtro == null || b.filtro.puedeContener(id)).collect(Collectors.toList());
+            }
+            List<Bloque> candidatos = new ArrayList<>(1);
+            for (Bloque b : bloques) {
+                if (numero >= b.idMinimo && numero <= b.idMaximo && (b.filtro == null || b.filtro.puedeContener(id))) candidatos.add(b);
+            }
+            return candidatos;
+        }
+    }
+
+    //====================== Escritura ======================
+
+    //Escribe todas las reservas (sobrescribe). Primero en un temporal, que luego reemplaza al archivo.
+    public static void escribir(Collection<Reserva> reservas, String archivo) throws IOException {
+        List<Reserva> ordenadas = new ArrayList<>(reservas);
+        ordenadas.sort(ORDEN);
+
+        File destino = new File(archivo);
+        File temporal = new File(archivo + ".tmp");
+        List<Bloque> indice = new ArrayList<>();
+        FiltroBloom filtro = new FiltroBloom(ordenadas.size(), BITS_FILTRO_SEGMENTO);
+        ordenadas.forEach(r -> filtro.agregar(r.getIdReserva()));
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        try (DataOutputStream salida = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporal)))) {
+            salida.write(MAGIA);
+            salida.writeByte(VERSION);
+            long posicion = MAGIA.length + 1;
+
+            int inicio = 0;
+            while (inicio < ordenadas.size()) {
+                //Un bloque termina al cambiar de aula o al llegar al maximo de filas
+                String aula = ordenadas.get(inicio).getAula().getCodigo();
+                int fin = inicio;
+                while (fin < ordenadas.size() && fin - inicio < FILAS_POR_BLOQUE
+                        && ordenadas.get(fin).getAula().getCodigo().equals(aula)) {
+                    fin++;
+                }
+                List<Reserva> filas = ordenadas.subList(inicio, fin);
+                byte[] original = codificarBloque(filas);
+                byte[] comprimido = comprimir(deflater, original);
+                salida.write(comprimido);
+                long idMaximo = filas.stream().mapToLong(r -> numeroId(r.getIdReserva())).max().orElse(-1);
+                long idMinimo = filas.stream().mapToLong(r -> numeroId(r.getIdReserva())).filter(n -> n >= 0).min().orElse(Long.MAX_VALUE);
+                Bloque bloque = new Bloque(aula, filas.get(0).getFecha().toEpochDay(), filas.get(filas.size() - 1).getFecha().toEpochDay(),
+                    posicion, comprimido.length, original.length, filas.size(), idMaximo, idMinimo);
+                bloque.filtro = new FiltroBloom(filas.size(), BITS_FILTRO_BLOQUE);
+                filas.forEach(r -> bloque.filtro.agregar(r.getIdReserva()));
+                indice.add(bloque);
+                posicion += comprimido.length;
+                inicio = fin;
+            }
+
+            //Indice y cola
+            salida.writeInt(indice.size());
+            for (Bloque b : indice) {
+                salida.writeUTF(b.codigoAula);
+                salida.writeLong(b.diaMinimo);
+                salida.writeLong(b.diaMaximo);
+                salida.writeLong(b.posicion);
+                salida.writeInt(b.longitudComprimida);
+                salida.writeInt(b.longitudOriginal);
+                salida.writeInt(b.filas);
+                salida.writeLong(b.idMaximo);
+                salida.writeLong(b.idMinimo);
+            }
+            filtro.escribir(salida);
+            for (Bloque b : indice) b.filtro.escribir(salida);
+            salida.writeLong(posicion);
+            salida.write(MAGIA_INDICE);
+        } finally {
+            deflater.end();
+        }
+        ArchivoBloques.reemplazar(temporal, destino);
+    }
+
+    private static byte[] codificarBloque(List<Reserva> filas) {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(filas.size() * 12);
+        Map<String, Integer> diccionario = new HashMap<>();
+        long diaAnterior = filas.get(0).getFecha().toEpochDay();
+        for (Reserva r : filas) {
+            long dia = r.getFecha().toEpochDay();
+            escribirVarint(buffer, dia - diaAnterior);
+            diaAnterior = dia;
+
+            int inicio = r.getHoraInicio().getHour() * 60 + r.getHoraInicio().getMinute();
+            int fin = r.getHoraFin().getHour() * 60 + r.getHoraFin().getMinute();
+            escribirVarint(buffer, inicio);
+            escribirVarint(buffer, fin - inicio);
+
+            int tipo = r instanceof ReservaClase ? TIPO_CLASE : r instanceof ReservaEvento ? TIPO_EVENTO : TIPO_PRACTICA;
+            buffer.write(tipo | r.getEstado().ordinal() << 2);
+
+            long numeroId = numeroId(r.getIdReserva());
+            escribirVarint(buffer, numeroId + 1);
+            if (numeroId < 0) escribirTexto(buffer, diccionario, r.getIdReserva());
+
+            escribirTexto(buffer, diccionario, r.getResponsable());
+            if (r instanceof ReservaClase) {
+                ReservaClase c = (ReservaClase) r;
+                escribirTexto(buffer, diccionario, c.getMateria());
+                escribirVarint(buffer, c.getNumEstudiantes());
+            } else if (r instanceof ReservaEvento) {
+                ReservaEvento e = (ReservaEvento) r;
+                escribirVarint(buffer, e.getTipoEvento().ordinal());
+                escribirVarint(buffer, e.getAsistentesEsperados());
+            } else {
+                ReservaPractica p = (ReservaPractica) r;
+                escribirTexto(buffer, diccionario, p.getDescripcionPractica());
+                escribirVarint(buffer, p.getNumEquipos());
+            }
+        }
+        return buffer.toByteArray();
+    }
+
+    //Numero de un ID con formato R<n> (hasta 19 cifras: IDs temporales de 64 bits), o -1 si tiene otro formato (se guarda como texto)
+    private static long numeroId(String id) {
+        if (id.length() < 2 || id.length() > 20 || id.charAt(0) != 'R' || id.charAt(1) == '0') return -1;
+        for (int i = 1; i < id.length(); i++) {
+            if (!Character.isDigit(id.charAt(i))) return -1;
+        }
+        try {
+            long numero = Long.parseLong(id.substring(1));
+            return numero < Long.MAX_VALUE ? numero : -1; //Se guarda como numero + 1
+        } catch (NumberFormatException e) {
+            return -1; //Fuera del rango de long
+        }
+    }
+
+    private static byte[] comprimir(Deflater deflater, byte[] datos) {
+        deflater.reset();
+        deflater.setInput(datos);
+        deflater.finish();
+        ByteArrayOutputStream salida = new ByteArrayOutputStream(Math.max(64, datos.length / 4));
+        byte[] trozo = new byte[8192];
+        while (!deflater.finished()) {
+            int n = deflater.deflate(trozo);
+            salida.write(trozo, 0, n);
+        }
+        return salida.toByteArray();
+    }
+
+    //Entero sin signo en grupos de 7 bits, el bit alto indica que sigue otro byte
+    private static void escribirVarint(ByteArrayOutputStream salida, long valor) {
+        while ((valor & ~0x7FL) != 0) {
+            salida.write((int) (valor & 0x7F) | 0x80);
+            valor >>>= 7;
+        }
+        salida.write((int) valor);
+    }
+
+    private static void escribirTexto(ByteArrayOutputStream salida, Map<String, Integer> diccionario, String texto) {
+        String valor = texto == null ? "" : texto;
+        Integer ref = diccionario.get(valor);
+        if (ref != null) {
+            escribirVarint(salida, ref);
+            return;
+        }
+        escribirVarint(salida, diccionario.size()); //Referencia nueva: define el texto
+        diccionario.put(valor, diccionario.size());
+        byte[] bytes = valor.getBytes(StandardCharsets.UTF_8);
+        escribirVarint(salida, bytes.length);
+        salida.write(bytes, 0, bytes.length);
+    }
+
+    //====================== Lectura ======================
+
+    //Lee solo el indice de bloques (sin descomprimir datos)
+    public static List<Bloque> leerIndice(String archivo) throws IOException {
+        return leerResumen(archivo).bloques;
+    }
+
+    //Lee el indice y el filtro de Bloom, para tenerlos en memoria
+    public static Resumen leerResumen(String archivo) throws IOException {
+        try (RandomAccessFile entrada = new RandomAccessFile(archivo, "r")) {
+            return leerResumen(entrada);
+        }
+    }
+
+    /*Busca una reserva por ID en los bloques candidatos (ver Resumen.candidatos), descomprimiendo solo esos.
+    Devuelve null si no esta o si su aula ya no existe.*/
+    public static Reserva buscar(String archivo, List<Bloque> candidatos, String id, Function<String, Aula> aulas) throws IOException {
+        if (candidatos.isEmpty()) return null;
+        Inflater inflater = new Inflater();
+        try (RandomAccessFile entrada = new RandomAccessFile(archivo, "r")) {
+            for (Bloque b : candidatos) {
+                Aula aula = aulas.apply(b.codigoAula);
+                if (aula == null) continue;
+                byte[] comprimido = new byte[b.longitudComprimida];
+                entrada.seek(b.posicion);
+                entrada.readFully(comprimido);
+                List<Reserva> encontrada = new ArrayList<>(1);
+                decodificarBloque(descomprimir(inflater, comprimido, b.longitudOriginal), b, aula, null, null, id, encontrada);
+                if (!encontrada.isEmpty()) return encontrada.get(0);
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Bloque del historico corrupto: " + e.getMessage(), e);
+        } finally {
+            inflater.end();
+        }
+        return null;
+    }
+
+    /*Lee las reservas de un aula y rango de fechas (cualquier filtro puede ser null).
+    Solo se descomprimen los bloques del indice que pueden contener filas del filtro.
+    Las filas de aulas que ya no existen se omiten.*/
+    public static List<Reserva> leer(String archivo, List<Aula> aulas, String codigoAula, LocalDate desde, LocalDate hasta)
+            throws IOException {
+        List<Reserva> resultado = new ArrayList<>();
+        Map<String, Aula> porCodigo = new HashMap<>();
+        aulas.forEach(a -> porCodigo.put(a.getCodigo(), a));
+
+        Inflater inflater = new Inflater();
+        try (RandomAccessFile entrada = new RandomAccessFile(archivo, "r")) {
+            for (Bloque b : leerResumen(entrada).bloques) {
+                if (!b.coincide(codigoAula, desde, hasta)) continue;
+                Aula aula = porCodigo.get(b.codigoAula);
+                if (aula == null) {
+                    System.err.printf("Advertencia: Aula con codigo %s no encontrada en el historico. Se omiten %d reservas.%n",
+                        b.codigoAula, b.filas);
+                    continue;
+                }
+                byte[] comprimido = new byte[b.longitudComprimida];
+                entrada.seek(b.posicion);
+                entrada.readFully(comprimido);
+                decodificarBloque(descomprimir(inflater, comprimido, b.longitudOriginal), b, aula, desde, hasta, null, resultado);
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Bloque del historico corrupto: " + e.getMessage(), e);
+        } finally {
+            inflater.end();
+        }
+        return resultado;
+    }
+
+    private static Resumen leerResumen(RandomAccessFile entrada) throws IOException {
+        byte[] magia = new byte[MAGIA.length];
+        entrada.seek(0);
+        entrada.readFully(magia);
+        int version = entrada.readUnsignedByte();
+        if (!Arrays.equals(magia, MAGIA) || version < 1 || version > VERSION) {
+            throw new IOException("No es un archivo historico de reservas (o version no soportada).");
+        }
+        entrada.seek(entrada.length() - 12);
+        long posicionIndice = entrada.readLong();
+        entrada.readFully(magia);
+        if (!Arrays.equals(magia, MAGIA_INDICE)) {
+            throw new IOException("Archivo historico incompleto: falta el indice.");
+        }
+
+        //El indice y los filtros se leen de una vez y se decodifican en memoria
+        long longitudIndice = entrada.length() - 12 - posicionIndice;
+        if (posicionIndice < MAGIA.length + 1 || longitudIndice < 4 || longitudIndice > Integer.MAX_VALUE) {
+            throw new IOException("Archivo historico corrupto: posicion del indice invalida.");
+        }
+        byte[] bytesIndice = new byte[(int) longitudIndice];
+        entrada.seek(posicionIndice);
+        entrada.readFully(bytesIndice);
+        return leerResumen(new DataInputStream(new ByteArrayInputStream(bytesIndice)), version);
+    }
+
+    private static Resumen leerResumen(DataInputStream entrada, int version) throws IOException {
+        int cantidad = entrada.readInt();
+        List<Bloque> indice = new ArrayList<>(cantidad);
+        for (int i = 0; i < cantidad; i++) {
+            indice.add(new Bloque(entrada.readUTF(), entrada.readLong(), entrada.readLong(), entrada.readLong(),
+                entrada.readInt(), entrada.readInt(), entrada.readInt(), entrada.readLong(), version >= 2 ? entrada.readLong() : 0));
+        }
+        if (version < 2) return new Resumen(indice, null);
+        FiltroBloom filtro = FiltroBloom.leer(entrada);
+        for (Bloque b : indice) b.filtro = FiltroBloom.leer(entrada);
+        return new Resumen(indice, filtro);
+    }
+
+    private static byte[] descomprimir(Inflater inflater, byte[] comprimido, int longitudOriginal) throws DataFormatException {
+        inflater.reset();
+        inflater.setInput(comprimido);
+        byte[] datos = new byte[longitudOriginal];
+        int leidos = 0;
+        while (leidos < longitudOriginal && !inflater.finished()) {
+            int n = inflater.inflate(datos, leidos, longitudOriginal - leidos);
+            if (n == 0 && inflater.needsInput()) break;
+            leidos += n;
+        }
+        if (leidos != longitudOriginal) {
+            throw new DataFormatException("longitud esperada " + longitudOriginal + ", leida " + leidos);
+        }
+        return datos;
+    }
+
+    /*Decodifica las filas del bloque dentro del rango de fechas. Con idBuscado (no null) solo arma la reserva de ese ID
+    y termina al encontrarla: las demas filas se recorren sin crear objetos.*/
+    private static void decodificarBloque(byte[] datos, Bloque bloque, Aula aula, LocalDate desde, LocalDate hasta,
+                                          String idBuscado, List<Reserva> resultado) {
+        Lector lector = new Lector(datos);
+        List<String> diccionario = new ArrayList<>();
+        long numeroBuscado = idBuscado == null ? -1 : numeroId(idBuscado);
+        long dia = bloque.diaMinimo;
+        for (int i = 0; i < bloque.filas; i++) {
+            dia += lector.varint();
+            int inicio = (int) lector.varint();
+            int fin = inicio + (int) lector.varint();
+            int tipoYEstado = lector.siguiente();
+            long numeroId = lector.varint() - 1;
+            String idTexto = numeroId < 0 ? lector.texto(diccionario) : null;
+            String responsable = lector.texto(diccionario);
+            String texto = (tipoYEstado & 0x3) == TIPO_EVENTO ? null : lector.texto(diccionario); //Materia o descripcion
+            int valor1 = (int) lector.varint(); //Tipo de evento, o la cantidad en clases y practicas
+            int valor2 = (tipoYEstado & 0x3) == TIPO_EVENTO ? (int) lector.varint() : 0;
+            if (idBuscado != null && (numeroId >= 0 ? numeroId != numeroBuscado : !idTexto.equals(idBuscado))) continue;
+
+            String id = idTexto != null ? idTexto : "R" + numeroId;
+            LocalDate fecha = LocalDate.ofEpochDay(dia);
+            LocalTime horaInicio = LocalTime.of(inicio / 60, inicio % 60);
+            LocalTime horaFin = LocalTime.of(fin / 60, fin % 60);
+            Reserva reserva;
+            switch (tipoYEstado & 0x3) {
+                case TIPO_CLASE:
+                    reserva = new ReservaClase(id, aula, fecha, horaInicio, horaFin, responsable, texto, valor1);
+                    break;
+                case TIPO_EVENTO:
+                    reserva = new ReservaEvento(id, aula, fecha, horaInicio, horaFin, responsable, TipoEvento.values()[valor1], valor2);
+                    break;
+                default:
+                    reserva = new ReservaPractica(id, aula, fecha, horaInicio, horaFin, responsable, texto, valor1);
+            }
+            reserva.setEstado(EstadoReserva.values()[tipoYEstado >>> 2]);
+            if (idBuscado != null) {
+                resultado.add(reserva);
+                return;
+            }
+
+            //Las filas estan ordenadas por fecha: se filtra aqui el rango exacto
+            if (desde != null && fecha.isBefore(desde)) continue;
+            if (hasta != null && fecha.isAfter(hasta)) break;
+            resultado.add(reserva);
+        }
+    }
+
+    //Cursor sobre los bytes descomprimidos de un bloque
+    private static class Lector {
+        private final byte[] datos;
+        private int pos = 0;
+
+        private Lector(byte[] datos) {
+            this.datos = datos;
+        }
+
+        private int siguiente() {
+            return datos[pos++] & 0xFF;
+        }
+
+        private long varint() {
+            long valor = 0;
+            int desplazamiento = 0;
+            int b;
+            do {
+                b = siguiente();
+                valor |= (long) (b & 0x7F) << desplazamiento;
+                desplazamiento += 7;
+            } while ((b & 0x80) != 0);
+            return valor;
+        }
+
+        private String texto(List<String> diccionario) {
+            int ref = (int) varint();
+            if (ref < diccionario.size()) return diccionario.get(ref);
+            int longitud = (int) varint();
+            String valor = new String(datos, pos, longitud, StandardCharsets.UTF_8);
+            pos += longitud;
+            diccionario.add(valor);
+            return valor;
+        }
+    }
+}
@@ -0,0 +1,272 @@
+package GestorReservarAula.persistence;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*Ultima version conocida de un archivo del gestor que se puede editar por fuera (aulas.txt, reservas.txt).
+Guarda un hash de 64 bits por fila y otro por clave (codigo de aula o ID de reserva), ordenados: 16 bytes por fila,
+y la marca del archivo (tamano, fecha, inodo) en esa version. Parte de la carga (GestorArchivos) y se actualiza
+con cada escritura del gestor (GestorArchivos.guardarLineas) y con cada lectura de cambios, asi que los cambios son
+la diferencia entre el archivo editado y la version anterior del archivo, no contra la memoria: las reservas aun
+sin guardar (lote, escritura diferida) no parecen borradas por una edicion externa.
+Una escritura propia nunca pisa una edicion que no se leyo: si la marca ya no es la conocida, escribir() falla con
+EdicionExternaException y el gestor incorpora los cambios antes de volver a escribir.
+El archivo se lee y se compara sin tomar ningun cerrojo; solo el cambio de version se hace bajo el monitor,
+que la escritura del gestor tambien toma, para no confundir nunca una escritura propia con una edicion.*/
+public class ArchivoObservado {
+    private static final Map<String, ArchivoObservado> observados = new ConcurrentHashMap<>();
+
+    //Filas editadas por fuera desde la version anterior
+    public static class Cambios {
+        private final List<String> filas; //Filas nuevas o modificadas, en orden del archivo
+        private final Set<Long> eliminadas; //Hashes de las claves que ya no estan (ver hashClave)
+
+        private Cambios(List<String> filas, Set<Long> eliminadas) {
+            this.filas = filas;
+            this.eliminadas = eliminadas;
+        }
+
+        public List<String> getFilas() {
+            return filas;
+        }
+
+        public boolean eliminada(String clave) {
+            return eliminadas.contains(hashClave(clave));
+        }
+
+        public int cantidadEliminadas() {
+            return eliminadas.size();
+        }
+
+        public boolean isVacio() {
+            return filas.isEmpty() && eliminadas.isEmpty();
+        }
+    }
+
+    private static final Cambios SIN_CAMBIOS = new Cambios(Collections.emptyList(), Collections.emptySet());
+
+    //El archivo cambio por fuera desde la version conocida: hay que leer los cambios antes de escribirlo
+    public static class EdicionExternaException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        private EdicionExternaException(String archivo) {
+            super(archivo + " se edito por fuera y esos cambios todavia no se leyeron; no se sobrescribe");
+        }
+    }
+
+    //Version del archivo: hashes ordenados y la marca (tamano, fecha, inodo) del archivo en esa version
+    private static class Version {
+        private final long[] filas;
+        private final long[] claves;
+        private final Object marca; //null si el archivo no existia
+
+        private Version(long[] filas, long[] claves, Object marca) {
+            this.filas = filas;
+            this.claves = claves;
+            this.marca = marca;
+        }
+    }
+
+    private final String archivo;
+    private final Path ruta;
+    private final int columnaClave;
+    private Version version; //Protegida por el monitor
+
+    private ArchivoObservado(String archivo, int columnaClave, Version version) {
+        this.archivo = archivo;
+        this.ruta = new File(archivo).toPath();
+        this.columnaClave = columnaClave;
+        this.version = version;
+    }
+
+    /*Empieza a seguir un archivo. Se llama antes de cargarlo: la carga (GestorArchivos) fija la version conocida con
+    las filas que leyo, sin volver a leer el archivo. Sin carga la version queda vacia y la primera lectura de cambios
+    trae todas las filas. columnaClave: columna CSV que identifica la fila (0 = codigo de aula, 1 = ID de reserva).*/
+    public static ArchivoObservado observar(String archivo, int columnaClave) {
+        ArchivoObservado observado = new ArchivoObservado(archivo, columnaClave, new Version(new long[0], new long[0], null));
+        observados.put(clave(archivo), observado);
+        return observado;
+    }
+
+    public void dejarDeObservar() {
+        observados.remove(clave(archivo), this);
+    }
+
+    //Archivo observado con esa ruta, o null
+    static ArchivoObservado de(String archivo) {
+        return observados.isEmpty() ? null : observados.get(clave(archivo));
+    }
+
+    private static String clave(String archivo) {
+        return new File(archivo).getAbsoluteFile().toPath().normalize().toString();
+    }
+
+    public String getArchivo() {
+        return archivo;
+    }
+
+    //Version leida por la carga; 'marca' se tomo antes de leer, asi un cambio durante la carga se vuelve a leer
+    synchronized void conocer(List<String> filas, Object marca) {
+        version = calcular(filas, marca);
+    }
+
+    /*Escritura propia del gestor: el archivo y la version cambian juntos bajo el monitor. Si el archivo cambio por
+    fuera desde la version conocida no se escribe (EdicionExternaException): primero hay que leer esos cambios.*/
+    synchronized void escribir(List<String> filas) throws IOException {
+        if (editadoPorFuera()) throw new EdicionExternaException(archivo);
+        ArchivoBloques.escribir(filas, archivo);
+        Object marca = marca();
+        version = calcular(filas, marca);
+        recordarEscritura(marca);
+    }
+
+    /*La marca de la ultima escritura propia se guarda en <archivo>.marca, para reconocerla despues de reiniciar:
+    un bloque que no coincide con su checksum en un archivo que nadie toco desde esa escritura esta danado, no editado.
+    Si no se puede guardar, la proxima carga toma el archivo como editado por fuera (conserva los bloques interpretables).*/
+    private void recordarEscritura(Object marca) {
+        try {
+            Files.write(archivoMarca(archivo).toPath(), String.valueOf(marca).getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            System.err.println("No se pudo guardar la marca de " + archivo + ": " + e.getMessage());
+        }
+    }
+
+    /*Indica si el archivo sigue siendo la ultima escritura propia del gestor (misma marca que la guardada en
+    <archivo>.marca), tambien de una ejecucion anterior. Sin marca guardada devuelve false.*/
+    public static boolean escrituraPropia(String archivo) throws IOException {
+        Object marca = marca(new File(archivo).toPath());
+        if (marca == null) return false;
+        try {
+            return new String(Files.readAllBytes(archivoMarca(archivo).toPath()), StandardCharsets.UTF_8).equals(String.valueOf(marca));
+        } catch (NoSuchFileException e) {
+            return false;
+        }
+    }
+
+    private static File archivoMarca(String archivo) {
+        return new File(archivo + ".marca");
+    }
+
+    //El archivo existe y no es la version conocida (ni la ultima escritura propia ni la ultima lectura)
+    public boolean editadoPorFuera() throws IOException {
+        Object marca = marca();
+        Object conocida;
+        synchronized (this) {
+            conocida = version.marca;
+        }
+        return marca != null && !marca.equals(conocida);
+    }
+
+    /*Copia el archivo a <archivo>.externo antes de que el gestor lo sobrescriba sin haber podido leer sus cambios
+    (seguia cambiando mientras se leia). Devuelve la copia, o null si el archivo no existe.*/
+    public String respaldar() throws IOException {
+        Path copia = new File(archivo + ".externo").toPath();
+        try {
+            Files.copy(ruta, copia, StandardCopyOption.REPLACE_EXISTING);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+        synchronized (this) {
+            version = new Version(version.filas, version.claves, marca()); //Se va a sobrescribir a sabiendas
+        }
+        return copia.toString();
+    }
+
+    /*Filas editadas por fuera desde la version conocida, que pasa a ser la del archivo leido.
+    Devuelve null si hay que volver a intentarlo: el archivo no esta (un editor que guarda con renombrado),
+    cambio mientras se leia o el gestor lo escribio en el medio. Un archivo vacio cuando la version tenia filas
+    se toma como una edicion a medio guardar y se rechaza con IOException sin cambiar la version.*/
+    public Cambios leerCambios() throws IOException {
+        Version anterior;
+        synchronized (this) {
+            anterior = version;
+        }
+        Object marca = marca();
+        if (marca == null) return null;
+        if (marca.equals(anterior.marca)) return SIN_CAMBIOS; //Es la version conocida: no se lee
+        List<String> filas;
+        try {
+            filas = ArchivoBloques.leerTodas(archivo);
+        } catch (FileNotFoundException e) {
+            return null;
+        }
+        if (!marca.equals(marca())) return null;
+        if (filas.isEmpty() && anterior.filas.length > 0) {
+            throw new IOException("El archivo quedo vacio (" + anterior.filas.length + " filas antes); se ignora hasta que se vuelva a guardar.");
+        }
+
+        Version nueva = calcular(filas, marca);
+        List<String> cambiadas = new ArrayList<>();
+        for (String fila : filas) {
+            if (Arrays.binarySearch(anterior.filas, FiltroBloom.hash(fila)) < 0) cambiadas.add(fila);
+        }
+        Set<Long> eliminadas = new HashSet<>();
+        for (long clave : anterior.claves) {
+            if (Arrays.binarySearch(nueva.claves, clave) < 0) eliminadas.add(clave);
+        }
+
+        synchronized (this) {
+            if (version != anterior) return null; //El gestor escribio mientras se leia
+            version = nueva;
+        }
+        return cambiadas.isEmpty() && eliminadas.isEmpty() ? SIN_CAMBIOS : new Cambios(cambiadas, eliminadas);
+    }
+
+    //Hash de la clave de una fila; el mismo que el gestor calcula sobre el codigo de aula o el ID en memoria
+    public static long hashClave(String clave) {
+        return FiltroBloom.hash(clave.trim().toUpperCase());
+    }
+
+    private Version calcular(List<String> filas, Object marca) {
+        long[] hashes = new long[filas.size()];
+        long[] claves = new long[filas.size()];
+        for (int i = 0; i < hashes.length; i++) {
+            String fila = filas.get(i);
+            hashes[i] = FiltroBloom.hash(fila);
+            claves[i] = hashClave(columna(fila, columnaClave));
+        }
+        Arrays.sort(hashes);
+        Arrays.sort(claves);
+        return new Version(hashes, claves, marca);
+    }
+
+    private static String columna(String fila, int indice) {
+        int inicio = 0;
+        for (int i = 0; i < indice; i++) {
+            inicio = fila.indexOf(',', inicio) + 1;
+            if (inicio == 0) return "";
+        }
+        int fin = fila.indexOf(',', inicio);
+        return fin < 0 ? fila.substring(inicio) : fila.substring(inicio, fin);
+    }
+
+    //Tamano, fecha de modificacion e inodo del archivo, o null si no existe
+    Object marca() throws IOException {
+        return marca(ruta);
+    }
+
+    private static Object marca(Path ruta) throws IOException {
+        try {
+            BasicFileAttributes atributos = Files.readAttributes(ruta, BasicFileAttributes.class);
+            return Arrays.asList(atributos.size(), atributos.lastModifiedTime(), Objects.toString(atributos.fileKey()));
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package GestorReservarAula.persistence;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+
+import GestorReservarAula.models.*;
+import GestorReservarAula.util.EstadoReserva;
+import GestorReservarAula.util.FormatoExportacion;
+
+/*Escribe reservas una a una en formato iCalendar (RFC 5545) o CSV (RFC 4180) sobre un OutputStream.
+No acumula el contenido en memoria: cada reserva se escribe en un buffer de tamanio fijo y se descarta.
+Uso: escribir() por cada reserva y terminar() al final. El stream no se cierra; pertenece a quien llama.*/
+public class ExportadorReservas {
+    private static final DateTimeFormatter FECHA_HORA_ICS = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss");
+    private static final int MAX_OCTETOS_LINEA = 75; //Limite de RFC 5545 sin contar el salto de linea
+    private static final String FIN_LINEA = "\r\n";
+
+    private final FormatoExportacion formato;
+    private final Writer salida;
+    private final String marcaTiempo; //DTSTAMP comun a todos los eventos de esta exportacion
+    private boolean iniciado = false;
+    private long escritas = 0;
+
+    public ExportadorReservas(FormatoExportacion formato, OutputStream salida) {
+        this.formato = formato;
+        this.salida = new BufferedWriter(new OutputStreamWriter(salida, StandardCharsets.UTF_8), 8192);
+        this.marcaTiempo = ZonedDateTime.now(ZoneOffset.UTC).format(FECHA_HORA_ICS) + "Z";
+    }
+
+    //Escribe una reserva (y la cabecera antes de la primera)
+    public void escribir(Reserva r) throws IOException {
+        iniciar();
+        if (formato == FormatoExportacion.ICS) {
+            escribirEvento(r);
+        } else {
+            escribirFilaCsv(r);
+        }
+        escritas++;
+    }
+
+    //Cierra el calendario y vacia el buffer. Una exportacion sin reservas produce un documento valido y vacio.
+    public void terminar() throws IOException {
+        iniciar();
+        if (formato == FormatoExportacion.ICS) {
+            linea("END:VCALENDAR");
+        }
+        salida.flush();
+    }
+
+    public long getEscritas() {
+        return escritas;
+    }
+
+    private void iniciar() throws IOException {
+        if (iniciado) return;
+        iniciado = true;
+        if (formato == FormatoExportacion.ICS) {
+            linea("BEGIN:VCALENDAR");
+            linea("VERSION:2.0");
+            linea("PRODID:-//GestorReservaAula//Reservas de Aulas//ES");
+            linea("CALSCALE:GREGORIAN");
+        } else {
+            salida.write("id,tipo,aula,nombreAula,fecha,horaInicio,horaFin,responsable,estado,detalle,cantidad");
+            salida.write(FIN_LINEA);
+        }
+    }
+
+    //====================== iCalendar ======================
+
+    private void escribirEvento(Reserva r) throws IOException {
+        linea("BEGIN:VEVENT");
+        linea("UID:" + textoIcs(r.getIdReserva()) + "@gestor-reserva-aula");
+        linea("DTSTAMP:" + marcaTiempo);
+        //Hora local "flotante": el calendario la muestra en la zona horaria del suscriptor
+        linea("DTSTART:" + r.getFecha().atTime(r.getHoraInicio()).format(FECHA_HORA_ICS));
+        linea("DTEND:" + r.getFecha().atTime(r.getHoraFin()).format(FECHA_HORA_ICS));
+        linea("SUMMARY:" + textoIcs(tipo(r) + ": " + detalle(r)));
+        linea("LOCATION:" + textoIcs(r.getAula().getCodigo() + " - " + r.getAula().getNombre()));
+        linea("DESCRIPTION:" + textoIcs("Responsable: " + r.getResponsable() + "\nEstado: " + r.getEstado()));
+        linea("STATUS:" + (r.getEstado() == EstadoReserva.CANCELADA ? "CANCELLED" : "CONFIRMED"));
+        linea("END:VEVENT");
+    }
+
+    //Escapa los caracteres especiales de los valores de texto de iCalendar
+    private static String textoIcs(String texto) {
+        StringBuilder sb = new StringBuilder(texto.length() + 8);
+        for (int i = 0; i < texto.length(); i++) {
+            char c = texto.charAt(i);
+            switch (c) {
+                case '\\': sb.append("\\\\"); break;
+                case ';': sb.append("\\;"); break;
+                case ',': sb.append("\\,"); break;
+                case '\n': sb.append("\\n"); break;
+                case '\r': break;
+                default: sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    //Escribe una linea de contenido plegandola cada 75 octetos UTF-8 (la continuacion empieza con un espacio)
+    private void linea(String contenido) throws IOException {
+        int octetos = 0;
+        for (int i = 0; i < contenido.length(); i++) {
+            char c = contenido.charAt(i);
+            int ancho = c < 0x80 ? 1 : c < 0x800 ? 2 : Character.isHighSurrogate(c) ? 4 : 3;
+            if (octetos + ancho > MAX_OCTETOS_LINEA) {
+                salida.write(FIN_LINEA);
+                salida.write(' ');
+                octetos = 1;
+            }
+            salida.write(c);
+            if (Character.isHighSurrogate(c) && i + 1 < contenido.length()) {
+                salida.write(contenido.charAt(++i)); //El par sustituto no se separa
+            }
+            octetos += ancho;
+        }
+        salida.write(FIN_LINEA);
+    }
+
+    //====================== CSV ======================
+
+    private void escribirFilaCsv(Reserva r) throws IOException {
+        campoCsv(r.getIdReserva(), false);
+        campoCsv(tipo(r), false);
+        campoCsv(r.getAula().getCodigo(), false);
+        campoCsv(r.getAula().getNombre(), false);
+        campoCsv(r.getFecha().toString(), false);
+        campoCsv(r.getHoraInicio().toString(), false);
+        campoCsv(r.getHoraFin().toString(), false);
+        campoCsv(r.getResponsable(), false);
+        campoCsv(String.valueOf(r.getEstado()), false);
+        campoCsv(detalle(r), false);
+        campoCsv(String.valueOf(cantidad(r)), true);
+    }
+
+    //Entrecomilla el campo si contiene separadores, comillas o saltos de linea; duplica las comillas internas
+    private void campoCsv(String valor, boolean ultimo) throws IOException {
+        String v = valor == null ? "" : valor;
+        boolean comillas = false;
+        for (int i = 0; i < v.length() && !comillas; i++) {
+            char c = v.charAt(i);
+            comillas = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (comillas) {
+            salida.write('"');
+            salida.write(v.replace("\"", "\"\""));
+            salida.write('"');
+        } else {
+            salida.write(v);
+        }
+        salida.write(ultimo ? FIN_LINEA : ",");
+    }
+
+    //====================== Datos comunes ======================
+
+    private static String tipo(Reserva r) {
+        if (r instanceof ReservaClase) return "CLASE";
+        if (r instanceof ReservaEvento) return "EVENTO";
+        if (r instanceof ReservaPractica) return "PRACTICA";
+        return r.getClass().getSimpleName();
+    }
+
+    private static String detalle(Reserva r) {
+        if (r instanceof ReservaClase) return ((ReservaClase) r).getMateria();
+        if (r instanceof ReservaEvento) return String.valueOf(((ReservaEvento) r).getTipoEvento());
+        if (r instanceof ReservaPractica) return ((ReservaPractica) r).getDescripcionPractica();
+        return "";
+    }
+
+    private static int cantidad(Reserva r) {
+        if (r instanceof ReservaClase) return ((ReservaClase) r).getNumEstudiantes();
+        if (r instanceof ReservaEvento) return ((ReservaEvento) r).getAsistentesEsperados();
+        if (r instanceof ReservaPractica) return ((ReservaPractica) r).getNumEquipos();
+        return 0;
+    }
+}
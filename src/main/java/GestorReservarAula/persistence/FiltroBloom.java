@@ -0,0 +1,78 @@
+package GestorReservarAula.persistence;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/*Filtro de Bloom de IDs de reserva del historico (de un segmento o de un bloque).
+Responde "seguro que no esta" o "puede estar" en memoria, sin leer el archivo. Con 10 bits por elemento y
+7 funciones de dispersion los falsos positivos rondan el 1%; con 16 bits, el 0.05%.
+Las posiciones salen de un solo hash de 64 bits partido en dos (h1 + i*h2), sin recalcular por funcion.*/
+public class FiltroBloom {
+
+    private final long[] palabras;
+    private final long bits;
+    private final int funciones;
+
+    //Filtro vacio dimensionado para la cantidad esperada de elementos; usa la cantidad optima de funciones (bits * ln 2)
+    public FiltroBloom(int elementos, int bitsPorElemento) {
+        this(new long[(int) Math.max(1, ((long) Math.max(1, elementos) * bitsPorElemento + 63) / 64)],
+            Math.max(1, (int) Math.round(bitsPorElemento * Math.log(2))));
+    }
+
+    private FiltroBloom(long[] palabras, int funciones) {
+        this.palabras = palabras;
+        this.bits = (long) palabras.length * 64;
+        this.funciones = funciones;
+    }
+
+    public void agregar(String id) {
+        long hash = hash(id);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 0; i < funciones; i++) {
+            long bit = Math.floorMod(h1 + i * (long) h2, bits);
+            palabras[(int) (bit >>> 6)] |= 1L << bit;
+        }
+    }
+
+    //false: el ID no esta en el segmento; true: puede estar
+    public boolean puedeContener(String id) {
+        long hash = hash(id);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 0; i < funciones; i++) {
+            long bit = Math.floorMod(h1 + i * (long) h2, bits);
+            if ((palabras[(int) (bit >>> 6)] & (1L << bit)) == 0) return false;
+        }
+        return true;
+    }
+
+    void escribir(DataOutput salida) throws IOException {
+        salida.writeByte(funciones);
+        salida.writeInt(palabras.length);
+        for (long p : palabras) salida.writeLong(p);
+    }
+
+    static FiltroBloom leer(DataInput entrada) throws IOException {
+        int funciones = entrada.readUnsignedByte();
+        int cantidad = entrada.readInt();
+        if (funciones == 0 || cantidad <= 0) throw new IOException("Filtro de Bloom invalido en el historico.");
+        long[] palabras = new long[cantidad];
+        for (int i = 0; i < cantidad; i++) palabras[i] = entrada.readLong();
+        return new FiltroBloom(palabras, funciones);
+    }
+
+    //FNV-1a de 64 bits sobre los caracteres, con una mezcla final para repartir los bits altos
+    static long hash(String texto) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < texto.length(); i++) {
+            h ^= texto.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -1,150 +1,432 @@
 package GestorReservarAula.persistence;
 
 import java.io.*;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.time.LocalTime;
 
 import GestorReservarAula.models.*;
 import GestorReservarAula.util.TipoAula;
 import GestorReservarAula.util.TipoEvento;
+import GestorReservarAula.util.EstadoReserva;
+import GestorReservarAula.util.Fase;
+import GestorReservarAula.util.RegistroFases;
 
 
 /*Clase para manejar persistencia de datos en archivos TXT o CSV
 Separa la logica de entrada/salida de datos de la logica de negocio*/
 public class GestorArchivos {
-    private static final String Aulas_File = "aulas.txt";
-    private static final String Reservas_File = "reservas.txt";
+    public static final String Aulas_File = "aulas.txt";
+    public static final String Reservas_File = "reservas.txt";
+    public static final String ContadorIds_File = "contador_ids.txt"; //Secuencia de IDs compartida entre procesos (--ids arrendado)
 
     //Escribe la lista completa de Aulas en el archivo.
     public static void guardarAulas(List<Aula> aulas) {
-        try (PrintWriter writer = new PrintWriter(new FileWriter(Aulas_File))) {
-            for (Aula aula : aulas) {
-                writer.println(aula.toCsvString());
-            }
-        } catch (IOException e) {
-            System.err.println("Error al guardar aulas: " + e.getMessage());
-        }
+        guardarAulas(aulas, Aulas_File);
+    }
+
+    //Escribe la lista completa de Aulas en el archivo indicado. Devuelve false si no se pudo escribir.
+    public static boolean guardarAulas(List<Aula> aulas, String archivo) {
+        return guardarLineas(aulas.stream().map(Aula::toCsvString).collect(Collectors.toList()), archivo, "aulas");
     }
 
     //Carga la lista de Aulas desde el archivo
     public static List<Aula> cargarAulas() {
+        return cargarAulas(Aulas_File);
+    }
+
+    /*Carga la lista de Aulas desde el archivo indicado. Las filas danadas se descartan y se informan;
+    un bloque editado a mano (ya no coincide con su checksum) se conserva si todas sus filas son aulas validas
+    y el archivo cambio desde la ultima escritura del gestor (ver ArchivoObservado.escrituraPropia).*/
+    public static List<Aula> cargarAulas(String archivo) {
+        long t0 = RegistroFases.inicio();
         List<Aula> aulas = new ArrayList<>();
-        try (BufferedReader reader = new BufferedReader(new FileReader(Aulas_File))) {
-            String linea;
-            while ((linea = reader.readLine()) != null) {
-                String[] partes = linea.split(",");
-                //Minimo 4 partes: codigo, nombre, capacidad, tipo
-                if (partes.length >= 4) {
-                    String codigo = partes[0];
-                    String nombre = partes[1];
-
-                    int capacidad = Integer.parseInt(partes[2]);
-                    
-                    TipoAula tipo = TipoAula.valueOf(partes[3].toUpperCase());
-
-                    aulas.add(new Aula(codigo, nombre, capacidad, tipo));
+        List<String> descartadas = new ArrayList<>();
+        try {
+            ArchivoObservado observado = ArchivoObservado.de(archivo);
+            Object marca = observado == null ? null : observado.marca();
+            ArchivoBloques.Lectura lectura = ArchivoBloques.leer(archivo,
+                ArchivoObservado.escrituraPropia(archivo) ? null : interpretable(GestorArchivos::parsearAula));
+            if (observado != null) observado.conocer(filasDelArchivo(lectura), marca);
+            for (String linea : lectura.getFilas()) {
+                try {
+                    Aula aula = parsearAula(linea);
+                    if (aula != null) aulas.add(aula);
+                } catch (IllegalArgumentException e) {
+                    descartadas.add(linea);
                 }
             }
+            informarEditados(archivo, "aulas", lectura.getEditados());
+            informarPerdidas(archivo, "aulas", lectura.getPerdidas(), descartadasPorMotivo("ilegibles", descartadas));
         } catch (FileNotFoundException e) {
             System.out.println("Archivo de aulas no encontrado. Se creara uno nuevo al guardar.");
-        } catch (IOException | IllegalArgumentException e) {
-            //Manejo de multiples excepciones en una sola clausula catch
-            System.err.println("Error al cargar aulas. Corrupcion de datos: " + e.getMessage());
+        } catch (IOException e) {
+            System.err.println("Error al cargar aulas: " + e.getMessage());
         }
+        if (t0 != 0) registrarFase(Fase.CARGAR, t0, archivo, aulas.size());
         return aulas;
     }
 
+    //Convierte una fila CSV en aula. Devuelve null si la fila esta en blanco; lanza IllegalArgumentException si esta corrupta.
+    public static Aula parsearAula(String linea) {
+        if (linea.trim().isEmpty()) return null;
+        String[] partes = linea.split(",");
+        //Minimo 4 partes: codigo, nombre, capacidad, tipo (y opcionalmente la ubicacion)
+        if (partes.length < 4) throw new IllegalArgumentException("faltan columnas (codigo,nombre,capacidad,tipo)");
+        String codigo = partes[0];
+        String nombre = partes[1];
+
+        int capacidad = Integer.parseInt(partes[2]);
+
+        TipoAula tipo = TipoAula.valueOf(partes[3].toUpperCase());
+
+        Aula aula = new Aula(codigo, nombre, capacidad, tipo);
+        //Columnas opcionales de ubicacion: edificio, piso, x, y
+        if (partes.length >= 8) {
+            aula.setUbicacion(new Ubicacion(partes[4], Integer.parseInt(partes[5].trim()),
+                Double.parseDouble(partes[6].trim()), Double.parseDouble(partes[7].trim())));
+        }
+        return aula;
+    }
+
     //Escribe la lista completa de Reservas en el archivo (sobrescribe).
     public static void guardarReservas(List<Reserva> reservas) {
-        try (PrintWriter writer = new PrintWriter(new FileWriter(Reservas_File))) {
-            for (Reserva reserva : reservas) {
-                writer.println(reserva.toCsvString());
+        guardarReservas(reservas, Reservas_File);
+    }
+
+    //Escribe la lista completa de Reservas en el archivo indicado (sobrescribe). Devuelve false si no se pudo escribir.
+    public static boolean guardarReservas(List<Reserva> reservas, String archivo) {
+        return guardarLineas(reservas.stream().map(Reserva::toCsvString).collect(Collectors.toList()), archivo, "reservas");
+    }
+
+    /*Escribe lineas ya convertidas a CSV (instantanea tomada por el gestor). Devuelve false si no se pudo escribir.
+    Se escribe en bloques con checksum sobre un temporal que reemplaza al archivo (ver ArchivoBloques):
+    si la escritura falla o se corta, el archivo anterior queda intacto. Si el gestor sigue el archivo por ediciones
+    externas, su version conocida se actualiza con la escritura, y si se edito por fuera desde la ultima lectura
+    no se escribe (ver ArchivoObservado): el gestor incorpora la edicion y vuelve a escribir.*/
+    public static boolean guardarLineas(List<String> lineas, String archivo, String descripcion) {
+        long t0 = RegistroFases.inicio();
+        try {
+            ArchivoObservado observado = ArchivoObservado.de(archivo);
+            if (observado != null) {
+                observado.escribir(lineas);
+            } else {
+                ArchivoBloques.escribir(lineas, archivo);
             }
+            return true;
         } catch (IOException e) {
-            System.err.println("Error al guardar reservas: " + e.getMessage());
+            System.err.println("Error al guardar " + descripcion + ": " + e.getMessage());
+            return false;
+        } finally {
+            if (t0 != 0) registrarFase(Fase.GUARDAR, t0, archivo, lineas.size());
+        }
+    }
+
+    //Lee las lineas intactas de un archivo auxiliar del gestor. Si no existe devuelve una lista vacia.
+    public static List<String> cargarLineas(String archivo, String descripcion) {
+        if (!new File(archivo).exists()) return new ArrayList<>();
+        try {
+            ArchivoBloques.Lectura lectura = ArchivoBloques.leer(archivo);
+            informarPerdidas(archivo, descripcion, lectura.getPerdidas(), Collections.emptyMap());
+            return lectura.getFilas();
+        } catch (IOException e) {
+            System.err.println("Error al cargar " + descripcion + ": " + e.getMessage());
+            return new ArrayList<>();
         }
     }
 
     //Carga la lista de Reservas desde el archivo. Requiere la lista de aulas para asignar la referencia.
     public static List<Reserva> cargarReservas(List<Aula> aulas) {
-        List<Reserva> reservas = new ArrayList<>();
-        try (BufferedReader reader = new BufferedReader(new FileReader(Reservas_File))) {
-            String linea;
-            while ((linea = reader.readLine()) != null) {
-                String[] partes = linea.split(",");
-                /*El minimo de campos para una reserva especifica (Clase/Evento/Practica) es 9:
-                Tipo(0), Id(1), CodigoAula(2), Fecha(3), HIni(4), HFin(5), Responsable(6), DatoEsp1(7), DatoEsp2(8)*/
-                if (partes.length < 9) continue; 
-
-                String tipoReserva = partes[0];
-                String idReserva = partes[1];
-                String codigoAula = partes[2];
-                
-                //Conversion de tipos.
-                LocalDate fecha = LocalDate.parse(partes[3]);
-                LocalTime horaInicio = LocalTime.parse(partes[4]);
-                LocalTime horaFin = LocalTime.parse(partes[5]);
-                String responsable = partes[6];
-
-                //Buscar el Aula correspondiente
-                Aula aula = aulas.stream()
-                        .filter(a -> a.getCodigo().equals(codigoAula))
-                        .findFirst()
-                        .orElse(null);
-
-                if (aula == null) {
-                    System.err.printf("Advertencia: Aula con codigo %s no encontrada para la reserva %s. Se omite.%n", codigoAula, idReserva);
-                    continue;
-                }
-
-                Reserva reserva = null;
-
-                //Crear la instancia de la subclase de Reserva
-                switch (tipoReserva.toUpperCase()) {
-                    case "CLASE":
-                        //Se asume que partes[7] es materia y partes[8] es numEstudiantes
-                        String materia = partes[7]; 
-                        int numEstudiantes = Integer.parseInt(partes[8]);
-                        reserva = new ReservaClase(idReserva, aula, fecha, horaInicio, horaFin, responsable, materia, numEstudiantes);
-                        break;
-                    case "EVENTO":
-                        //Se asume que partes[7] es TipoEvento y partes[8] es asistentes
-                        TipoEvento tipoEvento = TipoEvento.valueOf(partes[7].toUpperCase());
-                        int asistentes = Integer.parseInt(partes[8]);
-                        reserva = new ReservaEvento(idReserva, aula, fecha, horaInicio, horaFin, responsable, tipoEvento, asistentes);
-                        break;
-                    case "PRACTICA":
-                        //Se asume que partes[7] es descripcion y partes[8] es numEquipos
-                        String descripcion = partes[7];
-                        int numEquipos = Integer.parseInt(partes[8]);
-                        reserva = new ReservaPractica(idReserva, aula, fecha, horaInicio, horaFin, responsable, descripcion, numEquipos);
-                        break;
-                }
+        return cargarReservas(aulas, Reservas_File);
+    }
 
-                if (reserva != null) {
-                    /*El estado (ej. "activa") de la Reserva SOLO se persiste (guarda/carga) si es variable y no se establece 
-                    por defecto en el constructor. Si se establece por defecto, se omite su lectura/escritura en el archivo.*/
-                    reservas.add(reserva);
+    /*Carga la lista de Reservas desde el archivo indicado. Se conservan todos los bloques intactos y los editados a mano
+    cuyas filas se interpretan todas (solo si el archivo cambio desde la ultima escritura del gestor); los bloques danados, las filas que no se pueden interpretar y las reservas de aulas
+    que no existen se descartan y se informan una por una.*/
+    public static List<Reserva> cargarReservas(List<Aula> aulas, String archivo) {
+        long t0 = RegistroFases.inicio();
+        List<Reserva> reservas = new ArrayList<>();
+        List<String> descartadas = new ArrayList<>();
+        List<String> sinAula = new ArrayList<>();
+        Map<String, Aula> aulasPorCodigo = new HashMap<>();
+        aulas.forEach(a -> aulasPorCodigo.putIfAbsent(a.getCodigo(), a));
+        try {
+            ArchivoObservado observado = ArchivoObservado.de(archivo);
+            Object marca = observado == null ? null : observado.marca();
+            /*Para decidir si un bloque se edito a mano alcanza con que la fila se interprete, exista o no su aula.
+            Si el archivo sigue siendo la ultima escritura del gestor nadie lo edito: un bloque que no coincide esta danado.*/
+            ArchivoBloques.Lectura lectura = ArchivoBloques.leer(archivo, ArchivoObservado.escrituraPropia(archivo) ? null
+                : interpretable(linea -> parsearReserva(linea, codigo -> new Aula(codigo, codigo, Integer.MAX_VALUE, TipoAula.TEORICA))));
+            if (observado != null) observado.conocer(filasDelArchivo(lectura), marca);
+            reservas = new ArrayList<>(lectura.getFilas().size());
+            for (String linea : lectura.getFilas()) {
+                try {
+                    Reserva reserva = parsearReserva(linea, aulasPorCodigo);
+                    if (reserva != null) reservas.add(reserva);
+                } catch (AulaInexistenteException e) {
+                    sinAula.add(linea);
+                } catch (RuntimeException e) {
+                    //Parse/Number/IllegalArg: solo se pierde esta fila
+                    descartadas.add(linea);
                 }
             }
+            informarEditados(archivo, "reservas", lectura.getEditados());
+            Map<String, List<String>> porMotivo = descartadasPorMotivo("ilegibles", descartadas);
+            if (!sinAula.isEmpty()) porMotivo.put("de aulas que no existen", sinAula);
+            informarPerdidas(archivo, "reservas", lectura.getPerdidas(), porMotivo);
         } catch (FileNotFoundException e) {
             System.out.println("Archivo de reservas no encontrado. Se creara uno nuevo al guardar.");
-        } catch (IOException | RuntimeException e) { 
-            //Captura IOException (lectura/escritura) y RuntimeException (Parse/Number/IllegalArg)
-            System.err.println("Error al cargar reservas. Corrupcion de datos: " + e.getMessage());
+        } catch (IOException e) {
+            System.err.println("Error al cargar reservas: " + e.getMessage());
         }
+        if (t0 != 0) registrarFase(Fase.CARGAR, t0, archivo, reservas.size());
         return reservas;
     }
 
+    /*Convierte una fila CSV en reserva. Devuelve null si la fila esta en blanco; lanza RuntimeException si esta corrupta
+    o si su aula no existe (IllegalArgumentException).*/
+    public static Reserva parsearReserva(String linea, Map<String, Aula> aulasPorCodigo) {
+        return parsearReserva(linea, aulasPorCodigo::get);
+    }
+
+    private static Reserva parsearReserva(String linea, Function<String, Aula> aulaPorCodigo) {
+        if (linea.trim().isEmpty()) return null;
+        String[] partes = linea.split(",");
+        /*El minimo de campos para una reserva especifica (Clase/Evento/Practica) es 9:
+        Tipo(0), Id(1), CodigoAula(2), Fecha(3), HIni(4), HFin(5), Responsable(6), DatoEsp1(7), DatoEsp2(8), Estado(9), Alerta(10)
+        El estado es opcional (archivos anteriores): si falta, la reserva se carga como activa. La alerta solo existe si se marco.*/
+        if (partes.length < 9) throw new IllegalArgumentException("faltan columnas (se esperan al menos 9)");
+
+        String tipoReserva = partes[0];
+        String idReserva = partes[1];
+        String codigoAula = partes[2];
+        
+        //Conversion de tipos.
+        LocalDate fecha = LocalDate.parse(partes[3]);
+        LocalTime horaInicio = LocalTime.parse(partes[4]);
+        LocalTime horaFin = LocalTime.parse(partes[5]);
+        String responsable = partes[6];
+
+        //Buscar el Aula correspondiente
+        Aula aula = aulaPorCodigo.apply(codigoAula);
+        if (aula == null) throw new AulaInexistenteException(codigoAula, idReserva);
+
+        String datoEsp1 = partes[7];
+        String datoEsp2 = partes[8];
+        EstadoReserva estado = EstadoReserva.ACTIVA;
+        if (tipoReserva.equalsIgnoreCase("CLASE") && partes.length >= 10
+                && EstadoReserva.esEstado(partes[7]) && !EstadoReserva.esEstado(partes[9])) {
+            //Formato anterior de CLASE: el estado iba antes de materia y numEstudiantes
+            estado = EstadoReserva.desdeTexto(partes[7]);
+            datoEsp1 = partes[8];
+            datoEsp2 = partes[9];
+        } else if (partes.length >= 10) {
+            estado = EstadoReserva.desdeTexto(partes[9]);
+        }
+
+        Reserva reserva = null;
+
+        //Crear la instancia de la subclase de Reserva
+        switch (tipoReserva.toUpperCase()) {
+            case "CLASE":
+                //DatoEsp1 es materia y DatoEsp2 es numEstudiantes
+                String materia = datoEsp1; 
+                int numEstudiantes = Integer.parseInt(datoEsp2);
+                reserva = new ReservaClase(idReserva, aula, fecha, horaInicio, horaFin, responsable, materia, numEstudiantes);
+                break;
+            case "EVENTO":
+                //DatoEsp1 es TipoEvento y DatoEsp2 es asistentes
+                TipoEvento tipoEvento = TipoEvento.valueOf(datoEsp1.toUpperCase());
+                int asistentes = Integer.parseInt(datoEsp2);
+                reserva = new ReservaEvento(idReserva, aula, fecha, horaInicio, horaFin, responsable, tipoEvento, asistentes);
+                break;
+            case "PRACTICA":
+                //DatoEsp1 es descripcion y DatoEsp2 es numEquipos
+                String descripcion = datoEsp1;
+                int numEquipos = Integer.parseInt(datoEsp2);
+                reserva = new ReservaPractica(idReserva, aula, fecha, horaInicio, horaFin, responsable, descripcion, numEquipos);
+                break;
+            default:
+                throw new IllegalArgumentException("Tipo de reserva desconocido: " + tipoReserva);
+        }
+
+        reserva.setEstado(estado);
+        if (partes.length >= 11 && !partes[10].isEmpty()) reserva.setAlerta(partes[10]);
+        return reserva;
+    }
+
+    //Reserva cuya aula no esta cargada: no es una fila ilegible, se informa aparte
+    private static class AulaInexistenteException extends IllegalArgumentException {
+        private static final long serialVersionUID = 1L;
+
+        private AulaInexistenteException(String codigoAula, String idReserva) {
+            super("el aula " + codigoAula + " de la reserva " + idReserva + " no existe");
+        }
+    }
+
+    //Criterio para conservar un bloque editado a mano: la fila se convierte sin errores
+    private static Predicate<String> interpretable(Function<String, ?> parser) {
+        return linea -> {
+            try {
+                parser.apply(linea);
+                return true;
+            } catch (RuntimeException e) {
+                return false;
+            }
+        };
+    }
+
+    /*Todas las filas del archivo tal como estan, tambien las de bloques perdidos: es la version conocida para detectar
+    ediciones externas (ver ArchivoObservado), no lo que se cargo en memoria.*/
+    private static List<String> filasDelArchivo(ArchivoBloques.Lectura lectura) {
+        if (lectura.getPerdidas().isEmpty()) return lectura.getFilas();
+        List<String> filas = new ArrayList<>(lectura.getFilas());
+        lectura.getPerdidas().forEach(p -> filas.addAll(p.getFilas()));
+        return filas;
+    }
+
+    private static Map<String, List<String>> descartadasPorMotivo(String motivo, List<String> filas) {
+        Map<String, List<String>> porMotivo = new LinkedHashMap<>();
+        if (!filas.isEmpty()) porMotivo.put(motivo, filas);
+        return porMotivo;
+    }
+
+    //Avisa los bloques que no coinciden con su checksum pero se conservaron: alguien edito el archivo a mano
+    private static void informarEditados(String archivo, String descripcion, List<ArchivoBloques.Perdida> editados) {
+        for (ArchivoBloques.Perdida editado : editados) {
+            System.err.printf("Aviso: %s se edito por fuera de la aplicacion; se conservan las %s del %s%n", archivo, descripcion, editado);
+        }
+    }
+
+    /*Informa las filas que no se pudieron recuperar: un resumen por bloque danado (con sus lineas) y la primera
+    columna de cada fila perdida (codigo de aula o ID de reserva). Las filas completas se agregan a <archivo>.danado
+    para poder recuperarlas a mano, ya que el siguiente guardado reescribe el archivo sin ellas.
+    'descartadas' agrupa las filas sueltas que no se cargaron segun el motivo.*/
+    private static void informarPerdidas(String archivo, String descripcion, List<ArchivoBloques.Perdida> perdidas,
+                                         Map<String, List<String>> descartadas) {
+        if (perdidas.isEmpty() && descartadas.isEmpty()) return;
+        List<String> perdidasTexto = new ArrayList<>();
+        for (ArchivoBloques.Perdida perdida : perdidas) {
+            System.err.printf("Recuperacion de %s: %s se descarta, %s%n", archivo, descripcion, perdida);
+            if (!perdida.getFilas().isEmpty()) System.err.println("  Filas perdidas: " + primerasColumnas(perdida.getFilas()));
+            perdidasTexto.add("#" + perdida);
+            perdidasTexto.addAll(perdida.getFilas());
+        }
+        for (Map.Entry<String, List<String>> grupo : descartadas.entrySet()) {
+            System.err.printf("Recuperacion de %s: %d filas de %s %s se descartan: %s%n", archivo, grupo.getValue().size(), descripcion,
+                grupo.getKey(), primerasColumnas(grupo.getValue()));
+            perdidasTexto.add("#filas " + grupo.getKey());
+            perdidasTexto.addAll(grupo.getValue());
+        }
+        try (PrintWriter writer = new PrintWriter(new OutputStreamWriter(new FileOutputStream(archivo + ".danado", true), StandardCharsets.UTF_8))) {
+            writer.println("#" + LocalDateTime.now() + " recuperacion de " + archivo);
+            perdidasTexto.forEach(writer::println);
+        } catch (IOException e) {
+            System.err.println("No se pudieron guardar las filas perdidas: " + e.getMessage());
+        }
+        System.err.printf("Filas perdidas guardadas en %s.danado%n", archivo);
+    }
+
+    //Identificadores de las filas (primera columna de aulas, segunda de reservas)
+    private static String primerasColumnas(List<String> filas) {
+        return filas.stream().map(f -> {
+            String[] partes = f.split(",", 3);
+            return partes.length > 2 && partes[1].startsWith("R") ? partes[1] : partes[0];
+        }).collect(Collectors.joining(" "));
+    }
+
+    /*Archiva reservas de periodos cerrados en un segmento nuevo del historico compacto (ver ArchivoHistorico).
+    El primer segmento es el archivo base (reservas_historico.dat) y los siguientes se numeran (reservas_historico_2.dat, ...):
+    los segmentos anteriores no se reescriben. Devuelve el archivo escrito, o null si no se pudo escribir.*/
+    public static String archivarReservas(List<Reserva> reservas, String archivoHistorico) {
+        List<String> segmentos = segmentosHistorico(archivoHistorico);
+        String archivo = segmentos.isEmpty() ? archivoHistorico : nombreSegmento(archivoHistorico, numeroSegmento(archivoHistorico,
+            segmentos.get(segmentos.size() - 1)) + 1);
+        try {
+            ArchivoHistorico.escribir(reservas, archivo);
+            System.out.printf("%d reservas archivadas en: %s%n", reservas.size(), archivo);
+            return archivo;
+        } catch (IOException e) {
+            System.err.println("Error al archivar reservas: " + e.getMessage());
+            return null;
+        }
+    }
+
+    //Segmentos existentes del historico, en orden de creacion (el archivo base primero)
+    public static List<String> segmentosHistorico(String archivoHistorico) {
+        File base = new File(archivoHistorico);
+        File directorio = base.getAbsoluteFile().getParentFile();
+        String prefijo = base.getName().replaceFirst("\\.dat$", "") + "_";
+        File[] numerados = directorio == null ? null : directorio.listFiles((d, nombre) ->
+            nombre.startsWith(prefijo) && nombre.endsWith(".dat") && nombre.substring(prefijo.length(), nombre.length() - 4).matches("\\d{1,9}"));
+        List<String> segmentos = new ArrayList<>();
+        if (base.exists()) segmentos.add(archivoHistorico);
+        if (numerados != null) {
+            Arrays.stream(numerados)
+                .map(f -> nombreSegmento(archivoHistorico, numeroSegmento(archivoHistorico, f.getName())))
+                .sorted(Comparator.comparingInt(f -> numeroSegmento(archivoHistorico, f)))
+                .forEach(segmentos::add);
+        }
+        return segmentos;
+    }
+
+    private static String nombreSegmento(String archivoHistorico, int numero) {
+        return archivoHistorico.replaceFirst("(\\.dat)?$", "_" + numero + ".dat");
+    }
+
+    //Numero de un segmento (1 = archivo base)
+    private static int numeroSegmento(String archivoHistorico, String segmento) {
+        String nombre = new File(segmento).getName();
+        String prefijo = new File(archivoHistorico).getName().replaceFirst("\\.dat$", "") + "_";
+        return nombre.startsWith(prefijo) && nombre.endsWith(".dat") ? Integer.parseInt(nombre.substring(prefijo.length(), nombre.length() - 4)) : 1;
+    }
+
+    /*Carga del historico las reservas de un aula y rango de fechas (null = sin filtro), de todos los segmentos,
+    saltando los bloques que no aplican. Se devuelven ordenadas por aula, fecha y hora.*/
+    public static List<Reserva> cargarHistorico(List<Aula> aulas, String archivoHistorico, String codigoAula, LocalDate desde, LocalDate hasta) {
+        List<String> segmentos = segmentosHistorico(archivoHistorico);
+        if (segmentos.isEmpty()) System.out.println("Archivo historico no encontrado: " + archivoHistorico);
+        List<Reserva> resultado = new ArrayList<>();
+        for (String segmento : segmentos) {
+            try {
+                resultado.addAll(ArchivoHistorico.leer(segmento, aulas, codigoAula, desde, hasta));
+            } catch (IOException e) {
+                System.err.println("Error al cargar el historico " + segmento + ". Corrupcion de datos: " + e.getMessage());
+            }
+        }
+        if (segmentos.size() > 1) {
+            resultado.sort(Comparator.comparing((Reserva r) -> r.getAula().getCodigo()).thenComparing(Reserva::getFecha)
+                .thenComparing(Reserva::getHoraInicio));
+        }
+        return resultado;
+    }
+
     //Exporta el contenido de un reporte a un archivo de texto.
     public static void exportarReporte(String nombreArchivo, String contenido) {
+        long t0 = RegistroFases.inicio();
         try (PrintWriter writer = new PrintWriter(new FileWriter(nombreArchivo))) {
             writer.print(contenido);
             System.out.printf("Reporte exportado exitosamente a: %s%n", nombreArchivo);
         } catch (IOException e) {
             System.err.println("Error al exportar reporte: " + e.getMessage());
         }
+        if (t0 != 0) registrarFase(Fase.EXPORTAR_REPORTE, t0, nombreArchivo, contenido.split("\n", -1).length);
+    }
+
+    //Evento de fase de una operacion sobre un archivo: filas procesadas y tamanio resultante
+    private static void registrarFase(Fase fase, long t0, String archivo, int filas) {
+        RegistroFases.registrar(fase, t0, "archivo=" + new File(archivo).getName() + ";filas=" + filas + ";bytes=" + new File(archivo).length());
     }
 }
\ No newline at end of file
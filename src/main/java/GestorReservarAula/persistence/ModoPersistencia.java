@@ -0,0 +1,8 @@
+package GestorReservarAula.persistence;
+
+//Modos de persistencia del gestor de reservas
+public enum ModoPersistencia {
+    ARCHIVO,  //Guarda en los archivos de texto tras cada operacion
+    DIFERIDA, //Escritura diferida: un hilo en segundo plano agrupa los cambios y guarda cada cierto intervalo
+    MEMORIA   //Sin acceso a disco: para simulaciones y pruebas de carga
+}
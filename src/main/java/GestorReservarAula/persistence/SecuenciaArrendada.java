@@ -0,0 +1,113 @@
+package GestorReservarAula.persistence;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+import GestorReservarAula.interfaces.GeneradorIds;
+
+/*Secuencia de IDs compartida entre procesos mediante un archivo contador con el primer numero aun no arrendado.
+Cada proceso arrienda un bloque de numeros (lee el contador y lo avanza con el archivo bloqueado) y lo reparte
+en memoria sin cerrojos, con un incremento atomico; solo al agotarse el bloque vuelve al archivo.
+Al iniciar no recorre las reservas: el contador ya tiene el punto de partida. Los numeros que quedan sin usar
+de un bloque al cerrar el proceso se pierden (huecos en la numeracion, nunca repetidos).*/
+public class SecuenciaArrendada implements GeneradorIds {
+    public static final int TAMANIO_BLOQUE_DEFECTO = 1000;
+    private static final int ANCHO_CONTADOR = 20; //Ancho fijo: cada escritura reemplaza el numero completo de una vez
+
+    //Numeros arrendados [siguiente, fin); 'siguiente' puede pasarse de 'fin' cuando varios hilos lo agotan a la vez
+    private static class Bloque {
+        private final AtomicLong siguiente;
+        private final long fin;
+
+        private Bloque(long inicio, long fin) {
+            this.siguiente = new AtomicLong(inicio);
+            this.fin = fin;
+        }
+    }
+
+    private final String archivo;
+    private final int tamanioBloque;
+    private volatile Bloque actual = new Bloque(0, 0); //Vacio: el primer pedido arrienda
+    private long ultimoFin = 1; //Piso si el archivo desaparece mientras el proceso corre
+
+    /*'minimoInicial' solo se consulta si el contador no existe (primer uso con datos previos): debe devolver
+    un numero mayor que todos los IDs ya emitidos. Se llama aqui y no al arrendar, para no recorrer datos con
+    los cerrojos del gestor tomados.*/
+    public SecuenciaArrendada(String archivo, int tamanioBloque, LongSupplier minimoInicial) throws IOException {
+        if (tamanioBloque < 1) throw new IllegalArgumentException("El bloque de IDs debe tener al menos 1 numero.");
+        this.archivo = archivo;
+        this.tamanioBloque = tamanioBloque;
+        try (FileChannel canal = abrir()) {
+            FileLock cerrojo = canal.lock();
+            try {
+                if (leerContador(canal) < 0) escribirContador(canal, Math.max(1, minimoInicial.getAsLong()));
+            } finally {
+                cerrojo.release();
+            }
+        }
+    }
+
+    @Override
+    public long siguiente() {
+        while (true) {
+            Bloque bloque = actual;
+            long numero = bloque.siguiente.getAndIncrement();
+            if (numero < bloque.fin) return numero;
+            renovar(bloque);
+        }
+    }
+
+    //Arrienda un bloque nuevo si otro hilo no lo hizo ya. Los hilos que llegan juntos esperan solo este tramo.
+    private synchronized void renovar(Bloque agotado) {
+        if (actual != agotado) return;
+        try (FileChannel canal = abrir()) {
+            FileLock cerrojo = canal.lock(); //Otro proceso que arrienda espera hasta que el contador avanzo
+            try {
+                long inicio = Math.max(leerContador(canal), ultimoFin);
+                long fin = inicio + tamanioBloque;
+                escribirContador(canal, fin);
+                ultimoFin = fin;
+                actual = new Bloque(inicio, fin);
+            } finally {
+                cerrojo.release();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se pudo arrendar un bloque de IDs en " + archivo, e);
+        }
+    }
+
+    private FileChannel abrir() throws IOException {
+        return FileChannel.open(Paths.get(archivo), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    //Numero guardado en el contador, o -1 si el archivo esta vacio (recien creado)
+    private long leerContador(FileChannel canal) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(canal.size(), 64));
+        canal.read(buffer, 0);
+        String texto = new String(buffer.array(), 0, buffer.position(), StandardCharsets.UTF_8).trim();
+        if (texto.isEmpty()) return -1;
+        try {
+            long valor = Long.parseLong(texto);
+            if (valor < 1) throw new NumberFormatException();
+            return valor;
+        } catch (NumberFormatException e) {
+            //No se reinicia desde 1: repetiria IDs ya emitidos
+            throw new IOException("Contador de IDs invalido en " + archivo + ": '" + texto + "'");
+        }
+    }
+
+    private void escribirContador(FileChannel canal, long valor) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(String.format("%-" + ANCHO_CONTADOR + "d%n", valor).getBytes(StandardCharsets.UTF_8));
+        while (buffer.hasRemaining()) canal.write(buffer, buffer.position());
+        canal.truncate(buffer.limit());
+        canal.force(true); //El bloque no se usa hasta que el avance del contador esta en disco
+    }
+}
@@ -0,0 +1,110 @@
+package GestorReservarAula.services;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+
+/*Arbol de Fenwick (indice binario) de sumas por dia epoch: suma puntual y suma de un rango en O(log D).
+Crece solo cuando aparece un dia fuera del rango cubierto (se reconstruye en O(D) desde los valores por dia),
+hasta TAMANIO_MAXIMO dias. Los dias que no entran en ese rango (una fecha cargada muy lejana) se guardan aparte,
+uno por uno: asi una sola reserva fuera de lo normal no agranda los arreglos ni desborda su tamanio.
+No es seguro para varios hilos: GestorReservas lo protege con su cerrojo.*/
+class ArbolFenwick {
+    private static final int TAMANIO_INICIAL = 512;
+    static final int TAMANIO_MAXIMO = 1 << 15; //Unos 89 anios
+
+    private long base;      //Dia epoch de la posicion 0
+    private long[] arbol;   //1-indexado; null mientras no haya datos
+    private long[] valores; //Valor de cada dia, para reconstruir al crecer
+    private final TreeMap<Long, Long> dispersos = new TreeMap<>(); //Dias fuera del rango del arbol
+
+    //Suma delta al dia indicado
+    void sumar(long dia, long delta) {
+        if (!cubrir(dia)) {
+            if (dispersos.merge(dia, delta, Long::sum) == 0) dispersos.remove(dia);
+            return;
+        }
+        for (int i = (int) (dia - base) + 1; i < arbol.length; i += i & -i) {
+            arbol[i] += delta;
+        }
+        valores[(int) (dia - base)] += delta;
+    }
+
+    //Suma de los dias entre desde y hasta, ambos inclusive
+    long rango(long desde, long hasta) {
+        if (hasta < desde) return 0;
+        long total = arbol == null ? 0 : sumaHasta(hasta) - sumaHasta(desde - 1);
+        for (long valor : dispersos.subMap(desde, true, hasta, true).values()) {
+            total += valor;
+        }
+        return total;
+    }
+
+    long valor(long dia) {
+        long disperso = dispersos.getOrDefault(dia, 0L);
+        if (arbol == null || dia < base || dia >= base + valores.length) return disperso;
+        return valores[(int) (dia - base)] + disperso;
+    }
+
+    //Dias con valor distinto de cero y su valor, en orden (para mover un aula de tipo)
+    TreeMap<Long, Long> noNulos() {
+        TreeMap<Long, Long> dias = new TreeMap<>(dispersos);
+        if (arbol != null) {
+            for (int i = 0; i < valores.length; i++) {
+                if (valores[i] != 0) dias.merge(base + i, valores[i], Long::sum);
+            }
+        }
+        dias.values().removeIf(v -> v == 0);
+        return dias;
+    }
+
+    //Suma desde el inicio hasta el dia (inclusive); los dias fuera del rango cubierto valen 0
+    private long sumaHasta(long dia) {
+        if (dia < base) return 0;
+        long total = 0;
+        for (int i = (int) Math.min(dia - base + 1, valores.length); i > 0; i -= i & -i) {
+            total += arbol[i];
+        }
+        return total;
+    }
+
+    /*Amplia el rango cubierto si el dia queda fuera, con margen para no reconstruir seguido.
+    Devuelve false si cubrirlo superaria TAMANIO_MAXIMO dias (el dia va a los dispersos).*/
+    private boolean cubrir(long dia) {
+        if (arbol == null) {
+            base = dia - TAMANIO_INICIAL / 4;
+            valores = new long[TAMANIO_INICIAL];
+            arbol = new long[TAMANIO_INICIAL + 1];
+            return true;
+        }
+        if (dia >= base && dia < base + valores.length) return true;
+
+        long inicio = Math.min(base, dia);
+        long fin = Math.max(base + valores.length, dia + 1);
+        if (fin - inicio > TAMANIO_MAXIMO) return false;
+        int tamanio = (int) Math.min(Long.highestOneBit((fin - inicio) * 2), TAMANIO_MAXIMO); //Potencia de dos que cubre el rango
+        long nuevaBase = dia < base ? fin - tamanio : inicio; //El margen libre queda del lado hacia donde crecio
+        long[] nuevosValores = new long[tamanio];
+        System.arraycopy(valores, 0, nuevosValores, (int) (base - nuevaBase), valores.length);
+
+        //Los dispersos que ahora quedan dentro del rango pasan al arbol
+        Iterator<Map.Entry<Long, Long>> entrantes = dispersos.subMap(nuevaBase, true, nuevaBase + tamanio, false).entrySet().iterator();
+        while (entrantes.hasNext()) {
+            Map.Entry<Long, Long> e = entrantes.next();
+            nuevosValores[(int) (e.getKey() - nuevaBase)] += e.getValue();
+            entrantes.remove();
+        }
+
+        //Construccion lineal: cada nodo empuja su suma a su padre
+        long[] nuevoArbol = new long[tamanio + 1];
+        for (int i = 1; i <= tamanio; i++) {
+            nuevoArbol[i] += nuevosValores[i - 1];
+            int padre = i + (i & -i);
+            if (padre <= tamanio) nuevoArbol[padre] += nuevoArbol[i];
+        }
+        base = nuevaBase;
+        valores = nuevosValores;
+        arbol = nuevoArbol;
+        return true;
+    }
+}
@@ -0,0 +1,86 @@
+package GestorReservarAula.services;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+import GestorReservarAula.exceptions.ValidacionDeReservaException;
+
+/*Hilo que cierra el ciclo de vida de las reservas pasadas.
+Duerme hasta el proximo fin de reserva de la cola de vencimientos (como maximo ESPERA_MAXIMA_MS, para
+seguir cambios de reloj y reservas nuevas que terminan antes) y entonces marca como COMPLETADA las vencidas,
+que dejan la agenda en memoria y pasan al almacen de completadas (ver ReservasCompletadas).
+Los dias de retencion deciden cuanto quedan ahi: una vez al dia lo anterior al corte pasa al historico
+(en modo MEMORIA se descarta).*/
+class BarridoCicloVida {
+    static final long ESPERA_MAXIMA_MS = 60_000;
+
+    private final GestorReservas gestor;
+    private final int diasRetencion; //Negativo: las completadas no salen del almacen
+    private final Thread hilo;
+    private LocalDate ultimoArchivado;
+    private boolean activo = true;
+
+    BarridoCicloVida(GestorReservas gestor, int diasRetencion) {
+        this.gestor = gestor;
+        this.diasRetencion = diasRetencion;
+        this.hilo = new Thread(this::ejecutar, "barrido-ciclo-vida");
+        this.hilo.setDaemon(true);
+        this.hilo.start();
+    }
+
+    //Despierta el hilo para recalcular la espera (hay una reserva que termina antes de lo previsto)
+    synchronized void despertar() {
+        notifyAll();
+    }
+
+    //Detiene el hilo y espera a que termine el barrido en curso
+    void detener() {
+        synchronized (this) {
+            activo = false;
+            notifyAll();
+        }
+        try {
+            hilo.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void ejecutar() {
+        while (true) {
+            long espera = ESPERA_MAXIMA_MS;
+            try {
+                gestor.completarVencidas();
+                archivarSiCambioElDia();
+                long proximo = gestor.proximoVencimiento();
+                if (proximo != Long.MAX_VALUE) {
+                    long hastaFin = Duration.between(LocalDateTime.now(), ColaVencimientos.fechaHora(proximo)).toMillis();
+                    espera = Math.max(1, Math.min(ESPERA_MAXIMA_MS, hastaFin));
+                }
+            } catch (RuntimeException e) {
+                //Un error no termina el hilo: nadie lo volveria a iniciar. Se reintenta tras la espera maxima.
+                System.err.println("Barrido: fallo el cierre de las reservas vencidas: " + e);
+            }
+            synchronized (this) {
+                try {
+                    if (activo) wait(espera);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                if (!activo) return;
+            }
+        }
+    }
+
+    private void archivarSiCambioElDia() {
+        LocalDate hoy = LocalDate.now();
+        if (diasRetencion < 0 || hoy.equals(ultimoArchivado)) return;
+        try {
+            gestor.aplicarRetencion(hoy.minusDays(diasRetencion));
+        } catch (ValidacionDeReservaException | RuntimeException e) {
+            System.err.println("Barrido: no se pudieron archivar las reservas cerradas: " + e.getMessage());
+        }
+        ultimoArchivado = hoy; //Si fallo, se reintenta al dia siguiente
+    }
+}
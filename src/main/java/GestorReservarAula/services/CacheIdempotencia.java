@@ -0,0 +1,199 @@
+package GestorReservarAula.services;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.*;
+import java.util.function.Function;
+
+import GestorReservarAula.exceptions.NoEncontradoException;
+import GestorReservarAula.exceptions.ValidacionDeReservaException;
+import GestorReservarAula.models.AlternativaHorario;
+import GestorReservarAula.models.Aula;
+import GestorReservarAula.util.TipoAlternativa;
+
+/*Cache de claves de idempotencia de reservas y cancelaciones.
+Guarda el resultado original de cada operacion hecha con una clave del cliente, para que un reintento
+(por ejemplo tras un tiempo de espera agotado) reciba la misma respuesta en O(1) sin volver a validar ni persistir.
+Acotada por cantidad (se descarta la clave mas antigua) y por tiempo de vida. Como las claves se agregan
+en orden de llegada, las vencidas siempre estan al principio y se retiran sin recorrer el resto.*/
+class CacheIdempotencia {
+    static final int CAPACIDAD_DEFECTO = 10_000;
+    static final long TTL_DEFECTO_MS = 24 * 60 * 60 * 1000L;
+    static final int LONGITUD_MAXIMA_CLAVE = 64;
+    static final int LONGITUD_HUELLA = 32; //Caracteres hex: 128 bits de SHA-256
+
+    enum Resultado {
+        OK, CONFLICTO, VALIDACION, NO_ENCONTRADO;
+
+        //Resultado que se recuerda para un error de validacion (el reintento recibe el mismo tipo de error)
+        static Resultado de(ValidacionDeReservaException e) {
+            return e instanceof NoEncontradoException ? NO_ENCONTRADO : VALIDACION;
+        }
+    }
+
+    /*Resultado recordado. 'valor' es el ID (reservas), los IDs promovidos separados por ';' (cancelaciones) o el mensaje de error.
+    Un CONFLICTO guarda tambien sus alternativas (ver codificar), para que el reintento las reciba igual que la primera vez.*/
+    static class Entrada {
+        final String operacion;
+        final String huella; //Resumen de los parametros, para detectar una clave reutilizada con otros datos
+        final Resultado resultado;
+        final String valor;
+        final String alternativas;
+        final long instante;
+
+        Entrada(String operacion, String huella, Resultado resultado, String valor, String alternativas, long instante) {
+            this.operacion = operacion;
+            this.huella = huella;
+            this.resultado = resultado;
+            this.valor = valor;
+            this.alternativas = alternativas;
+            this.instante = instante;
+        }
+
+        //Formato: clave,operacion,huella,resultado,instante,alternativas,valor (el valor va al final porque puede tener comas)
+        String toCsvString(String clave) {
+            return String.join(",", clave, operacion, huella, resultado.name(), Long.toString(instante), alternativas,
+                valor.replace('\n', ' '));
+        }
+    }
+
+    private final LinkedHashMap<String, Entrada> entradas = new LinkedHashMap<String, Entrada>(16, 0.75f, false) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entrada> mayor) {
+            return size() > capacidad;
+        }
+    };
+    private int capacidad = CAPACIDAD_DEFECTO;
+    private long ttlMs = TTL_DEFECTO_MS;
+
+    synchronized void configurar(int capacidad, long ttlMs) {
+        this.capacidad = Math.max(1, capacidad);
+        this.ttlMs = Math.max(0, ttlMs);
+        purgar(System.currentTimeMillis());
+        Iterator<String> it = entradas.keySet().iterator();
+        while (entradas.size() > this.capacidad) {
+            it.next();
+            it.remove();
+        }
+    }
+
+    //Resultado vigente de una clave, o null si no se uso o ya vencio
+    synchronized Entrada buscar(String clave) {
+        purgar(System.currentTimeMillis());
+        return entradas.get(clave);
+    }
+
+    synchronized void registrar(String clave, String operacion, String huella, Resultado resultado, String valor) {
+        registrar(clave, operacion, huella, resultado, valor, Collections.emptyList());
+    }
+
+    synchronized void registrar(String clave, String operacion, String huella, Resultado resultado, String valor,
+                                List<AlternativaHorario> alternativas) {
+        long ahora = System.currentTimeMillis();
+        purgar(ahora);
+        entradas.put(clave, new Entrada(operacion, huella, resultado, valor == null ? "" : valor, codificar(alternativas), ahora));
+    }
+
+    synchronized int tamanio() {
+        return entradas.size();
+    }
+
+    //Lineas de las claves vigentes, en orden de llegada
+    synchronized List<String> lineas() {
+        purgar(System.currentTimeMillis());
+        List<String> lineas = new ArrayList<>(entradas.size());
+        entradas.forEach((clave, e) -> lineas.add(e.toCsvString(clave)));
+        return lineas;
+    }
+
+    /*Carga las claves guardadas, ignorando las vencidas y las lineas mal formadas. Las del formato anterior (huella
+    de 32 bits, sin alternativas) se conservan: su huella no coincide con ninguna nueva, asi que un reintento con esa
+    clave se rechaza en lugar de registrarse dos veces.*/
+    synchronized void cargar(List<String> lineas) {
+        long ahora = System.currentTimeMillis();
+        for (String linea : lineas) {
+            String[] partes = linea.split(",", 7);
+            if (partes.length < 6) continue;
+            boolean actual = partes[2].length() == LONGITUD_HUELLA;
+            if (actual && partes.length < 7) continue;
+            try {
+                long instante = Long.parseLong(partes[4]);
+                if (ahora - instante >= ttlMs) continue;
+                String valor = actual ? partes[6] : linea.split(",", 6)[5];
+                entradas.put(partes[0], new Entrada(partes[1], partes[2], Resultado.valueOf(partes[3]), valor, actual ? partes[5] : "", instante));
+            } catch (IllegalArgumentException e) {
+                //Linea corrupta: se pierde solo esa clave
+            }
+        }
+    }
+
+    /*Huella de los parametros de una operacion: SHA-256 de su forma canonica, truncado a 128 bits en hex.
+    En la forma canonica cada valor va precedido por su longitud, asi dos listas distintas nunca se escriben igual
+    (con un separador solo, "a,b" + "c" y "a" + "b,c" coincidirian).*/
+    static String huella(Object... parametros) {
+        StringBuilder canonica = new StringBuilder();
+        for (Object parametro : parametros) {
+            if (parametro == null) {
+                canonica.append("-;");
+            } else {
+                String texto = parametro.toString();
+                canonica.append(texto.length()).append(':').append(texto).append(';');
+            }
+        }
+        try {
+            byte[] resumen = MessageDigest.getInstance("SHA-256").digest(canonica.toString().getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(LONGITUD_HUELLA);
+            for (int i = 0; i < LONGITUD_HUELLA / 2; i++) {
+                hex.append(Character.forDigit((resumen[i] >> 4) & 0xF, 16)).append(Character.forDigit(resumen[i] & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 no disponible", e); //Toda JVM debe tenerlo
+        }
+    }
+
+    //Alternativas de un conflicto en una columna sin comas: tipo;aula;fecha;inicio;fin;distancia, separadas por '|'
+    static String codificar(List<AlternativaHorario> alternativas) {
+        StringJoiner texto = new StringJoiner("|");
+        for (AlternativaHorario a : alternativas) {
+            texto.add(String.join(";", a.getTipo().name(), a.getAula().getCodigo(), a.getFecha().toString(),
+                a.getHoraInicio().toString(), a.getHoraFin().toString(), Long.toString(a.getDistancia())));
+        }
+        return texto.toString();
+    }
+
+    //Vuelve a armar las alternativas recordadas; se omiten las de aulas que ya no existen ('aulas' devuelve null)
+    static List<AlternativaHorario> decodificar(String texto, Function<String, Aula> aulas) {
+        List<AlternativaHorario> alternativas = new ArrayList<>();
+        if (texto.isEmpty()) return alternativas;
+        for (String parte : texto.split("\\|")) {
+            String[] campos = parte.split(";");
+            try {
+                Aula aula = aulas.apply(campos[1]);
+                if (aula == null) continue;
+                alternativas.add(new AlternativaHorario(TipoAlternativa.valueOf(campos[0]), aula, LocalDate.parse(campos[2]),
+                    LocalTime.parse(campos[3]), LocalTime.parse(campos[4]), Long.parseLong(campos[5])));
+            } catch (RuntimeException e) {
+                //Alternativa ilegible: se omite solo esa
+            }
+        }
+        return alternativas;
+    }
+
+    //Valida el formato de una clave: no vacia, corta, sin separadores del archivo ni '#' inicial (lineas de control)
+    static boolean claveValida(String clave) {
+        return !clave.isEmpty() && clave.charAt(0) != '#' && clave.length() <= LONGITUD_MAXIMA_CLAVE && clave.indexOf(',') < 0
+            && clave.indexOf('\n') < 0 && clave.indexOf('\r') < 0;
+    }
+
+    //Retira las claves vencidas, que estan al principio por orden de llegada
+    private void purgar(long ahora) {
+        Iterator<Entrada> it = entradas.values().iterator();
+        while (it.hasNext() && ahora - it.next().instante >= ttlMs) {
+            it.remove();
+        }
+    }
+}
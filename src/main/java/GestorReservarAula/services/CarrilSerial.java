@@ -0,0 +1,42 @@
+package GestorReservarAula.services;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*Ejecutor serial sobre un pool compartido (buzon de un actor): las tareas de un mismo carril se ejecutan
+de a una y en orden de llegada, y carriles distintos avanzan en paralelo en los hilos del pool.
+No usa cerrojos: el contador de pendientes decide quien agenda el vaciado del buzon. Tras una rafaga
+el carril se vuelve a agendar, para no acaparar un hilo del pool mientras otros carriles esperan.*/
+class CarrilSerial implements Executor {
+    private static final int RAFAGA = 64;
+
+    private final Queue<Runnable> buzon = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pendientes = new AtomicInteger();
+    private final Executor pool;
+
+    CarrilSerial(Executor pool) {
+        this.pool = pool;
+    }
+
+    @Override
+    public void execute(Runnable tarea) {
+        buzon.add(tarea);
+        if (pendientes.getAndIncrement() == 0) pool.execute(this::vaciar);
+    }
+
+    //Solo un hilo a la vez llega aqui: el que paso pendientes de 0 a 1, o el que reagendo la rafaga
+    private void vaciar() {
+        for (int i = 0; i < RAFAGA; i++) {
+            Runnable tarea = buzon.poll();
+            try {
+                tarea.run();
+            } catch (RuntimeException e) {
+                //Las tareas completan su propio futuro; un error inesperado no debe detener el carril
+            }
+            if (pendientes.decrementAndGet() == 0) return;
+        }
+        pool.execute(this::vaciar);
+    }
+}
@@ -0,0 +1,89 @@
+package GestorReservarAula.services;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.Predicate;
+
+import GestorReservarAula.models.Reserva;
+import GestorReservarAula.util.EstadoReserva;
+
+/*Cola de prioridad de reservas activas ordenada por fecha y hora de fin (en minutos desde la epoca).
+El barrido solo mira la cabeza: sacar las vencidas cuesta O(log n) por reserva, sin recorrer la lista.
+Las entradas se invalidan de forma perezosa: si la reserva se modifico (otra hora de fin), se cancelo o se
+archivo, su entrada se descarta al salir; la modificacion ya agrego una entrada nueva.
+No es segura para varios hilos: GestorReservas la protege con su cerrojo.*/
+class ColaVencimientos {
+    private static final int MINUTOS_DIA = 24 * 60;
+
+    //Entrada de la cola: el fin registrado puede quedar desactualizado si la reserva cambia
+    private static class Vencimiento {
+        private final long fin;
+        private final Reserva reserva;
+
+        private Vencimiento(long fin, Reserva reserva) {
+            this.fin = fin;
+            this.reserva = reserva;
+        }
+    }
+
+    private final PriorityQueue<Vencimiento> cola = new PriorityQueue<>(Comparator.comparingLong((Vencimiento v) -> v.fin));
+
+    /*Agrega la reserva si esta activa. Debe llamarse tambien despues de cambiar su fecha u horario.
+    Devuelve true si pasa a ser la proxima en vencer (el barrido debe despertar antes de lo previsto).*/
+    boolean agregar(Reserva r) {
+        if (r.getEstado() != EstadoReserva.ACTIVA) return false;
+        long fin = fin(r);
+        boolean primera = fin < proximo();
+        cola.add(new Vencimiento(fin, r));
+        return primera;
+    }
+
+    //Reconstruye la cola desde cero (descarta entradas obsoletas acumuladas por modificaciones)
+    void reconstruir(Collection<Reserva> reservas) {
+        cola.clear();
+        reservas.forEach(this::agregar);
+    }
+
+    int tamanio() {
+        return cola.size();
+    }
+
+    //Minuto de fin de la proxima reserva por vencer, o Long.MAX_VALUE si no hay
+    long proximo() {
+        return cola.isEmpty() ? Long.MAX_VALUE : cola.peek().fin;
+    }
+
+    //Saca las reservas que terminaron hasta 'ahora' y siguen vigentes (activas, con el mismo fin y aun en el gestor)
+    List<Reserva> extraerVencidas(long ahora, Predicate<Reserva> vigente) {
+        List<Reserva> vencidas = new ArrayList<>();
+        while (!cola.isEmpty() && cola.peek().fin <= ahora) {
+            Vencimiento v = cola.poll();
+            Reserva r = v.reserva;
+            if (r.getEstado() == EstadoReserva.ACTIVA && fin(r) == v.fin && vigente.test(r)) vencidas.add(r);
+        }
+        return vencidas;
+    }
+
+    static long fin(Reserva r) {
+        return minuto(r.getFecha(), r.getHoraFin());
+    }
+
+    static long minuto(LocalDate fecha, LocalTime hora) {
+        return fecha.toEpochDay() * MINUTOS_DIA + hora.getHour() * 60 + hora.getMinute();
+    }
+
+    static long ahora() {
+        LocalDateTime ahora = LocalDateTime.now();
+        return minuto(ahora.toLocalDate(), ahora.toLocalTime());
+    }
+
+    static LocalDateTime fechaHora(long minuto) {
+        return LocalDate.ofEpochDay(Math.floorDiv(minuto, MINUTOS_DIA)).atStartOfDay().plusMinutes(Math.floorMod(minuto, MINUTOS_DIA));
+    }
+}
@@ -0,0 +1,219 @@
+package GestorReservarAula.services;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import GestorReservarAula.models.Reserva;
+import GestorReservarAula.util.TipoAula;
+import GestorReservarAula.util.EstadoReserva;
+
+/*Consulta componible sobre las reservas. Se obtiene con GestorReservas.consultar().
+Ejemplo: gestor.consultar().enAula("L101").entreFechas(d1, d2).deTipo(ReservaPractica.class).limite(10).lista()
+
+Un planificador elige como origen el indice mas selectivo disponible (linea de tiempo del aula,
+indice por fecha, indice de texto del responsable o mapa de bits por estado) y aplica el resto de filtros en un Stream perezoso.*/
+public class ConsultaReservas {
+    private final GestorReservas gestor;
+
+    private String codigoAula;
+    private TipoAula tipoAula;
+    private LocalDate desde;
+    private LocalDate hasta;
+    private LocalTime franjaInicio;
+    private LocalTime franjaFin;
+    private EstadoReserva estado;
+    private Class<? extends Reserva> tipoReserva;
+    private String textoResponsable;
+    private Integer capacidadMinima;
+    private Integer capacidadMaxima;
+    private String campoOrden;
+    private boolean ascendente = true;
+    private long limite = Long.MAX_VALUE;
+
+    //Origen elegido por el planificador
+    private enum Origen { LINEA_AULA, INDICE_FECHA, INDICE_TEXTO, BITS_ESTADO, RECORRIDO_COMPLETO }
+
+    ConsultaReservas(GestorReservas gestor) {
+        this.gestor = gestor;
+    }
+
+    //====================== Predicados ======================
+
+    public ConsultaReservas enAula(String codigoAula) {
+        this.codigoAula = codigoAula.toUpperCase();
+        return this;
+    }
+
+    public ConsultaReservas deTipoAula(TipoAula tipoAula) {
+        this.tipoAula = tipoAula;
+        return this;
+    }
+
+    //Rango de fechas inclusivo; cualquiera de los extremos puede ser null
+    public ConsultaReservas entreFechas(LocalDate desde, LocalDate hasta) {
+        this.desde = desde;
+        this.hasta = hasta;
+        return this;
+    }
+
+    //Reservas que se solapan con la franja horaria indicada
+    public ConsultaReservas enFranja(LocalTime inicio, LocalTime fin) {
+        this.franjaInicio = inicio;
+        this.franjaFin = fin;
+        return this;
+    }
+
+    public ConsultaReservas conEstado(EstadoReserva estado) {
+        this.estado = estado;
+        return this;
+    }
+
+    public ConsultaReservas deTipo(Class<? extends Reserva> tipoReserva) {
+        this.tipoReserva = tipoReserva;
+        return this;
+    }
+
+    //Subcadena del responsable, sin distinguir mayusculas
+    public ConsultaReservas responsableContiene(String texto) {
+        this.textoResponsable = texto.toLowerCase();
+        return this;
+    }
+
+    public ConsultaReservas capacidadMinima(int capacidad) {
+        this.capacidadMinima = capacidad;
+        return this;
+    }
+
+    public ConsultaReservas capacidadMaxima(int capacidad) {
+        this.capacidadMaxima = capacidad;
+        return this;
+    }
+
+    //Campos: id, fecha, aula, responsable (igual que listarReservas)
+    public ConsultaReservas ordenarPor(String campo, boolean ascendente) {
+        this.campoOrden = campo.toLowerCase();
+        this.ascendente = ascendente;
+        return this;
+    }
+
+    public ConsultaReservas limite(long limite) {
+        this.limite = limite;
+        return this;
+    }
+
+    //====================== Ejecucion ======================
+
+    //Entrega los resultados uno a uno bajo el cerrojo de lectura, sin construir listas intermedias
+    public void forEach(Consumer<Reserva> consumidor) {
+        gestor.conLectura(() -> {
+            flujo().forEach(consumidor);
+            return null;
+        });
+    }
+
+    //Resultados como lista (a lo sumo 'limite' elementos)
+    public List<Reserva> lista() {
+        return gestor.conLectura(() -> flujo().collect(Collectors.toList()));
+    }
+
+    public long contar() {
+        return gestor.conLectura(() -> flujo().count());
+    }
+
+    //Describe el plan elegido, util para depurar consultas lentas
+    public String explicar() {
+        return gestor.conLectura(() -> {
+            Origen origen = planificar();
+            return String.format("Origen: %s (estimadas %d de %d), orden %s", origen, estimar(origen),
+                gestor.todas().size(), campoOrden == null ? "natural" : (ordenNatural() ? campoOrden + " (natural)" : campoOrden + " (ordenamiento)"));
+        });
+    }
+
+    //Construye el Stream perezoso: origen del indice elegido + filtros + orden + limite. Requiere el cerrojo de lectura.
+    private Stream<Reserva> flujo() {
+        Stream<Reserva> stream = origen(planificar()).filter(predicado());
+        if (campoOrden != null && !ordenNatural()) {
+            stream = stream.sorted(GestorReservas.comparador(campoOrden, ascendente));
+        }
+        return stream.limit(limite);
+    }
+
+    //Elige el origen con menos candidatas estimadas
+    private Origen planificar() {
+        Origen mejor = Origen.RECORRIDO_COMPLETO;
+        int menor = estimar(mejor);
+        for (Origen o : new Origen[]{Origen.LINEA_AULA, Origen.INDICE_FECHA, Origen.INDICE_TEXTO, Origen.BITS_ESTADO}) {
+            int estimacion = estimar(o);
+            if (estimacion >= 0 && estimacion < menor) {
+                mejor = o;
+                menor = estimacion;
+            }
+        }
+        return mejor;
+    }
+
+    //Cantidad de candidatas que produciria un origen, o -1 si no aplica a esta consulta
+    private int estimar(Origen origen) {
+        IndiceReservas indice = gestor.indice();
+        switch (origen) {
+            case LINEA_AULA:
+                return codigoAula == null ? -1 : IndiceReservas.contar(indice.lineaDeTiempo(codigoAula, desde, hasta));
+            case INDICE_FECHA:
+                return desde == null && hasta == null ? -1 : IndiceReservas.contar(indice.porFechas(desde, hasta));
+            case INDICE_TEXTO:
+                if (textoResponsable == null) return -1;
+                Set<Reserva> candidatas = indice.candidatasPorTexto(textoResponsable);
+                return candidatas == null ? -1 : candidatas.size();
+            case BITS_ESTADO:
+                return estado == null ? -1 : gestor.estados().contar(estado);
+            default:
+                return gestor.todas().size();
+        }
+    }
+
+    private Stream<Reserva> origen(Origen origen) {
+        IndiceReservas indice = gestor.indice();
+        switch (origen) {
+            case LINEA_AULA:
+                return IndiceReservas.aplanar(indice.lineaDeTiempo(codigoAula, desde, hasta));
+            case INDICE_FECHA:
+                return IndiceReservas.aplanar(indice.porFechas(desde, hasta));
+            case INDICE_TEXTO:
+                return indice.candidatasPorTexto(textoResponsable).stream();
+            case BITS_ESTADO:
+                return gestor.estados().enEstado(estado);
+            default:
+                return gestor.todas().stream();
+        }
+    }
+
+    //Los origenes por aula y por fecha ya entregan en orden ascendente de fecha y hora
+    private boolean ordenNatural() {
+        if (!"fecha".equals(campoOrden) || !ascendente) return false;
+        Origen origen = planificar();
+        return origen == Origen.LINEA_AULA || origen == Origen.INDICE_FECHA;
+    }
+
+    //Combina todos los predicados; se reaplican tambien los del indice elegido
+    private Predicate<Reserva> predicado() {
+        List<Predicate<Reserva>> filtros = new ArrayList<>();
+        if (codigoAula != null) filtros.add(r -> r.getAula().getCodigo().equals(codigoAula));
+        if (tipoAula != null) filtros.add(r -> r.getAula().getTipo() == tipoAula);
+        if (desde != null) filtros.add(r -> !r.getFecha().isBefore(desde));
+        if (hasta != null) filtros.add(r -> !r.getFecha().isAfter(hasta));
+        if (franjaInicio != null && franjaFin != null) {
+            filtros.add(r -> r.getHoraInicio().isBefore(franjaFin) && r.getHoraFin().isAfter(franjaInicio));
+        }
+        if (estado != null) filtros.add(r -> r.getEstado() == estado);
+        if (tipoReserva != null) filtros.add(tipoReserva::isInstance);
+        if (textoResponsable != null) filtros.add(r -> r.getResponsable().toLowerCase().contains(textoResponsable));
+        if (capacidadMinima != null) filtros.add(r -> r.getAula().getCapacidad() >= capacidadMinima);
+        if (capacidadMaxima != null) filtros.add(r -> r.getAula().getCapacidad() <= capacidadMaxima);
+        return filtros.stream().reduce(r -> true, Predicate::and);
+    }
+}
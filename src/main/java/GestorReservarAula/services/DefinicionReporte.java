@@ -0,0 +1,71 @@
+package GestorReservarAula.services;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.*;
+
+import GestorReservarAula.models.Reserva;
+
+/*Definicion de un reporte para el motor de reportes: como crear su acumulador, como agregar una reserva,
+como combinar dos acumuladores parciales (hilos o fragmentos) y como formatear el resultado.
+Un reporte nuevo se agrega como una definicion mas, sin escribir otra canalizacion de Streams.*/
+public final class DefinicionReporte<A> {
+    private final String titulo;
+    private final String archivo;
+    private final Supplier<A> crear;
+    private final BiConsumer<A, Reserva> acumular;
+    private final BinaryOperator<A> combinar;
+    private final Function<A, String> formatear;
+
+    public DefinicionReporte(String titulo, String archivo, Supplier<A> crear, BiConsumer<A, Reserva> acumular,
+                             BinaryOperator<A> combinar, Function<A, String> formatear) {
+        this.titulo = titulo;
+        this.archivo = archivo;
+        this.crear = crear;
+        this.acumular = acumular;
+        this.combinar = combinar;
+        this.formatear = formatear;
+    }
+
+    //Reporte que suma un valor por clave sobre las reservas que cumplen el filtro (el caso mas comun)
+    public static <K> DefinicionReporte<Map<K, Long>> sumaPor(String titulo, String archivo, Predicate<Reserva> filtro,
+                                                             Function<Reserva, K> clave, ToLongFunction<Reserva> valor,
+                                                             Function<Map<K, Long>, String> formatear) {
+        return new DefinicionReporte<>(titulo, archivo, HashMap::new,
+            (mapa, r) -> {
+                if (filtro.test(r)) mapa.merge(clave.apply(r), valor.applyAsLong(r), Long::sum);
+            },
+            (a, b) -> {
+                b.forEach((k, v) -> a.merge(k, v, Long::sum));
+                return a;
+            },
+            formatear);
+    }
+
+    public String getTitulo() {
+        return titulo;
+    }
+    public String getArchivo() {
+        return archivo;
+    }
+
+    //Operaciones sobre acumuladores sin tipo, para que el motor maneje varias definiciones a la vez
+    Object nuevoAcumulador() {
+        return crear.get();
+    }
+
+    @SuppressWarnings("unchecked")
+    void acumular(Object acumulador, Reserva r) {
+        acumular.accept((A) acumulador, r);
+    }
+
+    @SuppressWarnings("unchecked")
+    Object combinar(Object a, Object b) {
+        return combinar.apply((A) a, (A) b);
+    }
+
+    @SuppressWarnings("unchecked")
+    String formatear(Object acumulador) {
+        return formatear.apply((A) acumulador);
+    }
+}
@@ -0,0 +1,59 @@
+package GestorReservarAula.services;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicLong;
+
+import GestorReservarAula.interfaces.GeneradorIds;
+
+/*IDs de 64 bits ordenados por tiempo, unicos entre procesos sin coordinarse: cada proceso usa un nodo distinto.
+Formato (63 bits, siempre positivo): 41 bits de milisegundos desde 2025-01-01 (alcanza ~69 anios),
+10 bits de nodo (0-1023) y 12 bits de secuencia dentro del milisegundo (4096 IDs por ms y nodo).
+Se emiten sin cerrojos: un solo compareAndSet sobre (milisegundo, secuencia). Si la secuencia se agota o el reloj
+retrocede, se sigue desde el ultimo valor emitido (adelantando el milisegundo) en lugar de esperar o repetir.
+Al reiniciar, la unicidad depende de que el reloj no haya retrocedido mas de lo que el proceso anterior se adelanto.*/
+public class GeneradorIdTemporal implements GeneradorIds {
+    public static final int NODO_MAXIMO = 1023;
+    private static final long EPOCA = Instant.parse("2025-01-01T00:00:00Z").toEpochMilli();
+    private static final int BITS_SECUENCIA = 12;
+    private static final int BITS_NODO = 10;
+    private static final long MASCARA_SECUENCIA = (1L << BITS_SECUENCIA) - 1;
+
+    private final long nodo;
+    private final Clock reloj;
+    private final AtomicLong ultimo = new AtomicLong(); //(milisegundo << BITS_SECUENCIA) | secuencia
+
+    public GeneradorIdTemporal(int nodo) {
+        this(nodo, Clock.systemUTC());
+    }
+
+    public GeneradorIdTemporal(int nodo, Clock reloj) {
+        if (nodo < 0 || nodo > NODO_MAXIMO) {
+            throw new IllegalArgumentException("El nodo debe estar entre 0 y " + NODO_MAXIMO + ": " + nodo);
+        }
+        this.nodo = nodo;
+        this.reloj = reloj;
+    }
+
+    @Override
+    public long siguiente() {
+        while (true) {
+            long anterior = ultimo.get();
+            long ahora = (reloj.millis() - EPOCA) << BITS_SECUENCIA;
+            long nuevo = ahora > anterior ? ahora : anterior + 1; //El desborde de la secuencia pasa al milisegundo siguiente
+            if (ultimo.compareAndSet(anterior, nuevo)) {
+                return (nuevo >>> BITS_SECUENCIA) << (BITS_NODO + BITS_SECUENCIA) | nodo << BITS_SECUENCIA | (nuevo & MASCARA_SECUENCIA);
+            }
+        }
+    }
+
+    //Instante en que se emitio un ID de este generador
+    public static Instant instanteDe(long id) {
+        return Instant.ofEpochMilli((id >>> (BITS_NODO + BITS_SECUENCIA)) + EPOCA);
+    }
+
+    //Nodo que emitio un ID de este generador
+    public static int nodoDe(long id) {
+        return (int) ((id >>> BITS_SECUENCIA) & NODO_MAXIMO);
+    }
+}
@@ -1,53 +1,199 @@
 package GestorReservarAula.services;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.time.LocalDate;
 import java.time.LocalTime;
 import java.time.temporal.ChronoUnit;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import static java.util.stream.Collectors.*;
 
 import GestorReservarAula.models.*;
 import GestorReservarAula.util.TipoAula;
 import GestorReservarAula.util.TipoEvento;
+import GestorReservarAula.util.EstadoReserva;
+import GestorReservarAula.util.FormatoExportacion;
+import GestorReservarAula.util.PoliticaCambioAula;
+import GestorReservarAula.util.TipoAlternativa;
+import GestorReservarAula.util.Fase;
+import GestorReservarAula.util.TipoReporte;
+import GestorReservarAula.util.CodigoValidacion;
+import GestorReservarAula.util.RegistroFases;
 import GestorReservarAula.exceptions.ConflictoDeHorarioException;
+import GestorReservarAula.exceptions.NoEncontradoException;
 import GestorReservarAula.exceptions.ValidacionDeReservaException;
+import GestorReservarAula.persistence.ArchivoObservado;
+import GestorReservarAula.persistence.ExportadorReservas;
 import GestorReservarAula.persistence.GestorArchivos;
+import GestorReservarAula.persistence.ModoPersistencia;
+import GestorReservarAula.interfaces.GeneradorIds;
+import GestorReservarAula.interfaces.ServicioReservas;
 
-//Clase principal de lógica. Usa Streams y ArrayList.
-public class GestorReservas {
+/*Clase principal de lógica. Usa Streams y ArrayList.
+Es segura para varios hilos: las consultas comparten un cerrojo de lectura y las modificaciones usan el de escritura.*/
+public class GestorReservas implements ServicioReservas {
+    static final long MINUTOS_JORNADA = 14 * 60; //07:00 a 21:00, base del porcentaje de utilizacion
+    private static final int INICIO_JORNADA = 7 * 60; //En minutos del dia
+    private static final int FIN_JORNADA = INICIO_JORNADA + (int) MINUTOS_JORNADA;
+    //Cotas de la busqueda de alternativas ante un conflicto
+    private static final int MAX_ALTERNATIVAS_MISMA_AULA = 2;
+    private static final int MAX_ALTERNATIVAS_OTRA_AULA = 3;
+    private static final int MAX_ALTERNATIVAS_OTRO_DIA = 2;
+    private static final int DIAS_CERCANOS = 3;
+    private static final int MAX_CANDIDATAS_EQUIVALENTES = 32; //Aulas que se revisan como mucho al buscar una equivalente
+    //Lecturas seguidas de un archivo que cambia mientras se lee, y escrituras que chocan con una edicion externa
+    private static final int INTENTOS_EDICION_EXTERNA = 3;
     private final List<Aula> aulas;
     private final List<Reserva> reservas;
-    private int nextReservaId = 1;
+    private final ReentrantReadWriteLock cerrojo = new ReentrantReadWriteLock();
+    private final ModoPersistencia modo;
+    private final String archivoAulas;
+    private final String archivoReservas;
+    private final String archivoHistorico; //Reservas de periodos cerrados (ver ArchivoHistorico)
+    private final String archivoIdempotencia; //Claves de idempotencia vigentes (ver CacheIdempotencia)
+    private final String archivoCompletadas; //Reservas completadas aun no archivadas (ver ReservasCompletadas)
+    private final IndiceReservas indice = new IndiceReservas();
+    private IndiceEstados estados; //Se reconstruye al archivar, porque cambian los ordinales
+    private final ListaEspera listaEspera = new ListaEspera();
+    private final IndiceOcupacion ocupacion = new IndiceOcupacion();
+    private final ColaVencimientos vencimientos = new ColaVencimientos();
+    private final IndiceHistorico historico = new IndiceHistorico(); //Filtros e indices de los segmentos archivados
+    private final IndiceEspacial espacial = new IndiceEspacial();
+    private final IndiceCapacidad capacidades = new IndiceCapacidad(); //Aulas por tipo y capacidad
+    private final ReservasCompletadas completadas = new ReservasCompletadas(); //Fuera de la lista y de los indices
+    private volatile BarridoCicloVida barrido; //Solo si se inicio el barrido del ciclo de vida
+    private RecargadorArchivos recarga; //Solo si se inicio la recarga en caliente; protegido por el monitor del gestor
+    private final ArchivoObservado observadoAulas; //Version conocida de los archivos, para no pisar ediciones externas
+    private final ArchivoObservado observadoReservas;
+    private final CacheIdempotencia idempotencia = new CacheIdempotencia();
+    private volatile GeneradorIds generadorIds; //null = SecuenciaLocal, creada con el primer ID que se emite
+    private final Object cerrojoGenerador = new Object();
+    private boolean enLote = false; //En modo lote no se guarda tras cada operacion
+    private boolean aulasSucias = false; //Archivos con cambios sin escribir
+    private boolean reservasSucias = false;
+    private boolean idempotenciaSucia = false;
+    private boolean completadasSucias = false;
+    private long secuenciaCambios = 0; //Cambios registrados, para confirmarPersistencia
+    private long secuenciaEnDisco = 0; //Protegida por 'esperas'
+    private final TreeMap<Long, CompletableFuture<Void>> esperas = new TreeMap<>();
+    private final Object cerrojoVolcado = new Object(); //Un solo volcado diferido a la vez
+    private PersistidorDiferido persistidor; //Solo en modo DIFERIDA
+    //Secuencia de cambios para exportaciones condicionales. Parte del reloj para seguir creciendo tras reiniciar.
+    private final long versionInicial = System.currentTimeMillis();
+    private long version = versionInicial;
+    private final Map<String, Long> versionPorAula = new HashMap<>();
 
     //Constructor que inicia el sistema y carga los datos.
     public GestorReservas() throws ValidacionDeReservaException {
-        //Cargar datos
-        this.aulas = GestorArchivos.cargarAulas();
-        this.reservas = GestorArchivos.cargarReservas(this.aulas);
-        
-        //Inicializar ID consecutivo
-        this.nextReservaId = initializeNextReservaId();
+        this(GestorArchivos.Aulas_File, GestorArchivos.Reservas_File, ModoPersistencia.ARCHIVO);
+    }
+
+    //Constructor en memoria, sin datos iniciales ni acceso a disco (simulaciones y pruebas de carga).
+    public GestorReservas(ModoPersistencia modo) throws ValidacionDeReservaException {
+        this(null, null, modo);
+    }
+
+    /*Constructor con archivos propios. Si los archivos son null se inicia vacio.
+    En modo MEMORIA los datos se cargan pero nunca se escriben.*/
+    public GestorReservas(String archivoAulas, String archivoReservas, ModoPersistencia modo) throws ValidacionDeReservaException {
+        if (modo != ModoPersistencia.MEMORIA && (archivoAulas == null || archivoReservas == null)) {
+            throw new ValidacionDeReservaException("El modo " + modo + " requiere los archivos de aulas y reservas.");
+        }
+        this.modo = modo;
+        this.archivoAulas = archivoAulas;
+        this.archivoReservas = archivoReservas;
+        this.archivoHistorico = archivoReservas == null ? null : archivoReservas.replaceFirst("(\\.txt)?$", "_historico.dat");
+        this.archivoIdempotencia = archivoReservas == null ? null : archivoReservas.replaceFirst("(\\.txt)?$", "_idempotencia.txt");
+        this.archivoCompletadas = archivoReservas == null ? null : archivoReservas.replaceFirst("(\\.txt)?$", "_completadas.txt");
+
+        //Cargar datos. Los archivos se siguen desde antes de leerlos: la carga fija su version conocida.
+        this.observadoAulas = archivoAulas != null ? ArchivoObservado.observar(archivoAulas, 0) : null;
+        this.observadoReservas = archivoReservas != null ? ArchivoObservado.observar(archivoReservas, 1) : null;
+        this.aulas = archivoAulas != null ? GestorArchivos.cargarAulas(archivoAulas) : new ArrayList<>();
+        if (archivoCompletadas != null && new File(archivoCompletadas).exists()) {
+            GestorArchivos.cargarReservas(this.aulas, archivoCompletadas).forEach(completadas::agregar);
+        }
+        this.reservas = archivoReservas != null ? cargarVigentes(GestorArchivos.cargarReservas(this.aulas, archivoReservas)) : new ArrayList<>();
+        this.aulas.forEach(espacial::agregar);
+        this.aulas.forEach(capacidades::agregar);
+        this.reservas.forEach(indice::agregar);
+        this.reservas.forEach(ocupacion::agregar);
+        this.completadas.listar().forEach(ocupacion::agregar); //Las completadas siguen contando en los minutos reservados
+        this.vencimientos.reconstruir(this.reservas);
+        this.estados = new IndiceEstados(this.reservas);
+        if (archivoHistorico != null) GestorArchivos.segmentosHistorico(archivoHistorico).forEach(historico::agregar);
+        if (archivoIdempotencia != null) idempotencia.cargar(GestorArchivos.cargarLineas(archivoIdempotencia, "claves de idempotencia"));
         
-        //Guardar datos al inicio (para crear archivos si no existen)
-        this.guardarDatos();
+        /*Crear los archivos que no existen. Los existentes no se reescriben al iniciar: si la carga descarto filas
+        (quedan en <archivo>.danado) el archivo se conserva tal cual hasta el primer cambio.*/
+        this.crearArchivosFaltantes();
+        if (modo == ModoPersistencia.DIFERIDA) this.persistidor = new PersistidorDiferido(this);
     }
 
-    //Inicializa el ID consecutivo. Usa Streams.
-    private int initializeNextReservaId() {
-        return reservas.stream()
-            .map(r -> {
-                try {
-                    //Intenta parsear el número después de 'R'
-                    return Integer.parseInt(r.getIdReserva().substring(1));
-                } catch (NumberFormatException e) {
-                    //Ignora IDs malformados, usa 0 para no afectar el max
-                    return 0; 
-                }
-            })
-            .max(Integer::compare)
-            .map(maxId -> maxId + 1)
-            .orElse(1);
+    /*Separa las reservas de reservas.txt: las completadas (de antes de que existiera el almacen de completadas, o que
+    quedaron si se corto la escritura entre los dos archivos) pasan a 'completadas', y se escriben con el proximo guardado.*/
+    private List<Reserva> cargarVigentes(List<Reserva> cargadas) {
+        List<Reserva> vigentes = new ArrayList<>(cargadas.size());
+        for (Reserva r : cargadas) {
+            Reserva completada = completadas.porId(r.getIdReserva());
+            if (completada != null) continue; //Completar no tiene vuelta atras: manda el almacen de completadas
+            if (r.getEstado() == EstadoReserva.COMPLETADA) {
+                completadas.agregar(r);
+                completadasSucias = true;
+            } else {
+                vigentes.add(r);
+            }
+        }
+        return vigentes;
+    }
+
+    //Siguiente numero de ID segun los datos cargados. Usa Streams. Tambien considera los IDs completados y archivados para no reutilizarlos.
+    @Override
+    public long siguienteIdLocal() {
+        cerrojo.readLock().lock();
+        try {
+            long maximoActivo = reservas.stream()
+                .mapToLong(r -> {
+                    try {
+                        //Intenta parsear el número después de 'R'
+                        return Long.parseLong(r.getIdReserva().substring(1));
+                    } catch (NumberFormatException e) {
+                        //Ignora IDs malformados, usa 0 para no afectar el max
+                        return 0;
+                    }
+                })
+                .max()
+                .orElse(0);
+            return Math.max(Math.max(maximoActivo, completadas.idMaximo()), historico.idMaximo()) + 1;
+        } finally {
+            cerrojo.readLock().unlock();
+        }
+    }
+
+    /*Genera el siguiente ID de reserva (R<n>). Se llama con algun cerrojo tomado: los registros deciden bajo el de lectura,
+    asi que la secuencia por defecto se crea una sola vez aunque varios hilos pidan el primer ID a la vez.
+    Sin generador configurado, el recorrido de los datos para hallar el mayor ID se hace aqui y no al iniciar.*/
+    private String nuevoId() {
+        GeneradorIds generador = generadorIds;
+        if (generador == null) {
+            synchronized (cerrojoGenerador) {
+                if (generadorIds == null) generadorIds = new SecuenciaLocal(siguienteIdLocal());
+                generador = generadorIds;
+            }
+        }
+        return "R" + generador.siguiente();
+    }
+
+    @Override
+    public void usarGeneradorIds(GeneradorIds generador) {
+        this.generadorIds = generador;
     }
 
     //Método para obtener un Aula por su código. Usa Optional.
@@ -58,124 +204,829 @@ public class GestorReservas {
     //====================== Gestión de Aulas ======================
 
     //Método para registrar una nueva aula
+    @Override
     public void registrarAula(String codigo, String nombre, int capacidad, TipoAula tipo) throws ValidacionDeReservaException {
-        if (getAulaByCodigo(codigo).isPresent()) {
-            throw new ValidacionDeReservaException("Ya existe un aula con el código: " + codigo);
-        }
-        if (capacidad <= 0) {
-             throw new ValidacionDeReservaException("La capacidad debe ser un valor positivo.");
+        registrarAula(codigo, nombre, capacidad, tipo, null);
+    }
+
+    //Registro con ubicacion (edificio, piso, coordenadas); null = sin ubicacion
+    @Override
+    public void registrarAula(String codigo, String nombre, int capacidad, TipoAula tipo, Ubicacion ubicacion) throws ValidacionDeReservaException {
+        cerrojo.writeLock().lock();
+        try {
+            if (getAulaByCodigo(codigo).isPresent()) {
+                throw new ValidacionDeReservaException("Ya existe un aula con el código: " + codigo);
+            }
+            if (capacidad <= 0) {
+                 throw new ValidacionDeReservaException("La capacidad debe ser un valor positivo.");
+            }
+            Aula aula = new Aula(codigo.toUpperCase(), nombre, capacidad, tipo);
+            aula.setUbicacion(ubicacion);
+            aulas.add(aula);
+            espacial.agregar(aula);
+            capacidades.agregar(aula);
+            marcarCambio(codigo.toUpperCase());
+            persistirAulas();
+        } finally {
+            cerrojo.writeLock().unlock();
         }
-        aulas.add(new Aula(codigo.toUpperCase(), nombre, capacidad, tipo));
-        guardarDatos();
     }
 
     //Método implementado para listar aulas
+    @Override
     public Collection<Aula> listarAulas() {
-        return this.aulas;
+        cerrojo.readLock().lock();
+        try {
+            return new ArrayList<>(this.aulas); //Copia para iterar fuera del cerrojo
+        } finally {
+            cerrojo.readLock().unlock();
+        }
     }
 
-    //Método implementado para modificar aulas
+    //Método implementado para modificar aulas. Rechaza el cambio si invalida reservas futuras.
+    @Override
     public void modificarAula(String codigo, String nuevoNombre, int nuevaCapacidad, TipoAula nuevoTipo) throws ValidacionDeReservaException {
-        Aula aula = getAulaByCodigo(codigo)
-            .orElseThrow(() -> new ValidacionDeReservaException("Aula no encontrada para modificar: " + codigo));
-
-        if (nuevaCapacidad <= 0) {
-            throw new ValidacionDeReservaException("La capacidad debe ser un valor positivo.");
+        ImpactoCambioAula impacto = modificarAula(codigo, nuevoNombre, nuevaCapacidad, nuevoTipo, PoliticaCambioAula.RECHAZAR);
+        if (!impacto.isAplicado()) {
+            throw new ValidacionDeReservaException(impacto.resumen());
         }
+    }
+
+    /*Modifica un aula revalidando sus reservas activas futuras, tomadas de la linea de tiempo del aula en el indice
+    (no se recorren las demas reservas). La politica decide que hacer con las que dejan de ser validas.
+    Devuelve el reporte de impacto; con RECHAZAR y reservas invalidas el aula queda sin cambios.*/
+    @Override
+    public ImpactoCambioAula modificarAula(String codigo, String nuevoNombre, int nuevaCapacidad, TipoAula nuevoTipo,
+                                           PoliticaCambioAula politica) throws ValidacionDeReservaException {
+        cerrojo.writeLock().lock();
+        try {
+            Aula aula = getAulaByCodigo(codigo)
+                .orElseThrow(() -> new NoEncontradoException("Aula no encontrada para modificar: " + codigo));
+
+            if (nuevaCapacidad <= 0) {
+                throw new ValidacionDeReservaException("La capacidad debe ser un valor positivo.");
+            }
+            String nombreAnterior = aula.getNombre();
+            int capacidadAnterior = aula.getCapacidad();
+            TipoAula tipoAnterior = aula.getTipo();
         
-        //Aplicar los cambios
-        aula.setNombre(nuevoNombre);
-        aula.setCapacidad(nuevaCapacidad);
-        aula.setTipo(nuevoTipo);
-        guardarDatos();
+            //Aplicar los cambios (las reglas de cada reserva leen los datos del aula)
+            capacidades.remover(aula);
+            aula.setNombre(nuevoNombre);
+            aula.setCapacidad(nuevaCapacidad);
+            aula.setTipo(nuevoTipo);
+
+            ImpactoCambioAula impacto = new ImpactoCambioAula(aula.getCodigo(), politica);
+            List<Reserva> futuras = IndiceReservas.aplanar(indice.lineaDeTiempo(aula.getCodigo(), LocalDate.now(), null))
+                .filter(r -> r.getEstado() == EstadoReserva.ACTIVA)
+                .collect(Collectors.toList()); //Copia: reubicar modifica la linea de tiempo
+            for (Reserva r : futuras) {
+                impacto.agregarRevisada();
+                CodigoValidacion resultado = r.validarReglas();
+                if (resultado != CodigoValidacion.OK) impacto.agregarInvalida(r, resultado.mensaje(r));
+            }
+
+            if (!impacto.getInvalidas().isEmpty() && politica == PoliticaCambioAula.RECHAZAR) {
+                aula.setNombre(nombreAnterior);
+                aula.setCapacidad(capacidadAnterior);
+                aula.setTipo(tipoAnterior);
+                capacidades.agregar(aula);
+                impacto.rechazar();
+                return impacto;
+            }
+            capacidades.agregar(aula);
+            ocupacion.cambiarTipo(aula.getCodigo(), tipoAnterior, nuevoTipo);
+
+            if (!impacto.getInvalidas().isEmpty()) {
+                for (Map.Entry<Reserva, String> invalida : impacto.getInvalidas().entrySet()) {
+                    Reserva r = invalida.getKey();
+                    Optional<Aula> destino = politica == PoliticaCambioAula.REUBICAR ? buscarAulaEquivalente(r) : Optional.empty();
+                    if (destino.isPresent()) {
+                        indice.remover(r);
+                        ocupacion.remover(r);
+                        r.setAula(destino.get());
+                        indice.agregar(r);
+                        ocupacion.agregar(r);
+                        marcarCambio(destino.get().getCodigo());
+                        impacto.agregarReubicada(r, aula.getCodigo());
+                    } else {
+                        r.setAlerta("Aula " + aula.getCodigo() + " modificada: " + invalida.getValue());
+                        impacto.agregarMarcada(r);
+                    }
+                }
+                persistirReservas();
+            }
+            marcarCambio(aula.getCodigo());
+            persistirAulas();
+            return impacto;
+        } finally {
+            cerrojo.writeLock().unlock();
+        }
+    }
+
+    /*Aula libre donde la reserva cumple sus reglas en la misma fecha y horario.
+    Se prefiere la de menor capacidad suficiente, para no ocupar aulas grandes sin necesidad.*/
+    private Optional<Aula> buscarAulaEquivalente(Reserva reserva) {
+        return buscarAulasEquivalentes(reserva, false, 1).stream().findFirst();
+    }
+
+    /*Hasta 'limite' aulas libres equivalentes, de menor a mayor capacidad. mismoTipo exige el TipoAula del aula actual.
+    Solo se recorren los tipos que admite la reserva, desde la capacidad que necesita (ver IndiceCapacidad),
+    y como mucho MAX_CANDIDATAS_EQUIVALENTES aulas.*/
+    private List<Aula> buscarAulasEquivalentes(Reserva reserva, boolean mismoTipo, int limite) {
+        Aula original = reserva.getAula();
+        EnumSet<TipoAula> tipos = ReglasReserva.aulasAdmitidas(reserva.getUso());
+        if (mismoTipo) tipos.retainAll(EnumSet.of(original.getTipo()));
+        List<Aula> encontradas = new ArrayList<>();
+        capacidades.recorrer(tipos, ReglasReserva.capacidadMinima(reserva.getUso(), reserva.getCantidadRequerida()), MAX_CANDIDATAS_EQUIVALENTES,
+            candidata -> {
+                //Tipo y capacidad ya cumplen por construccion (la tabla queda como resguardo barato); falta la linea de tiempo
+                if (candidata != original && reserva.validarReglasEn(candidata) == CodigoValidacion.OK
+                        && !ocupada(candidata.getCodigo(), reserva.getFecha(), reserva.getHoraInicio(), reserva.getHoraFin(), reserva.getIdReserva())) {
+                    encontradas.add(candidata);
+                }
+                return encontradas.size() < limite;
+            });
+        return encontradas;
+    }
+
+    //====================== Ubicacion de Aulas ======================
+
+    //Asigna o cambia la ubicacion de un aula (null la quita)
+    @Override
+    public void ubicarAula(String codigo, Ubicacion ubicacion) throws ValidacionDeReservaException {
+        cerrojo.writeLock().lock();
+        try {
+            Aula aula = getAulaByCodigo(codigo).orElseThrow(() -> new NoEncontradoException("Aula no encontrada: " + codigo));
+            espacial.remover(aula);
+            aula.setUbicacion(ubicacion);
+            espacial.agregar(aula);
+            marcarCambio(aula.getCodigo());
+            persistirAulas();
+        } finally {
+            cerrojo.writeLock().unlock();
+        }
+    }
+
+    /*Las k aulas libres mas cercanas a una referencia: el codigo de un aula con ubicacion o el nombre de un edificio
+    (se toma el centro de sus aulas, en el piso mas bajo). Filtra por tipo (null = cualquiera) y capacidad minima.*/
+    @Override
+    public List<AulaCercana> buscarAulasLibresCercanas(String referencia, LocalDate fecha, LocalTime hInicio, LocalTime hFin,
+                                                       TipoAula tipo, int capacidadMinima, int k) throws ValidacionDeReservaException {
+        return buscarAulasLibresCercanas(ubicacionDeReferencia(referencia, listarAulas()), fecha, hInicio, hFin, tipo, capacidadMinima, k);
+    }
+
+    @Override
+    public List<AulaCercana> buscarAulasLibresCercanas(Ubicacion origen, LocalDate fecha, LocalTime hInicio, LocalTime hFin,
+                                                       TipoAula tipo, int capacidadMinima, int k) throws ValidacionDeReservaException {
+        validarBusquedaCercana(fecha, hInicio, hFin, k);
+        return aulasLibresCercanas(origen, fecha, hInicio, hFin, tipo, capacidadMinima, k);
+    }
+
+    //Busqueda ya validada, bajo el cerrojo de lectura. La ocupacion solo se revisa en las aulas que el indice no descarto.
+    List<AulaCercana> aulasLibresCercanas(Ubicacion origen, LocalDate fecha, LocalTime hInicio, LocalTime hFin,
+                                          TipoAula tipo, int capacidadMinima, int k) {
+        cerrojo.readLock().lock();
+        try {
+            return espacial.cercanas(origen, k, a -> (tipo == null || a.getTipo() == tipo) && a.getCapacidad() >= capacidadMinima
+                && !ocupada(a.getCodigo(), fecha, hInicio, hFin, ""));
+        } finally {
+            cerrojo.readLock().unlock();
+        }
+    }
+
+    static void validarBusquedaCercana(LocalDate fecha, LocalTime hInicio, LocalTime hFin, int k) throws ValidacionDeReservaException {
+        if (k <= 0) throw new ValidacionDeReservaException("La cantidad de aulas a buscar debe ser positiva.");
+        CodigoValidacion horario = ReglasReserva.validarHorario(fecha, hInicio, hFin, LocalDate.now());
+        if (horario != CodigoValidacion.OK) throw new ValidacionDeReservaException(horario, null);
+    }
+
+    //Ubicacion de un aula o centro de un edificio, entre las aulas dadas
+    static Ubicacion ubicacionDeReferencia(String referencia, Collection<Aula> aulas) throws ValidacionDeReservaException {
+        double x = 0, y = 0;
+        int piso = Integer.MAX_VALUE, cantidad = 0;
+        for (Aula a : aulas) {
+            Ubicacion u = a.getUbicacion();
+            if (a.getCodigo().equalsIgnoreCase(referencia)) {
+                if (u == null) throw new ValidacionDeReservaException("El aula " + a.getCodigo() + " no tiene ubicacion.");
+                return u;
+            }
+            if (u != null && u.getEdificio().equalsIgnoreCase(referencia)) {
+                x += u.getX();
+                y += u.getY();
+                piso = Math.min(piso, u.getPiso());
+                cantidad++;
+            }
+        }
+        if (cantidad == 0) throw new NoEncontradoException("Aula o edificio no encontrado: " + referencia);
+        return new Ubicacion(referencia, piso, x / cantidad, y / cantidad);
     }
 
     //========================== Lógica de Validación de Conflicto =======================
 
     //Valida si la nueva reserva entra en conflicto con las existentes en la misma aula y fecha
     private void validarConflicto(Reserva nuevaReserva, String idExcluir) throws ConflictoDeHorarioException, ValidacionDeReservaException {
+        long t0 = RegistroFases.inicio();
+        try {
+            detectarConflicto(nuevaReserva, idExcluir);
+        } finally {
+            if (t0 != 0) RegistroFases.registrar(Fase.VALIDAR_CONFLICTO, t0, atributosFase(nuevaReserva));
+        }
+    }
+
+    private void detectarConflicto(Reserva nuevaReserva, String idExcluir) throws ConflictoDeHorarioException, ValidacionDeReservaException {
         //Validaciones de tiempo y fecha
-        if (nuevaReserva.getHoraInicio().isAfter(nuevaReserva.getHoraFin()) || nuevaReserva.getHoraInicio().equals(nuevaReserva.getHoraFin())) {
-            throw new ValidacionDeReservaException("La hora de inicio debe ser anterior a la hora de finalizacion.");
+        CodigoValidacion horario = ReglasReserva.validarHorario(nuevaReserva.getFecha(), nuevaReserva.getHoraInicio(),
+            nuevaReserva.getHoraFin(), LocalDate.now());
+        if (horario != CodigoValidacion.OK) throw new ValidacionDeReservaException(horario, nuevaReserva);
+
+        //Detección de Conflicto de Horario sobre la linea de tiempo del aula en esa fecha
+        if (ocupada(nuevaReserva.getAula().getCodigo(), nuevaReserva.getFecha(), nuevaReserva.getHoraInicio(), nuevaReserva.getHoraFin(), idExcluir)) {
+            //Lanza la excepción personalizada ConflictoDeHorarioException.
+            //Solo adjunta la reserva si es nueva, para que pueda encolarse en la lista de espera.
+            throw new ConflictoDeHorarioException(String.format("Conflicto de horario: El aula %s ya esta reservada en la fecha %s.",
+                nuevaReserva.getAula().getCodigo(), nuevaReserva.getFecha()), idExcluir.isEmpty() ? nuevaReserva : null,
+                sugerirAlternativas(nuevaReserva, idExcluir));
         }
-        if (nuevaReserva.getFecha().isBefore(LocalDate.now())) {
-            throw new ValidacionDeReservaException("La reserva no puede ser en una fecha pasada.");
+    }
+
+    /*Horarios libres para una reserva en conflicto, de mejor a peor: el hueco mas cercano de la misma duracion
+    en la misma aula y dia, el mismo horario en otras aulas compatibles y el mismo horario en dias cercanos.
+    Cada busqueda esta acotada, asi que solo recorre las lineas de tiempo de unos pocos dias.*/
+    private List<AlternativaHorario> sugerirAlternativas(Reserva reserva, String idExcluir) {
+        List<AlternativaHorario> alternativas = new ArrayList<>();
+        huecosCercanos(reserva, idExcluir, alternativas);
+        for (Aula aula : buscarAulasEquivalentes(reserva, true, MAX_ALTERNATIVAS_OTRA_AULA)) {
+            alternativas.add(new AlternativaHorario(TipoAlternativa.OTRA_AULA, aula, reserva.getFecha(),
+                reserva.getHoraInicio(), reserva.getHoraFin(), 0));
+        }
+        int otrosDias = 0;
+        for (int d = 1; d <= DIAS_CERCANOS && otrosDias < MAX_ALTERNATIVAS_OTRO_DIA; d++) {
+            for (LocalDate fecha : new LocalDate[]{reserva.getFecha().plusDays(d), reserva.getFecha().minusDays(d)}) {
+                if (otrosDias >= MAX_ALTERNATIVAS_OTRO_DIA || fecha.isBefore(LocalDate.now())) continue;
+                if (!ocupada(reserva.getAula().getCodigo(), fecha, reserva.getHoraInicio(), reserva.getHoraFin(), idExcluir)) {
+                    alternativas.add(new AlternativaHorario(TipoAlternativa.OTRO_DIA, reserva.getAula(), fecha,
+                        reserva.getHoraInicio(), reserva.getHoraFin(), d));
+                    otrosDias++;
+                }
+            }
         }
+        return alternativas;
+    }
 
-        //Detección de Conflicto de Horario. Usa Streams
-        boolean conflicto = reservas.stream()
-            .filter(r -> r.getEstado().equals("activa"))
+    /*Recorre una vez la linea de tiempo del dia (ordenada por hora de inicio) buscando huecos de la duracion pedida
+    dentro de la jornada, y agrega los inicios posibles mas cercanos al horario pedido.*/
+    private void huecosCercanos(Reserva reserva, String idExcluir, List<AlternativaHorario> alternativas) {
+        int inicioPedido = minutoDelDia(reserva.getHoraInicio());
+        int duracion = minutoDelDia(reserva.getHoraFin()) - inicioPedido;
+        int cierre = Math.max(FIN_JORNADA, minutoDelDia(reserva.getHoraFin()));
+        List<int[]> candidatos = new ArrayList<>(); //{inicio, distancia}
+        int libreDesde = Math.min(INICIO_JORNADA, inicioPedido);
+        for (Reserva r : indice.delDia(reserva.getAula().getCodigo(), reserva.getFecha())) {
+            if (r.getEstado() != EstadoReserva.ACTIVA || r.getIdReserva().equals(idExcluir)) continue;
+            int inicio = Math.min(minutoDelDia(r.getHoraInicio()), cierre);
+            if (inicio - libreDesde >= duracion) agregarHueco(libreDesde, inicio, inicioPedido, duracion, candidatos);
+            libreDesde = Math.max(libreDesde, minutoDelDia(r.getHoraFin()));
+        }
+        if (cierre - libreDesde >= duracion) agregarHueco(libreDesde, cierre, inicioPedido, duracion, candidatos);
+        candidatos.sort(Comparator.comparingInt(c -> c[1]));
+        for (int i = 0; i < candidatos.size() && i < MAX_ALTERNATIVAS_MISMA_AULA; i++) {
+            int inicio = candidatos.get(i)[0];
+            alternativas.add(new AlternativaHorario(TipoAlternativa.MISMA_AULA, reserva.getAula(), reserva.getFecha(),
+                LocalTime.of(inicio / 60, inicio % 60), LocalTime.of((inicio + duracion) / 60, (inicio + duracion) % 60), candidatos.get(i)[1]));
+        }
+    }
+
+    //Inicio dentro del hueco [desde, hasta) mas cercano al pedido
+    private static void agregarHueco(int desde, int hasta, int inicioPedido, int duracion, List<int[]> candidatos) {
+        int inicio = Math.max(desde, Math.min(inicioPedido, hasta - duracion));
+        candidatos.add(new int[]{inicio, Math.abs(inicio - inicioPedido)});
+    }
+
+    private static int minutoDelDia(LocalTime hora) {
+        return hora.getHour() * 60 + hora.getMinute();
+    }
+
+    //Indica si el aula tiene una reserva activa que se solapa con el horario. Usa Streams sobre la linea de tiempo del dia.
+    private boolean ocupada(String codigoAula, LocalDate fecha, LocalTime hInicio, LocalTime hFin, String idExcluir) {
+        return indice.delDia(codigoAula, fecha).stream()
+            .filter(r -> r.getEstado() == EstadoReserva.ACTIVA)
             .filter(r -> !r.getIdReserva().equals(idExcluir)) //Excluye la propia reserva en caso de modificación
-            .filter(r -> r.getAula().getCodigo().equals(nuevaReserva.getAula().getCodigo()))
-            .filter(r -> r.getFecha().equals(nuevaReserva.getFecha()))
             .anyMatch(r -> 
                 //Condición estándar de solapamiento: (InicioA < FinB) AND (FinA > InicioB)
-                r.getHoraInicio().isBefore(nuevaReserva.getHoraFin()) && r.getHoraFin().isAfter(nuevaReserva.getHoraInicio())
+                r.getHoraInicio().isBefore(hFin) && r.getHoraFin().isAfter(hInicio)
             );
-        if (conflicto) {
-            //Lanza la excepción personalizada ConflictoDeHorarioException
-            throw new ConflictoDeHorarioException(String.format("Conflicto de horario: El aula %s ya esta reservada en la fecha %s.",
-                nuevaReserva.getAula().getCodigo(), nuevaReserva.getFecha()));
-        }
     }
 
     //====================== Gestión de Reservas ======================
 
     //Método central para registrar cualquier reserva.
     private void registrarReserva(Reserva reserva) throws ConflictoDeHorarioException, ValidacionDeReservaException {
-        reserva.validarReglasEspecificas(); //Valida reglas de subclase
-        validarConflicto(reserva, "");//Lanza la excepción si hay conflicto.
+        long t0 = RegistroFases.inicio();
+        String resultado = "ERROR";
+        try {
+            validarReglas(reserva); //Valida reglas de subclase
+            validarConflicto(reserva, "");//Lanza la excepción si hay conflicto.
+            agregarReserva(reserva);
+            persistirReservas();
+            resultado = "OK";
+        } catch (ConflictoDeHorarioException e) {
+            resultado = "CONFLICTO";
+            throw e;
+        } catch (ValidacionDeReservaException e) {
+            resultado = "VALIDACION";
+            throw e;
+        } finally {
+            if (t0 != 0) RegistroFases.registrar(Fase.RESERVA, t0, atributosFase(reserva) + ";resultado=" + resultado);
+        }
+    }
+
+    //Reglas especificas de la subclase, medidas como fase propia
+    private void validarReglas(Reserva reserva) throws ValidacionDeReservaException {
+        long t0 = RegistroFases.inicio();
+        try {
+            reserva.validarReglasEspecificas();
+        } finally {
+            if (t0 != 0) RegistroFases.registrar(Fase.VALIDAR_REGLAS, t0, atributosFase(reserva));
+        }
+    }
+
+    //Atributos comunes de los eventos de fase de una reserva
+    private static String atributosFase(Reserva reserva) {
+        return "aula=" + reserva.getAula().getCodigo() + ";fecha=" + reserva.getFecha()
+            + ";tipo=" + reserva.getClass().getSimpleName().replace("Reserva", "").toUpperCase();
+    }
+
+    /*Agrega la reserva a los indices y a la lista. Los agregados (ocupacion, vencimientos) van primero: si alguno
+    fallara, la reserva no queda a medias en la lista ni en el indice por ID.*/
+    private void agregarReserva(Reserva reserva) {
+        ocupacion.agregar(reserva);
+        agregarVencimiento(reserva);
         reservas.add(reserva);
-        guardarDatos();
+        indice.agregar(reserva);
+        estados.registrar(reserva, reservas.size() - 1);
+        marcarCambio(reserva.getAula().getCodigo());
     }
 
-    //Métodos de registro
-    public void registrarReservaClase(String codigoAula, LocalDate fecha, LocalTime hInicio, LocalTime hFin, String responsable,
+    //Métodos de registro. Devuelven el ID asignado a la reserva.
+    @Override
+    public String registrarReservaClase(String codigoAula, LocalDate fecha, LocalTime hInicio, LocalTime hFin, String responsable,
                                     String materia, int numEstudiantes) throws ConflictoDeHorarioException, ValidacionDeReservaException {
-        Aula aula = getAulaByCodigo(codigoAula).orElseThrow(() -> new ValidacionDeReservaException("Aula no encontrada: " + codigoAula));
-        String id = "R" + nextReservaId++;
-        registrarReserva(new ReservaClase(id, aula, fecha, hInicio, hFin, responsable, materia, numEstudiantes));
+        return registrar(codigoAula, (id, aula) -> new ReservaClase(id, aula, fecha, hInicio, hFin, responsable, materia, numEstudiantes), null);
     }
     
-    public void registrarReservaEvento(String codigoAula, LocalDate fecha, LocalTime hInicio, LocalTime hFin, String responsable,
+    @Override
+    public String registrarReservaEvento(String codigoAula, LocalDate fecha, LocalTime hInicio, LocalTime hFin, String responsable,
                                        TipoEvento tipoEvento, int asistentesEsperados) throws ConflictoDeHorarioException, ValidacionDeReservaException {
-        Aula aula = getAulaByCodigo(codigoAula).orElseThrow(() -> new ValidacionDeReservaException("Aula no encontrada: " + codigoAula));
-        String id = "R" + nextReservaId++;
-        registrarReserva(new ReservaEvento(id, aula, fecha, hInicio, hFin, responsable, tipoEvento, asistentesEsperados));
+        return registrar(codigoAula, (id, aula) -> new ReservaEvento(id, aula, fecha, hInicio, hFin, responsable, tipoEvento, asistentesEsperados), null);
     }
 
-    public void registrarReservaPractica(String codigoAula, LocalDate fecha, LocalTime hInicio, LocalTime hFin, String responsable,
+    @Override
+    public String registrarReservaPractica(String codigoAula, LocalDate fecha, LocalTime hInicio, LocalTime hFin, String responsable,
                                         String descripcionPractica, int numEquipos) throws ConflictoDeHorarioException, ValidacionDeReservaException {
-        Aula aula = getAulaByCodigo(codigoAula).orElseThrow(() -> new ValidacionDeReservaException("Aula no encontrada: " + codigoAula));
-        String id = "R" + nextReservaId++;
-        registrarReserva(new ReservaPractica(id, aula, fecha, hInicio, hFin, responsable, descripcionPractica, numEquipos));
+        return registrar(codigoAula, (id, aula) -> new ReservaPractica(id, aula, fecha, hInicio, hFin, responsable, descripcionPractica, numEquipos), null);
+    }
+
+    //Arma la reserva de un aula ya resuelta con el ID asignado
+    private interface FabricaReserva {
+        Reserva crear(String id, Aula aula);
+    }
+
+    /*Registro en dos fases. La decision (aula, reglas, conflicto y alternativas) se toma bajo el cerrojo de lectura,
+    asi los registros de aulas distintas se deciden a la vez (ver ServicioReservasAsincrono); el cerrojo de escritura
+    se toma solo para agregar a los indices, recordar la clave de idempotencia y persistir. Si entre las dos fases
+    cambio el aula o alguna de sus reservas (su version), la decision se repite con el cerrojo de escritura tomado.*/
+    private String registrar(String codigoAula, FabricaReserva fabrica, OperacionConClave clave)
+        throws ConflictoDeHorarioException, ValidacionDeReservaException {
+        long t0 = RegistroFases.inicio();
+        String resultado = "ERROR";
+        Reserva reserva = null;
+        CacheIdempotencia.Entrada previa = null;
+        try {
+            long versionDecidida = 0;
+            cerrojo.readLock().lock();
+            try {
+                /*La reserva y su clave se confirman juntas: si un reintento concurrente ya confirmo, su reserva no debe
+                decidirse como conflicto con la propia*/
+                previa = clave == null ? null : repeticion(clave.clave, clave.operacion, clave.huella);
+                if (previa == null) {
+                    reserva = decidirRegistro(codigoAula, fabrica, null);
+                    versionDecidida = versionAula(codigoAula);
+                }
+            } finally {
+                cerrojo.readLock().unlock();
+            }
+            if (previa == null) {
+                cerrojo.writeLock().lock();
+                try {
+                    previa = clave == null ? null : repeticion(clave.clave, clave.operacion, clave.huella); //Un reintento concurrente se adelanto
+                    if (previa == null) {
+                        if (versionAula(codigoAula) != versionDecidida) reserva = decidirRegistro(codigoAula, fabrica, reserva.getIdReserva());
+                        agregarReserva(reserva);
+                        reservasSucias = true;
+                        if (clave != null) {
+                            idempotencia.registrar(clave.clave, clave.operacion, clave.huella, CacheIdempotencia.Resultado.OK, reserva.getIdReserva());
+                            idempotenciaSucia = true;
+                        }
+                        persistir(); //La reserva y su clave se escriben juntas
+                    }
+                } finally {
+                    cerrojo.writeLock().unlock();
+                }
+            }
+            resultado = previa == null ? "OK" : "REPETIDA";
+        } catch (ConflictoDeHorarioException e) {
+            resultado = "CONFLICTO";
+            recordarFallo(clave, CacheIdempotencia.Resultado.CONFLICTO, e.getMessage(), e.getAlternativas());
+            throw e;
+        } catch (ValidacionDeReservaException e) {
+            resultado = "VALIDACION";
+            recordarFallo(clave, CacheIdempotencia.Resultado.de(e), e.getMessage(), Collections.emptyList());
+            throw e;
+        } finally {
+            if (t0 != 0 && reserva != null) RegistroFases.registrar(Fase.RESERVA, t0, atributosFase(reserva) + ";resultado=" + resultado);
+        }
+        return previa == null ? reserva.getIdReserva() : repetir(previa, valor -> valor);
+    }
+
+    //Arma y valida la reserva sin modificar nada (con algun cerrojo tomado). id null = se asigna uno nuevo.
+    private Reserva decidirRegistro(String codigoAula, FabricaReserva fabrica, String id) throws ConflictoDeHorarioException, ValidacionDeReservaException {
+        Aula aula = getAulaByCodigo(codigoAula).orElseThrow(() -> new NoEncontradoException("Aula no encontrada: " + codigoAula));
+        Reserva reserva = fabrica.crear(id != null ? id : nuevoId(), aula);
+        validarReglas(reserva); //Valida reglas de subclase
+        validarConflicto(reserva, ""); //Lanza la excepción si hay conflicto.
+        return reserva;
+    }
+
+    //Version del aula sin tomar el cerrojo (se llama con alguno tomado)
+    private long versionAula(String codigoAula) {
+        return versionPorAula.getOrDefault(codigoAula.toUpperCase(), versionInicial);
     }
     
+    /*Evento que ocupa varias aulas en el mismo horario (ej. un congreso: auditorio y laboratorios), con los asistentes
+    de cada aula. Todas las aulas se validan antes de registrar nada: o quedan todas reservadas o ninguna.
+    Devuelve los IDs en el orden del mapa.*/
+    @Override
+    public List<String> registrarReservaEventoMultiple(Map<String, Integer> asistentesPorAula, LocalDate fecha, LocalTime hInicio,
+                                                       LocalTime hFin, String responsable, TipoEvento tipoEvento)
+                                                       throws ConflictoDeHorarioException, ValidacionDeReservaException {
+        cerrojo.writeLock().lock();
+        try {
+            Map<String, String> ids = confirmarEventoMultiple(prepararEventoMultiple(asistentesPorAula, fecha, hInicio, hFin, responsable, tipoEvento));
+            return asistentesPorAula.keySet().stream().map(c -> ids.get(c.toUpperCase())).collect(toList());
+        } finally {
+            cerrojo.writeLock().unlock();
+        }
+    }
+
+    //Cerrojo de escritura, para que una operacion sobre varios fragmentos los tome en orden (ver GestorReservasFragmentado)
+    ReentrantReadWriteLock.WriteLock cerrojoEscritura() {
+        return cerrojo.writeLock();
+    }
+
+    //Verifica un evento multiple bajo el cerrojo de lectura, sin reservar nada: descarta rapido los que no van a entrar
+    void verificarEventoMultiple(Map<String, Integer> asistentesPorAula, LocalDate fecha, LocalTime hInicio, LocalTime hFin,
+                                 String responsable, TipoEvento tipoEvento) throws ConflictoDeHorarioException, ValidacionDeReservaException {
+        cerrojo.readLock().lock();
+        try {
+            prepararEventoMultiple(asistentesPorAula, fecha, hInicio, hFin, responsable, tipoEvento);
+        } finally {
+            cerrojo.readLock().unlock();
+        }
+    }
+
+    /*Arma y valida las reservas de un evento multiple sin modificar nada (con el cerrojo tomado). Las aulas se revisan
+    en orden de codigo y la primera que falla corta la validacion. El conflicto no adjunta la reserva rechazada:
+    una sola aula del evento no se encola en la lista de espera.*/
+    List<ReservaEvento> prepararEventoMultiple(Map<String, Integer> asistentesPorAula, LocalDate fecha, LocalTime hInicio, LocalTime hFin,
+                                               String responsable, TipoEvento tipoEvento) throws ConflictoDeHorarioException, ValidacionDeReservaException {
+        if (asistentesPorAula.isEmpty()) throw new ValidacionDeReservaException("El evento debe indicar al menos un aula.");
+        TreeMap<String, Integer> ordenadas = new TreeMap<>();
+        for (Map.Entry<String, Integer> e : asistentesPorAula.entrySet()) {
+            if (ordenadas.put(e.getKey().toUpperCase(), e.getValue()) != null) {
+                throw new ValidacionDeReservaException("El aula " + e.getKey() + " esta repetida en el evento.");
+            }
+        }
+        List<ReservaEvento> preparadas = new ArrayList<>(ordenadas.size());
+        for (Map.Entry<String, Integer> e : ordenadas.entrySet()) {
+            Aula aula = getAulaByCodigo(e.getKey()).orElseThrow(() -> new NoEncontradoException("Aula no encontrada: " + e.getKey()));
+            ReservaEvento reserva = new ReservaEvento(null, aula, fecha, hInicio, hFin, responsable, tipoEvento, e.getValue());
+            validarReglas(reserva);
+            try {
+                validarConflicto(reserva, "");
+            } catch (ConflictoDeHorarioException c) {
+                throw new ConflictoDeHorarioException("Evento en varias aulas rechazado. " + c.getMessage(), null, c.getAlternativas());
+            }
+            preparadas.add(reserva);
+        }
+        return preparadas;
+    }
+
+    /*Registra las reservas ya validadas (con el cerrojo de escritura tomado desde la validacion), asignando los IDs
+    recien ahora para no gastarlos en eventos rechazados. Se persisten juntas, como en un lote.
+    Devuelve el ID asignado a cada aula (codigo en mayusculas).*/
+    Map<String, String> confirmarEventoMultiple(List<ReservaEvento> preparadas) {
+        Map<String, String> ids = new HashMap<>();
+        boolean loteAnterior = enLote;
+        enLote = true;
+        try {
+            for (ReservaEvento p : preparadas) {
+                String id = nuevoId();
+                agregarReserva(new ReservaEvento(id, p.getAula(), p.getFecha(), p.getHoraInicio(), p.getHoraFin(), p.getResponsable(),
+                    p.getTipoEvento(), p.getAsistentesEsperados()));
+                ids.put(p.getAula().getCodigo().toUpperCase(), id);
+            }
+            persistirReservas();
+        } finally {
+            if (!loteAnterior) finalizarLote();
+        }
+        return ids;
+    }
+
+    //====================== Idempotencia =======================
+
+    //Accion de registro o cancelacion que se ejecuta una sola vez por clave
+    private interface OperacionIdempotente<T> {
+        T ejecutar() throws ConflictoDeHorarioException, ValidacionDeReservaException;
+    }
+
+    /*Variantes con clave de idempotencia del cliente (null = sin clave). La primera llamada con una clave se ejecuta
+    normalmente y su resultado (ID o error) queda recordado; los reintentos con la misma clave reciben ese resultado
+    sin volver a validar ni escribir. Reutilizar una clave con otros datos es un error de validacion.*/
+    @Override
+    public String registrarReservaClase(String claveIdempotencia, String codigoAula, LocalDate fecha, LocalTime hInicio, LocalTime hFin,
+                                        String responsable, String materia, int numEstudiantes) throws ConflictoDeHorarioException, ValidacionDeReservaException {
+        return registrarConClave(claveIdempotencia, "CLASE", huella(codigoAula, fecha, hInicio, hFin, responsable, materia, numEstudiantes),
+            codigoAula, (id, aula) -> new ReservaClase(id, aula, fecha, hInicio, hFin, responsable, materia, numEstudiantes));
+    }
+
+    @Override
+    public String registrarReservaEvento(String claveIdempotencia, String codigoAula, LocalDate fecha, LocalTime hInicio, LocalTime hFin,
+                                         String responsable, TipoEvento tipoEvento, int asistentesEsperados) throws ConflictoDeHorarioException, ValidacionDeReservaException {
+        return registrarConClave(claveIdempotencia, "EVENTO", huella(codigoAula, fecha, hInicio, hFin, responsable, tipoEvento, asistentesEsperados),
+            codigoAula, (id, aula) -> new ReservaEvento(id, aula, fecha, hInicio, hFin, responsable, tipoEvento, asistentesEsperados));
+    }
+
+    @Override
+    public String registrarReservaPractica(String claveIdempotencia, String codigoAula, LocalDate fecha, LocalTime hInicio, LocalTime hFin,
+                                           String responsable, String descripcionPractica, int numEquipos) throws ConflictoDeHorarioException, ValidacionDeReservaException {
+        return registrarConClave(claveIdempotencia, "PRACTICA", huella(codigoAula, fecha, hInicio, hFin, responsable, descripcionPractica, numEquipos),
+            codigoAula, (id, aula) -> new ReservaPractica(id, aula, fecha, hInicio, hFin, responsable, descripcionPractica, numEquipos));
+    }
+
+    //Cancelacion con clave: el reintento devuelve las mismas reservas promovidas que la cancelacion original
+    @Override
+    public List<Reserva> cancelarReserva(String claveIdempotencia, String id) throws ValidacionDeReservaException {
+        try {
+            return idempotente(claveIdempotencia, "CANCELAR", huella(id), () -> cancelarReserva(id),
+                promovidas -> promovidas.stream().map(Reserva::getIdReserva).collect(joining(";")),
+                this::reservasRecordadas);
+        } catch (ConflictoDeHorarioException e) {
+            throw new ValidacionDeReservaException(e.getMessage()); //No ocurre: cancelar no detecta conflictos
+        }
+    }
+
+    //Ajusta la cantidad maxima de claves recordadas y su tiempo de vida
+    public void configurarIdempotencia(int capacidad, long ttlMs) {
+        idempotencia.configurar(capacidad, ttlMs);
+    }
+
+    //Clave de idempotencia de un registro, que se recuerda en la misma fase de escritura que la reserva
+    private static final class OperacionConClave {
+        private final String clave;
+        private final String operacion;
+        private final String huella;
+
+        private OperacionConClave(String clave, String operacion, String huella) {
+            this.clave = clave;
+            this.operacion = operacion;
+            this.huella = huella;
+        }
+    }
+
+    /*Registro con clave: la clave se consulta sin tomar el cerrojo (la cache tiene su propio monitor) y, si es nueva,
+    el registro sigue en dos fases (ver registrar), que vuelve a mirarla al confirmar por si un reintento concurrente se adelanto.*/
+    private String registrarConClave(String clave, String operacion, String huella, String codigoAula, FabricaReserva fabrica)
+        throws ConflictoDeHorarioException, ValidacionDeReservaException {
+        if (clave == null) return registrar(codigoAula, fabrica, null);
+        validarClave(clave);
+        CacheIdempotencia.Entrada previa = repeticion(clave, operacion, huella);
+        if (previa != null) return repetir(previa, valor -> valor);
+        return registrar(codigoAula, fabrica, new OperacionConClave(clave, operacion, huella));
+    }
+
+    /*Operacion con clave que decide bajo el cerrojo de escritura (cancelaciones): si la clave no esta, se ejecuta
+    con el cerrojo tomado, volviendo a mirar por si un reintento concurrente se adelanto. La operacion y su clave
+    se persisten juntas: los cambios se acumulan como en un lote y se escriben al final.*/
+    private <T> T idempotente(String clave, String operacion, String huella, OperacionIdempotente<T> accion,
+                              Function<T, String> aTexto, Function<String, T> desdeTexto) throws ConflictoDeHorarioException, ValidacionDeReservaException {
+        if (clave == null) return accion.ejecutar();
+        validarClave(clave);
+        CacheIdempotencia.Entrada previa = repeticion(clave, operacion, huella);
+        if (previa == null) {
+            cerrojo.writeLock().lock();
+            boolean loteAnterior = enLote;
+            try {
+                previa = repeticion(clave, operacion, huella);
+                if (previa == null) {
+                    enLote = true;
+                    try {
+                        T resultado = accion.ejecutar();
+                        recordar(clave, operacion, huella, CacheIdempotencia.Resultado.OK, aTexto.apply(resultado));
+                        return resultado;
+                    } catch (ConflictoDeHorarioException e) {
+                        recordar(clave, operacion, huella, CacheIdempotencia.Resultado.CONFLICTO, e.getMessage(), e.getAlternativas());
+                        throw e;
+                    } catch (ValidacionDeReservaException e) {
+                        recordar(clave, operacion, huella, CacheIdempotencia.Resultado.de(e), e.getMessage());
+                        throw e;
+                    }
+                }
+            } finally {
+                if (enLote && !loteAnterior) finalizarLote();
+                cerrojo.writeLock().unlock();
+            }
+        }
+        return repetir(previa, desdeTexto);
+    }
+
+    private static void validarClave(String clave) throws ValidacionDeReservaException {
+        if (!CacheIdempotencia.claveValida(clave)) {
+            throw new ValidacionDeReservaException("Clave de idempotencia invalida (1 a " + CacheIdempotencia.LONGITUD_MAXIMA_CLAVE
+                + " caracteres, sin comas, saltos de linea ni '#' inicial).");
+        }
+    }
+
+    //Devuelve el resultado recordado de la clave, o vuelve a lanzar el error recordado (el conflicto, con sus alternativas)
+    private <T> T repetir(CacheIdempotencia.Entrada previa, Function<String, T> desdeTexto)
+        throws ConflictoDeHorarioException, ValidacionDeReservaException {
+        switch (previa.resultado) {
+            case CONFLICTO:
+                throw new ConflictoDeHorarioException(previa.valor, null, alternativasRecordadas(previa.alternativas));
+            case VALIDACION:
+                throw new ValidacionDeReservaException(previa.valor);
+            case NO_ENCONTRADO:
+                throw new NoEncontradoException(previa.valor);
+            default:
+                return desdeTexto.apply(previa.valor);
+        }
+    }
+
+    private List<AlternativaHorario> alternativasRecordadas(String codificadas) {
+        if (codificadas.isEmpty()) return Collections.emptyList();
+        cerrojo.readLock().lock();
+        try {
+            return CacheIdempotencia.decodificar(codificadas, codigo -> getAulaByCodigo(codigo).orElse(null));
+        } finally {
+            cerrojo.readLock().unlock();
+        }
+    }
+
+    //Recuerda el error de un registro con clave, salvo que la clave ya tenga resultado (reintento concurrente o clave reutilizada)
+    private void recordarFallo(OperacionConClave clave, CacheIdempotencia.Resultado resultado, String mensaje,
+                               List<AlternativaHorario> alternativas) {
+        if (clave == null) return;
+        cerrojo.writeLock().lock();
+        try {
+            if (idempotencia.buscar(clave.clave) == null) recordar(clave.clave, clave.operacion, clave.huella, resultado, mensaje, alternativas);
+        } finally {
+            cerrojo.writeLock().unlock();
+        }
+    }
+
+    //Reservas de una lista de IDs recordada (separados por ';')
+    private List<Reserva> reservasRecordadas(String ids) {
+        if (ids.isEmpty()) return Collections.emptyList();
+        cerrojo.readLock().lock();
+        try {
+            return Arrays.stream(ids.split(";")).map(indice::porId).filter(Objects::nonNull).collect(toList());
+        } finally {
+            cerrojo.readLock().unlock();
+        }
+    }
+
+    //Resultado recordado de la clave, o null si es nueva. Falla si la clave se uso para otra operacion o con otros datos.
+    private CacheIdempotencia.Entrada repeticion(String clave, String operacion, String huella) throws ValidacionDeReservaException {
+        CacheIdempotencia.Entrada previa = idempotencia.buscar(clave);
+        if (previa != null && (!previa.operacion.equals(operacion) || !previa.huella.equals(huella))) {
+            throw new ValidacionDeReservaException("La clave de idempotencia " + clave + " ya se uso con otros datos.");
+        }
+        return previa;
+    }
+
+    private void recordar(String clave, String operacion, String huella, CacheIdempotencia.Resultado resultado, String valor) {
+        recordar(clave, operacion, huella, resultado, valor, Collections.emptyList());
+    }
+
+    private void recordar(String clave, String operacion, String huella, CacheIdempotencia.Resultado resultado, String valor,
+                          List<AlternativaHorario> alternativas) {
+        idempotencia.registrar(clave, operacion, huella, resultado, valor, alternativas);
+        idempotenciaSucia = true;
+        persistir();
+    }
+
+    //Resumen de los parametros de una operacion (ver CacheIdempotencia.huella)
+    private static String huella(Object... parametros) {
+        return CacheIdempotencia.huella(parametros);
+    }
+
     //====================== Busqueda y Modificacion =======================
 
-    //Búsqueda por ID
+    /*Búsqueda por ID: primero las vigentes, despues las completadas (ver ReservasCompletadas) y por ultimo el historico: los filtros de Bloom descartan sin leer el disco
+    los IDs que no estan archivados, y uno archivado se lee de un solo bloque. Las reservas archivadas son copias
+    de solo lectura: modificar, cancelar o cambiar el estado solo actuan sobre las reservas en memoria.*/
+    @Override
     public Optional<Reserva> buscarReservaPorId(String id) {
-        return reservas.stream()
-            .filter(r -> r.getIdReserva().equalsIgnoreCase(id))
-            .findFirst();
+        cerrojo.readLock().lock();
+        try {
+            Reserva reserva = reservaEnMemoria(id).orElse(null);
+            if (reserva == null && id != null) reserva = historico.buscar(id, codigo -> getAulaByCodigo(codigo).orElse(null));
+            return Optional.ofNullable(reserva);
+        } finally {
+            cerrojo.readLock().unlock();
+        }
+    }
+
+    //Reserva en memoria (no archivada) por ID: vigente o completada
+    private Optional<Reserva> reservaEnMemoria(String id) {
+        Reserva reserva = indice.porId(id);
+        return Optional.ofNullable(reserva != null ? reserva : completadas.porId(id));
+    }
+
+    //Indica si la reserva esta en memoria en este gestor (sin mirar el historico)
+    boolean contieneReserva(String id) {
+        cerrojo.readLock().lock();
+        try {
+            return reservaEnMemoria(id).isPresent();
+        } finally {
+            cerrojo.readLock().unlock();
+        }
     }
 
     //Búsqueda por texto en campo responsable
+    @Override
     public List<Reserva> buscarReservasPorResponsable(String texto) {
-        return reservas.stream()
-            .filter(r -> r.getResponsable().toLowerCase().contains(texto.toLowerCase()))
-            .collect(Collectors.toList());
+        cerrojo.readLock().lock();
+        try {
+            return consultar().responsableContiene(texto).lista();
+        } finally {
+            cerrojo.readLock().unlock();
+        }
     }
 
-    //Modificación de reserva
-    public void modificarReserva(String id, LocalDate nuevaFecha, LocalTime nuevoHInicio, LocalTime nuevoHFin, String nuevoResponsable)
+    /*Modificación de reserva. Devuelve las reservas promovidas desde la lista de espera.
+    Como el registro, decide bajo el cerrojo de lectura y toma el de escritura solo para aplicar el cambio (ver registrar).*/
+    @Override
+    public List<Reserva> modificarReserva(String id, LocalDate nuevaFecha, LocalTime nuevoHInicio, LocalTime nuevoHFin, String nuevoResponsable)
         throws ConflictoDeHorarioException, ValidacionDeReservaException {
-        
-        Reserva reserva = buscarReservaPorId(id)
-            .orElseThrow(() -> new ValidacionDeReservaException("Reserva no encontrada: " + id));
+        Reserva reserva;
+        long versionDecidida;
+        cerrojo.readLock().lock();
+        try {
+            reserva = decidirModificacion(id, nuevaFecha, nuevoHInicio, nuevoHFin, nuevoResponsable);
+            versionDecidida = versionAula(reserva.getAula().getCodigo());
+        } finally {
+            cerrojo.readLock().unlock();
+        }
+        cerrojo.writeLock().lock();
+        try {
+            if (versionAula(reserva.getAula().getCodigo()) != versionDecidida) {
+                reserva = decidirModificacion(id, nuevaFecha, nuevoHInicio, nuevoHFin, nuevoResponsable);
+            }
+
+            //Guardar el horario anterior para ofrecerlo a la lista de espera
+            LocalDate fechaAnterior = reserva.getFecha();
+            LocalTime hInicioAnterior = reserva.getHoraInicio();
+            LocalTime hFinAnterior = reserva.getHoraFin();
+
+            //Si no hay conflicto, aplicar los cambios al objeto real, reindexandolo.
+            indice.remover(reserva);
+            ocupacion.remover(reserva);
+            reserva.setFecha(nuevaFecha);
+            reserva.setHoraInicio(nuevoHInicio);
+            reserva.setHoraFin(nuevoHFin);
+            reserva.setResponsable(nuevoResponsable);
+            indice.agregar(reserva);
+            ocupacion.agregar(reserva);
+            agregarVencimiento(reserva); //La entrada anterior queda obsoleta y se descarta al vencer
+            marcarCambio(reserva.getAula().getCodigo());
 
-        if (reserva.getEstado().equals("cancelada")) {
-             throw new ValidacionDeReservaException("No se puede modificar una reserva cancelada. Debe reactivarla primero.");
+            List<Reserva> promovidas = promoverListaEspera(reserva.getAula().getCodigo(), fechaAnterior, hInicioAnterior, hFinAnterior);
+            persistirReservas();
+            return promovidas;
+        } finally {
+            cerrojo.writeLock().unlock();
+        }
+    }
+
+    //Valida la modificacion sin cambiar nada (con algun cerrojo tomado). Devuelve la reserva a modificar.
+    private Reserva decidirModificacion(String id, LocalDate nuevaFecha, LocalTime nuevoHInicio, LocalTime nuevoHFin, String nuevoResponsable)
+        throws ConflictoDeHorarioException, ValidacionDeReservaException {
+        Reserva reserva = reservaEnMemoria(id)
+            .orElseThrow(() -> new NoEncontradoException("Reserva no encontrada: " + id));
+
+        if (reserva.getEstado() != EstadoReserva.ACTIVA) {
+             throw new ValidacionDeReservaException("Solo se pueden modificar reservas activas. Estado actual: " + reserva.getEstado());
         }
 
         //Crear una reserva "temporal" con los nuevos datos para validar el conflicto sin modificar el objeto real.
@@ -183,32 +1034,401 @@ public class GestorReservas {
         Reserva tempReserva = new ReservaClase(id, reserva.getAula(), nuevaFecha, nuevoHInicio, nuevoHFin, nuevoResponsable, "", 0);
 
         //Validar el conflicto, excluyendo el ID actual para que no choque consigo misma.
-        validarConflicto(tempReserva, id); 
-        
-        //Si no hay conflicto, aplicar los cambios al objeto real.
-        reserva.setFecha(nuevaFecha);
-        reserva.setHoraInicio(nuevoHInicio);
-        reserva.setHoraFin(nuevoHFin);
-        reserva.setResponsable(nuevoResponsable);
-        guardarDatos();
+        validarConflicto(tempReserva, id);
+        return reserva;
     }
     
-    //Cancelación de reserva
-    public void cancelarReserva(String id) throws ValidacionDeReservaException {
-        Reserva reserva = buscarReservaPorId(id)
-            .orElseThrow(() -> new ValidacionDeReservaException("Reserva no encontrada para cancelar: " + id));
-        if (reserva.getEstado().equals("cancelada")) {
-            throw new ValidacionDeReservaException("La reserva ya está cancelada.");
+    //Cancelación de reserva. Devuelve las reservas promovidas desde la lista de espera.
+    @Override
+    public List<Reserva> cancelarReserva(String id) throws ValidacionDeReservaException {
+        return cambiarEstadoReserva(id, EstadoReserva.CANCELADA);
+    }
+
+    /*Cambia el estado de una reserva activa (cancelada, completada o no presentado).
+    Al cancelar, el horario liberado se ofrece a la lista de espera; devuelve las reservas promovidas.*/
+    @Override
+    public List<Reserva> cambiarEstadoReserva(String id, EstadoReserva nuevoEstado) throws ValidacionDeReservaException {
+        cerrojo.writeLock().lock();
+        try {
+            Reserva reserva = reservaEnMemoria(id)
+                .orElseThrow(() -> new NoEncontradoException("Reserva no encontrada: " + id));
+            if (reserva.getEstado() == nuevoEstado) {
+                throw new ValidacionDeReservaException("La reserva ya está en estado " + nuevoEstado + ".");
+            }
+            if (!reserva.getEstado().puedeCambiarA(nuevoEstado)) {
+                throw new ValidacionDeReservaException(String.format("Transicion no permitida: %s -> %s.", reserva.getEstado(), nuevoEstado));
+            }
+            EstadoReserva anterior = reserva.getEstado();
+            ocupacion.remover(reserva);
+            if (nuevoEstado == EstadoReserva.COMPLETADA) {
+                //Como en el barrido: la completada deja la agenda y pasa al almacen de completadas
+                indice.remover(reserva);
+                estados.quitar(reserva);
+                reserva.setEstado(nuevoEstado);
+                completadas.agregar(reserva);
+                completadasSucias = true;
+            } else {
+                reserva.setEstado(nuevoEstado); //Control de estado
+                estados.cambiar(reserva, anterior);
+            }
+            ocupacion.agregar(reserva);
+            marcarCambio(reserva.getAula().getCodigo());
+
+            List<Reserva> promovidas = nuevoEstado == EstadoReserva.CANCELADA
+                ? promoverListaEspera(reserva.getAula().getCodigo(), reserva.getFecha(), reserva.getHoraInicio(), reserva.getHoraFin())
+                : Collections.emptyList();
+            persistirReservas();
+            return promovidas;
+        } finally {
+            cerrojo.writeLock().unlock();
+        }
+    }
+
+    //Cantidad de reservas en cada estado (conteo de bits, sin recorrer la lista), incluidas las completadas aun no archivadas
+    @Override
+    public Map<EstadoReserva, Integer> contarPorEstado() {
+        cerrojo.readLock().lock();
+        try {
+            Map<EstadoReserva, Integer> conteos = estados.conteos();
+            conteos.merge(EstadoReserva.COMPLETADA, completadas.tamanio(), Integer::sum);
+            return conteos;
+        } finally {
+            cerrojo.readLock().unlock();
+        }
+    }
+
+    //====================== Consultas =======================
+
+    //Inicia una consulta componible sobre las reservas (ver ConsultaReservas)
+    public ConsultaReservas consultar() {
+        return new ConsultaReservas(this);
+    }
+
+    //Ejecuta una lectura bajo el cerrojo compartido
+    <T> T conLectura(Supplier<T> lectura) {
+        cerrojo.readLock().lock();
+        try {
+            return lectura.get();
+        } finally {
+            cerrojo.readLock().unlock();
+        }
+    }
+
+    IndiceReservas indice() {
+        return indice;
+    }
+
+    IndiceEstados estados() {
+        return estados;
+    }
+
+    List<Reserva> todas() {
+        return reservas;
+    }
+
+    //====================== Exportacion =======================
+
+    /*Exporta las reservas de un aula entre dos fechas (null = sin limite) en orden de fecha y hora.
+    Si el aula no cambio desde versionConocida no escribe nada y devuelve SIN_CAMBIOS;
+    si no, devuelve la version exportada para usarla en la siguiente llamada.*/
+    @Override
+    public long exportarReservasAula(String codigoAula, LocalDate desde, LocalDate hasta, FormatoExportacion formato,
+                                     OutputStream salida, long versionConocida) throws IOException {
+        cerrojo.readLock().lock();
+        try {
+            long versionActual = getVersionAula(codigoAula);
+            if (versionActual == versionConocida) return SIN_CAMBIOS;
+            ExportadorReservas exportador = new ExportadorReservas(formato, salida);
+            exportar(consultar().enAula(codigoAula).entreFechas(desde, hasta), exportador);
+            exportador.terminar();
+            return versionActual;
+        } finally {
+            cerrojo.readLock().unlock();
+        }
+    }
+
+    //Exporta las reservas cuyo responsable contiene el texto. Usa la version global (el responsable puede cambiar de aula).
+    @Override
+    public long exportarReservasResponsable(String responsable, LocalDate desde, LocalDate hasta, FormatoExportacion formato,
+                                            OutputStream salida, long versionConocida) throws IOException {
+        cerrojo.readLock().lock();
+        try {
+            long versionActual = getVersion();
+            if (versionActual == versionConocida) return SIN_CAMBIOS;
+            ExportadorReservas exportador = new ExportadorReservas(formato, salida);
+            exportar(consultar().responsableContiene(responsable).entreFechas(desde, hasta), exportador);
+            exportador.terminar();
+            return versionActual;
+        } finally {
+            cerrojo.readLock().unlock();
         }
-        reserva.setEstado("cancelada"); //Control de estado
-        guardarDatos();
+    }
+
+    //Escribe el resultado de una consulta reserva por reserva, sin construir una lista intermedia
+    void exportar(ConsultaReservas consulta, ExportadorReservas exportador) throws IOException {
+        long t0 = RegistroFases.inicio();
+        try {
+            consulta.forEach(r -> {
+                try {
+                    exportador.escribir(r);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            if (t0 != 0) RegistroFases.registrar(Fase.EXPORTAR_CALENDARIO, t0, "filas=" + exportador.getEscritas());
+        }
+    }
+
+    //Version global: cambia con cada modificacion de aulas o reservas
+    public long getVersion() {
+        cerrojo.readLock().lock();
+        try {
+            return version;
+        } finally {
+            cerrojo.readLock().unlock();
+        }
+    }
+
+    //Version de un aula: solo cambia cuando se modifica el aula o alguna de sus reservas
+    public long getVersionAula(String codigoAula) {
+        cerrojo.readLock().lock();
+        try {
+            return versionAula(codigoAula);
+        } finally {
+            cerrojo.readLock().unlock();
+        }
+    }
+
+    //Registra un cambio en el aula indicada. Se llama con el cerrojo de escritura tomado.
+    private void marcarCambio(String codigoAula) {
+        version++;
+        versionPorAula.put(codigoAula.toUpperCase(), version);
+    }
+
+    //====================== Historico =======================
+
+    /*Mueve a un segmento nuevo del historico compacto (reservas_historico.dat, _2.dat, ... junto a reservas.txt)
+    las reservas anteriores a la fecha de corte (periodo cerrado), sin importar su estado: las que siguen en la lista
+    y las del almacen de completadas. Dejan la memoria y sus archivos; se siguen encontrando por ID (ver buscarReservaPorId).
+    Devuelve la cantidad archivada.*/
+    public int archivarReservas(LocalDate antesDe) throws ValidacionDeReservaException {
+        if (modo == ModoPersistencia.MEMORIA) {
+            throw new ValidacionDeReservaException("El historico no esta disponible en modo MEMORIA.");
+        }
+        if (antesDe.isAfter(LocalDate.now())) {
+            throw new ValidacionDeReservaException("Solo se pueden archivar periodos cerrados (fecha de corte hasta hoy).");
+        }
+        cerrojo.writeLock().lock();
+        try {
+            //Indice por fecha: solo se recorren los dias cerrados, no toda la lista
+            List<Reserva> cerradas = IndiceReservas.aplanar(indice.porFechas(null, antesDe.minusDays(1)))
+                .collect(Collectors.toList());
+            List<Reserva> completadasCerradas = completadas.anterioresA(antesDe);
+            if (cerradas.isEmpty() && completadasCerradas.isEmpty()) return 0;
+            List<Reserva> segmentoNuevo = new ArrayList<>(cerradas);
+            segmentoNuevo.addAll(completadasCerradas);
+            String segmento = GestorArchivos.archivarReservas(segmentoNuevo, archivoHistorico);
+            if (segmento == null) {
+                throw new ValidacionDeReservaException("No se pudo escribir el archivo historico: " + archivoHistorico);
+            }
+            historico.agregar(segmento);
+
+            //Quitar de la lista y de los indices; el mapa de bits se reconstruye con los nuevos ordinales
+            Set<Reserva> archivadas = Collections.newSetFromMap(new IdentityHashMap<>());
+            archivadas.addAll(cerradas);
+            cerradas.forEach(indice::remover);
+            cerradas.forEach(ocupacion::remover);
+            reservas.removeIf(archivadas::contains);
+            estados = new IndiceEstados(reservas);
+            vencimientos.reconstruir(reservas);
+            quitarCompletadas(completadasCerradas, antesDe);
+            segmentoNuevo.stream().map(r -> r.getAula().getCodigo()).distinct().forEach(this::marcarCambio);
+            persistirReservas();
+            return segmentoNuevo.size();
+        } finally {
+            cerrojo.writeLock().unlock();
+        }
+    }
+
+    /*Reservas cerradas de un aula y rango de fechas (null = sin filtro): las archivadas y despues las completadas
+    que aun no se archivaron. Del historico solo descomprime los bloques necesarios.*/
+    public List<Reserva> consultarHistorico(String codigoAula, LocalDate desde, LocalDate hasta) {
+        List<Aula> copiaAulas;
+        List<Reserva> recientes;
+        cerrojo.readLock().lock();
+        try {
+            copiaAulas = new ArrayList<>(aulas);
+            recientes = completadas.entreFechas(desde, hasta);
+        } finally {
+            cerrojo.readLock().unlock();
+        }
+        if (codigoAula != null) recientes.removeIf(r -> !r.getAula().getCodigo().equalsIgnoreCase(codigoAula));
+        if (archivoHistorico == null) return recientes;
+        List<Reserva> cerradas = GestorArchivos.cargarHistorico(copiaAulas, archivoHistorico, codigoAula == null ? null : codigoAula.toUpperCase(), desde, hasta);
+        cerradas.addAll(recientes);
+        return cerradas;
+    }
+
+    /*Retencion del barrido: lo anterior a la fecha de corte pasa al historico. En modo MEMORIA no hay historico
+    y las completadas anteriores al corte se descartan, para que la memoria siga a la agenda y no al pasado.*/
+    void aplicarRetencion(LocalDate antesDe) throws ValidacionDeReservaException {
+        if (modo != ModoPersistencia.MEMORIA) {
+            archivarReservas(antesDe);
+            return;
+        }
+        cerrojo.writeLock().lock();
+        try {
+            List<Reserva> vencidas = completadas.anterioresA(antesDe);
+            quitarCompletadas(vencidas, antesDe);
+            vencidas.stream().map(r -> r.getAula().getCodigo()).distinct().forEach(this::marcarCambio);
+        } finally {
+            cerrojo.writeLock().unlock();
+        }
+    }
+
+    //Quita del almacen de completadas (y de los minutos reservados) las anteriores al corte
+    private void quitarCompletadas(List<Reserva> anteriores, LocalDate antesDe) {
+        if (anteriores.isEmpty()) return;
+        anteriores.forEach(ocupacion::remover);
+        completadas.quitarAnterioresA(antesDe);
+        completadasSucias = true;
+    }
+
+    //====================== Ciclo de Vida =======================
+
+    /*Inicia el hilo que marca como COMPLETADA cada reserva activa cuando pasa su hora de fin y la saca de la agenda
+    en memoria (ver BarridoCicloVida). Con diasRetencion >= 0 tambien aplica una vez al dia la retencion a lo anterior
+    a hoy - diasRetencion (ver aplicarRetencion). Llamarlo de nuevo no inicia otro hilo.*/
+    @Override
+    public synchronized void iniciarBarridoCicloVida(int diasRetencion) {
+        if (barrido != null) return;
+        barrido = new BarridoCicloVida(this, diasRetencion);
+    }
+
+    /*Marca como COMPLETADA las reservas activas cuyo fin ya paso y las pasa de la lista y los indices al almacen
+    de completadas (ver ReservasCompletadas). Devuelve cuantas cambiaron.*/
+    @Override
+    public int completarVencidas() {
+        cerrojo.writeLock().lock();
+        try {
+            List<Reserva> vencidas = vencimientos.extraerVencidas(ColaVencimientos.ahora(), r -> indice.porId(r.getIdReserva()) == r);
+            for (Reserva r : vencidas) {
+                //Sale de la lista y de los indices con su estado anterior; COMPLETADA sigue ocupando el aula,
+                //asi que el indice de ocupacion (minutos agregados, no reservas) no cambia
+                indice.remover(r);
+                estados.quitar(r);
+                r.setEstado(EstadoReserva.COMPLETADA);
+                completadas.agregar(r);
+                marcarCambio(r.getAula().getCodigo());
+            }
+            //Las modificaciones dejan entradas obsoletas; si superan a las vigentes se reconstruye la cola
+            if (vencimientos.tamanio() > 1024 && vencimientos.tamanio() > 2 * estados.contar(EstadoReserva.ACTIVA)) {
+                vencimientos.reconstruir(reservas);
+            }
+            if (!vencidas.isEmpty()) {
+                completadasSucias = true;
+                persistirReservas();
+            }
+            return vencidas.size();
+        } finally {
+            cerrojo.writeLock().unlock();
+        }
+    }
+
+    //Registra el fin de la reserva en la cola de vencimientos y avisa al barrido si es el mas proximo
+    private void agregarVencimiento(Reserva reserva) {
+        BarridoCicloVida b = barrido;
+        if (vencimientos.agregar(reserva) && b != null) b.despertar();
+    }
+
+    //Minuto (desde la epoca) en que termina la proxima reserva activa, o Long.MAX_VALUE si no hay
+    long proximoVencimiento() {
+        cerrojo.readLock().lock();
+        try {
+            return vencimientos.proximo();
+        } finally {
+            cerrojo.readLock().unlock();
+        }
+    }
+
+    //====================== Lista de Espera =======================
+
+    /*Encola una reserva rechazada por conflicto (ver ConflictoDeHorarioException.getReservaRechazada).
+    Si el horario ya esta libre se registra directamente. Devuelve true si quedo registrada.*/
+    @Override
+    public boolean encolarEnListaEspera(Reserva reserva) throws ValidacionDeReservaException {
+        cerrojo.writeLock().lock();
+        try {
+            if (reservaEnMemoria(reserva.getIdReserva()).isPresent() || listaEspera.contiene(reserva.getIdReserva())) {
+                throw new ValidacionDeReservaException("La reserva ya esta registrada o en espera: " + reserva.getIdReserva());
+            }
+            try {
+                registrarReserva(reserva);
+                return true;
+            } catch (ConflictoDeHorarioException e) {
+                listaEspera.encolar(reserva);
+                return false;
+            }
+        } finally {
+            cerrojo.writeLock().unlock();
+        }
+    }
+
+    //Listado de la lista de espera por orden de llegada
+    @Override
+    public List<Reserva> listarListaEspera() {
+        cerrojo.readLock().lock();
+        try {
+            return listaEspera.listar();
+        } finally {
+            cerrojo.readLock().unlock();
+        }
+    }
+
+    /*Ofrece el intervalo liberado a la lista de espera. Solo revisa las entradas del aula y fecha
+    que se solapan con el intervalo, por orden de llegada, y promueve las que ahora caben.*/
+    private List<Reserva> promoverListaEspera(String codigoAula, LocalDate fecha, LocalTime hInicio, LocalTime hFin) {
+        List<Reserva> promovidas = new ArrayList<>();
+        for (Reserva candidata : listaEspera.candidatos(codigoAula, fecha, hInicio, hFin)) {
+            if (candidata.validarReglas() != CodigoValidacion.OK) {
+                listaEspera.remover(candidata); //El aula cambio mientras esperaba y ya no es apta
+                continue;
+            }
+            try {
+                validarConflicto(candidata, "");
+                listaEspera.remover(candidata);
+                agregarReserva(candidata);
+                promovidas.add(candidata);
+            } catch (ConflictoDeHorarioException e) {
+                //Sigue ocupada por otra reserva: permanece en espera
+            } catch (ValidacionDeReservaException e) {
+                //Ya no es valida (fecha pasada, aula incompatible): se descarta
+                listaEspera.remover(candidata);
+            }
+        }
+        return promovidas;
     }
 
     //================== Reportes =======================
 
     //Listado configurable de reservas
+    @Override
     public List<Reserva> listarReservas(String campoOrden, boolean ascendente) {
-        //Ordena por campo de la reserva
+        cerrojo.readLock().lock();
+        try {
+            return reservas.stream()
+                .sorted(comparador(campoOrden, ascendente))
+                .collect(Collectors.toList());
+        } finally {
+            cerrojo.readLock().unlock();
+        }
+    }
+
+    //Comparador por campo de la reserva. Si no se encuentra ninguna opción, ordena por ID
+    static Comparator<Reserva> comparador(String campoOrden, boolean ascendente) {
         Comparator<Reserva> comparator;
         switch (campoOrden.toLowerCase()) {
             case "id":
@@ -223,88 +1443,679 @@ public class GestorReservas {
             case "responsable":
                 comparator = Comparator.comparing(Reserva::getResponsable);
                 break;
-                //Si no se encuentra ninguna opción, ordena por ID
             default:
                 comparator = Comparator.comparing(Reserva::getIdReserva);
         }
-        if (!ascendente) {
-            comparator = comparator.reversed();
-        }
-        return reservas.stream()
-            .sorted(comparator)
-            .collect(Collectors.toList());
+        return ascendente ? comparator : comparator.reversed();
     }
 
     //Genera el reporte del Top 3 aulas con más horas reservadas
+    @Override
     public String generarReporteTopAulas() {
-        //Usa Streams para filtrar, agrupar, sumar minutos y ordenar
-        Map<String, Long> horasPorAula = reservas.stream()
-            .filter(r -> r.getEstado().equals("activa"))
-            .collect(groupingBy(
-                r -> r.getAula().getCodigo() + " - " + r.getAula().getNombre(),
-                summingLong(r -> ChronoUnit.MINUTES.between(r.getHoraInicio(), r.getHoraFin()))
-            ));
+        return generarReportes(EnumSet.of(TipoReporte.TOP_AULAS)).get(TipoReporte.TOP_AULAS);
+    }
+
+    //Reporte distribución por tipo de reserva
+    @Override
+    public String generarReporteDistribucionPorTipoReserva() {
+        return generarReportes(EnumSet.of(TipoReporte.DISTRIBUCION_TIPO_RESERVA)).get(TipoReporte.DISTRIBUCION_TIPO_RESERVA);
+    }
+
+    //Implementacion de reporte de ocupación por tipo de aula
+    @Override
+    public String generarReporteOcupacionPorTipoAula() {
+        return generarReportes(EnumSet.of(TipoReporte.OCUPACION_TIPO_AULA)).get(TipoReporte.OCUPACION_TIPO_AULA);
+    }
+
+    //Genera los reportes pedidos (todos si el conjunto esta vacio) con una sola pasada y una sola exportacion
+    @Override
+    public Map<TipoReporte, String> generarReportes(Set<TipoReporte> tipos) {
+        EnumSet<TipoReporte> pedidos = MotorReportes.pedidos(tipos);
+        List<DefinicionReporte<?>> definiciones = MotorReportes.definiciones(pedidos);
+        Map<TipoReporte, String> resultado = MotorReportes.formatear(pedidos, definiciones, agregarReportes(definiciones));
+        exportarReporte(MotorReportes.archivo(pedidos), MotorReportes.contenido(resultado));
+        return resultado;
+    }
+
+    /*Genera el reporte de utilizacion por tipo de aula y por aula entre dos fechas (consultas O(log D) por aula).
+    Sin fechas se usa el mes actual.*/
+    @Override
+    public String generarReporteUtilizacion(LocalDate desde, LocalDate hasta) {
+        if (desde == null) desde = LocalDate.now().withDayOfMonth(1);
+        if (hasta == null) hasta = desde.withDayOfMonth(desde.lengthOfMonth());
+        String resultado = formatearReporteUtilizacion(desde, hasta, minutosReservadosPorTipoAula(desde, hasta),
+            aulasPorTipo(), minutosPorAula(desde, hasta));
+        exportarReporte("reporte_utilizacion.txt", resultado);
+        return resultado;
+    }
+
+    //Minutos reservados en un aula entre dos fechas inclusive (null = sin limite), sin recorrer las reservas
+    @Override
+    public long minutosReservados(String codigoAula, LocalDate desde, LocalDate hasta) {
+        cerrojo.readLock().lock();
+        try {
+            return ocupacion.minutosAula(codigoAula.toUpperCase(), desde == null ? LocalDate.MIN : desde, hasta == null ? LocalDate.MAX : hasta);
+        } finally {
+            cerrojo.readLock().unlock();
+        }
+    }
+
+    //Minutos reservados por tipo de aula entre dos fechas inclusive (null = sin limite)
+    @Override
+    public Map<TipoAula, Long> minutosReservadosPorTipoAula(LocalDate desde, LocalDate hasta) {
+        cerrojo.readLock().lock();
+        try {
+            Map<TipoAula, Long> minutos = new EnumMap<>(TipoAula.class);
+            for (TipoAula tipo : TipoAula.values()) {
+                minutos.put(tipo, ocupacion.minutosTipo(tipo, desde == null ? LocalDate.MIN : desde, hasta == null ? LocalDate.MAX : hasta));
+            }
+            return minutos;
+        } finally {
+            cerrojo.readLock().unlock();
+        }
+    }
+
+    //Minutos reservados por aula entre dos fechas, con clave "codigo - nombre" (una consulta al arbol por aula)
+    Map<String, Long> minutosPorAula(LocalDate desde, LocalDate hasta) {
+        cerrojo.readLock().lock();
+        try {
+            Map<String, Long> minutos = new HashMap<>();
+            for (Aula a : aulas) {
+                minutos.put(a.getCodigo() + " - " + a.getNombre(), ocupacion.minutosAula(a.getCodigo(), desde, hasta));
+            }
+            return minutos;
+        } finally {
+            cerrojo.readLock().unlock();
+        }
+    }
+
+    //Cantidad de aulas de cada tipo (capacidad disponible para la utilizacion)
+    Map<TipoAula, Long> aulasPorTipo() {
+        cerrojo.readLock().lock();
+        try {
+            return aulas.stream().collect(Collectors.groupingBy(Aula::getTipo, Collectors.counting()));
+        } finally {
+            cerrojo.readLock().unlock();
+        }
+    }
+
+    /*Agregados de varios reportes en una sola pasada sobre las reservas (en paralelo si son muchas). Las completadas
+    se suman despues, solo a los reportes que no se limitan a las activas.*/
+    Object[] agregarReportes(List<DefinicionReporte<?>> definiciones) {
+        cerrojo.readLock().lock();
+        try {
+            Object[] acumuladores = (reservas.size() >= MotorReportes.UMBRAL_PARALELO ? reservas.parallelStream() : reservas.stream())
+                .collect(MotorReportes.combinado(definiciones));
+            if (completadas.tamanio() > 0) MotorReportes.acumularCompletadas(definiciones, acumuladores, completadas.listar());
+            return acumuladores;
+        } finally {
+            cerrojo.readLock().unlock();
+        }
+    }
+
+    static String formatearReporteTopAulas(Map<String, Long> horasPorAula) {
         //Ordena y limita el Top 3
         String reporte = horasPorAula.entrySet().stream()
             .sorted(Map.Entry.<String, Long>comparingByValue().reversed()) //Ordena por valor (total minutos)
             .limit(3) //Limita a 3
             .map(entry -> String.format("- %s: %d horas (Total min: %d)", //Formatea el reporte
                 entry.getKey(), entry.getValue() / 60, entry.getValue())) //Divide por 60 para convertir a horas
- 
-            .collect(joining("\n"));
-        //Agrupa y junta
-        //Exporta el reporte
-        String resultado = "=== Top 3 Aulas con mas horas reservadas (Activas) ===\n" + (reporte.isEmpty() ? "No hay reservas activas." : reporte);
-        GestorArchivos.exportarReporte("reporte_top_aulas.txt", resultado);
-        return resultado;
+            .collect(joining("\n")); //Agrupa y junta
+        return "=== Top 3 Aulas con mas horas reservadas (Activas) ===\n" + (reporte.isEmpty() ? "No hay reservas activas." : reporte);
     }
 
-    //Reporte distribución por tipo de reserva
-    public String generarReporteDistribucionPorTipoReserva() {
-        Map<String, Long> distribucion = reservas.stream()
-            .collect(Collectors.groupingBy(r -> {
-                if (r instanceof ReservaClase) return "Clase";
-                else if (r instanceof ReservaEvento) return "Evento";
-                else if (r instanceof ReservaPractica) return "Practica";
-                else return "Otro";
-            }, Collectors.counting()));
-
+    static String formatearReporteDistribucion(Map<String, Long> distribucion) {
         String reporte = distribucion.entrySet().stream()
             .map(e -> String.format("- %s: %d", e.getKey(), e.getValue()))
             .collect(Collectors.joining("\n"));
-
-        //Exporta el reporte
-        String resultado = "=== Distribucion de Reservas por Tipo ===\n" + (reporte.isEmpty() ? "No hay reservas registradas." : reporte);
-        GestorArchivos.exportarReporte("reporte_distribucion_tipo.txt", resultado);
-        return resultado;
+        return "=== Distribucion de Reservas por Tipo ===\n" + (reporte.isEmpty() ? "No hay reservas registradas." : reporte);
     }
 
-    //Implementacion de reporte de ocupación por tipo de aula
-    public String generarReporteOcupacionPorTipoAula() {
-        //Agrupa por TipoAula y suma los minutos de duración de las reservas activas
-        Map<TipoAula, Long> horasPorTipo = reservas.stream()
-            .filter(r -> r.getEstado().equals("activa"))
-            .collect(Collectors.groupingBy(
-                r -> r.getAula().getTipo(),
-                Collectors.summingLong(r -> ChronoUnit.MINUTES.between(r.getHoraInicio(), r.getHoraFin()))
-            ));
-        
-        //Ordena y limita el Top 3
-        String reporte = horasPorTipo.entrySet().stream() //Ordena por valor (total minutos)
+    static String formatearReporteOcupacionPorTipoAula(Map<TipoAula, Long> horasPorTipo) {
+        String reporte = horasPorTipo.entrySet().stream()
             .map(entry -> String.format("- Tipo %s: %d horas (Total min: %d)", //Formatea el reporte
                 entry.getKey(), entry.getValue() / 60, entry.getValue())) //Divide por 60 para convertir a horas
             .collect(Collectors.joining("\n")); //Agrupa y junta
-        
-        String resultado = "=== Ocupacion de Aulas por Tipo (Activas) ===\n" + (reporte.isEmpty() ? "No hay reservas activas." : reporte);
-        GestorArchivos.exportarReporte("reporte_ocupacion_tipo_aula.txt", resultado);
+        return "=== Ocupacion de Aulas por Tipo (Activas) ===\n" + (reporte.isEmpty() ? "No hay reservas activas." : reporte);
+    }
+
+    /*Porcentaje de utilizacion: minutos reservados sobre los minutos disponibles en el rango
+    (aulas x dias x jornada). Solo se listan las aulas con minutos reservados.*/
+    static String formatearReporteUtilizacion(LocalDate desde, LocalDate hasta, Map<TipoAula, Long> minutosPorTipo,
+                                              Map<TipoAula, Long> aulasPorTipo, Map<String, Long> minutosPorAula) {
+        long dias = Math.max(1, ChronoUnit.DAYS.between(desde, hasta) + 1);
+        StringBuilder sb = new StringBuilder(String.format("=== Utilizacion de Aulas del %s al %s (jornada de %d horas) ===%n",
+            desde, hasta, MINUTOS_JORNADA / 60));
+        for (TipoAula tipo : TipoAula.values()) {
+            long minutos = minutosPorTipo.getOrDefault(tipo, 0L);
+            long disponibles = aulasPorTipo.getOrDefault(tipo, 0L) * dias * MINUTOS_JORNADA;
+            sb.append(String.format("- Tipo %s: %d de %d horas (%.1f%%)%n", tipo, minutos / 60, disponibles / 60,
+                disponibles == 0 ? 0.0 : minutos * 100.0 / disponibles));
+        }
+        String porAula = minutosPorAula.entrySet().stream()
+            .filter(e -> e.getValue() > 0)
+            .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
+            .map(e -> String.format("  %s: %d horas (%.1f%%)", e.getKey(), e.getValue() / 60, e.getValue() * 100.0 / (dias * MINUTOS_JORNADA)))
+            .collect(joining("\n"));
+        return sb.append("Por aula:\n").append(porAula.isEmpty() ? "  No hay reservas en el rango." : porAula).toString();
+    }
+
+    //================== Recarga en caliente ==================
+
+    /*Inicia el hilo que aplica las ediciones externas de aulas.txt y reservas.txt sin reiniciar (ver RecargadorArchivos).
+    Sin archivos (gestor en memoria) no hace nada. Llamarlo de nuevo no inicia otro hilo.*/
+    @Override
+    public synchronized void iniciarRecargaArchivos() {
+        if (recarga != null || archivoAulas == null || archivoReservas == null) return;
+        try {
+            recarga = new RecargadorArchivos(this, observadoAulas, observadoReservas);
+        } catch (IOException e) {
+            System.err.println("No se pudo iniciar la recarga de archivos: " + e.getMessage());
+        }
+    }
+
+    /*Aplica las filas de aulas editadas por fuera. Las aulas nuevas se agregan; en las modificadas se aplica el cambio
+    con la politica MARCAR (el archivo manda: las reservas futuras que dejan de ser validas quedan con una alerta).
+    Un aula borrada del archivo solo se quita si no tiene reservas en memoria. Las filas se interpretan antes de
+    tomar el cerrojo de escritura, que se toma una sola vez para aplicarlas todas. El archivo se vuelve a escribir
+    desde la memoria, con checksums nuevos y sin las filas rechazadas (guardar=false: lo escribe el llamador).*/
+    private ResultadoRecarga recargarAulas(ArchivoObservado.Cambios cambios, boolean guardar) {
+        ResultadoRecarga resultado = new ResultadoRecarga(archivoAulas);
+        Map<String, Aula> leidas = new LinkedHashMap<>();
+        for (String fila : cambios.getFilas()) {
+            try {
+                Aula aula = GestorArchivos.parsearAula(fila);
+                if (aula != null) leidas.put(fila, aula);
+            } catch (IllegalArgumentException e) {
+                resultado.rechazar(fila, "fila invalida: " + e.getMessage());
+            }
+        }
+
+        cerrojo.writeLock().lock();
+        boolean loteAnterior = enLote;
+        enLote = true; //Un solo guardado al final
+        try {
+            if (cambios.cantidadEliminadas() > 0) {
+                for (Aula aula : new ArrayList<>(aulas)) {
+                    if (!cambios.eliminada(aula.getCodigo())) continue;
+                    if (!indice.lineaDeTiempo(aula.getCodigo(), null, null).isEmpty() || completadas.tieneAula(aula.getCodigo())) {
+                        resultado.rechazar(aula.toCsvString(), "no se puede borrar un aula con reservas; se conserva");
+                        continue;
+                    }
+                    aulas.remove(aula);
+                    espacial.remover(aula);
+                    capacidades.remover(aula);
+                    marcarCambio(aula.getCodigo());
+                    resultado.eliminada();
+                }
+            }
+            for (Map.Entry<String, Aula> leida : leidas.entrySet()) {
+                Aula nueva = leida.getValue();
+                try {
+                    Optional<Aula> existente = getAulaByCodigo(nueva.getCodigo());
+                    if (!existente.isPresent()) {
+                        registrarAula(nueva.getCodigo(), nueva.getNombre(), nueva.getCapacidad(), nueva.getTipo(), nueva.getUbicacion());
+                        resultado.agregada();
+                        continue;
+                    }
+                    Aula aula = existente.get();
+                    if (aula.toCsvString().equals(nueva.toCsvString())) continue;
+                    if (!aula.getNombre().equals(nueva.getNombre()) || aula.getCapacidad() != nueva.getCapacidad() || aula.getTipo() != nueva.getTipo()) {
+                        ImpactoCambioAula impacto = modificarAula(aula.getCodigo(), nueva.getNombre(), nueva.getCapacidad(), nueva.getTipo(),
+                            PoliticaCambioAula.MARCAR);
+                        resultado.marcadas(impacto.getMarcadas().size());
+                    }
+                    if (!Objects.equals(csv(aula.getUbicacion()), csv(nueva.getUbicacion()))) ubicarAula(aula.getCodigo(), nueva.getUbicacion());
+                    resultado.modificada();
+                } catch (ValidacionDeReservaException e) {
+                    resultado.rechazar(leida.getKey(), e.getMessage());
+                }
+            }
+        } finally {
+            enLote = loteAnterior;
+            try {
+                if (guardar) {
+                    persistirAulas();
+                } else {
+                    aulasSucias = true;
+                }
+            } finally {
+                cerrojo.writeLock().unlock();
+            }
+        }
+        return resultado;
+    }
+
+    private static String csv(Ubicacion ubicacion) {
+        return ubicacion == null ? null : ubicacion.toCsvString();
+    }
+
+    /*Aplica las filas de reservas editadas por fuera. Primero quita las borradas del archivo y despues agrega o
+    reemplaza las nuevas y modificadas, en su mismo ordinal. El horario que deja libre una reserva activa borrada,
+    movida o que dejo de estar activa se ofrece a la lista de espera, como al cancelar o modificar.
+    Como al cargar, no se validan las reglas de la reserva, pero se rechaza la que se solapa con otra activa.
+    Las filas se interpretan fuera del cerrojo de escritura, con una copia de las aulas.*/
+    private ResultadoRecarga recargarReservas(ArchivoObservado.Cambios cambios, boolean guardar) {
+        ResultadoRecarga resultado = new ResultadoRecarga(archivoReservas);
+        Map<String, Aula> aulasPorCodigo = new HashMap<>();
+        listarAulas().forEach(a -> aulasPorCodigo.putIfAbsent(a.getCodigo(), a));
+        Map<String, Reserva> leidas = new LinkedHashMap<>();
+        for (String fila : cambios.getFilas()) {
+            try {
+                Reserva reserva = GestorArchivos.parsearReserva(fila, aulasPorCodigo);
+                if (reserva != null) leidas.put(fila, reserva);
+            } catch (RuntimeException e) {
+                resultado.rechazar(fila, "fila invalida: " + e.getMessage());
+            }
+        }
+
+        //Las borradas se buscan con el cerrojo de lectura: recorrer la lista no detiene las consultas
+        List<Reserva> borradas = Collections.emptyList();
+        if (cambios.cantidadEliminadas() > 0) {
+            cerrojo.readLock().lock();
+            try {
+                borradas = reservas.stream().filter(r -> cambios.eliminada(r.getIdReserva())).collect(Collectors.toList());
+            } finally {
+                cerrojo.readLock().unlock();
+            }
+        }
+
+        cerrojo.writeLock().lock();
+        boolean loteAnterior = enLote;
+        enLote = true; //Un solo guardado al final
+        try {
+            for (Reserva r : borradas) {
+                if (indice.porId(r.getIdReserva()) != r) continue; //Cambio entre los dos cerrojos
+                indice.remover(r);
+                ocupacion.remover(r);
+                estados.quitar(r); //La cola de vencimientos descarta sola las quitadas
+                marcarCambio(r.getAula().getCodigo());
+                resultado.eliminada();
+                if (r.getEstado() == EstadoReserva.ACTIVA) {
+                    resultado.promovidas(promoverListaEspera(r.getAula().getCodigo(), r.getFecha(), r.getHoraInicio(), r.getHoraFin()).size());
+                }
+            }
+            for (Map.Entry<String, Reserva> leida : leidas.entrySet()) {
+                Reserva nueva = leida.getValue();
+                Reserva existente = indice.porId(nueva.getIdReserva());
+                if (existente != null && existente.toCsvString().equals(nueva.toCsvString())) continue;
+                if (existente == null && completadas.porId(nueva.getIdReserva()) != null) {
+                    resultado.rechazar(leida.getKey(), "la reserva ya se completo (esta en " + archivoCompletadas + ")");
+                    continue;
+                }
+                if (!aulas.contains(nueva.getAula())) {
+                    resultado.rechazar(leida.getKey(), "el aula " + nueva.getAula().getCodigo() + " ya no existe");
+                    continue;
+                }
+                if (nueva.getEstado() == EstadoReserva.ACTIVA
+                        && ocupada(nueva.getAula().getCodigo(), nueva.getFecha(), nueva.getHoraInicio(), nueva.getHoraFin(), nueva.getIdReserva())) {
+                    resultado.rechazar(leida.getKey(), "se solapa con otra reserva activa del aula");
+                    continue;
+                }
+                if (existente == null) {
+                    agregarReserva(nueva);
+                    avanzarGeneradorIds(nueva.getIdReserva());
+                    resultado.agregada();
+                } else {
+                    indice.remover(existente);
+                    ocupacion.remover(existente);
+                    reservas.set(estados.reemplazar(existente, nueva), nueva);
+                    indice.agregar(nueva);
+                    ocupacion.agregar(nueva);
+                    agregarVencimiento(nueva);
+                    marcarCambio(existente.getAula().getCodigo());
+                    marcarCambio(nueva.getAula().getCodigo());
+                    resultado.modificada();
+                    if (existente.getEstado() == EstadoReserva.ACTIVA && (nueva.getEstado() != EstadoReserva.ACTIVA || !mismoHorario(existente, nueva))) {
+                        resultado.promovidas(promoverListaEspera(existente.getAula().getCodigo(), existente.getFecha(),
+                            existente.getHoraInicio(), existente.getHoraFin()).size());
+                    }
+                }
+            }
+        } finally {
+            enLote = loteAnterior;
+            try {
+                if (guardar) {
+                    persistirReservas();
+                } else {
+                    reservasSucias = true;
+                }
+            } finally {
+                cerrojo.writeLock().unlock();
+            }
+        }
         return resultado;
     }
 
+    private static boolean mismoHorario(Reserva a, Reserva b) {
+        return a.getAula().getCodigo().equals(b.getAula().getCodigo()) && a.getFecha().equals(b.getFecha())
+            && a.getHoraInicio().equals(b.getHoraInicio()) && a.getHoraFin().equals(b.getHoraFin());
+    }
+
+    /*Trae a memoria las ediciones externas de los archivos de aulas y reservas (aulas primero): las filas que cambiaron
+    desde la version conocida (ver ArchivoObservado). Sin ediciones solo se consulta la marca de cada archivo.
+    La llaman el hilo de recarga (guardar=true) y la escritura de los archivos, antes de escribir (guardar=false).
+    Devuelve false si algun archivo seguia cambiando mientras se leia: hay que reintentar.*/
+    boolean incorporarEdicionesExternas(boolean guardar) {
+        boolean estables = incorporar(observadoAulas, true, guardar);
+        return incorporar(observadoReservas, false, guardar) && estables;
+    }
+
+    private boolean incorporar(ArchivoObservado observado, boolean sonAulas, boolean guardar) {
+        if (observado == null) return true;
+        try {
+            for (int intento = 0; intento < INTENTOS_EDICION_EXTERNA; intento++) {
+                ArchivoObservado.Cambios cambios = observado.leerCambios();
+                if (cambios == null) continue;
+                if (!cambios.isVacio()) informar(sonAulas ? recargarAulas(cambios, guardar) : recargarReservas(cambios, guardar));
+                return true;
+            }
+            return false;
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Recarga de " + observado.getArchivo() + ": " + e.getMessage());
+            return true;
+        }
+    }
+
+    private static void informar(ResultadoRecarga resultado) {
+        System.out.println(resultado.resumen());
+        resultado.getRechazadas().forEach(r -> System.err.println("  Fila rechazada: " + r));
+    }
+
+    /*Antes de escribir aulas o reservas se incorporan sus ediciones externas, para no pisarlas. Si un archivo sigue
+    cambiando (alguien lo esta guardando) se copia a <archivo>.externo y se sobrescribe: nunca se pierde en silencio.*/
+    private void incorporarAntesDeEscribir() {
+        if (incorporarEdicionesExternas(false)) return;
+        for (ArchivoObservado observado : Arrays.asList(observadoAulas, observadoReservas)) {
+            try {
+                if (observado == null || !observado.editadoPorFuera()) continue;
+                String copia = observado.respaldar();
+                if (copia != null) {
+                    System.err.printf("Aviso: %s cambiaba mientras se guardaba; se sobrescribe y la version externa queda en %s%n",
+                        observado.getArchivo(), copia);
+                }
+            } catch (IOException e) {
+                System.err.println("No se pudo respaldar " + observado.getArchivo() + ": " + e.getMessage());
+            }
+        }
+    }
+
+    //Algun archivo se edito por fuera despues de incorporar las ediciones: la escritura se rechazo y se reintenta
+    private boolean editadosPorFuera() {
+        for (ArchivoObservado observado : Arrays.asList(observadoAulas, observadoReservas)) {
+            try {
+                if (observado != null && observado.editadoPorFuera()) return true;
+            } catch (IOException e) {
+                //Se informa al escribir
+            }
+        }
+        return false;
+    }
+
+    /*Con el contador en memoria, salta por encima del ID de una reserva agregada a mano para no repetirlo.
+    Con SecuenciaArrendada o GeneradorIdTemporal los IDs escritos a mano deben quedar fuera de su rango.*/
+    private void avanzarGeneradorIds(String id) {
+        GeneradorIds generador = generadorIds;
+        if (!(generador instanceof SecuenciaLocal)) return; //Sin generador todavia: el recorrido inicial ya lo vera
+        try {
+            ((SecuenciaLocal) generador).avanzarHasta(Long.parseLong(id.substring(1)) + 1);
+        } catch (NumberFormatException e) {
+            //ID con otro formato: no compite con los R<n>
+        }
+    }
+
     //=================== Persistencia ====================
 
-    //Método para guardar todos los datos
+    /*Guarda todos los datos. En modo ARCHIVO escribe en el momento; en modo DIFERIDA vuelca con el hilo que llama,
+    sin esperar al intervalo. En modo MEMORIA no hace nada.*/
+    @Override
     public void guardarDatos() {
-        GestorArchivos.guardarAulas(aulas);
-        GestorArchivos.guardarReservas(reservas);
+        if (modo == ModoPersistencia.DIFERIDA && !cerrojo.isWriteLockedByCurrentThread()) {
+            volcarPendientes(true);
+            return;
+        }
+        cerrojo.writeLock().lock();
+        try {
+            aulasSucias = true;
+            reservasSucias = true;
+            idempotenciaSucia |= idempotencia.tamanio() > 0; //El archivo de claves solo se crea cuando hay alguna
+            completadasSucias |= completadas.tamanio() > 0;
+            escribirPendientes();
+        } finally {
+            cerrojo.writeLock().unlock();
+        }
+    }
+
+    private void crearArchivosFaltantes() {
+        if (modo == ModoPersistencia.MEMORIA) return;
+        cerrojo.writeLock().lock();
+        try {
+            aulasSucias = !new File(archivoAulas).exists();
+            reservasSucias = !new File(archivoReservas).exists();
+            escribirPendientes();
+        } finally {
+            cerrojo.writeLock().unlock();
+        }
+    }
+
+    //Exporta un reporte a archivo, salvo en modo MEMORIA
+    private void exportarReporte(String nombreArchivo, String contenido) {
+        if (modo != ModoPersistencia.MEMORIA) {
+            GestorArchivos.exportarReporte(nombreArchivo, contenido);
+        }
+    }
+
+    //Marca el archivo modificado y lo guarda segun el modo (ver persistir)
+    private void persistirAulas() {
+        aulasSucias = true;
+        persistir();
+    }
+
+    private void persistirReservas() {
+        reservasSucias = true;
+        persistir();
+    }
+
+    /*Tras una operacion de modificacion: en modo lote solo quedan marcados los cambios; en modo DIFERIDA se avisa
+    al hilo de escritura; en modo ARCHIVO se reescriben ahora solo los archivos marcados.*/
+    private void persistir() {
+        secuenciaCambios++;
+        if (enLote) return;
+        if (persistidor != null) {
+            persistidor.notificar();
+        } else {
+            escribirPendientes();
+        }
+    }
+
+    //Escribe los archivos marcados dentro del cerrojo de escritura (modo ARCHIVO)
+    private void escribirPendientes() {
+        if (modo == ModoPersistencia.MEMORIA) {
+            aulasSucias = false;
+            reservasSucias = false;
+            idempotenciaSucia = false;
+            completadasSucias = false;
+            confirmarHasta(secuenciaCambios);
+            return;
+        }
+        boolean ok = true;
+        //Las completadas se escriben antes que reservas.txt: si se corta entre los dos, quedan repetidas y no perdidas
+        if (completadasSucias) {
+            completadasSucias = !GestorArchivos.guardarReservas(completadas.listar(), archivoCompletadas);
+            ok = !completadasSucias;
+        }
+        for (int intento = 1; aulasSucias || reservasSucias; intento++) {
+            incorporarAntesDeEscribir();
+            if (aulasSucias) aulasSucias = !GestorArchivos.guardarAulas(aulas, archivoAulas);
+            if (reservasSucias) reservasSucias = !GestorArchivos.guardarReservas(reservas, archivoReservas);
+            ok = !completadasSucias && !aulasSucias && !reservasSucias;
+            if (ok || intento == INTENTOS_EDICION_EXTERNA || !editadosPorFuera()) break;
+        }
+        if (idempotenciaSucia) {
+            idempotenciaSucia = !GestorArchivos.guardarLineas(idempotencia.lineas(), archivoIdempotencia, "claves de idempotencia");
+            ok &= !idempotenciaSucia;
+        }
+        if (ok) confirmarHasta(secuenciaCambios);
+    }
+
+    /*Volcado del modo DIFERIDA: toma una instantanea de las lineas de los archivos marcados bajo el cerrojo
+    y las escribe fuera de el, para no bloquear las reservas durante la E/S. Un solo volcado a la vez,
+    asi una instantanea vieja nunca sobrescribe a una mas nueva. Si la escritura falla los archivos
+    quedan marcados y se reintenta en el siguiente volcado.*/
+    void volcarPendientes(boolean todo) {
+        synchronized (cerrojoVolcado) {
+            //Si una edicion externa se cuela entre la incorporacion y la escritura, lo que fallo queda marcado y se reintenta
+            for (int intento = 1; !volcar(todo) && intento < INTENTOS_EDICION_EXTERNA && editadosPorFuera(); intento++) {
+                todo = false;
+            }
+        }
+    }
+
+    //Un volcado: incorpora las ediciones externas, copia lo marcado con el cerrojo y escribe sin el. true si escribio todo.
+    private boolean volcar(boolean todo) {
+        incorporarAntesDeEscribir();
+        List<String> lineasAulas = null;
+        List<String> lineasReservas = null;
+        List<String> lineasIdempotencia = null;
+        List<String> lineasCompletadas = null;
+        long secuencia;
+        cerrojo.writeLock().lock();
+        try {
+            if (todo || aulasSucias) lineasAulas = aulas.stream().map(Aula::toCsvString).collect(Collectors.toList());
+            if (todo || reservasSucias) lineasReservas = reservas.stream().map(Reserva::toCsvString).collect(Collectors.toList());
+            if ((todo && idempotencia.tamanio() > 0) || idempotenciaSucia) lineasIdempotencia = idempotencia.lineas();
+            if ((todo && completadas.tamanio() > 0) || completadasSucias) {
+                lineasCompletadas = completadas.listar().stream().map(Reserva::toCsvString).collect(Collectors.toList());
+            }
+            aulasSucias = false;
+            reservasSucias = false;
+            idempotenciaSucia = false;
+            completadasSucias = false;
+            secuencia = secuenciaCambios;
+        } finally {
+            cerrojo.writeLock().unlock();
+        }
+
+        //Las completadas antes que reservas.txt (ver escribirPendientes)
+        boolean completadasOk = lineasCompletadas == null
+            || GestorArchivos.guardarLineas(lineasCompletadas, archivoCompletadas, "reservas completadas");
+        boolean aulasOk = lineasAulas == null || GestorArchivos.guardarLineas(lineasAulas, archivoAulas, "aulas");
+        boolean reservasOk = lineasReservas == null || GestorArchivos.guardarLineas(lineasReservas, archivoReservas, "reservas");
+        boolean idempotenciaOk = lineasIdempotencia == null
+            || GestorArchivos.guardarLineas(lineasIdempotencia, archivoIdempotencia, "claves de idempotencia");
+        if (aulasOk && reservasOk && idempotenciaOk && completadasOk) {
+            confirmarHasta(secuencia);
+            return true;
+        }
+        cerrojo.writeLock().lock();
+        try {
+            aulasSucias |= !aulasOk;
+            reservasSucias |= !reservasOk;
+            idempotenciaSucia |= !idempotenciaOk;
+            completadasSucias |= !completadasOk;
+        } finally {
+            cerrojo.writeLock().unlock();
+        }
+        return false;
+    }
+
+    /*Futuro que se completa cuando todos los cambios hechos hasta ahora (incluido el del llamador) estan en disco.
+    En modo ARCHIVO fuera de un lote ya esta completo; en modo MEMORIA siempre lo esta.*/
+    @Override
+    public CompletableFuture<Void> confirmarPersistencia() {
+        long secuencia;
+        cerrojo.readLock().lock();
+        try {
+            secuencia = secuenciaCambios;
+        } finally {
+            cerrojo.readLock().unlock();
+        }
+        synchronized (esperas) {
+            if (secuenciaEnDisco >= secuencia) return CompletableFuture.completedFuture(null);
+            return esperas.computeIfAbsent(secuencia, k -> new CompletableFuture<>());
+        }
+    }
+
+    //Completa los futuros de los cambios que ya estan en disco
+    private void confirmarHasta(long secuencia) {
+        List<CompletableFuture<Void>> listas;
+        synchronized (esperas) {
+            if (secuencia <= secuenciaEnDisco) return;
+            secuenciaEnDisco = secuencia;
+            Map<Long, CompletableFuture<Void>> cubiertas = esperas.headMap(secuencia, true);
+            listas = new ArrayList<>(cubiertas.values());
+            cubiertas.clear();
+        }
+        listas.forEach(f -> f.complete(null));
+    }
+
+    //Ajusta el intervalo y el tamanio maximo de lote del modo DIFERIDA
+    public void configurarEscrituraDiferida(long intervaloMs, int maxCambios) {
+        if (persistidor != null) persistidor.configurar(intervaloMs, maxCambios);
+    }
+
+    //Inicia el modo lote: las operaciones se acumulan en memoria hasta guardarDatos o finalizarLote
+    @Override
+    public void iniciarLote() {
+        cerrojo.writeLock().lock();
+        try {
+            enLote = true;
+        } finally {
+            cerrojo.writeLock().unlock();
+        }
+    }
+
+    //Finaliza el modo lote y guarda (o avisa al hilo de escritura) si quedaron cambios pendientes
+    @Override
+    public void finalizarLote() {
+        cerrojo.writeLock().lock();
+        try {
+            enLote = false;
+            if (!aulasSucias && !reservasSucias && !idempotenciaSucia && !completadasSucias) return;
+            if (persistidor != null) {
+                persistidor.notificar();
+            } else {
+                escribirPendientes();
+            }
+        } finally {
+            cerrojo.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean hayCambiosPendientes() {
+        cerrojo.readLock().lock();
+        try {
+            return aulasSucias || reservasSucias || idempotenciaSucia || completadasSucias;
+        } finally {
+            cerrojo.readLock().unlock();
+        }
+    }
+
+    //Vuelca lo pendiente y detiene el hilo de escritura diferida
+    @Override
+    public void close() {
+        BarridoCicloVida b;
+        RecargadorArchivos r;
+        synchronized (this) {
+            b = barrido;
+            barrido = null;
+            r = recarga;
+            recarga = null;
+        }
+        if (r != null) r.detener();
+        if (b != null) b.detener();
+        if (persistidor != null) {
+            persistidor.detener();
+        } else if (hayCambiosPendientes()) {
+            cerrojo.writeLock().lock();
+            try {
+                escribirPendientes();
+            } finally {
+                cerrojo.writeLock().unlock();
+            }
+        }
+        if (observadoAulas != null) observadoAulas.dejarDeObservar();
+        if (observadoReservas != null) observadoReservas.dejarDeObservar();
     }
-}
\ No newline at end of file
+}
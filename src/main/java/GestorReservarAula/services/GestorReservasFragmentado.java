@@ -0,0 +1,547 @@
+package GestorReservarAula.services;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import GestorReservarAula.models.Aula;
+import GestorReservarAula.models.AulaCercana;
+import GestorReservarAula.models.ImpactoCambioAula;
+import GestorReservarAula.models.Reserva;
+import GestorReservarAula.models.ReservaEvento;
+import GestorReservarAula.models.Ubicacion;
+import GestorReservarAula.util.TipoAula;
+import GestorReservarAula.util.TipoEvento;
+import GestorReservarAula.util.EstadoReserva;
+import GestorReservarAula.util.FormatoExportacion;
+import GestorReservarAula.util.PoliticaCambioAula;
+import GestorReservarAula.util.TipoReporte;
+import GestorReservarAula.exceptions.ConflictoDeHorarioException;
+import GestorReservarAula.exceptions.NoEncontradoException;
+import GestorReservarAula.exceptions.ValidacionDeReservaException;
+import GestorReservarAula.interfaces.GeneradorIds;
+import GestorReservarAula.interfaces.ServicioReservas;
+import GestorReservarAula.persistence.ExportadorReservas;
+import GestorReservarAula.persistence.GestorArchivos;
+import GestorReservarAula.persistence.ModoPersistencia;
+
+/*Fachada que reparte las aulas entre varios GestorReservas (fragmentos), por ejemplo uno por edificio o campus.
+Cada fragmento tiene sus propios archivos (aulas_<fragmento>.txt, reservas_<fragmento>.txt) y su propio cerrojo.
+Las operaciones de un aula se enrutan a su fragmento; las globales (reportes, busquedas, listados)
+se ejecutan en paralelo en todos los fragmentos y se combinan. Los IDs de reserva son unicos entre fragmentos.*/
+public class GestorReservasFragmentado implements ServicioReservas, AutoCloseable {
+    public static final String FRAGMENTO_GENERAL = "GENERAL";
+
+    private final Map<String, GestorReservas> fragmentos = new LinkedHashMap<>();
+    private final Function<String, String> enrutador; //Codigo de aula -> nombre de fragmento
+    private final ModoPersistencia modo;
+    private final ExecutorService pool;
+
+    /*Crea un fragmento por nombre. El enrutador recibe el codigo de aula (en mayusculas)
+    y devuelve el nombre del fragmento que la almacena.*/
+    public GestorReservasFragmentado(Collection<String> nombres, Function<String, String> enrutador, String directorio,
+                                     ModoPersistencia modo) throws ValidacionDeReservaException {
+        this.enrutador = enrutador;
+        this.modo = modo;
+        //Si algo falla se cierran los fragmentos ya abiertos: sus hilos y ganchos de cierre seguirian vivos
+        try {
+            for (String nombre : nombres) {
+                //Dos fragmentos con el mismo nombre compartirian archivos y el segundo reemplazaria al primero
+                if (fragmentos.containsKey(nombre)) {
+                    throw new ValidacionDeReservaException("Fragmento repetido: " + nombre);
+                }
+                String aulas = new File(directorio, "aulas_" + nombre + ".txt").getPath();
+                String reservas = new File(directorio, "reservas_" + nombre + ".txt").getPath();
+                fragmentos.put(nombre, new GestorReservas(aulas, reservas, modo));
+            }
+            if (fragmentos.isEmpty()) {
+                throw new ValidacionDeReservaException("Se requiere al menos un fragmento.");
+            }
+
+            /*Un solo contador para todos los fragmentos, iniciado tras el mayor ID existente. Se calcula aqui y no con el
+            primer ID porque hacerlo entonces tomaria los cerrojos de los demas fragmentos con el de uno ya tomado.*/
+            usarGeneradorIds(new SecuenciaLocal(siguienteIdLocal()));
+        } catch (ValidacionDeReservaException | RuntimeException e) {
+            cerrarFragmentos();
+            throw e;
+        }
+
+        this.pool = Executors.newFixedThreadPool(fragmentos.size(), r -> {
+            Thread t = new Thread(r, "fragmentos");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /*Fragmenta por prefijo del codigo de aula (ej. "A", "B" para los edificios A y B).
+    Gana el prefijo mas largo; las aulas sin prefijo conocido van al fragmento GENERAL, por eso ese nombre
+    no se acepta como prefijo.*/
+    public static GestorReservasFragmentado porPrefijo(String directorio, ModoPersistencia modo, String... prefijos)
+            throws ValidacionDeReservaException {
+        for (String prefijo : prefijos) {
+            if (prefijo == null || prefijo.trim().isEmpty()) {
+                throw new ValidacionDeReservaException("El prefijo de fragmento no puede estar vacio.");
+            }
+            if (prefijo.equalsIgnoreCase(FRAGMENTO_GENERAL)) {
+                throw new ValidacionDeReservaException("El prefijo '" + prefijo + "' esta reservado para el fragmento de las aulas sin prefijo.");
+            }
+        }
+        List<String> ordenados = Arrays.stream(prefijos)
+            .map(String::toUpperCase)
+            .sorted(Comparator.comparingInt(String::length).reversed())
+            .collect(Collectors.toList());
+        List<String> nombres = new ArrayList<>(ordenados);
+        nombres.add(FRAGMENTO_GENERAL);
+        return new GestorReservasFragmentado(nombres, codigo -> ordenados.stream()
+            .filter(codigo::startsWith)
+            .findFirst()
+            .orElse(FRAGMENTO_GENERAL), directorio, modo);
+    }
+
+    //Fragmento que almacena un aula
+    private GestorReservas fragmentoDe(String codigoAula) throws ValidacionDeReservaException {
+        String nombre = enrutador.apply(codigoAula.toUpperCase());
+        GestorReservas fragmento = fragmentos.get(nombre);
+        if (fragmento == null) {
+            throw new NoEncontradoException("No existe el fragmento '" + nombre + "' para el aula " + codigoAula);
+        }
+        return fragmento;
+    }
+
+    //Fragmento que contiene una reserva en memoria por ID (cada busqueda es O(1) en su indice)
+    private Optional<GestorReservas> fragmentoDeReserva(String id) {
+        return fragmentos.values().stream().filter(g -> g.contieneReserva(id)).findFirst();
+    }
+
+    //Ejecuta una operacion en todos los fragmentos en paralelo y devuelve los resultados en orden de fragmento
+    private <T> List<T> enTodos(Function<GestorReservas, T> operacion) {
+        List<CompletableFuture<T>> futuros = fragmentos.values().stream()
+            .map(g -> CompletableFuture.supplyAsync(() -> operacion.apply(g), pool))
+            .collect(Collectors.toList());
+        try {
+            return futuros.stream().map(CompletableFuture::join).collect(Collectors.toList());
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+            throw e;
+        }
+    }
+
+    //Suma mapas de agregados de varios fragmentos
+    private static <K> Map<K, Long> combinar(List<Map<K, Long>> parciales) {
+        Map<K, Long> total = new HashMap<>();
+        parciales.forEach(m -> m.forEach((k, v) -> total.merge(k, v, Long::sum)));
+        return total;
+    }
+
+    public Map<String, GestorReservas> getFragmentos() {
+        return Collections.unmodifiableMap(fragmentos);
+    }
+
+    //====================== Gestión de Aulas ======================
+
+    @Override
+    public void registrarAula(String codigo, String nombre, int capacidad, TipoAula tipo) throws ValidacionDeReservaException {
+        fragmentoDe(codigo).registrarAula(codigo, nombre, capacidad, tipo);
+    }
+
+    @Override
+    public Collection<Aula> listarAulas() {
+        return enTodos(GestorReservas::listarAulas).stream().flatMap(Collection::stream).collect(Collectors.toList());
+    }
+
+    @Override
+    public void modificarAula(String codigo, String nuevoNombre, int nuevaCapacidad, TipoAula nuevoTipo) throws ValidacionDeReservaException {
+        fragmentoDe(codigo).modificarAula(codigo, nuevoNombre, nuevaCapacidad, nuevoTipo);
+    }
+
+    //Con REUBICAR las reservas solo se mueven a aulas del mismo fragmento (mismo edificio o campus)
+    @Override
+    public ImpactoCambioAula modificarAula(String codigo, String nuevoNombre, int nuevaCapacidad, TipoAula nuevoTipo,
+                                           PoliticaCambioAula politica) throws ValidacionDeReservaException {
+        return fragmentoDe(codigo).modificarAula(codigo, nuevoNombre, nuevaCapacidad, nuevoTipo, politica);
+    }
+
+    @Override
+    public void registrarAula(String codigo, String nombre, int capacidad, TipoAula tipo, Ubicacion ubicacion) throws ValidacionDeReservaException {
+        fragmentoDe(codigo).registrarAula(codigo, nombre, capacidad, tipo, ubicacion);
+    }
+
+    @Override
+    public void ubicarAula(String codigo, Ubicacion ubicacion) throws ValidacionDeReservaException {
+        fragmentoDe(codigo).ubicarAula(codigo, ubicacion);
+    }
+
+    //La referencia puede estar en otro fragmento: se resuelve sobre todas las aulas
+    @Override
+    public List<AulaCercana> buscarAulasLibresCercanas(String referencia, LocalDate fecha, LocalTime hInicio, LocalTime hFin,
+                                                       TipoAula tipo, int capacidadMinima, int k) throws ValidacionDeReservaException {
+        return buscarAulasLibresCercanas(GestorReservas.ubicacionDeReferencia(referencia, listarAulas()), fecha, hInicio, hFin,
+            tipo, capacidadMinima, k);
+    }
+
+    //Cada fragmento busca sus k mejores en paralelo y se combinan
+    @Override
+    public List<AulaCercana> buscarAulasLibresCercanas(Ubicacion origen, LocalDate fecha, LocalTime hInicio, LocalTime hFin,
+                                                       TipoAula tipo, int capacidadMinima, int k) throws ValidacionDeReservaException {
+        GestorReservas.validarBusquedaCercana(fecha, hInicio, hFin, k);
+        return enTodos(g -> g.aulasLibresCercanas(origen, fecha, hInicio, hFin, tipo, capacidadMinima, k)).stream()
+            .flatMap(List::stream)
+            .sorted(Comparator.comparingDouble(AulaCercana::getDistancia))
+            .limit(k)
+            .collect(Collectors.toList());
+    }
+
+    //====================== Gestión de Reservas ======================
+
+    @Override
+    public String registrarReservaClase(String codigoAula, LocalDate fecha, LocalTime hInicio, LocalTime hFin, String responsable,
+                                        String materia, int numEstudiantes) throws ConflictoDeHorarioException, ValidacionDeReservaException {
+        return fragmentoDe(codigoAula).registrarReservaClase(codigoAula, fecha, hInicio, hFin, responsable, materia, numEstudiantes);
+    }
+
+    @Override
+    public String registrarReservaEvento(String codigoAula, LocalDate fecha, LocalTime hInicio, LocalTime hFin, String responsable,
+                                         TipoEvento tipoEvento, int asistentesEsperados) throws ConflictoDeHorarioException, ValidacionDeReservaException {
+        return fragmentoDe(codigoAula).registrarReservaEvento(codigoAula, fecha, hInicio, hFin, responsable, tipoEvento, asistentesEsperados);
+    }
+
+    @Override
+    public String registrarReservaPractica(String codigoAula, LocalDate fecha, LocalTime hInicio, LocalTime hFin, String responsable,
+                                           String descripcionPractica, int numEquipos) throws ConflictoDeHorarioException, ValidacionDeReservaException {
+        return fragmentoDe(codigoAula).registrarReservaPractica(codigoAula, fecha, hInicio, hFin, responsable, descripcionPractica, numEquipos);
+    }
+
+    /*Evento con aulas en varios fragmentos. Primero cada fragmento lo verifica bajo su cerrojo de lectura, lo que
+    descarta rapido los eventos en conflicto sin bloquear a nadie. Despues se toman los cerrojos de escritura de uno
+    en uno en orden de nombre de fragmento (un orden global: dos eventos que comparten fragmentos nunca se esperan
+    mutuamente) y cada fragmento se revalida al tomarlo. El primer conflicto suelta los cerrojos ya tomados sin
+    esperar los siguientes; solo con todas las aulas validadas se registran las reservas.*/
+    @Override
+    public List<String> registrarReservaEventoMultiple(Map<String, Integer> asistentesPorAula, LocalDate fecha, LocalTime hInicio,
+                                                       LocalTime hFin, String responsable, TipoEvento tipoEvento)
+                                                       throws ConflictoDeHorarioException, ValidacionDeReservaException {
+        if (asistentesPorAula.isEmpty()) throw new ValidacionDeReservaException("El evento debe indicar al menos un aula.");
+        TreeMap<String, Map<String, Integer>> porFragmento = new TreeMap<>();
+        for (Map.Entry<String, Integer> e : asistentesPorAula.entrySet()) {
+            fragmentoDe(e.getKey()); //Falla si el fragmento no existe
+            porFragmento.computeIfAbsent(enrutador.apply(e.getKey().toUpperCase()), k -> new LinkedHashMap<>()).put(e.getKey(), e.getValue());
+        }
+        if (porFragmento.size() == 1) {
+            return fragmentos.get(porFragmento.firstKey()).registrarReservaEventoMultiple(asistentesPorAula, fecha, hInicio, hFin,
+                responsable, tipoEvento);
+        }
+        for (Map.Entry<String, Map<String, Integer>> f : porFragmento.entrySet()) {
+            fragmentos.get(f.getKey()).verificarEventoMultiple(f.getValue(), fecha, hInicio, hFin, responsable, tipoEvento);
+        }
+
+        Deque<Lock> tomados = new ArrayDeque<>();
+        try {
+            Map<GestorReservas, List<ReservaEvento>> preparadas = new LinkedHashMap<>();
+            for (Map.Entry<String, Map<String, Integer>> f : porFragmento.entrySet()) {
+                GestorReservas fragmento = fragmentos.get(f.getKey());
+                Lock cerrojo = fragmento.cerrojoEscritura();
+                cerrojo.lock();
+                tomados.push(cerrojo);
+                preparadas.put(fragmento, fragmento.prepararEventoMultiple(f.getValue(), fecha, hInicio, hFin, responsable, tipoEvento));
+            }
+            Map<String, String> ids = new HashMap<>();
+            preparadas.forEach((fragmento, reservas) -> ids.putAll(fragmento.confirmarEventoMultiple(reservas)));
+            return asistentesPorAula.keySet().stream().map(c -> ids.get(c.toUpperCase())).collect(Collectors.toList());
+        } finally {
+            while (!tomados.isEmpty()) tomados.pop().unlock();
+        }
+    }
+
+    //Con clave de idempotencia: el reintento llega al mismo fragmento, que es quien recuerda la clave
+    @Override
+    public String registrarReservaClase(String claveIdempotencia, String codigoAula, LocalDate fecha, LocalTime hInicio, LocalTime hFin,
+                                        String responsable, String materia, int numEstudiantes) throws ConflictoDeHorarioException, ValidacionDeReservaException {
+        return fragmentoDe(codigoAula).registrarReservaClase(claveIdempotencia, codigoAula, fecha, hInicio, hFin, responsable, materia, numEstudiantes);
+    }
+
+    @Override
+    public String registrarReservaEvento(String claveIdempotencia, String codigoAula, LocalDate fecha, LocalTime hInicio, LocalTime hFin,
+                                         String responsable, TipoEvento tipoEvento, int asistentesEsperados) throws ConflictoDeHorarioException, ValidacionDeReservaException {
+        return fragmentoDe(codigoAula).registrarReservaEvento(claveIdempotencia, codigoAula, fecha, hInicio, hFin, responsable, tipoEvento, asistentesEsperados);
+    }
+
+    @Override
+    public String registrarReservaPractica(String claveIdempotencia, String codigoAula, LocalDate fecha, LocalTime hInicio, LocalTime hFin,
+                                           String responsable, String descripcionPractica, int numEquipos) throws ConflictoDeHorarioException, ValidacionDeReservaException {
+        return fragmentoDe(codigoAula).registrarReservaPractica(claveIdempotencia, codigoAula, fecha, hInicio, hFin, responsable, descripcionPractica, numEquipos);
+    }
+
+    @Override
+    public Optional<Reserva> buscarReservaPorId(String id) {
+        //Primero en memoria; si no, en el historico de cada fragmento (los filtros descartan sin leer el disco)
+        Optional<GestorReservas> fragmento = fragmentoDeReserva(id);
+        if (fragmento.isPresent()) return fragmento.get().buscarReservaPorId(id);
+        return fragmentos.values().stream().map(g -> g.buscarReservaPorId(id)).filter(Optional::isPresent).map(Optional::get).findFirst();
+    }
+
+    @Override
+    public List<Reserva> buscarReservasPorResponsable(String texto) {
+        return enTodos(g -> g.buscarReservasPorResponsable(texto)).stream().flatMap(List::stream).collect(Collectors.toList());
+    }
+
+    @Override
+    public List<Reserva> modificarReserva(String id, LocalDate nuevaFecha, LocalTime nuevoHInicio, LocalTime nuevoHFin, String nuevoResponsable)
+            throws ConflictoDeHorarioException, ValidacionDeReservaException {
+        GestorReservas fragmento = fragmentoDeReserva(id)
+            .orElseThrow(() -> new NoEncontradoException("Reserva no encontrada: " + id));
+        return fragmento.modificarReserva(id, nuevaFecha, nuevoHInicio, nuevoHFin, nuevoResponsable);
+    }
+
+    @Override
+    public List<Reserva> cancelarReserva(String id) throws ValidacionDeReservaException {
+        GestorReservas fragmento = fragmentoDeReserva(id)
+            .orElseThrow(() -> new NoEncontradoException("Reserva no encontrada para cancelar: " + id));
+        return fragmento.cancelarReserva(id);
+    }
+
+    @Override
+    public List<Reserva> cancelarReserva(String claveIdempotencia, String id) throws ValidacionDeReservaException {
+        GestorReservas fragmento = fragmentoDeReserva(id)
+            .orElseThrow(() -> new NoEncontradoException("Reserva no encontrada para cancelar: " + id));
+        return fragmento.cancelarReserva(claveIdempotencia, id);
+    }
+
+    @Override
+    public List<Reserva> cambiarEstadoReserva(String id, EstadoReserva nuevoEstado) throws ValidacionDeReservaException {
+        GestorReservas fragmento = fragmentoDeReserva(id)
+            .orElseThrow(() -> new NoEncontradoException("Reserva no encontrada: " + id));
+        return fragmento.cambiarEstadoReserva(id, nuevoEstado);
+    }
+
+    @Override
+    public Map<EstadoReserva, Integer> contarPorEstado() {
+        Map<EstadoReserva, Integer> total = new EnumMap<>(EstadoReserva.class);
+        enTodos(GestorReservas::contarPorEstado).forEach(m -> m.forEach((k, v) -> total.merge(k, v, Integer::sum)));
+        return total;
+    }
+
+    //====================== Lista de Espera =======================
+
+    @Override
+    public boolean encolarEnListaEspera(Reserva reserva) throws ValidacionDeReservaException {
+        return fragmentoDe(reserva.getAula().getCodigo()).encolarEnListaEspera(reserva);
+    }
+
+    @Override
+    public List<Reserva> listarListaEspera() {
+        return enTodos(GestorReservas::listarListaEspera).stream().flatMap(List::stream).collect(Collectors.toList());
+    }
+
+    //================== Reportes =======================
+
+    //Mezcla k-vias de los listados ya ordenados de cada fragmento
+    @Override
+    public List<Reserva> listarReservas(String campoOrden, boolean ascendente) {
+        Comparator<Reserva> comparador = GestorReservas.comparador(campoOrden, ascendente);
+        List<List<Reserva>> parciales = enTodos(g -> g.listarReservas(campoOrden, ascendente));
+
+        List<Reserva> resultado = new ArrayList<>(parciales.stream().mapToInt(List::size).sum());
+        PriorityQueue<Cabeza> cola = new PriorityQueue<>(parciales.size(), (x, y) -> comparador.compare(x.actual, y.actual));
+        for (List<Reserva> parcial : parciales) {
+            if (!parcial.isEmpty()) cola.add(new Cabeza(parcial.iterator()));
+        }
+        while (!cola.isEmpty()) {
+            Cabeza cabeza = cola.poll();
+            resultado.add(cabeza.actual);
+            if (cabeza.avanzar()) cola.add(cabeza);
+        }
+        return resultado;
+    }
+
+    //Elemento actual de un listado parcial durante la mezcla
+    private static class Cabeza {
+        private final Iterator<Reserva> resto;
+        private Reserva actual;
+
+        private Cabeza(Iterator<Reserva> resto) {
+            this.resto = resto;
+            this.actual = resto.next();
+        }
+
+        private boolean avanzar() {
+            if (!resto.hasNext()) return false;
+            actual = resto.next();
+            return true;
+        }
+    }
+
+    @Override
+    public String generarReporteTopAulas() {
+        return generarReportes(EnumSet.of(TipoReporte.TOP_AULAS)).get(TipoReporte.TOP_AULAS);
+    }
+
+    @Override
+    public String generarReporteDistribucionPorTipoReserva() {
+        return generarReportes(EnumSet.of(TipoReporte.DISTRIBUCION_TIPO_RESERVA)).get(TipoReporte.DISTRIBUCION_TIPO_RESERVA);
+    }
+
+    @Override
+    public String generarReporteOcupacionPorTipoAula() {
+        return generarReportes(EnumSet.of(TipoReporte.OCUPACION_TIPO_AULA)).get(TipoReporte.OCUPACION_TIPO_AULA);
+    }
+
+    //Cada fragmento hace su pasada en paralelo; los acumuladores parciales se combinan antes de formatear
+    @Override
+    public Map<TipoReporte, String> generarReportes(Set<TipoReporte> tipos) {
+        EnumSet<TipoReporte> pedidos = MotorReportes.pedidos(tipos);
+        List<DefinicionReporte<?>> definiciones = MotorReportes.definiciones(pedidos);
+        Object[] total = enTodos(g -> g.agregarReportes(definiciones)).stream()
+            .reduce((a, b) -> MotorReportes.combinar(definiciones, a, b))
+            .orElseGet(() -> MotorReportes.acumuladores(definiciones));
+        Map<TipoReporte, String> resultado = MotorReportes.formatear(pedidos, definiciones, total);
+        exportarReporte(MotorReportes.archivo(pedidos), MotorReportes.contenido(resultado));
+        return resultado;
+    }
+
+    @Override
+    public String generarReporteUtilizacion(LocalDate desde, LocalDate hasta) {
+        if (desde == null) desde = LocalDate.now().withDayOfMonth(1);
+        if (hasta == null) hasta = desde.withDayOfMonth(desde.lengthOfMonth());
+        LocalDate inicio = desde, fin = hasta; //Finales para las lambdas
+        String resultado = GestorReservas.formatearReporteUtilizacion(inicio, fin, minutosReservadosPorTipoAula(inicio, fin),
+            combinar(enTodos(GestorReservas::aulasPorTipo)), combinar(enTodos(g -> g.minutosPorAula(inicio, fin))));
+        exportarReporte("reporte_utilizacion.txt", resultado);
+        return resultado;
+    }
+
+    @Override
+    public long minutosReservados(String codigoAula, LocalDate desde, LocalDate hasta) {
+        try {
+            return fragmentoDe(codigoAula).minutosReservados(codigoAula, desde, hasta);
+        } catch (ValidacionDeReservaException e) {
+            return 0; //Aula sin fragmento: no tiene reservas
+        }
+    }
+
+    @Override
+    public Map<TipoAula, Long> minutosReservadosPorTipoAula(LocalDate desde, LocalDate hasta) {
+        return combinar(enTodos(g -> g.minutosReservadosPorTipoAula(desde, hasta)));
+    }
+
+    //================== Ciclo de Vida =======================
+
+    @Override
+    public void iniciarBarridoCicloVida(int diasRetencion) {
+        fragmentos.values().forEach(g -> g.iniciarBarridoCicloVida(diasRetencion));
+    }
+
+    //Cada fragmento vigila sus propios archivos
+    @Override
+    public void iniciarRecargaArchivos() {
+        fragmentos.values().forEach(GestorReservas::iniciarRecargaArchivos);
+    }
+
+    @Override
+    public int completarVencidas() {
+        return enTodos(GestorReservas::completarVencidas).stream().mapToInt(Integer::intValue).sum();
+    }
+
+    private void exportarReporte(String nombreArchivo, String contenido) {
+        if (modo != ModoPersistencia.MEMORIA) {
+            GestorArchivos.exportarReporte(nombreArchivo, contenido);
+        }
+    }
+
+    //=================== Exportacion ====================
+
+    //El aula vive en un solo fragmento: se delega con su version
+    @Override
+    public long exportarReservasAula(String codigoAula, LocalDate desde, LocalDate hasta, FormatoExportacion formato,
+                                     OutputStream salida, long versionConocida) throws IOException {
+        try {
+            return fragmentoDe(codigoAula).exportarReservasAula(codigoAula, desde, hasta, formato, salida, versionConocida);
+        } catch (ValidacionDeReservaException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+
+    /*Un responsable puede tener reservas en varios fragmentos: se escriben uno tras otro en el mismo documento.
+    La version es la suma de las versiones de los fragmentos, que solo crece; se lee antes de escribir,
+    asi un cambio concurrente provoca una nueva exportacion en la siguiente llamada.*/
+    @Override
+    public long exportarReservasResponsable(String responsable, LocalDate desde, LocalDate hasta, FormatoExportacion formato,
+                                            OutputStream salida, long versionConocida) throws IOException {
+        long versionActual = fragmentos.values().stream().mapToLong(GestorReservas::getVersion).sum();
+        if (versionActual == versionConocida) return SIN_CAMBIOS;
+        ExportadorReservas exportador = new ExportadorReservas(formato, salida);
+        for (GestorReservas g : fragmentos.values()) {
+            g.exportar(g.consultar().responsableContiene(responsable).entreFechas(desde, hasta), exportador);
+        }
+        exportador.terminar();
+        return versionActual;
+    }
+
+    //==================== IDs de reserva =================
+
+    //El mismo generador en todos los fragmentos, para que los IDs no se repitan entre ellos
+    @Override
+    public void usarGeneradorIds(GeneradorIds generador) {
+        fragmentos.values().forEach(g -> g.usarGeneradorIds(generador));
+    }
+
+    @Override
+    public long siguienteIdLocal() {
+        return fragmentos.values().stream().mapToLong(GestorReservas::siguienteIdLocal).max().orElse(1);
+    }
+
+    //=================== Persistencia ====================
+
+    @Override
+    public void guardarDatos() {
+        enTodos(g -> {
+            g.guardarDatos();
+            return null;
+        });
+    }
+
+    @Override
+    public void iniciarLote() {
+        fragmentos.values().forEach(GestorReservas::iniciarLote);
+    }
+
+    @Override
+    public void finalizarLote() {
+        enTodos(g -> {
+            g.finalizarLote();
+            return null;
+        });
+    }
+
+    @Override
+    public boolean hayCambiosPendientes() {
+        return fragmentos.values().stream().anyMatch(GestorReservas::hayCambiosPendientes);
+    }
+
+    @Override
+    public CompletableFuture<Void> confirmarPersistencia() {
+        return CompletableFuture.allOf(fragmentos.values().stream()
+            .map(GestorReservas::confirmarPersistencia)
+            .toArray(CompletableFuture[]::new));
+    }
+
+    //Cierra los fragmentos (guardando lo pendiente) y detiene los hilos usados para las operaciones en paralelo
+    @Override
+    public void close() {
+        cerrarFragmentos();
+        pool.shutdown();
+    }
+
+    private void cerrarFragmentos() {
+        fragmentos.values().forEach(GestorReservas::close);
+    }
+}
@@ -0,0 +1,80 @@
+package GestorReservarAula.services;
+
+import java.util.*;
+import java.util.function.Predicate;
+
+import GestorReservarAula.models.Aula;
+import GestorReservarAula.util.TipoAula;
+
+/*Aulas por tipo y capacidad: por cada TipoAula un arbol capacidad -> aulas (ordenadas por codigo).
+La busqueda de aulas equivalentes ante un conflicto empieza en la capacidad que la reserva necesita (tailMap),
+recorre de menor a mayor capacidad solo los tipos que admite la reserva y se corta tras un numero fijo de
+candidatas, en lugar de filtrar y ordenar todas las aulas en cada conflicto.
+No es seguro para varios hilos: GestorReservas lo protege con su cerrojo.*/
+class IndiceCapacidad {
+    private static final Comparator<Aula> POR_CODIGO = Comparator.comparing(Aula::getCodigo);
+
+    private final Map<TipoAula, TreeMap<Integer, List<Aula>>> porTipo = new EnumMap<>(TipoAula.class);
+
+    //Siguiente capacidad de un tipo durante el recorrido
+    private static class Cursor {
+        private final Iterator<Map.Entry<Integer, List<Aula>>> entradas;
+        private Map.Entry<Integer, List<Aula>> actual;
+
+        private Cursor(Iterator<Map.Entry<Integer, List<Aula>>> entradas) {
+            this.entradas = entradas;
+        }
+
+        private boolean avanzar() {
+            actual = entradas.hasNext() ? entradas.next() : null;
+            return actual != null;
+        }
+    }
+
+    void agregar(Aula aula) {
+        List<Aula> nivel = porTipo.computeIfAbsent(aula.getTipo(), t -> new TreeMap<>())
+            .computeIfAbsent(aula.getCapacidad(), c -> new ArrayList<>());
+        int posicion = Collections.binarySearch(nivel, aula, POR_CODIGO);
+        nivel.add(posicion < 0 ? -posicion - 1 : posicion, aula);
+    }
+
+    //Retira el aula. Llamar antes de cambiar su capacidad o su tipo.
+    void remover(Aula aula) {
+        TreeMap<Integer, List<Aula>> arbol = porTipo.get(aula.getTipo());
+        if (arbol == null) return;
+        List<Aula> nivel = arbol.get(aula.getCapacidad());
+        if (nivel == null) return;
+        nivel.remove(aula);
+        if (nivel.isEmpty()) arbol.remove(aula.getCapacidad());
+    }
+
+    /*Ofrece a 'visitar' las aulas de los tipos dados con capacidad >= capacidadMinima, de menor a mayor capacidad
+    (y por codigo a igual capacidad), hasta que devuelve false o se ofrecieron maxCandidatas aulas.*/
+    void recorrer(Set<TipoAula> tipos, int capacidadMinima, int maxCandidatas, Predicate<Aula> visitar) {
+        //Mezcla por capacidad los arboles de cada tipo
+        PriorityQueue<Cursor> cursores = new PriorityQueue<>(Comparator.comparingInt((Cursor c) -> c.actual.getKey()));
+        for (TipoAula tipo : tipos) {
+            TreeMap<Integer, List<Aula>> arbol = porTipo.get(tipo);
+            if (arbol == null) continue;
+            Cursor cursor = new Cursor(arbol.tailMap(capacidadMinima, true).entrySet().iterator());
+            if (cursor.avanzar()) cursores.add(cursor);
+        }
+        List<Aula> nivel = new ArrayList<>();
+        int ofrecidas = 0;
+        while (!cursores.isEmpty()) {
+            int capacidad = cursores.peek().actual.getKey();
+            nivel.clear();
+            int tiposEnNivel = 0;
+            while (!cursores.isEmpty() && cursores.peek().actual.getKey() == capacidad) {
+                Cursor cursor = cursores.poll();
+                nivel.addAll(cursor.actual.getValue());
+                tiposEnNivel++;
+                if (cursor.avanzar()) cursores.add(cursor);
+            }
+            if (tiposEnNivel > 1) nivel.sort(POR_CODIGO);
+            for (Aula aula : nivel) {
+                if (ofrecidas++ >= maxCandidatas || !visitar.test(aula)) return;
+            }
+        }
+    }
+}
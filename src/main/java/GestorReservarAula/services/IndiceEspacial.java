@@ -0,0 +1,98 @@
+package GestorReservarAula.services;
+
+import java.util.*;
+import java.util.function.Predicate;
+
+import GestorReservarAula.models.Aula;
+import GestorReservarAula.models.AulaCercana;
+import GestorReservarAula.models.Ubicacion;
+
+/*Grilla uniforme sobre el plano del campus (celdas de TAMANIO_CELDA metros) con las aulas que tienen ubicacion.
+La busqueda de las k aulas mas cercanas recorre anillos de celdas alrededor del origen y se detiene cuando el
+anillo siguiente ya esta mas lejos que la k-esima encontrada; la condicion de cada aula (tipo, capacidad, libre)
+solo se evalua para las que podrian entrar en el resultado. Los pisos no se indexan: la distancia en el plano
+es una cota inferior de la distancia real, asi que el corte sigue siendo exacto.
+No es seguro para varios hilos: GestorReservas lo protege con su cerrojo.*/
+class IndiceEspacial {
+    static final double TAMANIO_CELDA = 50.0;
+
+    private final Map<Long, List<Aula>> celdas = new HashMap<>();
+    //Celdas extremas ocupadas, para no recorrer anillos vacios fuera del campus
+    private int minX = Integer.MAX_VALUE, maxX = Integer.MIN_VALUE, minY = Integer.MAX_VALUE, maxY = Integer.MIN_VALUE;
+
+    //Agrega el aula si tiene ubicacion
+    void agregar(Aula aula) {
+        Ubicacion u = aula.getUbicacion();
+        if (u == null) return;
+        int cx = celda(u.getX());
+        int cy = celda(u.getY());
+        celdas.computeIfAbsent(clave(cx, cy), k -> new ArrayList<>()).add(aula);
+        minX = Math.min(minX, cx);
+        maxX = Math.max(maxX, cx);
+        minY = Math.min(minY, cy);
+        maxY = Math.max(maxY, cy);
+    }
+
+    //Retira el aula. Llamar antes de cambiar su ubicacion. Los extremos no se achican: solo acotan la busqueda.
+    void remover(Aula aula) {
+        Ubicacion u = aula.getUbicacion();
+        if (u == null) return;
+        long clave = clave(celda(u.getX()), celda(u.getY()));
+        List<Aula> celda = celdas.get(clave);
+        if (celda == null) return;
+        celda.remove(aula);
+        if (celda.isEmpty()) celdas.remove(clave);
+    }
+
+    //Las k aulas mas cercanas al origen que cumplen la condicion, de la mas cercana a la mas lejana
+    List<AulaCercana> cercanas(Ubicacion origen, int k, Predicate<Aula> condicion) {
+        if (k <= 0 || celdas.isEmpty()) return Collections.emptyList();
+        int cx = celda(origen.getX());
+        int cy = celda(origen.getY());
+        //Anillo desde el que empieza el campus y ultimo anillo con celdas ocupadas
+        int radioMin = Math.max(0, Math.max(Math.max(minX - cx, cx - maxX), Math.max(minY - cy, cy - maxY)));
+        int radioMax = Math.max(Math.max(Math.abs(cx - minX), Math.abs(maxX - cx)), Math.max(Math.abs(cy - minY), Math.abs(maxY - cy)));
+        //Las k mejores hasta ahora, con la mas lejana en la cabeza
+        PriorityQueue<AulaCercana> mejores = new PriorityQueue<>(k + 1, Comparator.comparingDouble(AulaCercana::getDistancia).reversed());
+        for (int r = radioMin; r <= radioMax; r++) {
+            //Todo punto del anillo r esta a mas de (r - 1) celdas del origen
+            if (mejores.size() == k && mejores.peek().getDistancia() <= (r - 1) * TAMANIO_CELDA) break;
+            if (r == 0) {
+                revisar(cx, cy, origen, k, condicion, mejores);
+                continue;
+            }
+            for (int x = cx - r; x <= cx + r; x++) {
+                revisar(x, cy - r, origen, k, condicion, mejores);
+                revisar(x, cy + r, origen, k, condicion, mejores);
+            }
+            for (int y = cy - r + 1; y < cy + r; y++) {
+                revisar(cx - r, y, origen, k, condicion, mejores);
+                revisar(cx + r, y, origen, k, condicion, mejores);
+            }
+        }
+        List<AulaCercana> resultado = new ArrayList<>(mejores);
+        resultado.sort(Comparator.comparingDouble(AulaCercana::getDistancia));
+        return resultado;
+    }
+
+    //Evalua la condicion solo para las aulas de la celda que mejoran el resultado actual
+    private void revisar(int x, int y, Ubicacion origen, int k, Predicate<Aula> condicion, PriorityQueue<AulaCercana> mejores) {
+        List<Aula> celda = celdas.get(clave(x, y));
+        if (celda == null) return;
+        for (Aula aula : celda) {
+            double d = aula.getUbicacion().distancia(origen);
+            if (mejores.size() == k && d >= mejores.peek().getDistancia()) continue;
+            if (!condicion.test(aula)) continue;
+            mejores.add(new AulaCercana(aula, d));
+            if (mejores.size() > k) mejores.poll();
+        }
+    }
+
+    private static int celda(double coordenada) {
+        return (int) Math.floor(coordenada / TAMANIO_CELDA);
+    }
+
+    private static long clave(int x, int y) {
+        return ((long) x << 32) | (y & 0xffffffffL);
+    }
+}
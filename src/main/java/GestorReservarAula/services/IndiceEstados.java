@@ -0,0 +1,78 @@
+package GestorReservarAula.services;
+
+import java.util.*;
+import java.util.stream.Stream;
+
+import GestorReservarAula.models.Reserva;
+import GestorReservarAula.util.EstadoReserva;
+
+/*Mapa de bits por estado sobre el ordinal de cada reserva (su posicion en la lista del gestor).
+Los filtros y conteos por estado se resuelven con operaciones de BitSet en lugar de recorrer la lista.
+No es seguro para varios hilos: GestorReservas lo protege con su cerrojo.*/
+class IndiceEstados {
+    private final List<Reserva> reservas; //Lista del gestor: el ordinal es el indice en esta lista
+    private final Map<EstadoReserva, BitSet> bits = new EnumMap<>(EstadoReserva.class);
+    private final Map<Reserva, Integer> ordinales = new IdentityHashMap<>();
+
+    IndiceEstados(List<Reserva> reservas) {
+        this.reservas = reservas;
+        for (EstadoReserva e : EstadoReserva.values()) bits.put(e, new BitSet());
+        for (int i = 0; i < reservas.size(); i++) registrar(reservas.get(i), i);
+    }
+
+    //Registra una reserva recien agregada en la posicion indicada de la lista
+    void registrar(Reserva r, int ordinal) {
+        ordinales.put(r, ordinal);
+        bits.get(r.getEstado()).set(ordinal);
+    }
+
+    //Pone otra reserva en el ordinal de una existente (fila reemplazada al recargar el archivo). Devuelve el ordinal.
+    int reemplazar(Reserva anterior, Reserva nueva) {
+        int ordinal = ordinales.remove(anterior);
+        bits.get(anterior.getEstado()).clear(ordinal);
+        registrar(nueva, ordinal);
+        return ordinal;
+    }
+
+    /*Quita una reserva de la lista del gestor en O(1): la ultima pasa a ocupar su ordinal, asi los demas no se corren
+    (la lista pierde el orden de insercion, que ningun listado usa).*/
+    void quitar(Reserva r) {
+        int ordinal = ordinales.remove(r);
+        bits.get(r.getEstado()).clear(ordinal);
+        int ultimo = reservas.size() - 1;
+        Reserva movida = reservas.remove(ultimo);
+        if (movida != r) {
+            bits.get(movida.getEstado()).clear(ultimo);
+            reservas.set(ordinal, movida);
+            registrar(movida, ordinal);
+        }
+    }
+
+    //Mueve el bit de la reserva entre estados; llamar despues de cambiar el estado en el objeto
+    void cambiar(Reserva r, EstadoReserva anterior) {
+        int ordinal = ordinales.get(r);
+        bits.get(anterior).clear(ordinal);
+        bits.get(r.getEstado()).set(ordinal);
+    }
+
+    int contar(EstadoReserva estado) {
+        return bits.get(estado).cardinality();
+    }
+
+    boolean tiene(Reserva r, EstadoReserva estado) {
+        Integer ordinal = ordinales.get(r);
+        return ordinal != null && bits.get(estado).get(ordinal);
+    }
+
+    //Reservas en un estado, en orden de ordinal, sin copiar el mapa de bits
+    Stream<Reserva> enEstado(EstadoReserva estado) {
+        return bits.get(estado).stream().mapToObj(reservas::get);
+    }
+
+    //Conteo de todos los estados
+    Map<EstadoReserva, Integer> conteos() {
+        Map<EstadoReserva, Integer> conteos = new EnumMap<>(EstadoReserva.class);
+        bits.forEach((e, b) -> conteos.put(e, b.cardinality()));
+        return conteos;
+    }
+}
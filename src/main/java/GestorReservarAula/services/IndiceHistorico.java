@@ -0,0 +1,57 @@
+package GestorReservarAula.services;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+import GestorReservarAula.models.Aula;
+import GestorReservarAula.models.Reserva;
+import GestorReservarAula.persistence.ArchivoHistorico;
+
+/*Resumen en memoria de los segmentos del historico: por cada archivo, su filtro de Bloom y el rango de IDs de cada bloque.
+Una busqueda por ID descarta en memoria los segmentos que no lo tienen, asi que un ID que no esta archivado se
+responde sin leer el disco y uno archivado lee un solo bloque (salvo un falso positivo ocasional del filtro).
+No es seguro para varios hilos: GestorReservas lo protege con su cerrojo.*/
+class IndiceHistorico {
+    private static class Segmento {
+        private final String archivo;
+        private final ArchivoHistorico.Resumen resumen;
+
+        private Segmento(String archivo, ArchivoHistorico.Resumen resumen) {
+            this.archivo = archivo;
+            this.resumen = resumen;
+        }
+    }
+
+    private final List<Segmento> segmentos = new ArrayList<>();
+
+    //Agrega el resumen de un segmento (al iniciar o tras archivar). Un segmento ilegible se informa y se omite.
+    void agregar(String archivo) {
+        try {
+            segmentos.add(new Segmento(archivo, ArchivoHistorico.leerResumen(archivo)));
+        } catch (IOException e) {
+            System.err.println("Error al leer el indice del historico " + archivo + ": " + e.getMessage());
+        }
+    }
+
+    //Reserva archivada con ese ID, o null. 'aulas' resuelve el codigo de aula de cada bloque.
+    Reserva buscar(String id, Function<String, Aula> aulas) {
+        for (Segmento s : segmentos) {
+            List<ArchivoHistorico.Bloque> candidatos = s.resumen.candidatos(id);
+            if (candidatos.isEmpty()) continue;
+            try {
+                Reserva reserva = ArchivoHistorico.buscar(s.archivo, candidatos, id, aulas);
+                if (reserva != null) return reserva;
+            } catch (IOException e) {
+                System.err.println("Error al buscar en el historico " + s.archivo + ": " + e.getMessage());
+            }
+        }
+        return null;
+    }
+
+    //Mayor numero de ID archivado, o 0 si no hay historico
+    long idMaximo() {
+        return segmentos.stream().mapToLong(s -> s.resumen.idMaximo()).max().orElse(0);
+    }
+}
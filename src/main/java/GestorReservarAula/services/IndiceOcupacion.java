@@ -0,0 +1,62 @@
+package GestorReservarAula.services;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+
+import GestorReservarAula.models.Reserva;
+import GestorReservarAula.util.TipoAula;
+
+/*Minutos reservados por dia, por aula y por tipo de aula, en arboles de Fenwick indexados por dia epoch.
+Permite consultar la ocupacion de cualquier rango de fechas en O(log D) sin recorrer las reservas.
+Solo cuentan las reservas cuyo estado ocupa el aula (ver EstadoReserva.ocupaAula).
+No es seguro para varios hilos: GestorReservas lo protege con su cerrojo.*/
+class IndiceOcupacion {
+    private final Map<String, ArbolFenwick> porAula = new HashMap<>();
+    private final Map<TipoAula, ArbolFenwick> porTipo = new EnumMap<>(TipoAula.class);
+
+    //Suma la reserva si ocupa el aula. Llamar al agregarla o despues de cambiar fecha, horario, aula o estado.
+    void agregar(Reserva r) {
+        if (r.getEstado().ocupaAula()) sumar(r, minutos(r));
+    }
+
+    //Resta la reserva. Llamar antes de cambiar fecha, horario, aula o estado.
+    void remover(Reserva r) {
+        if (r.getEstado().ocupaAula()) sumar(r, -minutos(r));
+    }
+
+    //Mueve los minutos de un aula de un tipo a otro, dia por dia (al modificar el tipo del aula)
+    void cambiarTipo(String codigoAula, TipoAula anterior, TipoAula nuevo) {
+        ArbolFenwick aula = porAula.get(codigoAula);
+        if (aula == null || anterior == nuevo) return;
+        ArbolFenwick origen = porTipo.get(anterior);
+        ArbolFenwick destino = porTipo.computeIfAbsent(nuevo, k -> new ArbolFenwick());
+        for (Map.Entry<Long, Long> dia : aula.noNulos().entrySet()) {
+            origen.sumar(dia.getKey(), -dia.getValue());
+            destino.sumar(dia.getKey(), dia.getValue());
+        }
+    }
+
+    //Minutos reservados en un aula entre dos fechas inclusive
+    long minutosAula(String codigoAula, LocalDate desde, LocalDate hasta) {
+        ArbolFenwick arbol = porAula.get(codigoAula);
+        return arbol == null ? 0 : arbol.rango(desde.toEpochDay(), hasta.toEpochDay());
+    }
+
+    long minutosTipo(TipoAula tipo, LocalDate desde, LocalDate hasta) {
+        ArbolFenwick arbol = porTipo.get(tipo);
+        return arbol == null ? 0 : arbol.rango(desde.toEpochDay(), hasta.toEpochDay());
+    }
+
+    private void sumar(Reserva r, long minutos) {
+        long dia = r.getFecha().toEpochDay();
+        porAula.computeIfAbsent(r.getAula().getCodigo(), k -> new ArbolFenwick()).sumar(dia, minutos);
+        porTipo.computeIfAbsent(r.getAula().getTipo(), k -> new ArbolFenwick()).sumar(dia, minutos);
+    }
+
+    private static long minutos(Reserva r) {
+        return ChronoUnit.MINUTES.between(r.getHoraInicio(), r.getHoraFin());
+    }
+}
@@ -0,0 +1,128 @@
+package GestorReservarAula.services;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.stream.Stream;
+
+import GestorReservarAula.models.Reserva;
+
+/*Indices en memoria sobre las reservas. Se mantienen al registrar, modificar y cargar.
+ - porId: busqueda directa por ID (sin distinguir mayusculas)
+ - porAula: linea de tiempo por aula, fecha -> reservas ordenadas por hora de inicio
+ - porFecha: todas las reservas de cada fecha
+ - trigramas: indice de texto del responsable para busquedas por subcadena
+No es seguro para varios hilos: GestorReservas lo protege con su cerrojo.*/
+class IndiceReservas {
+    private static final Comparator<Reserva> POR_HORA = Comparator.comparing(Reserva::getHoraInicio);
+
+    private final Map<String, Reserva> porId = new HashMap<>();
+    private final Map<String, TreeMap<LocalDate, List<Reserva>>> porAula = new HashMap<>();
+    private final TreeMap<LocalDate, List<Reserva>> porFecha = new TreeMap<>();
+    private final Map<String, Set<Reserva>> trigramas = new HashMap<>();
+
+    void agregar(Reserva r) {
+        porId.put(r.getIdReserva().toUpperCase(), r);
+        insertarOrdenada(porAula.computeIfAbsent(r.getAula().getCodigo(), k -> new TreeMap<>())
+            .computeIfAbsent(r.getFecha(), k -> new ArrayList<>()), r);
+        insertarOrdenada(porFecha.computeIfAbsent(r.getFecha(), k -> new ArrayList<>()), r);
+        for (String t : trigramasDe(r.getResponsable())) {
+            trigramas.computeIfAbsent(t, k -> new LinkedHashSet<>()).add(r);
+        }
+    }
+
+    //Debe llamarse antes de cambiar fecha, horario o responsable de la reserva
+    void remover(Reserva r) {
+        porId.remove(r.getIdReserva().toUpperCase());
+        TreeMap<LocalDate, List<Reserva>> linea = porAula.get(r.getAula().getCodigo());
+        if (linea != null) {
+            quitarDeLista(linea, r.getFecha(), r);
+            if (linea.isEmpty()) porAula.remove(r.getAula().getCodigo());
+        }
+        quitarDeLista(porFecha, r.getFecha(), r);
+        for (String t : trigramasDe(r.getResponsable())) {
+            Set<Reserva> posting = trigramas.get(t);
+            if (posting != null) {
+                posting.remove(r);
+                if (posting.isEmpty()) trigramas.remove(t);
+            }
+        }
+    }
+
+    Reserva porId(String id) {
+        return porId.get(id.toUpperCase());
+    }
+
+    //Reservas de un aula en una fecha, ordenadas por hora de inicio
+    List<Reserva> delDia(String codigoAula, LocalDate fecha) {
+        TreeMap<LocalDate, List<Reserva>> linea = porAula.get(codigoAula);
+        if (linea == null) return Collections.emptyList();
+        return linea.getOrDefault(fecha, Collections.emptyList());
+    }
+
+    //Linea de tiempo de un aula entre dos fechas (null = sin limite), en orden de fecha y hora
+    NavigableMap<LocalDate, List<Reserva>> lineaDeTiempo(String codigoAula, LocalDate desde, LocalDate hasta) {
+        TreeMap<LocalDate, List<Reserva>> linea = porAula.get(codigoAula);
+        if (linea == null) return Collections.emptyNavigableMap();
+        return rango(linea, desde, hasta);
+    }
+
+    //Reservas de todas las aulas entre dos fechas (null = sin limite), en orden de fecha y hora
+    NavigableMap<LocalDate, List<Reserva>> porFechas(LocalDate desde, LocalDate hasta) {
+        return rango(porFecha, desde, hasta);
+    }
+
+    /*Candidatas para una busqueda por subcadena: la lista de publicacion mas corta entre los trigramas del texto.
+    Devuelve null si el texto es demasiado corto para usar el indice.*/
+    Set<Reserva> candidatasPorTexto(String texto) {
+        Set<String> buscados = trigramasDe(texto);
+        if (buscados.isEmpty()) return null;
+        Set<Reserva> menor = null;
+        for (String t : buscados) {
+            Set<Reserva> posting = trigramas.get(t);
+            if (posting == null) return Collections.emptySet();
+            if (menor == null || posting.size() < menor.size()) menor = posting;
+        }
+        return menor;
+    }
+
+    static int contar(NavigableMap<LocalDate, List<Reserva>> rango) {
+        int total = 0;
+        for (List<Reserva> l : rango.values()) total += l.size();
+        return total;
+    }
+
+    static Stream<Reserva> aplanar(NavigableMap<LocalDate, List<Reserva>> rango) {
+        return rango.values().stream().flatMap(List::stream);
+    }
+
+    private static NavigableMap<LocalDate, List<Reserva>> rango(TreeMap<LocalDate, List<Reserva>> mapa, LocalDate desde, LocalDate hasta) {
+        if (desde != null && hasta != null) {
+            if (desde.isAfter(hasta)) return Collections.emptyNavigableMap(); //subMap lanzaria excepcion
+            return mapa.subMap(desde, true, hasta, true);
+        }
+        if (desde != null) return mapa.tailMap(desde, true);
+        if (hasta != null) return mapa.headMap(hasta, true);
+        return mapa;
+    }
+
+    private static void insertarOrdenada(List<Reserva> lista, Reserva r) {
+        int pos = Collections.binarySearch(lista, r, POR_HORA);
+        lista.add(pos < 0 ? -pos - 1 : pos, r);
+    }
+
+    private static void quitarDeLista(TreeMap<LocalDate, List<Reserva>> mapa, LocalDate fecha, Reserva r) {
+        List<Reserva> lista = mapa.get(fecha);
+        if (lista == null) return;
+        lista.remove(r);
+        if (lista.isEmpty()) mapa.remove(fecha);
+    }
+
+    //Trigramas en minusculas de un texto; vacio si tiene menos de 3 caracteres
+    private static Set<String> trigramasDe(String texto) {
+        String t = texto.toLowerCase();
+        if (t.length() < 3) return Collections.emptySet();
+        Set<String> resultado = new HashSet<>();
+        for (int i = 0; i + 3 <= t.length(); i++) resultado.add(t.substring(i, i + 3));
+        return resultado;
+    }
+}
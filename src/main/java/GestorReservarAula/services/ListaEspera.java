@@ -0,0 +1,90 @@
+package GestorReservarAula.services;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.*;
+import java.util.stream.Collectors;
+
+import GestorReservarAula.models.Reserva;
+
+/*Lista de espera para reservas rechazadas por conflicto de horario.
+Indexa los intervalos en espera por aula y fecha, ordenados por hora de inicio,
+para encontrar candidatos de un hueco liberado sin recorrer toda la lista.*/
+public class ListaEspera {
+    //Codigo de aula -> fecha -> hora de inicio -> entradas en espera
+    private final Map<String, Map<LocalDate, TreeMap<LocalTime, List<Entrada>>>> indice = new HashMap<>();
+    //Id de reserva -> entrada, para detectar duplicados y retirar en O(1)
+    private final Map<String, Entrada> porId = new HashMap<>();
+    private long secuencia = 0;
+
+    //Entrada de la lista: conserva el orden de llegada para promover al mas antiguo
+    private static class Entrada {
+        private final long orden;
+        private final Reserva reserva;
+
+        private Entrada(long orden, Reserva reserva) {
+            this.orden = orden;
+            this.reserva = reserva;
+        }
+    }
+
+    //Agrega una reserva a la lista de espera de su aula y fecha
+    public void encolar(Reserva reserva) {
+        if (porId.containsKey(reserva.getIdReserva())) return;
+        Entrada entrada = new Entrada(secuencia++, reserva);
+        porId.put(reserva.getIdReserva(), entrada);
+        indice.computeIfAbsent(reserva.getAula().getCodigo(), k -> new HashMap<>())
+            .computeIfAbsent(reserva.getFecha(), k -> new TreeMap<>())
+            .computeIfAbsent(reserva.getHoraInicio(), k -> new ArrayList<>())
+            .add(entrada);
+    }
+
+    //Retira una reserva de la lista de espera. Devuelve true si estaba en espera.
+    public boolean remover(Reserva reserva) {
+        Entrada entrada = porId.remove(reserva.getIdReserva());
+        if (entrada == null) return false;
+
+        Map<LocalDate, TreeMap<LocalTime, List<Entrada>>> porFecha = indice.get(reserva.getAula().getCodigo());
+        TreeMap<LocalTime, List<Entrada>> porHora = porFecha.get(reserva.getFecha());
+        List<Entrada> entradas = porHora.get(reserva.getHoraInicio());
+        entradas.remove(entrada);
+
+        //Limpia los niveles vacios para que el indice no crezca con huecos
+        if (entradas.isEmpty()) porHora.remove(reserva.getHoraInicio());
+        if (porHora.isEmpty()) porFecha.remove(reserva.getFecha());
+        if (porFecha.isEmpty()) indice.remove(reserva.getAula().getCodigo());
+        return true;
+    }
+
+    public boolean contiene(String idReserva) {
+        return porId.containsKey(idReserva);
+    }
+
+    /*Devuelve las reservas en espera que se solapan con el intervalo liberado, por orden de llegada.
+    Solo recorre las entradas del aula y fecha cuyo inicio es anterior al fin del intervalo.*/
+    public List<Reserva> candidatos(String codigoAula, LocalDate fecha, LocalTime inicio, LocalTime fin) {
+        Map<LocalDate, TreeMap<LocalTime, List<Entrada>>> porFecha = indice.get(codigoAula);
+        if (porFecha == null) return Collections.emptyList();
+        TreeMap<LocalTime, List<Entrada>> porHora = porFecha.get(fecha);
+        if (porHora == null) return Collections.emptyList();
+
+        return porHora.headMap(fin, false).values().stream()
+            .flatMap(List::stream)
+            .filter(e -> e.reserva.getHoraFin().isAfter(inicio))
+            .sorted(Comparator.comparingLong(e -> e.orden))
+            .map(e -> e.reserva)
+            .collect(Collectors.toList());
+    }
+
+    //Listado completo por orden de llegada
+    public List<Reserva> listar() {
+        return porId.values().stream()
+            .sorted(Comparator.comparingLong(e -> e.orden))
+            .map(e -> e.reserva)
+            .collect(Collectors.toList());
+    }
+
+    public int tamanio() {
+        return porId.size();
+    }
+}
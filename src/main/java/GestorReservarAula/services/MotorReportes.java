@@ -0,0 +1,126 @@
+package GestorReservarAula.services;
+
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.stream.Collector;
+
+import GestorReservarAula.models.*;
+import GestorReservarAula.util.EstadoReserva;
+import GestorReservarAula.util.TipoReporte;
+
+/*Motor de reportes: calcula los agregados de varios reportes en un solo recorrido de las reservas.
+Todas las definiciones pedidas se reunen en un Collector combinado (un acumulador por definicion),
+que tambien sirve en paralelo: cada particion del spliterator llena sus acumuladores y luego se combinan.
+Los acumuladores de varios fragmentos se combinan igual antes de formatear.*/
+final class MotorReportes {
+    //Catalogo de reportes. Un tipo nuevo solo necesita su constante en TipoReporte y su definicion aqui.
+    private static final Map<TipoReporte, DefinicionReporte<?>> CATALOGO = new EnumMap<>(TipoReporte.class);
+    private static final Set<DefinicionReporte<?>> CUENTAN_COMPLETADAS = new HashSet<>();
+    static {
+        CATALOGO.put(TipoReporte.TOP_AULAS, DefinicionReporte.sumaPor("Top 3 Aulas", "reporte_top_aulas.txt",
+            r -> r.getEstado() == EstadoReserva.ACTIVA,
+            r -> r.getAula().getCodigo() + " - " + r.getAula().getNombre(),
+            MotorReportes::minutos, GestorReservas::formatearReporteTopAulas));
+        CATALOGO.put(TipoReporte.OCUPACION_TIPO_AULA, DefinicionReporte.sumaPor("Ocupacion por Tipo de Aula", "reporte_ocupacion_tipo_aula.txt",
+            r -> r.getEstado() == EstadoReserva.ACTIVA,
+            r -> r.getAula().getTipo(),
+            MotorReportes::minutos, GestorReservas::formatearReporteOcupacionPorTipoAula));
+        CATALOGO.put(TipoReporte.DISTRIBUCION_TIPO_RESERVA, DefinicionReporte.sumaPor("Distribucion por Tipo de Reserva", "reporte_distribucion_tipo.txt",
+            r -> true, MotorReportes::tipoReserva, r -> 1, GestorReservas::formatearReporteDistribucion));
+        CATALOGO.put(TipoReporte.DISTRIBUCION_ESTADO, DefinicionReporte.sumaPor("Distribucion por Estado", "reporte_distribucion_estado.txt",
+            r -> true, Reserva::getEstado, r -> 1, MotorReportes::formatearDistribucionEstado));
+        //Los que no filtran por ACTIVA tambien recorren el almacen de completadas (ver ReservasCompletadas)
+        CUENTAN_COMPLETADAS.add(CATALOGO.get(TipoReporte.DISTRIBUCION_TIPO_RESERVA));
+        CUENTAN_COMPLETADAS.add(CATALOGO.get(TipoReporte.DISTRIBUCION_ESTADO));
+    }
+
+    static final int UMBRAL_PARALELO = 20_000; //Con menos reservas el recorrido secuencial es mas rapido
+    static final String ARCHIVO_COMBINADO = "reporte_combinado.txt";
+
+    private MotorReportes() {
+    }
+
+    static DefinicionReporte<?> definicion(TipoReporte tipo) {
+        return CATALOGO.get(tipo);
+    }
+
+    //Tipos pedidos en el orden del enum; sin tipos se generan todos
+    static EnumSet<TipoReporte> pedidos(Set<TipoReporte> tipos) {
+        return tipos == null || tipos.isEmpty() ? EnumSet.allOf(TipoReporte.class) : EnumSet.copyOf(tipos);
+    }
+
+    static List<DefinicionReporte<?>> definiciones(EnumSet<TipoReporte> pedidos) {
+        List<DefinicionReporte<?>> lista = new ArrayList<>();
+        for (TipoReporte tipo : pedidos) lista.add(CATALOGO.get(tipo));
+        return lista;
+    }
+
+    //Collector que alimenta todos los acumuladores con cada reserva (una sola pasada)
+    static Collector<Reserva, Object[], Object[]> combinado(List<DefinicionReporte<?>> definiciones) {
+        return Collector.of(
+            () -> acumuladores(definiciones),
+            (acumuladores, r) -> {
+                for (int i = 0; i < acumuladores.length; i++) definiciones.get(i).acumular(acumuladores[i], r);
+            },
+            (a, b) -> combinar(definiciones, a, b));
+    }
+
+    //Un acumulador vacio por definicion
+    static Object[] acumuladores(List<DefinicionReporte<?>> definiciones) {
+        Object[] acumuladores = new Object[definiciones.size()];
+        for (int i = 0; i < acumuladores.length; i++) acumuladores[i] = definiciones.get(i).nuevoAcumulador();
+        return acumuladores;
+    }
+
+    //Suma las reservas completadas a los acumuladores de los reportes que las cuentan
+    static void acumularCompletadas(List<DefinicionReporte<?>> definiciones, Object[] acumuladores, Collection<Reserva> completadas) {
+        for (int i = 0; i < acumuladores.length; i++) {
+            DefinicionReporte<?> definicion = definiciones.get(i);
+            if (!CUENTAN_COMPLETADAS.contains(definicion)) continue;
+            for (Reserva r : completadas) definicion.acumular(acumuladores[i], r);
+        }
+    }
+
+    static Object[] combinar(List<DefinicionReporte<?>> definiciones, Object[] a, Object[] b) {
+        for (int i = 0; i < a.length; i++) a[i] = definiciones.get(i).combinar(a[i], b[i]);
+        return a;
+    }
+
+    //Texto de cada reporte a partir de sus acumuladores
+    static Map<TipoReporte, String> formatear(EnumSet<TipoReporte> pedidos, List<DefinicionReporte<?>> definiciones, Object[] acumuladores) {
+        Map<TipoReporte, String> resultado = new EnumMap<>(TipoReporte.class);
+        Iterator<TipoReporte> it = pedidos.iterator();
+        for (int i = 0; i < acumuladores.length; i++) {
+            resultado.put(it.next(), definiciones.get(i).formatear(acumuladores[i]));
+        }
+        return resultado;
+    }
+
+    //Un reporte se exporta a su propio archivo; varios van juntos a un solo archivo, con una sola escritura
+    static String archivo(EnumSet<TipoReporte> pedidos) {
+        return pedidos.size() == 1 ? CATALOGO.get(pedidos.iterator().next()).getArchivo() : ARCHIVO_COMBINADO;
+    }
+
+    static String contenido(Map<TipoReporte, String> reportes) {
+        return String.join("\n\n", reportes.values());
+    }
+
+    private static long minutos(Reserva r) {
+        return ChronoUnit.MINUTES.between(r.getHoraInicio(), r.getHoraFin());
+    }
+
+    private static String tipoReserva(Reserva r) {
+        if (r instanceof ReservaClase) return "Clase";
+        else if (r instanceof ReservaEvento) return "Evento";
+        else if (r instanceof ReservaPractica) return "Practica";
+        else return "Otro";
+    }
+
+    private static String formatearDistribucionEstado(Map<EstadoReserva, Long> conteos) {
+        StringBuilder sb = new StringBuilder("=== Distribucion de Reservas por Estado ===");
+        for (EstadoReserva estado : EstadoReserva.values()) {
+            sb.append(String.format("%n- %s: %d", estado, conteos.getOrDefault(estado, 0L)));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,79 @@
+package GestorReservarAula.services;
+
+/*Hilo de escritura diferida (write-behind) del modo DIFERIDA.
+Las modificaciones solo avisan con notificar(); el hilo espera a que pase el intervalo desde el primer cambio
+pendiente (o a que se acumulen maxCambios) y entonces vuelca una sola vez todo lo acumulado (group commit).
+Al apagarse la JVM se vuelca lo pendiente para no perder cambios.*/
+class PersistidorDiferido {
+    static final long INTERVALO_DEFECTO_MS = 200;
+    static final int MAX_CAMBIOS_DEFECTO = 500;
+
+    private final GestorReservas gestor;
+    private final Thread hilo;
+    private final Thread alApagar;
+    private long intervaloMs = INTERVALO_DEFECTO_MS;
+    private int maxCambios = MAX_CAMBIOS_DEFECTO;
+    private int pendientes = 0; //Cambios desde el ultimo volcado
+    private boolean activo = true;
+
+    PersistidorDiferido(GestorReservas gestor) {
+        this.gestor = gestor;
+        this.hilo = new Thread(this::ejecutar, "persistidor-diferido");
+        this.hilo.setDaemon(true);
+        this.alApagar = new Thread(() -> gestor.volcarPendientes(false), "persistidor-apagado");
+        Runtime.getRuntime().addShutdownHook(alApagar);
+        this.hilo.start();
+    }
+
+    synchronized void configurar(long intervaloMs, int maxCambios) {
+        this.intervaloMs = Math.max(0, intervaloMs);
+        this.maxCambios = Math.max(1, maxCambios);
+        notifyAll();
+    }
+
+    //Registra un cambio. Solo despierta al hilo con el primer cambio o al completar el lote.
+    synchronized void notificar() {
+        pendientes++;
+        if (pendientes == 1 || pendientes >= maxCambios) notifyAll();
+    }
+
+    //Detiene el hilo tras volcar lo pendiente
+    void detener() {
+        synchronized (this) {
+            activo = false;
+            notifyAll();
+        }
+        try {
+            hilo.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            Runtime.getRuntime().removeShutdownHook(alApagar);
+        } catch (IllegalStateException e) {
+            //La JVM ya se esta apagando: el gancho hara el volcado
+        }
+        gestor.volcarPendientes(false);
+    }
+
+    private void ejecutar() {
+        while (true) {
+            synchronized (this) {
+                try {
+                    while (activo && pendientes == 0) wait();
+                    if (!activo) return;
+                    long limite = System.currentTimeMillis() + intervaloMs;
+                    long restante;
+                    while (activo && pendientes < maxCambios && (restante = limite - System.currentTimeMillis()) > 0) {
+                        wait(restante);
+                    }
+                } catch (InterruptedException e) {
+                    return; //detener() vuelca lo pendiente
+                }
+                pendientes = 0;
+            }
+            //El volcado se hace fuera del monitor: las modificaciones pueden seguir notificando mientras se escribe
+            gestor.volcarPendientes(false);
+        }
+    }
+}
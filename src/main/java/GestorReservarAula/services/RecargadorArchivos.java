@@ -0,0 +1,89 @@
+package GestorReservarAula.services;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import GestorReservarAula.persistence.ArchivoObservado;
+
+/*Hilo que recarga en caliente aulas.txt y reservas.txt cuando se editan por fuera (WatchService del directorio).
+Espera ESPERA_ESTABLE_MS sin eventos antes de leer, para no tomar un archivo a medio guardar, y aplica al gestor
+solo las filas que cambiaron respecto de la version conocida (ver ArchivoObservado). La lectura y la comparacion
+se hacen sin cerrojos; el gestor toma el de escritura solo para aplicar esas filas, asi las consultas no se detienen.
+Las escrituras del propio gestor tambien generan eventos, pero se reconocen por su marca y no se leen.
+Sin este hilo las ediciones tampoco se pierden: el gestor las incorpora antes de escribir cada archivo; el hilo
+solo las trae en cuanto se guardan.*/
+class RecargadorArchivos {
+    static final long ESPERA_ESTABLE_MS = 300;
+
+    private final GestorReservas gestor;
+    private final WatchService vigilante;
+    private final Set<Path> archivos = new HashSet<>();
+    private final Thread hilo;
+
+    RecargadorArchivos(GestorReservas gestor, ArchivoObservado aulas, ArchivoObservado reservas) throws IOException {
+        this.gestor = gestor;
+        this.vigilante = FileSystems.getDefault().newWatchService();
+        archivos.add(ruta(aulas.getArchivo()));
+        archivos.add(ruta(reservas.getArchivo()));
+        Set<Path> directorios = new HashSet<>();
+        for (Path ruta : archivos) {
+            if (directorios.add(ruta.getParent())) {
+                ruta.getParent().register(vigilante, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+            }
+        }
+        this.hilo = new Thread(this::ejecutar, "recarga-archivos");
+        this.hilo.setDaemon(true);
+        this.hilo.start();
+    }
+
+    private static Path ruta(String archivo) {
+        return Paths.get(archivo).toAbsolutePath().normalize();
+    }
+
+    //Detiene el hilo (una recarga en curso termina antes)
+    void detener() {
+        try {
+            vigilante.close();
+        } catch (IOException e) {
+            //El hilo termina igual al interrumpirlo
+        }
+        hilo.interrupt();
+        try {
+            hilo.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void ejecutar() {
+        boolean pendiente = false;
+        try {
+            while (true) {
+                WatchKey clave = pendiente ? vigilante.poll(ESPERA_ESTABLE_MS, TimeUnit.MILLISECONDS) : vigilante.take();
+                if (clave == null) {
+                    //Sin eventos durante la espera: la edicion termino. Si un archivo seguia cambiando se reintenta.
+                    pendiente = !gestor.incorporarEdicionesExternas(true);
+                    continue;
+                }
+                Path directorio = (Path) clave.watchable();
+                for (WatchEvent<?> evento : clave.pollEvents()) {
+                    pendiente |= evento.kind() == StandardWatchEventKinds.OVERFLOW
+                        || archivos.contains(directorio.resolve((Path) evento.context()).toAbsolutePath().normalize());
+                }
+                clave.reset();
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            //Detenido
+        }
+    }
+}
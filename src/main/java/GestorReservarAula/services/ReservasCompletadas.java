@@ -0,0 +1,97 @@
+package GestorReservarAula.services;
+
+import java.time.LocalDate;
+import java.util.*;
+
+import GestorReservarAula.models.Reserva;
+
+/*Almacen frio de las reservas completadas. Al completarse una reserva sale de la lista del gestor y de sus indices
+(linea de tiempo, texto, estados, vencimientos), asi las busquedas de conflicto, los listados y los reportes solo
+recorren la agenda vigente. Aqui se siguen encontrando por ID y por rango de fechas hasta que la retencion las
+pasa al historico. Se persisten aparte, en reservas_completadas.txt junto a reservas.txt.
+No es seguro para varios hilos: GestorReservas lo protege con su cerrojo.*/
+class ReservasCompletadas {
+    private final Map<String, Reserva> porId = new HashMap<>();
+    private final TreeMap<LocalDate, List<Reserva>> porFecha = new TreeMap<>();
+    private final Map<String, Integer> porAula = new HashMap<>(); //Cantidad por codigo de aula
+
+    //Agrega la reserva; si ya estaba (fila repetida entre archivos) la reemplaza
+    void agregar(Reserva r) {
+        Reserva anterior = porId.put(r.getIdReserva().toUpperCase(), r);
+        if (anterior != null) quitarDeIndices(anterior);
+        porFecha.computeIfAbsent(r.getFecha(), k -> new ArrayList<>()).add(r);
+        porAula.merge(r.getAula().getCodigo(), 1, Integer::sum);
+    }
+
+    //Indica si hay completadas del aula (un aula con reservas no se borra)
+    boolean tieneAula(String codigoAula) {
+        return porAula.containsKey(codigoAula);
+    }
+
+    Reserva porId(String id) {
+        return id == null ? null : porId.get(id.toUpperCase());
+    }
+
+    int tamanio() {
+        return porId.size();
+    }
+
+    //Todas, en orden de fecha (para persistir)
+    List<Reserva> listar() {
+        return entreFechas(null, null);
+    }
+
+    //Completadas entre dos fechas inclusive (null = sin limite), en orden de fecha
+    List<Reserva> entreFechas(LocalDate desde, LocalDate hasta) {
+        NavigableMap<LocalDate, List<Reserva>> rango = porFecha;
+        if (desde != null) rango = rango.tailMap(desde, true);
+        if (hasta != null) rango = rango.headMap(hasta, true);
+        List<Reserva> lista = new ArrayList<>();
+        rango.values().forEach(lista::addAll);
+        return lista;
+    }
+
+    //Completadas anteriores a la fecha de corte, sin quitarlas
+    List<Reserva> anterioresA(LocalDate corte) {
+        List<Reserva> lista = new ArrayList<>();
+        porFecha.headMap(corte, false).values().forEach(lista::addAll);
+        return lista;
+    }
+
+    //Quita las anteriores a la fecha de corte (ya archivadas o vencida su retencion)
+    void quitarAnterioresA(LocalDate corte) {
+        Iterator<List<Reserva>> dias = porFecha.headMap(corte, false).values().iterator();
+        while (dias.hasNext()) {
+            for (Reserva r : dias.next()) {
+                porId.remove(r.getIdReserva().toUpperCase());
+                restarAula(r);
+            }
+            dias.remove();
+        }
+    }
+
+    //Mayor numero de ID (R<n>) guardado, o 0
+    long idMaximo() {
+        long maximo = 0;
+        for (String id : porId.keySet()) {
+            try {
+                maximo = Math.max(maximo, Long.parseLong(id.substring(1)));
+            } catch (NumberFormatException | StringIndexOutOfBoundsException e) {
+                //ID con otro formato: no compite con los R<n>
+            }
+        }
+        return maximo;
+    }
+
+    private void quitarDeIndices(Reserva r) {
+        List<Reserva> dia = porFecha.get(r.getFecha());
+        if (dia == null) return;
+        dia.remove(r);
+        if (dia.isEmpty()) porFecha.remove(r.getFecha());
+        restarAula(r);
+    }
+
+    private void restarAula(Reserva r) {
+        porAula.computeIfPresent(r.getAula().getCodigo(), (codigo, cantidad) -> cantidad > 1 ? cantidad - 1 : null);
+    }
+}
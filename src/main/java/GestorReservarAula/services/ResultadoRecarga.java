@@ -0,0 +1,55 @@
+package GestorReservarAula.services;
+
+import java.util.ArrayList;
+import java.util.List;
+
+//Resumen de una recarga en caliente de aulas.txt o reservas.txt: filas aplicadas y rechazadas con su motivo
+class ResultadoRecarga {
+    private final String archivo;
+    private int agregadas;
+    private int modificadas;
+    private int eliminadas;
+    private int marcadas; //Reservas con alerta por el cambio de un aula
+    private int promovidas; //Desde la lista de espera, por reservas eliminadas
+    private final List<String> rechazadas = new ArrayList<>();
+
+    ResultadoRecarga(String archivo) {
+        this.archivo = archivo;
+    }
+
+    void agregada() {
+        agregadas++;
+    }
+
+    void modificada() {
+        modificadas++;
+    }
+
+    void eliminada() {
+        eliminadas++;
+    }
+
+    void marcadas(int cantidad) {
+        marcadas += cantidad;
+    }
+
+    void promovidas(int cantidad) {
+        promovidas += cantidad;
+    }
+
+    void rechazar(String fila, String motivo) {
+        rechazadas.add(fila + " -> " + motivo);
+    }
+
+    List<String> getRechazadas() {
+        return rechazadas;
+    }
+
+    String resumen() {
+        StringBuilder texto = new StringBuilder(String.format("Recarga de %s: %d agregadas, %d modificadas, %d eliminadas, %d rechazadas",
+            archivo, agregadas, modificadas, eliminadas, rechazadas.size()));
+        if (marcadas > 0) texto.append(", ").append(marcadas).append(" reservas marcadas para revisar");
+        if (promovidas > 0) texto.append(", ").append(promovidas).append(" promovidas de la lista de espera");
+        return texto.toString();
+    }
+}
@@ -0,0 +1,26 @@
+package GestorReservarAula.services;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import GestorReservarAula.interfaces.GeneradorIds;
+
+/*Generador por defecto: un contador en memoria que parte del siguiente ID segun los datos cargados.
+Es unico dentro del proceso (tambien entre fragmentos que lo comparten), pero no entre procesos:
+para eso estan SecuenciaArrendada y GeneradorIdTemporal.*/
+class SecuenciaLocal implements GeneradorIds {
+    private final AtomicLong siguiente;
+
+    SecuenciaLocal(long inicio) {
+        this.siguiente = new AtomicLong(Math.max(1, inicio));
+    }
+
+    @Override
+    public long siguiente() {
+        return siguiente.getAndIncrement();
+    }
+
+    //Salta por encima de un numero que aparecio por fuera (fila agregada a mano en reservas.txt)
+    void avanzarHasta(long minimo) {
+        siguiente.accumulateAndGet(minimo, Math::max);
+    }
+}
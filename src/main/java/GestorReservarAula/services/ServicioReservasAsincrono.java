@@ -0,0 +1,148 @@
+package GestorReservarAula.services;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import GestorReservarAula.models.Reserva;
+import GestorReservarAula.models.ResultadoOperacion;
+import GestorReservarAula.util.TipoEvento;
+import GestorReservarAula.interfaces.ServicioReservas;
+import GestorReservarAula.exceptions.ConflictoDeHorarioException;
+import GestorReservarAula.exceptions.ValidacionDeReservaException;
+
+/*Fachada asincrona del servicio de reservas. Cada operacion devuelve enseguida un CompletableFuture con un
+ResultadoOperacion tipado (exito, conflicto o validacion) en lugar de lanzar excepciones verificadas.
+
+Las operaciones de una misma aula se encolan en un carril serial propio (ver CarrilSerial): se aplican de a una,
+en el orden en que se pidieron, y las de aulas distintas avanzan en paralelo. Sobre GestorReservas el paralelismo
+llega hasta la decision: registrar y modificar validan reglas, conflicto y alternativas bajo el cerrojo de lectura,
+que los carriles comparten, y toman el de escritura solo para actualizar los indices y marcar la persistencia.
+Cancelar no tiene decision que adelantar y toma el de escritura entero.
+El futuro se completa al decidirse la operacion; la escritura a disco sigue detras (ResultadoOperacion.getPersistido),
+asi que con el modo DIFERIDA reservar 50 aulas no espera 50 escrituras. En modo ARCHIVO cada escritura ocurre dentro
+del cerrojo de escritura y vuelve a serializar los carriles. Los futuros solo fallan ante errores inesperados (RuntimeException).*/
+public class ServicioReservasAsincrono implements AutoCloseable {
+    //Operacion sincrona del servicio que se ejecuta dentro de un carril
+    private interface Operacion<T> {
+        T ejecutar() throws ConflictoDeHorarioException, ValidacionDeReservaException;
+    }
+
+    private final ServicioReservas servicio;
+    private final ExecutorService pool;
+    private final boolean poolPropio; //Solo se detiene el pool si lo creo la fachada
+    private final Map<String, CarrilSerial> carriles = new ConcurrentHashMap<>();
+
+    //Fachada con un pool propio de un hilo por procesador
+    public ServicioReservasAsincrono(ServicioReservas servicio) {
+        this(servicio, crearPool(Runtime.getRuntime().availableProcessors()), true);
+    }
+
+    //Fachada sobre un pool del llamador, que sigue siendo responsable de detenerlo
+    public ServicioReservasAsincrono(ServicioReservas servicio, ExecutorService pool) {
+        this(servicio, pool, false);
+    }
+
+    private ServicioReservasAsincrono(ServicioReservas servicio, ExecutorService pool, boolean poolPropio) {
+        this.servicio = servicio;
+        this.pool = pool;
+        this.poolPropio = poolPropio;
+    }
+
+    private static ExecutorService crearPool(int hilos) {
+        AtomicInteger numero = new AtomicInteger();
+        return Executors.newFixedThreadPool(hilos, r -> {
+            Thread hilo = new Thread(r, "carril-aulas-" + numero.incrementAndGet());
+            hilo.setDaemon(true);
+            return hilo;
+        });
+    }
+
+    public ServicioReservas getServicio() {
+        return servicio;
+    }
+
+    //====================== Reservas ======================
+
+    //La clave de idempotencia es opcional (null = sin clave), como en ServicioReservas
+    public CompletableFuture<ResultadoOperacion<String>> reservarClase(String claveIdempotencia, String codigoAula, LocalDate fecha,
+                                                                       LocalTime hInicio, LocalTime hFin, String responsable,
+                                                                       String materia, int numEstudiantes) {
+        return enCarril(codigoAula, () -> servicio.registrarReservaClase(claveIdempotencia, codigoAula, fecha, hInicio, hFin,
+            responsable, materia, numEstudiantes));
+    }
+
+    public CompletableFuture<ResultadoOperacion<String>> reservarEvento(String claveIdempotencia, String codigoAula, LocalDate fecha,
+                                                                        LocalTime hInicio, LocalTime hFin, String responsable,
+                                                                        TipoEvento tipoEvento, int asistentesEsperados) {
+        return enCarril(codigoAula, () -> servicio.registrarReservaEvento(claveIdempotencia, codigoAula, fecha, hInicio, hFin,
+            responsable, tipoEvento, asistentesEsperados));
+    }
+
+    public CompletableFuture<ResultadoOperacion<String>> reservarPractica(String claveIdempotencia, String codigoAula, LocalDate fecha,
+                                                                          LocalTime hInicio, LocalTime hFin, String responsable,
+                                                                          String descripcionPractica, int numEquipos) {
+        return enCarril(codigoAula, () -> servicio.registrarReservaPractica(claveIdempotencia, codigoAula, fecha, hInicio, hFin,
+            responsable, descripcionPractica, numEquipos));
+    }
+
+    //Modificar y cancelar van al carril del aula de la reserva; devuelven las reservas promovidas de la lista de espera
+    public CompletableFuture<ResultadoOperacion<List<Reserva>>> modificar(String id, LocalDate nuevaFecha, LocalTime nuevoHInicio,
+                                                                          LocalTime nuevoHFin, String nuevoResponsable) {
+        return enCarrilDeReserva(id, () -> servicio.modificarReserva(id, nuevaFecha, nuevoHInicio, nuevoHFin, nuevoResponsable));
+    }
+
+    public CompletableFuture<ResultadoOperacion<List<Reserva>>> cancelar(String claveIdempotencia, String id) {
+        return enCarrilDeReserva(id, () -> servicio.cancelarReserva(claveIdempotencia, id));
+    }
+
+    //Espera a que terminen las operaciones ya encoladas en todos los carriles
+    public CompletableFuture<Void> vaciar() {
+        return CompletableFuture.allOf(carriles.values().stream()
+            .map(c -> CompletableFuture.runAsync(() -> { }, c))
+            .toArray(CompletableFuture[]::new));
+    }
+
+    //Detiene el pool propio tras terminar lo encolado
+    @Override
+    public void close() {
+        vaciar().join();
+        if (poolPropio) pool.shutdown();
+    }
+
+    //====================== Carriles ======================
+
+    private CompletableFuture<ResultadoOperacion<List<Reserva>>> enCarrilDeReserva(String id, Operacion<List<Reserva>> operacion) {
+        Reserva reserva = servicio.buscarReservaPorId(id).orElse(null);
+        if (reserva == null) {
+            return CompletableFuture.completedFuture(ResultadoOperacion.validacion("Reserva no encontrada: " + id));
+        }
+        return enCarril(reserva.getAula().getCodigo(), operacion);
+    }
+
+    /*Encola la operacion en el carril del aula. Al decidirse, el resultado lleva el futuro de persistencia del servicio,
+    que cubre este cambio y los anteriores; el hilo del carril no espera la escritura.*/
+    private <T> CompletableFuture<ResultadoOperacion<T>> enCarril(String codigoAula, Operacion<T> operacion) {
+        CompletableFuture<ResultadoOperacion<T>> futuro = new CompletableFuture<>();
+        carril(codigoAula).execute(() -> {
+            try {
+                T valor = operacion.ejecutar();
+                futuro.complete(ResultadoOperacion.exito(valor, servicio.confirmarPersistencia()));
+            } catch (ConflictoDeHorarioException e) {
+                futuro.complete(ResultadoOperacion.conflicto(e));
+            } catch (ValidacionDeReservaException e) {
+                futuro.complete(ResultadoOperacion.validacion(e.getMessage()));
+            } catch (RuntimeException e) {
+                futuro.completeExceptionally(e);
+            }
+        });
+        return futuro;
+    }
+
+    private CarrilSerial carril(String codigoAula) {
+        return carriles.computeIfAbsent(codigoAula == null ? "" : codigoAula.toUpperCase(), k -> new CarrilSerial(pool));
+    }
+}
@@ -0,0 +1,125 @@
+package GestorReservarAula.tools;
+
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+import GestorReservarAula.util.Fase;
+
+/*Lee una grabacion de RegistroFases e imprime el desglose de latencia por fase:
+cantidad, tiempo total, media y percentiles, y la suma de filas/bytes cuando la fase los informa.
+Las validaciones y el guardado (que en modo ARCHIVO ocurre dentro de cada reserva) se muestran
+tambien como porcentaje del tiempo total de RESERVA.
+
+Uso: AnalizadorFases archivo [por=atributo]
+  por=resultado  agrupa ademas cada fase por el valor del atributo (ej. resultado, tipo, aula, archivo)*/
+public class AnalizadorFases {
+    //Acumulado de una fase (o de una fase y un valor de atributo)
+    private static class Resumen {
+        private final HistogramaLatencias histograma = new HistogramaLatencias();
+        private long cantidad;
+        private long totalNanos;
+        private long filas;
+        private long bytes;
+
+        private void agregar(long duracion, Map<String, String> atributos) {
+            histograma.registrar(duracion);
+            cantidad++;
+            totalNanos += duracion;
+            filas += numero(atributos.get("filas"));
+            bytes += numero(atributos.get("bytes"));
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Uso: AnalizadorFases archivo [por=atributo]");
+            return;
+        }
+        String agrupar = null;
+        for (int i = 1; i < args.length; i++) {
+            if (args[i].startsWith("por=")) agrupar = args[i].substring(4);
+        }
+
+        Map<Fase, Resumen> porFase = new EnumMap<>(Fase.class);
+        Map<Fase, Map<String, Resumen>> porGrupo = new EnumMap<>(Fase.class);
+        long eventos = 0, invalidas = 0, ultimoFin = 0;
+        String descartados = "0";
+        try (BufferedReader lector = new BufferedReader(new InputStreamReader(new FileInputStream(args[0]), StandardCharsets.UTF_8))) {
+            String linea;
+            while ((linea = lector.readLine()) != null) {
+                if (linea.startsWith("#fin descartados=")) descartados = linea.substring("#fin descartados=".length());
+                if (linea.isEmpty() || linea.startsWith("#")) continue;
+                String[] partes = linea.split("\t", -1);
+                Fase fase;
+                long inicio, duracion;
+                try {
+                    fase = Fase.valueOf(partes[0]);
+                    inicio = Long.parseLong(partes[1]);
+                    duracion = Long.parseLong(partes[2]);
+                } catch (RuntimeException e) {
+                    invalidas++; //Linea truncada o de una version distinta
+                    continue;
+                }
+                Map<String, String> atributos = atributos(partes.length > 4 ? partes[4] : "");
+                porFase.computeIfAbsent(fase, f -> new Resumen()).agregar(duracion, atributos);
+                if (agrupar != null) {
+                    String valor = atributos.getOrDefault(agrupar, "-");
+                    porGrupo.computeIfAbsent(fase, f -> new TreeMap<>()).computeIfAbsent(valor, v -> new Resumen()).agregar(duracion, atributos);
+                }
+                ultimoFin = Math.max(ultimoFin, inicio + duracion);
+                eventos++;
+            }
+        }
+
+        System.out.printf("Grabacion: %s  (%d eventos en %.1f s, %s descartados, %d lineas invalidas)%n",
+            args[0], eventos, ultimoFin / 1e9, descartados, invalidas);
+        System.out.printf("%-30s %9s %11s %10s %10s %10s %10s %10s %10s%n",
+            "Fase", "n", "total ms", "media us", "p50 us", "p95 us", "p99 us", "max us", "% reserva");
+        Resumen reserva = porFase.get(Fase.RESERVA);
+        for (Map.Entry<Fase, Resumen> e : porFase.entrySet()) {
+            imprimir(e.getKey().toString(), e.getValue(), reserva, e.getKey());
+            Map<String, Resumen> grupos = porGrupo.get(e.getKey());
+            if (grupos != null && !(grupos.size() == 1 && grupos.containsKey("-"))) {
+                String atributo = agrupar;
+                grupos.forEach((valor, r) -> imprimir("  " + atributo + "=" + valor, r, null, e.getKey()));
+            }
+        }
+        for (Map.Entry<Fase, Resumen> e : porFase.entrySet()) {
+            Resumen r = e.getValue();
+            if (r.filas > 0 || r.bytes > 0) {
+                System.out.printf("%s: %d filas, %d bytes (%.1f KB por evento)%n", e.getKey(), r.filas, r.bytes, r.bytes / 1024.0 / r.cantidad);
+            }
+        }
+    }
+
+    private static void imprimir(String nombre, Resumen r, Resumen reserva, Fase fase) {
+        //Fases que ocurren dentro de RESERVA: su peso relativo indica donde se va el tiempo
+        boolean anidada = fase == Fase.VALIDAR_CONFLICTO || fase == Fase.VALIDAR_REGLAS || fase == Fase.GUARDAR;
+        String porcentaje = reserva != null && anidada && reserva.totalNanos > 0 ? String.format("%.1f%%", r.totalNanos * 100.0 / reserva.totalNanos) : "";
+        System.out.printf("%-30s %9d %11.2f %10.1f %10.1f %10.1f %10.1f %10.1f %10s%n", nombre, r.cantidad, r.totalNanos / 1e6,
+            r.totalNanos / 1e3 / Math.max(1, r.cantidad), r.histograma.percentil(50) / 1e3, r.histograma.percentil(95) / 1e3,
+            r.histograma.percentil(99) / 1e3, r.histograma.maximo() / 1e3, porcentaje);
+    }
+
+    private static Map<String, String> atributos(String texto) {
+        Map<String, String> atributos = new HashMap<>();
+        for (String par : texto.split(";")) {
+            int igual = par.indexOf('=');
+            if (igual > 0) atributos.put(par.substring(0, igual), par.substring(igual + 1));
+        }
+        return atributos;
+    }
+
+    private static long numero(String texto) {
+        if (texto == null) return 0;
+        try {
+            return Long.parseLong(texto);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package GestorReservarAula.tools;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/*Histograma de latencias en nanosegundos, seguro para varios hilos y sin reservar memoria al registrar.
+Usa cubetas log-lineales: cada potencia de 2 se divide en 32 sub-cubetas (error relativo < 3.2%).*/
+public class HistogramaLatencias {
+    private static final int BITS_SUB = 5;
+    private static final int SUB_CUBETAS = 1 << BITS_SUB;
+    private static final int CUBETAS = (64 - BITS_SUB) * SUB_CUBETAS;
+
+    private final AtomicLongArray conteos = new AtomicLongArray(CUBETAS);
+
+    //Registra una muestra de latencia
+    public void registrar(long nanos) {
+        conteos.incrementAndGet(indice(Math.max(0, nanos)));
+    }
+
+    //Cantidad total de muestras
+    public long total() {
+        long total = 0;
+        for (int i = 0; i < CUBETAS; i++) total += conteos.get(i);
+        return total;
+    }
+
+    //Devuelve el valor (limite superior de la cubeta) del percentil pedido, entre 0 y 100
+    public long percentil(double p) {
+        long total = total();
+        if (total == 0) return 0;
+        long objetivo = (long) Math.ceil(total * p / 100.0);
+        long acumulado = 0;
+        for (int i = 0; i < CUBETAS; i++) {
+            acumulado += conteos.get(i);
+            if (acumulado >= Math.max(1, objetivo)) return limiteSuperior(i);
+        }
+        return limiteSuperior(CUBETAS - 1);
+    }
+
+    //Valor maximo registrado (limite superior de la ultima cubeta con muestras)
+    public long maximo() {
+        for (int i = CUBETAS - 1; i >= 0; i--) {
+            if (conteos.get(i) > 0) return limiteSuperior(i);
+        }
+        return 0;
+    }
+
+    public void reiniciar() {
+        for (int i = 0; i < CUBETAS; i++) conteos.set(i, 0);
+    }
+
+    //Los valores menores que SUB_CUBETAS se guardan exactos; el resto por exponente y mantisa
+    private static int indice(long valor) {
+        if (valor < SUB_CUBETAS) return (int) valor;
+        int exponente = 63 - Long.numberOfLeadingZeros(valor) - BITS_SUB;
+        int mantisa = (int) (valor >>> exponente) & (SUB_CUBETAS - 1);
+        return (exponente + 1) * SUB_CUBETAS + mantisa;
+    }
+
+    private static long limiteSuperior(int indice) {
+        long mantisa = indice % SUB_CUBETAS;
+        if (indice < SUB_CUBETAS) return mantisa;
+        int exponente = indice / SUB_CUBETAS - 1;
+        return ((mantisa | SUB_CUBETAS) << exponente) + (1L << exponente) - 1;
+    }
+}
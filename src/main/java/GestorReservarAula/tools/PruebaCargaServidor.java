@@ -0,0 +1,218 @@
+package GestorReservarAula.tools;
+
+import java.io.*;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+import GestorReservarAula.ModoServidor;
+import GestorReservarAula.services.GestorReservas;
+import GestorReservarAula.persistence.ModoPersistencia;
+import GestorReservarAula.util.TipoAula;
+
+/*Prueba de carga local del modo servidor. Levanta un servidor en memoria en un puerto libre (o usa url=...),
+lanza N clientes HTTP con conexiones persistentes y reporta pedidos por segundo sostenidos y latencia de cola.
+
+Uso: PruebaCargaServidor [clave=valor ...]
+  hilos=16  duracion=10 (s)  calentamiento=3 (s)  dias=30  aulas=40
+  mezcla=reservar:30,buscarId:50,buscarResponsable:15,reporte:5
+  url=http://host:puerto (servidor ya iniciado; sin url se levanta uno en memoria)  semilla=42*/
+public class PruebaCargaServidor {
+    private enum Operacion { RESERVAR, BUSCAR_ID, BUSCAR_RESPONSABLE, REPORTE }
+
+    private final Map<String, String> config;
+    private final String base;
+    private final List<String> aulas = new ArrayList<>();
+    private final Operacion[] tablaMezcla; //100 entradas: sorteo O(1) de la operacion
+    private final Map<Operacion, HistogramaLatencias> histogramas = new EnumMap<>(Operacion.class);
+    private final Map<Integer, AtomicLong> codigos = new ConcurrentSkipListMap<>();
+    private final AtomicLong fallas = new AtomicLong(); //Errores de red (sin respuesta HTTP)
+    private final AtomicLong ultimoId = new AtomicLong();
+    private final LocalDate primerDia = LocalDate.now().plusDays(1);
+    private final int dias;
+
+    public PruebaCargaServidor(Map<String, String> config, String base) {
+        this.config = config;
+        this.base = base;
+        this.dias = Integer.parseInt(config.getOrDefault("dias", "30"));
+        this.tablaMezcla = construirMezcla(config.getOrDefault("mezcla", "reservar:30,buscarId:50,buscarResponsable:15,reporte:5"));
+        for (Operacion op : Operacion.values()) histogramas.put(op, new HistogramaLatencias());
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> config = new HashMap<>();
+        for (String arg : args) {
+            String[] kv = arg.split("=", 2);
+            if (kv.length == 2) config.put(kv[0].trim(), kv[1].trim());
+        }
+        System.setProperty("http.maxConnections", config.getOrDefault("hilos", "16")); //Una conexion persistente por cliente
+
+        ModoServidor servidor = null;
+        GestorReservas gestor = null;
+        String base = config.get("url");
+        if (base == null) {
+            gestor = new GestorReservas(ModoPersistencia.MEMORIA);
+            servidor = new ModoServidor(gestor, 0);
+            servidor.iniciar();
+            base = "http://localhost:" + servidor.getPuerto();
+        }
+        try {
+            PruebaCargaServidor prueba = new PruebaCargaServidor(config, base);
+            prueba.crearAulas(Integer.parseInt(config.getOrDefault("aulas", "40")));
+            prueba.ejecutar();
+        } finally {
+            if (servidor != null) servidor.detener(0);
+            if (gestor != null) gestor.close();
+        }
+    }
+
+    //Registra las aulas por la API (la mitad teoricas, la mitad laboratorios)
+    private void crearAulas(int cantidad) throws IOException {
+        for (int i = 1; i <= cantidad; i++) {
+            TipoAula tipo = i % 2 == 0 ? TipoAula.LABORATORIO : TipoAula.TEORICA;
+            String codigo = String.format("%s%03d", tipo.name().charAt(0), i);
+            pedir("POST", "/aulas", "codigo=" + codigo + "&nombre=" + tipo + "+" + i + "&capacidad=40&tipo=" + tipo);
+            aulas.add(codigo);
+        }
+    }
+
+    private void ejecutar() throws InterruptedException {
+        int hilos = Integer.parseInt(config.getOrDefault("hilos", "16"));
+        System.out.printf("Servidor: %s, %d aulas, %d clientes%n", base, aulas.size(), hilos);
+        correr(hilos, Integer.parseInt(config.getOrDefault("calentamiento", "3")));
+        histogramas.values().forEach(HistogramaLatencias::reiniciar);
+        codigos.clear();
+        fallas.set(0);
+
+        long inicio = System.nanoTime();
+        correr(hilos, Integer.parseInt(config.getOrDefault("duracion", "10")));
+        imprimirReporte(System.nanoTime() - inicio);
+    }
+
+    private void correr(int hilos, int segundos) throws InterruptedException {
+        if (segundos <= 0) return;
+        ExecutorService pool = Executors.newFixedThreadPool(hilos);
+        long fin = System.nanoTime() + TimeUnit.SECONDS.toNanos(segundos);
+        int semilla = Integer.parseInt(config.getOrDefault("semilla", "42"));
+        for (int h = 0; h < hilos; h++) {
+            final int numHilo = h;
+            pool.execute(() -> {
+                Random random = new Random(semilla * 31L + numHilo);
+                while (System.nanoTime() < fin) {
+                    Operacion op = tablaMezcla[random.nextInt(tablaMezcla.length)];
+                    long t0 = System.nanoTime();
+                    try {
+                        int codigo = ejecutarOperacion(op, random);
+                        codigos.computeIfAbsent(codigo, c -> new AtomicLong()).incrementAndGet();
+                    } catch (IOException e) {
+                        fallas.incrementAndGet();
+                    }
+                    histogramas.get(op).registrar(System.nanoTime() - t0);
+                }
+            });
+        }
+        pool.shutdown();
+        pool.awaitTermination(segundos + 60L, TimeUnit.SECONDS);
+    }
+
+    private int ejecutarOperacion(Operacion op, Random random) throws IOException {
+        switch (op) {
+            case RESERVAR:
+                String aula = aulas.get(random.nextInt(aulas.size()));
+                int hora = 7 + random.nextInt(12);
+                String cuerpo = "tipo=CLASE&aula=" + aula + "&fecha=" + primerDia.plusDays(random.nextInt(dias))
+                    + "&horaInicio=" + String.format("%02d:00", hora) + "&horaFin=" + String.format("%02d:00", hora + 1 + random.nextInt(2))
+                    + "&responsable=" + URLEncoder.encode("Docente " + random.nextInt(500), "UTF-8") + "&materia=Materia&numEstudiantes=20";
+                String[] respuesta = new String[1];
+                int codigo = pedir("POST", "/reservas", cuerpo, respuesta);
+                if (codigo == 201) {
+                    int i = respuesta[0].indexOf("\"id\":\"R");
+                    if (i >= 0) {
+                        long id = Long.parseLong(respuesta[0].substring(i + 7, respuesta[0].indexOf('"', i + 7)));
+                        ultimoId.accumulateAndGet(id, Math::max);
+                    }
+                }
+                return codigo;
+            case BUSCAR_ID:
+                return pedir("GET", "/reservas/R" + (1 + (long) (random.nextDouble() * Math.max(1, ultimoId.get()))), null);
+            case BUSCAR_RESPONSABLE:
+                return pedir("GET", "/reservas?responsable=" + URLEncoder.encode("Docente " + random.nextInt(500), "UTF-8"), null);
+            default:
+                return pedir("GET", "/reportes?tipos=TOP_AULAS,DISTRIBUCION_ESTADO", null);
+        }
+    }
+
+    private int pedir(String metodo, String ruta, String cuerpo) throws IOException {
+        return pedir(metodo, ruta, cuerpo, null);
+    }
+
+    //Hace un pedido y lee la respuesta completa, para que la conexion vuelva al pool de keep-alive
+    private int pedir(String metodo, String ruta, String cuerpo, String[] respuesta) throws IOException {
+        HttpURLConnection conexion = (HttpURLConnection) new URL(base + ruta).openConnection();
+        conexion.setRequestMethod(metodo);
+        if (cuerpo != null) {
+            conexion.setDoOutput(true);
+            conexion.setRequestProperty("Content-Type", "application/x-www-form-urlencoded");
+            try (OutputStream salida = conexion.getOutputStream()) {
+                salida.write(cuerpo.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        int codigo = conexion.getResponseCode();
+        InputStream entrada = codigo >= 400 ? conexion.getErrorStream() : conexion.getInputStream();
+        if (entrada != null) {
+            ByteArrayOutputStream leido = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            try (InputStream in = entrada) {
+                int n;
+                while ((n = in.read(buffer)) != -1) {
+                    if (respuesta != null) leido.write(buffer, 0, n);
+                }
+            }
+            if (respuesta != null) respuesta[0] = new String(leido.toByteArray(), StandardCharsets.UTF_8);
+        }
+        return codigo;
+    }
+
+    private void imprimirReporte(long nanos) {
+        double segundos = nanos / 1e9;
+        long totalPedidos = 0;
+        System.out.println();
+        System.out.printf("%-20s %10s %10s %10s %10s %10s %10s%n", "Operacion", "Total", "Ped/s", "p50(us)", "p99(us)", "p999(us)", "max(us)");
+        for (Operacion op : Operacion.values()) {
+            HistogramaLatencias h = histogramas.get(op);
+            long total = h.total();
+            totalPedidos += total;
+            if (total == 0) continue;
+            System.out.printf("%-20s %10d %10.0f %10.1f %10.1f %10.1f %10.1f%n", op, total, total / segundos,
+                h.percentil(50) / 1e3, h.percentil(99) / 1e3, h.percentil(99.9) / 1e3, h.maximo() / 1e3);
+        }
+        System.out.printf("%nTotal: %d pedidos en %.1f s (%.0f pedidos/s sostenidos)%n", totalPedidos, segundos, totalPedidos / segundos);
+        StringBuilder sb = new StringBuilder("Codigos HTTP:");
+        codigos.forEach((codigo, n) -> sb.append(' ').append(codigo).append('=').append(n.get()));
+        System.out.println(sb.append(fallas.get() > 0 ? "  errores de red=" + fallas.get() : ""));
+    }
+
+    //Tabla de 100 entradas con la proporcion de cada operacion (mismo formato que SimuladorCarga)
+    private static Operacion[] construirMezcla(String mezcla) {
+        Map<Operacion, Integer> pesos = new EnumMap<>(Operacion.class);
+        for (String par : mezcla.split(",")) {
+            String[] kv = par.split(":");
+            String nombre = kv[0].trim().replaceAll("([a-z])([A-Z])", "$1_$2").toUpperCase();
+            pesos.put(Operacion.valueOf(nombre), Integer.parseInt(kv[1].trim()));
+        }
+        int total = pesos.values().stream().mapToInt(Integer::intValue).sum();
+        Operacion[] tabla = new Operacion[100];
+        int pos = 0;
+        for (Map.Entry<Operacion, Integer> e : pesos.entrySet()) {
+            int cantidad = (int) Math.round(e.getValue() * 100.0 / total);
+            for (int i = 0; i < cantidad && pos < tabla.length; i++) tabla[pos++] = e.getKey();
+        }
+        while (pos < tabla.length) tabla[pos++] = tabla[pos - 2];
+        return tabla;
+    }
+}
@@ -0,0 +1,317 @@
+package GestorReservarAula.tools;
+
+import java.io.File;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import GestorReservarAula.services.GestorReservas;
+import GestorReservarAula.persistence.ModoPersistencia;
+import GestorReservarAula.util.TipoAula;
+import GestorReservarAula.util.TipoEvento;
+import GestorReservarAula.util.RegistroFases;
+import GestorReservarAula.exceptions.ConflictoDeHorarioException;
+import GestorReservarAula.exceptions.ValidacionDeReservaException;
+
+/*Generador de carga mixta para GestorReservas.
+Crea un campus sintetico, lanza N hilos con una mezcla configurable de operaciones y reporta
+rendimiento y percentiles de latencia por operacion, junto con estadisticas de GC y memoria reservada.
+
+Uso: SimuladorCarga [clave=valor ...]
+  hilos=4  duracion=10 (s)  calentamiento=2 (s)  dias=30  persistencia=MEMORIA|ARCHIVO|DIFERIDA
+  aulas=TEORICA:40,LABORATORIO:15,AUDITORIO:5
+  mezcla=reservar:50,buscarId:20,buscarResponsable:15,listar:10,reporte:5
+  conflicto=0.2 (fraccion de reservas dirigidas a un horario ya ocupado)
+  horas=7-21  duracionMax=3 (horas por reserva)  responsables=500  semilla=42
+  grabar=archivo (latencia por fase para AnalizadorFases; tambien con -Dgestor.grabacion=archivo)*/
+public class SimuladorCarga {
+    private enum Operacion { RESERVAR, BUSCAR_ID, BUSCAR_RESPONSABLE, LISTAR, REPORTE }
+
+    //Horario ya reservado, usado para provocar conflictos a proposito
+    private static class Franja {
+        private final String aula;
+        private final LocalDate fecha;
+        private final int hora;
+        private final int duracion;
+
+        private Franja(String aula, LocalDate fecha, int hora, int duracion) {
+            this.aula = aula;
+            this.fecha = fecha;
+            this.hora = hora;
+            this.duracion = duracion;
+        }
+    }
+
+    private final Map<String, String> config;
+    private final GestorReservas gestor;
+    private final List<String> todasLasAulas = new ArrayList<>();
+    private final Operacion[] tablaMezcla; //100 entradas: sorteo O(1) de la operacion
+    private final Map<Operacion, HistogramaLatencias> histogramas = new EnumMap<>(Operacion.class);
+    private final Map<Operacion, AtomicLong> errores = new EnumMap<>(Operacion.class);
+    //Anillo con las ultimas franjas reservadas: sorteo de conflictos sin copiar listas crecientes
+    private final AtomicReferenceArray<Franja> ocupadas = new AtomicReferenceArray<>(4096);
+    private final AtomicLong ocupadasEscritas = new AtomicLong();
+    private final AtomicLong conflictos = new AtomicLong();
+    private final AtomicLong ultimoId = new AtomicLong();
+    private final LocalDate primerDia = LocalDate.now().plusDays(1);
+
+    private final int dias;
+    private final int horaMin;
+    private final int horaMax;
+    private final int duracionMax;
+    private final int responsables;
+    private final double fraccionConflicto;
+
+    public SimuladorCarga(Map<String, String> config, GestorReservas gestor) {
+        this.config = config;
+        this.gestor = gestor;
+        this.dias = entero("dias", 30);
+        String[] horas = texto("horas", "7-21").split("-");
+        this.horaMin = Integer.parseInt(horas[0].trim());
+        this.horaMax = Integer.parseInt(horas[1].trim());
+        if (horaMin < 0 || horaMin >= horaMax || horaMax > 24) {
+            throw new IllegalArgumentException("horas debe cumplir 0 <= inicio < fin <= 24: " + texto("horas", "7-21"));
+        }
+        this.duracionMax = entero("duracionMax", 3);
+        this.responsables = entero("responsables", 500);
+        this.fraccionConflicto = Double.parseDouble(texto("conflicto", "0.2"));
+        this.tablaMezcla = construirMezcla(texto("mezcla", "reservar:50,buscarId:20,buscarResponsable:15,listar:10,reporte:5"));
+        for (Operacion op : Operacion.values()) {
+            histogramas.put(op, new HistogramaLatencias());
+            errores.put(op, new AtomicLong());
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> config = new HashMap<>();
+        for (String arg : args) {
+            String[] kv = arg.split("=", 2);
+            if (kv.length == 2) config.put(kv[0].trim(), kv[1].trim());
+        }
+
+        if (config.containsKey("grabar")) RegistroFases.iniciar(config.get("grabar"));
+        ModoPersistencia modo = ModoPersistencia.valueOf(config.getOrDefault("persistencia", "MEMORIA").toUpperCase());
+        GestorReservas gestor;
+        File aulasTmp = null, reservasTmp = null;
+        if (modo != ModoPersistencia.MEMORIA) {
+            //Archivos temporales para no tocar los datos reales
+            aulasTmp = File.createTempFile("sim_aulas", ".txt");
+            reservasTmp = File.createTempFile("sim_reservas", ".txt");
+            gestor = new GestorReservas(aulasTmp.getPath(), reservasTmp.getPath(), modo);
+        } else {
+            gestor = new GestorReservas(modo);
+        }
+
+        try {
+            SimuladorCarga simulador = new SimuladorCarga(config, gestor);
+            simulador.crearCampus();
+            simulador.ejecutar();
+        } finally {
+            gestor.close();
+            RegistroFases.detener();
+            if (aulasTmp != null) aulasTmp.delete();
+            if (reservasTmp != null) reservasTmp.delete();
+        }
+    }
+
+    //Registra las aulas del campus sintetico segun la configuracion aulas=TIPO:cantidad,...
+    public void crearCampus() throws ValidacionDeReservaException {
+        Random random = new Random(entero("semilla", 42));
+        for (String par : texto("aulas", "TEORICA:40,LABORATORIO:15,AUDITORIO:5").split(",")) {
+            String[] kv = par.split(":");
+            TipoAula tipo = TipoAula.valueOf(kv[0].trim().toUpperCase());
+            int cantidad = Integer.parseInt(kv[1].trim());
+            for (int i = 1; i <= cantidad; i++) {
+                String codigo = String.format("%s%03d", tipo.name().charAt(0), i);
+                int capacidad = tipo == TipoAula.AUDITORIO ? 150 + random.nextInt(350) : 20 + random.nextInt(40);
+                gestor.registrarAula(codigo, tipo + " " + i, capacidad, tipo);
+                todasLasAulas.add(codigo);
+            }
+        }
+    }
+
+    //Fase de calentamiento (descartada) y fase medida, luego imprime el reporte
+    public void ejecutar() throws InterruptedException {
+        int hilos = entero("hilos", 4);
+        System.out.printf("Campus: %d aulas, %d dias, %d hilos%n", todasLasAulas.size(), dias, hilos);
+
+        correr(hilos, entero("calentamiento", 2));
+        histogramas.values().forEach(HistogramaLatencias::reiniciar);
+        errores.values().forEach(e -> e.set(0));
+        conflictos.set(0);
+
+        long gcConteoInicial = conteoGc();
+        long gcTiempoInicial = tiempoGc();
+        long[] reservadoPorHilo = new long[hilos];
+        long inicio = System.nanoTime();
+        correr(hilos, entero("duracion", 10), reservadoPorHilo);
+        long nanos = System.nanoTime() - inicio;
+
+        imprimirReporte(nanos, conteoGc() - gcConteoInicial, tiempoGc() - gcTiempoInicial, Arrays.stream(reservadoPorHilo).sum());
+    }
+
+    private void correr(int hilos, int segundos) throws InterruptedException {
+        correr(hilos, segundos, new long[hilos]);
+    }
+
+    private void correr(int hilos, int segundos, long[] reservadoPorHilo) throws InterruptedException {
+        if (segundos <= 0) return;
+        ExecutorService pool = Executors.newFixedThreadPool(hilos);
+        long fin = System.nanoTime() + TimeUnit.SECONDS.toNanos(segundos);
+        int semilla = entero("semilla", 42);
+        for (int h = 0; h < hilos; h++) {
+            final int numHilo = h;
+            pool.execute(() -> {
+                long reservadoInicial = memoriaReservadaHilo();
+                Random random = new Random(semilla * 31L + numHilo);
+                while (System.nanoTime() < fin) {
+                    Operacion op = tablaMezcla[random.nextInt(tablaMezcla.length)];
+                    long t0 = System.nanoTime();
+                    boolean ok = ejecutarOperacion(op, random);
+                    histogramas.get(op).registrar(System.nanoTime() - t0);
+                    if (!ok) errores.get(op).incrementAndGet();
+                }
+                long reservadoFinal = memoriaReservadaHilo();
+                if (reservadoInicial >= 0 && reservadoFinal >= 0) reservadoPorHilo[numHilo] = reservadoFinal - reservadoInicial;
+            });
+        }
+        pool.shutdown();
+        pool.awaitTermination(segundos + 60L, TimeUnit.SECONDS);
+    }
+
+    //Ejecuta una operacion. Devuelve false si termino en un error inesperado (los conflictos se cuentan aparte).
+    private boolean ejecutarOperacion(Operacion op, Random random) {
+        switch (op) {
+            case RESERVAR:
+                return reservar(random);
+            case BUSCAR_ID:
+                long max = Math.max(1, ultimoId.get());
+                gestor.buscarReservaPorId("R" + (1 + (long) (random.nextDouble() * max)));
+                return true;
+            case BUSCAR_RESPONSABLE:
+                gestor.buscarReservasPorResponsable("Docente " + random.nextInt(responsables));
+                return true;
+            case LISTAR:
+                gestor.listarReservas(random.nextBoolean() ? "fecha" : "aula", true);
+                return true;
+            case REPORTE:
+                switch (random.nextInt(3)) {
+                    case 0: gestor.generarReporteTopAulas(); break;
+                    case 1: gestor.generarReporteOcupacionPorTipoAula(); break;
+                    default: gestor.generarReporteDistribucionPorTipoReserva();
+                }
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    //Elige un tipo de reserva compatible con un aula al azar y la registra
+    private boolean reservar(Random random) {
+        Franja franja = null;
+        long escritas = Math.min(ocupadasEscritas.get(), ocupadas.length());
+        if (escritas > 0 && random.nextDouble() < fraccionConflicto) {
+            franja = ocupadas.get(random.nextInt((int) escritas)); //Conflicto deliberado
+        }
+        if (franja == null) {
+            String aula = todasLasAulas.get(random.nextInt(todasLasAulas.size()));
+            int duracion = 1 + random.nextInt(duracionMax);
+            int hora = horaMin + random.nextInt(Math.max(1, horaMax - horaMin - duracion + 1));
+            duracion = Math.min(duracion, horaMax - hora); //Si la franja es mas corta que la duracion, no pasar de horaMax
+            franja = new Franja(aula, primerDia.plusDays(random.nextInt(dias)), hora, duracion);
+        }
+
+        LocalTime inicio = LocalTime.of(franja.hora, 0);
+        int horaFin = franja.hora + franja.duracion;
+        LocalTime fin = horaFin == 24 ? LocalTime.MAX : LocalTime.of(horaFin, 0); //LocalTime no admite las 24:00
+        String responsable = "Docente " + random.nextInt(responsables);
+        try {
+            String id;
+            char tipo = franja.aula.charAt(0);
+            if (tipo == 'A') {
+                id = gestor.registrarReservaEvento(franja.aula, franja.fecha, inicio, fin, responsable, TipoEvento.CONFERENCIA, 100);
+            } else if (tipo == 'L' && random.nextBoolean()) {
+                id = gestor.registrarReservaPractica(franja.aula, franja.fecha, inicio, fin, responsable, "Practica", 10);
+            } else {
+                id = gestor.registrarReservaClase(franja.aula, franja.fecha, inicio, fin, responsable, "Materia", 15);
+            }
+            ocupadas.set((int) (ocupadasEscritas.getAndIncrement() % ocupadas.length()), franja);
+            ultimoId.accumulateAndGet(Long.parseLong(id.substring(1)), Math::max);
+            return true;
+        } catch (ConflictoDeHorarioException e) {
+            conflictos.incrementAndGet();
+            return true;
+        } catch (ValidacionDeReservaException e) {
+            return false;
+        }
+    }
+
+    private void imprimirReporte(long nanos, long gcConteo, long gcMs, long bytesReservados) {
+        double segundos = nanos / 1e9;
+        long totalOps = 0;
+        System.out.println();
+        System.out.printf("%-20s %10s %10s %10s %10s %10s %10s %8s%n", "Operacion", "Total", "Ops/s", "p50(us)", "p99(us)", "p999(us)", "max(us)", "Errores");
+        for (Operacion op : Operacion.values()) {
+            HistogramaLatencias h = histogramas.get(op);
+            long total = h.total();
+            totalOps += total;
+            if (total == 0) continue;
+            System.out.printf("%-20s %10d %10.0f %10.1f %10.1f %10.1f %10.1f %8d%n", op, total, total / segundos,
+                h.percentil(50) / 1e3, h.percentil(99) / 1e3, h.percentil(99.9) / 1e3, h.maximo() / 1e3, errores.get(op).get());
+        }
+        long reservas = histogramas.get(Operacion.RESERVAR).total();
+        System.out.printf("%nTotal: %d ops en %.1f s (%.0f ops/s)%n", totalOps, segundos, totalOps / segundos);
+        System.out.printf("Tasa de conflicto observada: %.1f%%%n", reservas == 0 ? 0 : 100.0 * conflictos.get() / reservas);
+        System.out.printf("GC: %d colecciones, %d ms%n", gcConteo, gcMs);
+        if (bytesReservados > 0) {
+            System.out.printf("Memoria reservada: %.1f MB (%.0f bytes/op)%n", bytesReservados / 1048576.0, (double) bytesReservados / Math.max(1, totalOps));
+        }
+    }
+
+    //Construye una tabla de 100 entradas con la proporcion de cada operacion
+    private static Operacion[] construirMezcla(String mezcla) {
+        Map<Operacion, Integer> pesos = new EnumMap<>(Operacion.class);
+        for (String par : mezcla.split(",")) {
+            String[] kv = par.split(":");
+            String nombre = kv[0].trim().replaceAll("([a-z])([A-Z])", "$1_$2").toUpperCase();
+            pesos.put(Operacion.valueOf(nombre), Integer.parseInt(kv[1].trim()));
+        }
+        int suma = pesos.values().stream().mapToInt(Integer::intValue).sum();
+        List<Operacion> tabla = new ArrayList<>();
+        pesos.forEach((op, peso) -> {
+            for (int i = 0; i < Math.round(100.0 * peso / suma); i++) tabla.add(op);
+        });
+        return tabla.toArray(new Operacion[0]);
+    }
+
+    private static long conteoGc() {
+        return ManagementFactory.getGarbageCollectorMXBeans().stream().mapToLong(GarbageCollectorMXBean::getCollectionCount).sum();
+    }
+
+    private static long tiempoGc() {
+        return ManagementFactory.getGarbageCollectorMXBeans().stream().mapToLong(GarbageCollectorMXBean::getCollectionTime).sum();
+    }
+
+    //Bytes reservados por el hilo actual, o -1 si la JVM no lo soporta
+    private static long memoriaReservadaHilo() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+
+    private int entero(String clave, int defecto) {
+        return config.containsKey(clave) ? Integer.parseInt(config.get(clave)) : defecto;
+    }
+
+    private String texto(String clave, String defecto) {
+        return config.getOrDefault(clave, defecto);
+    }
+}
@@ -0,0 +1,44 @@
+package GestorReservarAula.util;
+
+import GestorReservarAula.models.ReglasReserva;
+import GestorReservarAula.models.Reserva;
+
+/*Resultado compacto de validar una reserva. Las rutas internas comparan codigos; el mensaje para el usuario
+solo se arma (con los datos de la reserva) cuando alguien lo pide.*/
+public enum CodigoValidacion {
+    OK,
+    HORARIO_INVALIDO,
+    FECHA_PASADA,
+    FECHA_FUERA_DE_HORIZONTE,
+    AULA_NO_APTA_CLASE,
+    AULA_NO_APTA_EVENTO,
+    AULA_NO_APTA_PRACTICA,
+    CAPACIDAD_INSUFICIENTE;
+
+    public boolean esValido() {
+        return this == OK;
+    }
+
+    //Mensaje descriptivo para la reserva que no cumplio la regla
+    public String mensaje(Reserva reserva) {
+        switch (this) {
+            case HORARIO_INVALIDO:
+                return "La hora de inicio debe ser anterior a la hora de finalizacion.";
+            case FECHA_PASADA:
+                return "La reserva no puede ser en una fecha pasada.";
+            case FECHA_FUERA_DE_HORIZONTE:
+                return "La reserva no puede ser a mas de " + ReglasReserva.ANIOS_HORIZONTE + " anios de hoy.";
+            case AULA_NO_APTA_CLASE:
+                return "Las clases solo pueden reservarse en aulas TEORICAS o LABORATORIO.";
+            case AULA_NO_APTA_EVENTO:
+                return "Conferencias o Talleres solo pueden reservarse en aulas de tipo Auditorio o Laboratorio.";
+            case AULA_NO_APTA_PRACTICA:
+                return "Las practicas solo pueden reservarse en aulas de tipo LABORATORIO.";
+            case CAPACIDAD_INSUFICIENTE:
+                return String.format("Capacidad insuficiente. Aula '%s' tiene %d, requeridos %d.",
+                    reserva.getAula().getCodigo(), reserva.getAula().getCapacidad(), reserva.getCantidadRequerida());
+            default:
+                return "Reserva valida.";
+        }
+    }
+}
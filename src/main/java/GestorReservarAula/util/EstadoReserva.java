@@ -0,0 +1,29 @@
+package GestorReservarAula.util;
+
+//Ciclo de vida de una reserva. Solo una reserva activa puede pasar a otro estado.
+public enum EstadoReserva {
+    ACTIVA, CANCELADA, COMPLETADA, NO_PRESENTADO;
+
+    //Indica si la transicion desde este estado al destino es valida
+    public boolean puedeCambiarA(EstadoReserva destino) {
+        return this == ACTIVA && destino != ACTIVA;
+    }
+
+    //Indica si una reserva en este estado tuvo el aula apartada (cuenta para la ocupacion); solo la cancelada no
+    public boolean ocupaAula() {
+        return this != CANCELADA;
+    }
+
+    //Convierte el texto persistido (acepta el formato anterior en minusculas, ej. "activa")
+    public static EstadoReserva desdeTexto(String texto) {
+        return valueOf(texto.trim().toUpperCase());
+    }
+
+    //Indica si el texto corresponde a un estado, sin lanzar excepciones
+    public static boolean esEstado(String texto) {
+        for (EstadoReserva e : values()) {
+            if (e.name().equalsIgnoreCase(texto.trim())) return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,12 @@
+package GestorReservarAula.util;
+
+//Fases medidas por RegistroFases
+public enum Fase {
+    RESERVA,             //Registro completo de una reserva (aula, fecha, tipo, resultado)
+    VALIDAR_CONFLICTO,   //Deteccion de solapamiento y sugerencia de alternativas
+    VALIDAR_REGLAS,      //Reglas especificas de la subclase (capacidad, tipo de aula...)
+    GUARDAR,             //Escritura de un archivo de datos (filas, bytes)
+    CARGAR,              //Lectura de un archivo de datos (filas, bytes)
+    EXPORTAR_REPORTE,    //Exportacion de un reporte de texto (bytes)
+    EXPORTAR_CALENDARIO  //Exportacion ICS/CSV en streaming (filas)
+}
@@ -0,0 +1,6 @@
+package GestorReservarAula.util;
+
+//Formatos de exportacion de reservas para calendarios y hojas de calculo
+public enum FormatoExportacion {
+    ICS, CSV
+}
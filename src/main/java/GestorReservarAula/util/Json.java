@@ -0,0 +1,143 @@
+package GestorReservarAula.util;
+
+import GestorReservarAula.models.AlternativaHorario;
+import GestorReservarAula.models.Aula;
+import GestorReservarAula.models.AulaCercana;
+import GestorReservarAula.models.Reserva;
+import GestorReservarAula.models.ReservaClase;
+import GestorReservarAula.models.ReservaEvento;
+import GestorReservarAula.models.ReservaPractica;
+import GestorReservarAula.models.Ubicacion;
+
+/*Utilidad minima para producir JSON sin dependencias externas.
+Se usa en las salidas legibles por maquina (modo lote, servidor).*/
+public class Json {
+    private final StringBuilder sb = new StringBuilder("{");
+    private boolean primero = true;
+
+    //Agrega un campo de texto (null se escribe como null)
+    public Json campo(String nombre, String valor) {
+        clave(nombre);
+        if (valor == null) {
+            sb.append("null");
+        } else {
+            escapar(valor, sb);
+        }
+        return this;
+    }
+
+    public Json campo(String nombre, long valor) {
+        clave(nombre);
+        sb.append(valor);
+        return this;
+    }
+
+    public Json campo(String nombre, double valor) {
+        clave(nombre);
+        sb.append(Double.isFinite(valor) ? String.valueOf(valor) : "null");
+        return this;
+    }
+
+    public Json campo(String nombre, boolean valor) {
+        clave(nombre);
+        sb.append(valor);
+        return this;
+    }
+
+    //Agrega un valor que ya es JSON valido (objeto o arreglo)
+    public Json campoJson(String nombre, String json) {
+        clave(nombre);
+        sb.append(json);
+        return this;
+    }
+
+    private void clave(String nombre) {
+        if (!primero) sb.append(',');
+        primero = false;
+        escapar(nombre, sb);
+        sb.append(':');
+    }
+
+    @Override
+    public String toString() {
+        return sb.toString() + "}";
+    }
+
+    //Escribe un texto entre comillas escapando los caracteres especiales
+    public static void escapar(String texto, StringBuilder destino) {
+        destino.append('"');
+        for (int i = 0; i < texto.length(); i++) {
+            char c = texto.charAt(i);
+            switch (c) {
+                case '"': destino.append("\\\""); break;
+                case '\\': destino.append("\\\\"); break;
+                case '\n': destino.append("\\n"); break;
+                case '\r': destino.append("\\r"); break;
+                case '\t': destino.append("\\t"); break;
+                default:
+                    if (c < 0x20) {
+                        destino.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        destino.append(c);
+                    }
+            }
+        }
+        destino.append('"');
+    }
+
+    //Representacion JSON de un aula
+    public static String aula(Aula aula) {
+        Json json = new Json()
+            .campo("codigo", aula.getCodigo())
+            .campo("nombre", aula.getNombre())
+            .campo("capacidad", aula.getCapacidad())
+            .campo("tipo", String.valueOf(aula.getTipo()));
+        Ubicacion u = aula.getUbicacion();
+        if (u != null) json.campo("edificio", u.getEdificio()).campo("piso", u.getPiso()).campo("x", u.getX()).campo("y", u.getY());
+        return json.toString();
+    }
+
+    //Representacion JSON de un aula encontrada por cercania
+    public static String aulaCercana(AulaCercana c) {
+        return new Json()
+            .campoJson("aula", aula(c.getAula()))
+            .campo("distancia", c.getDistancia())
+            .toString();
+    }
+
+    //Representacion JSON de un horario alternativo sugerido ante un conflicto
+    public static String alternativa(AlternativaHorario a) {
+        return new Json()
+            .campo("tipo", String.valueOf(a.getTipo()))
+            .campo("aula", a.getAula().getCodigo())
+            .campo("fecha", a.getFecha().toString())
+            .campo("horaInicio", a.getHoraInicio().toString())
+            .campo("horaFin", a.getHoraFin().toString())
+            .campo("distancia", a.getDistancia())
+            .toString();
+    }
+
+    //Representacion JSON de una reserva, con los datos especificos de su subclase
+    public static String reserva(Reserva r) {
+        Json json = new Json()
+            .campo("id", r.getIdReserva())
+            .campo("aula", r.getAula().getCodigo())
+            .campo("fecha", r.getFecha().toString())
+            .campo("horaInicio", r.getHoraInicio().toString())
+            .campo("horaFin", r.getHoraFin().toString())
+            .campo("responsable", r.getResponsable())
+            .campo("estado", String.valueOf(r.getEstado()));
+        if (r.getAlerta() != null) json.campo("alerta", r.getAlerta());
+        if (r instanceof ReservaClase) {
+            ReservaClase c = (ReservaClase) r;
+            json.campo("tipo", "CLASE").campo("materia", c.getMateria()).campo("numEstudiantes", c.getNumEstudiantes());
+        } else if (r instanceof ReservaEvento) {
+            ReservaEvento e = (ReservaEvento) r;
+            json.campo("tipo", "EVENTO").campo("tipoEvento", String.valueOf(e.getTipoEvento())).campo("asistentes", e.getAsistentesEsperados());
+        } else if (r instanceof ReservaPractica) {
+            ReservaPractica p = (ReservaPractica) r;
+            json.campo("tipo", "PRACTICA").campo("descripcion", p.getDescripcionPractica()).campo("numEquipos", p.getNumEquipos());
+        }
+        return json.toString();
+    }
+}
@@ -0,0 +1,8 @@
+package GestorReservarAula.util;
+
+//Que hacer con las reservas futuras que dejan de ser validas al modificar un aula
+public enum PoliticaCambioAula {
+    RECHAZAR, //No se aplica el cambio del aula
+    MARCAR,   //Se aplica el cambio y las reservas quedan con una alerta para revisarlas
+    REUBICAR  //Se aplica el cambio y las reservas se mueven a un aula equivalente libre (o se marcan si no hay)
+}
@@ -0,0 +1,140 @@
+package GestorReservarAula.util;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*Grabador liviano de eventos por fase (reserva, validaciones, guardado, carga, exportaciones) para
+averiguar a donde se va el tiempo cuando la latencia sube. Lo lee tools.AnalizadorFases.
+Uso en el codigo medido:
+    long t0 = RegistroFases.inicio();
+    ...
+    if (t0 != 0) RegistroFases.registrar(Fase.X, t0, "aula=" + ...);
+Sin grabacion activa inicio() solo lee un campo volatil y devuelve 0, asi que los atributos ni se construyen.
+Los eventos se encolan sin bloquear (si la cola esta llena se descartan y se cuentan) y un hilo los escribe.
+Formato del archivo (texto, una linea por evento):
+    #GestorReservaAula grabacion v1 inicio=<epoch ms>
+    FASE<TAB>inicio ns (relativo)<TAB>duracion ns<TAB>hilo<TAB>clave=valor;clave=valor
+    #fin descartados=<n>
+Se activa con -Dgestor.grabacion=archivo o con --grabar archivo en la consola y el modo lote.*/
+public final class RegistroFases {
+    private static final int CAPACIDAD_COLA = 1 << 16;
+
+    private static volatile boolean activo = false;
+    private static BlockingQueue<String> cola;
+    private static Thread escritor;
+    private static Thread alApagar;
+    private static long origen; //nanoTime del inicio de la grabacion
+    private static final AtomicLong descartados = new AtomicLong();
+
+    static {
+        String archivo = System.getProperty("gestor.grabacion");
+        if (archivo != null && !archivo.isEmpty()) {
+            try {
+                iniciar(archivo);
+            } catch (IOException e) {
+                System.err.println("No se pudo iniciar la grabacion de fases: " + e.getMessage());
+            }
+        }
+    }
+
+    private RegistroFases() {
+    }
+
+    public static boolean estaActivo() {
+        return activo;
+    }
+
+    //Marca de inicio de una fase: 0 si no se esta grabando
+    public static long inicio() {
+        return activo ? System.nanoTime() : 0;
+    }
+
+    //Registra una fase iniciada con inicio(). Los atributos van como "clave=valor;clave=valor".
+    public static void registrar(Fase fase, long inicio, String atributos) {
+        if (!activo || inicio == 0) return;
+        long fin = System.nanoTime();
+        String linea = fase + "\t" + (inicio - origen) + "\t" + (fin - inicio) + "\t" + Thread.currentThread().getName()
+            + "\t" + limpiar(atributos);
+        BlockingQueue<String> c = cola;
+        if (c == null || !c.offer(linea)) descartados.incrementAndGet();
+    }
+
+    //Empieza a grabar en el archivo indicado (lo sobrescribe). Una grabacion anterior se detiene antes.
+    public static synchronized void iniciar(String archivo) throws IOException {
+        detener();
+        Writer salida = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(archivo), StandardCharsets.UTF_8), 1 << 16);
+        salida.write("#GestorReservaAula grabacion v1 inicio=" + System.currentTimeMillis() + "\n");
+        descartados.set(0);
+        origen = System.nanoTime();
+        cola = new ArrayBlockingQueue<>(CAPACIDAD_COLA);
+        BlockingQueue<String> c = cola;
+        escritor = new Thread(() -> escribir(c, salida), "registro-fases");
+        escritor.setDaemon(true);
+        escritor.start();
+        alApagar = new Thread(RegistroFases::detener, "registro-fases-apagado");
+        Runtime.getRuntime().addShutdownHook(alApagar);
+        activo = true;
+    }
+
+    //Detiene la grabacion, escribe los eventos pendientes y cierra el archivo
+    public static synchronized void detener() {
+        if (!activo) return;
+        activo = false;
+        escritor.interrupt();
+        try {
+            escritor.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (Thread.currentThread() != alApagar) {
+            try {
+                Runtime.getRuntime().removeShutdownHook(alApagar);
+            } catch (IllegalStateException e) {
+                //La JVM ya se esta apagando
+            }
+        }
+        cola = null;
+    }
+
+    //Hilo escritor: vacia la cola en bloques; al ser interrumpido escribe lo que quede y cierra
+    private static void escribir(BlockingQueue<String> c, Writer salida) {
+        List<String> bloque = new ArrayList<>(1024);
+        try {
+            boolean seguir = true;
+            while (seguir) {
+                try {
+                    String primera = c.poll(100, TimeUnit.MILLISECONDS);
+                    if (primera != null) bloque.add(primera);
+                } catch (InterruptedException e) {
+                    seguir = false;
+                }
+                c.drainTo(bloque);
+                for (String linea : bloque) {
+                    salida.write(linea);
+                    salida.write('\n');
+                }
+                bloque.clear();
+            }
+            salida.write("#fin descartados=" + descartados.get() + "\n");
+        } catch (IOException e) {
+            System.err.println("Error al escribir la grabacion de fases: " + e.getMessage());
+        } finally {
+            try {
+                salida.close();
+            } catch (IOException e) {
+                //Nada mas que hacer
+            }
+        }
+    }
+
+    //Los separadores del formato no pueden aparecer dentro de los valores
+    private static String limpiar(String texto) {
+        return texto == null ? "" : texto.replace('\t', ' ').replace('\n', ' ').replace('\r', ' ');
+    }
+}
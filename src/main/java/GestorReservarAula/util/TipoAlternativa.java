@@ -0,0 +1,8 @@
+package GestorReservarAula.util;
+
+//Clase de horario alternativo sugerido ante un conflicto, en orden de preferencia
+public enum TipoAlternativa {
+    MISMA_AULA, //Mismo dia y aula, el hueco libre mas cercano de la misma duracion
+    OTRA_AULA,  //Mismo dia y horario en otra aula compatible (mismo tipo y capacidad suficiente)
+    OTRO_DIA    //Mismo aula y horario en un dia cercano
+}
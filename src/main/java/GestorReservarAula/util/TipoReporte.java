@@ -0,0 +1,9 @@
+package GestorReservarAula.util;
+
+//Reportes que calcula el motor de reportes en una sola pasada sobre las reservas
+public enum TipoReporte {
+    TOP_AULAS,
+    OCUPACION_TIPO_AULA,
+    DISTRIBUCION_TIPO_RESERVA,
+    DISTRIBUCION_ESTADO
+}
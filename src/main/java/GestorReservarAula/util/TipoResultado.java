@@ -0,0 +1,8 @@
+package GestorReservarAula.util;
+
+//Desenlace de una operacion del servicio asincrono
+public enum TipoResultado {
+    EXITO,      //La operacion se aplico
+    CONFLICTO,  //Choque de horario (ConflictoDeHorarioException), con alternativas sugeridas
+    VALIDACION  //Datos invalidos o regla de negocio incumplida (ValidacionDeReservaException)
+}
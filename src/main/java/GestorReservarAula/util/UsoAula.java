@@ -0,0 +1,14 @@
+package GestorReservarAula.util;
+
+//Uso que una reserva hace del aula: la clase de reserva y, en los eventos, su tipo. Indexa la tabla de reglas.
+public enum UsoAula {
+    CLASE, PRACTICA, CONFERENCIA, TALLER, REUNION;
+
+    public static UsoAula de(TipoEvento tipoEvento) {
+        switch (tipoEvento) {
+            case CONFERENCIA: return CONFERENCIA;
+            case TALLER: return TALLER;
+            default: return REUNION;
+        }
+    }
+}
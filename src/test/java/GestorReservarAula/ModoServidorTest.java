@@ -0,0 +1,83 @@
+package GestorReservarAula;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import GestorReservarAula.persistence.ModoPersistencia;
+import GestorReservarAula.services.GestorReservas;
+import GestorReservarAula.util.TipoAula;
+
+//Codigos de error del servidor HTTP
+class ModoServidorTest {
+    private GestorReservas gestor;
+    private ModoServidor servidor;
+
+    @BeforeEach
+    void iniciar() throws Exception {
+        gestor = new GestorReservas(ModoPersistencia.MEMORIA);
+        gestor.registrarAula("A1", "Uno", 30, TipoAula.TEORICA);
+        servidor = new ModoServidor(gestor, 0);
+        servidor.iniciar();
+    }
+
+    @AfterEach
+    void detener() {
+        servidor.detener(0);
+        gestor.close();
+    }
+
+    private int pedir(String metodo, String ruta, byte[] cuerpo) throws IOException {
+        HttpURLConnection conexion = (HttpURLConnection) new URL("http://localhost:" + servidor.getPuerto() + ruta).openConnection();
+        conexion.setRequestMethod(metodo);
+        if (cuerpo != null) {
+            conexion.setDoOutput(true);
+            conexion.setFixedLengthStreamingMode(cuerpo.length);
+            conexion.setRequestProperty("Content-Type", "application/x-www-form-urlencoded");
+            try (OutputStream salida = conexion.getOutputStream()) {
+                salida.write(cuerpo);
+            }
+        }
+        int codigo = conexion.getResponseCode();
+        InputStream respuesta = codigo < 400 ? conexion.getInputStream() : conexion.getErrorStream();
+        if (respuesta != null) respuesta.close();
+        conexion.disconnect();
+        return codigo;
+    }
+
+    private int reservar(String aula) throws IOException {
+        String cuerpo = "tipo=CLASE&aula=" + aula + "&fecha=" + LocalDate.now().plusDays(2)
+            + "&horaInicio=08:00&horaFin=09:00&responsable=Ana&materia=Algebra&numEstudiantes=20";
+        return pedir("POST", "/reservas", cuerpo.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void noEncontradoSeDistinguePorTipoYNoPorMensaje() throws Exception {
+        assertEquals(201, reservar("A1"));
+        assertEquals(404, reservar("Z9"));
+        assertEquals(404, pedir("DELETE", "/reservas/R99", null));
+        assertEquals(409, reservar("A1"));
+        assertEquals(200, pedir("DELETE", "/reservas/R1", null));
+        assertEquals(400, pedir("DELETE", "/reservas/R1", null)); //Ya cancelada: existe, pero no se puede
+    }
+
+    @Test
+    void cuerpoDemasiadoGrandeSeRechazaCon413() throws Exception {
+        byte[] grande = new byte[ModoServidor.MAX_CUERPO + 1];
+        Arrays.fill(grande, (byte) 'a');
+        assertEquals(413, pedir("POST", "/reservas", grande));
+        //El servidor sigue atendiendo
+        assertEquals(201, reservar("A1"));
+    }
+}
@@ -0,0 +1,126 @@
+package GestorReservarAula.persistence;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+//Escritura por bloques con checksum y recuperacion de bloques danados o editados a mano
+class ArchivoBloquesTest {
+    @TempDir
+    Path directorio;
+
+    private static List<String> filas(int cantidad) {
+        List<String> filas = new ArrayList<>();
+        for (int i = 0; i < cantidad; i++) filas.add("A" + i + ",Aula " + i + ",30,TEORICA");
+        return filas;
+    }
+
+    private static List<String> lineas(Path archivo) throws IOException {
+        return new ArrayList<>(Files.readAllLines(archivo, StandardCharsets.UTF_8));
+    }
+
+    private static void escribirLineas(Path archivo, List<String> lineas) throws IOException {
+        Files.write(archivo, lineas, StandardCharsets.UTF_8);
+    }
+
+    //Numero de linea (desde 0) de una fila del archivo
+    private static int linea(List<String> lineas, String fila) {
+        int indice = lineas.indexOf(fila);
+        assertTrue(indice >= 0, "No esta la fila " + fila);
+        return indice;
+    }
+
+    @Test
+    void idaYVueltaConVariosBloques() throws IOException {
+        Path archivo = directorio.resolve("aulas.txt");
+        List<String> originales = filas(ArchivoBloques.FILAS_POR_BLOQUE * 2 + 10);
+        ArchivoBloques.escribir(originales, archivo.toString());
+
+        ArchivoBloques.Lectura lectura = ArchivoBloques.leer(archivo.toString());
+        assertEquals(originales, lectura.getFilas());
+        assertTrue(lectura.getPerdidas().isEmpty());
+        assertTrue(lectura.getEditados().isEmpty());
+        assertEquals(ArchivoBloques.CABECERA, lineas(archivo).get(0));
+        assertFalse(Files.exists(directorio.resolve("aulas.txt.tmp")));
+    }
+
+    @Test
+    void bloqueDanadoSePierdeSoloEl() throws IOException {
+        Path archivo = directorio.resolve("aulas.txt");
+        List<String> originales = filas(ArchivoBloques.FILAS_POR_BLOQUE * 3);
+        ArchivoBloques.escribir(originales, archivo.toString());
+        List<String> lineas = lineas(archivo);
+        String danada = originales.get(ArchivoBloques.FILAS_POR_BLOQUE + 5); //Bloque 1
+        lineas.set(linea(lineas, danada), danada.replace("30", "3\u0000"));
+        escribirLineas(archivo, lineas);
+
+        ArchivoBloques.Lectura lectura = ArchivoBloques.leer(archivo.toString(), f -> !f.contains("\u0000"));
+        assertEquals(1, lectura.getPerdidas().size());
+        ArchivoBloques.Perdida perdida = lectura.getPerdidas().get(0);
+        assertEquals(1, perdida.getBloque());
+        assertEquals(ArchivoBloques.FILAS_POR_BLOQUE, perdida.getFilas().size());
+        assertEquals(ArchivoBloques.FILAS_POR_BLOQUE * 2, lectura.getFilas().size());
+        assertEquals(originales.subList(0, ArchivoBloques.FILAS_POR_BLOQUE), lectura.getFilas().subList(0, ArchivoBloques.FILAS_POR_BLOQUE));
+        assertEquals(originales.subList(ArchivoBloques.FILAS_POR_BLOQUE * 2, originales.size()),
+            lectura.getFilas().subList(ArchivoBloques.FILAS_POR_BLOQUE, lectura.getFilas().size()));
+    }
+
+    @Test
+    void bloqueEditadoQueSeInterpretaSeConservaEnOrden() throws IOException {
+        Path archivo = directorio.resolve("aulas.txt");
+        List<String> originales = filas(ArchivoBloques.FILAS_POR_BLOQUE + 3);
+        ArchivoBloques.escribir(originales, archivo.toString());
+        List<String> lineas = lineas(archivo);
+        lineas.set(linea(lineas, "A2,Aula 2,30,TEORICA"), "A2,Aula 2,45,TEORICA");
+        lineas.add(linea(lineas, "A3,Aula 3,30,TEORICA"), "Z9,Agregada a mano,10,LABORATORIO");
+        escribirLineas(archivo, lineas);
+
+        ArchivoBloques.Lectura lectura = ArchivoBloques.leer(archivo.toString(), f -> f.split(",").length >= 4);
+        assertTrue(lectura.getPerdidas().isEmpty());
+        assertEquals(1, lectura.getEditados().size());
+        assertEquals(0, lectura.getEditados().get(0).getBloque());
+        List<String> esperadas = new ArrayList<>(originales);
+        esperadas.set(2, "A2,Aula 2,45,TEORICA");
+        esperadas.add(3, "Z9,Agregada a mano,10,LABORATORIO");
+        assertEquals(esperadas, lectura.getFilas());
+
+        //Sin criterio para interpretar filas el mismo bloque se informa como perdido
+        ArchivoBloques.Lectura estricta = ArchivoBloques.leer(archivo.toString());
+        assertEquals(1, estricta.getPerdidas().size());
+        assertEquals(3, estricta.getFilas().size());
+    }
+
+    @Test
+    void finalSinLineaDeControlSeInforma() throws IOException {
+        Path archivo = directorio.resolve("aulas.txt");
+        ArchivoBloques.escribir(filas(10), archivo.toString());
+        List<String> lineas = lineas(archivo);
+        lineas.add("X1,Sin control,20,TEORICA");
+        escribirLineas(archivo, lineas);
+
+        ArchivoBloques.Lectura lectura = ArchivoBloques.leer(archivo.toString());
+        assertEquals(10, lectura.getFilas().size());
+        assertEquals(1, lectura.filasPerdidas());
+        assertEquals(-1, lectura.getPerdidas().get(0).getBloque());
+
+        //Una fila agregada a mano al final tambien es una edicion si se interpreta
+        assertEquals(11, ArchivoBloques.leer(archivo.toString(), f -> true).getFilas().size());
+    }
+
+    @Test
+    void formatoAnteriorSinCabeceraSeLeeCompleto() throws IOException {
+        Path archivo = directorio.resolve("aulas.txt");
+        escribirLineas(archivo, filas(5));
+        ArchivoBloques.Lectura lectura = ArchivoBloques.leer(archivo.toString());
+        assertEquals(filas(5), lectura.getFilas());
+        assertTrue(lectura.getPerdidas().isEmpty());
+    }
+}
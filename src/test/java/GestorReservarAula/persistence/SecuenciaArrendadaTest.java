@@ -0,0 +1,35 @@
+package GestorReservarAula.persistence;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+//Dos secuencias sobre el mismo contador (dos procesos) nunca emiten el mismo numero
+class SecuenciaArrendadaTest {
+    @TempDir
+    Path directorio;
+
+    @Test
+    void bloquesDisjuntosYContadorPersistido() throws Exception {
+        String contador = directorio.resolve("contador_ids.txt").toString();
+        SecuenciaArrendada primera = new SecuenciaArrendada(contador, 10, () -> 100);
+        SecuenciaArrendada segunda = new SecuenciaArrendada(contador, 10, () -> 1); //El contador ya existe: no se consulta
+
+        Set<Long> emitidos = new HashSet<>();
+        for (int i = 0; i < 35; i++) {
+            assertTrue(emitidos.add(primera.siguiente()));
+            assertTrue(emitidos.add(segunda.siguiente()));
+        }
+        assertTrue(emitidos.stream().allMatch(id -> id >= 100));
+        //Cuatro bloques de 10 por secuencia desde 100: el proximo proceso empieza en 180
+        assertEquals("180", new String(Files.readAllBytes(directorio.resolve("contador_ids.txt")), StandardCharsets.UTF_8).trim());
+        assertEquals(180, new SecuenciaArrendada(contador, 10, () -> 1).siguiente());
+    }
+}
@@ -0,0 +1,64 @@
+package GestorReservarAula.services;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.jupiter.api.Test;
+
+import GestorReservarAula.exceptions.ValidacionDeReservaException;
+import GestorReservarAula.persistence.ModoPersistencia;
+import GestorReservarAula.util.TipoAula;
+
+//Sumas por dia del indice de ocupacion, tambien con fechas muy alejadas
+class ArbolFenwickTest {
+
+    @Test
+    void coincideConLaSumaDirectaAunConDiasLejanos() {
+        ArbolFenwick arbol = new ArbolFenwick();
+        TreeMap<Long, Long> esperado = new TreeMap<>();
+        long hoy = LocalDate.now().toEpochDay();
+        long[] lejanos = {LocalDate.of(9999, 12, 31).toEpochDay(), LocalDate.of(1, 1, 1).toEpochDay(),
+            LocalDate.MAX.toEpochDay(), hoy + ArbolFenwick.TAMANIO_MAXIMO};
+        Random random = new Random(7);
+        for (int i = 0; i < 2000; i++) {
+            long dia = i % 100 == 0 ? lejanos[(i / 100) % lejanos.length] : hoy - 400 + random.nextInt(3000);
+            long delta = random.nextInt(120) - 20;
+            arbol.sumar(dia, delta);
+            esperado.merge(dia, delta, Long::sum);
+        }
+        for (int i = 0; i < 200; i++) {
+            long desde = hoy - 1000 + random.nextInt(5000);
+            long hasta = desde + random.nextInt(2000);
+            assertEquals(suma(esperado, desde, hasta), arbol.rango(desde, hasta));
+        }
+        assertEquals(suma(esperado, Long.MIN_VALUE, Long.MAX_VALUE), arbol.rango(Long.MIN_VALUE / 2, Long.MAX_VALUE / 2));
+        for (long dia : lejanos) {
+            assertEquals(esperado.get(dia).longValue(), arbol.valor(dia));
+        }
+        esperado.values().removeIf(v -> v == 0);
+        assertEquals(esperado, arbol.noNulos());
+    }
+
+    private static long suma(TreeMap<Long, Long> valores, long desde, long hasta) {
+        return valores.subMap(desde, true, hasta, true).values().stream().mapToLong(Long::longValue).sum();
+    }
+
+    @Test
+    void reservaMasAllaDelHorizonteSeRechazaSinQuedarRegistrada() throws Exception {
+        try (GestorReservas gestor = new GestorReservas(ModoPersistencia.MEMORIA)) {
+            gestor.registrarAula("A1", "Uno", 30, TipoAula.TEORICA);
+            assertThrows(ValidacionDeReservaException.class, () -> gestor.registrarReservaClase("A1", LocalDate.of(9999, 12, 31),
+                LocalTime.of(8, 0), LocalTime.of(9, 0), "Ana", "Algebra", 20));
+            assertThrows(ValidacionDeReservaException.class, () -> gestor.registrarReservaClase("A1", LocalDate.MAX,
+                LocalTime.of(8, 0), LocalTime.of(9, 0), "Ana", "Algebra", 20));
+            assertTrue(gestor.listarReservas("id", true).isEmpty());
+
+            String id = gestor.registrarReservaClase("A1", LocalDate.now().plusYears(1), LocalTime.of(8, 0), LocalTime.of(9, 0), "Ana", "Algebra", 20);
+            assertTrue(gestor.buscarReservaPorId(id).isPresent());
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package GestorReservarAula.services;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import GestorReservarAula.models.Reserva;
+import GestorReservarAula.persistence.ModoPersistencia;
+import GestorReservarAula.util.EstadoReserva;
+import GestorReservarAula.util.TipoAula;
+import GestorReservarAula.util.TipoReporte;
+
+//Las reservas completadas salen de la agenda en memoria y quedan en el almacen de completadas hasta la retencion
+class CicloVidaTest {
+    private static final LocalDate FECHA = LocalDate.now().plusDays(7);
+    private static final LocalDate AYER = LocalDate.now().minusDays(1);
+
+    @TempDir
+    Path directorio;
+    private Path aulas;
+    private Path reservas;
+    private Path completadas;
+
+    @BeforeEach
+    void preparar() throws Exception {
+        aulas = directorio.resolve("aulas.txt");
+        reservas = directorio.resolve("reservas.txt");
+        completadas = directorio.resolve("reservas_completadas.txt");
+        try (GestorReservas gestor = abrir(ModoPersistencia.ARCHIVO)) {
+            gestor.registrarAula("A1", "Uno", 30, TipoAula.TEORICA);
+            gestor.registrarReservaClase("A1", FECHA, LocalTime.of(8, 0), LocalTime.of(9, 0), "Ana", "Algebra", 20);
+            gestor.registrarReservaClase("A1", FECHA, LocalTime.of(10, 0), LocalTime.of(11, 0), "Luis", "Fisica", 20);
+        }
+        //R1 paso a ayer con el gestor detenido: sigue ACTIVA y ya vencio
+        editar("R1,A1," + FECHA, "R1,A1," + AYER);
+    }
+
+    private GestorReservas abrir(ModoPersistencia modo) throws Exception {
+        return new GestorReservas(aulas.toString(), reservas.toString(), modo);
+    }
+
+    private void editar(String buscado, String reemplazo) throws Exception {
+        String texto = leer(reservas);
+        assertTrue(texto.contains(buscado));
+        Files.write(reservas, texto.replace(buscado, reemplazo).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String leer(Path archivo) throws Exception {
+        return new String(Files.readAllBytes(archivo), StandardCharsets.UTF_8);
+    }
+
+    private static List<String> ids(List<Reserva> lista) {
+        return lista.stream().map(Reserva::getIdReserva).collect(Collectors.toList());
+    }
+
+    @Test
+    void completadaSaleDeLaAgendaYSeSigueEncontrando() throws Exception {
+        try (GestorReservas gestor = abrir(ModoPersistencia.ARCHIVO)) {
+            assertEquals(1, gestor.completarVencidas());
+
+            assertEquals(Collections.singletonList("R2"), ids(gestor.listarReservas("id", true)));
+            assertTrue(gestor.consultar().enAula("A1").lista().stream().noneMatch(r -> r.getIdReserva().equals("R1")));
+            assertEquals(EstadoReserva.COMPLETADA, gestor.buscarReservaPorId("R1").get().getEstado());
+            assertEquals(1, (int) gestor.contarPorEstado().get(EstadoReserva.COMPLETADA));
+            assertEquals(Collections.singletonList("R1"), ids(gestor.consultarHistorico("A1", null, null)));
+            //Los minutos reservados siguen contando la completada
+            assertEquals(60, gestor.minutosReservados("A1", AYER, AYER));
+            //Una completada no vuelve a cambiar de estado
+            assertThrows(Exception.class, () -> gestor.cancelarReserva("R1"));
+        }
+        assertFalse(leer(reservas).contains("R1,A1,"));
+        assertTrue(leer(completadas).contains("R1,A1," + AYER + ",08:00,09:00,Ana,Algebra,20,COMPLETADA"));
+
+        try (GestorReservas gestor = abrir(ModoPersistencia.ARCHIVO)) {
+            assertEquals(Collections.singletonList("R2"), ids(gestor.listarReservas("id", true)));
+            assertTrue(gestor.buscarReservaPorId("R1").isPresent());
+            assertEquals(0, gestor.completarVencidas());
+            //El ID completado no se vuelve a emitir
+            assertEquals("R3", gestor.registrarReservaClase("A1", FECHA, LocalTime.of(12, 0), LocalTime.of(13, 0), "Eva", "Arte", 10));
+        }
+    }
+
+    @Test
+    void reportesDeDistribucionCuentanLasCompletadas() throws Exception {
+        try (GestorReservas gestor = abrir(ModoPersistencia.MEMORIA)) {
+            gestor.cambiarEstadoReserva("R2", EstadoReserva.COMPLETADA);
+            assertEquals(1, (int) gestor.contarPorEstado().get(EstadoReserva.COMPLETADA));
+            Map<TipoReporte, String> reportes = gestor.generarReportes(EnumSet.of(TipoReporte.DISTRIBUCION_ESTADO, TipoReporte.DISTRIBUCION_TIPO_RESERVA));
+            assertTrue(reportes.get(TipoReporte.DISTRIBUCION_ESTADO).contains("- COMPLETADA: 1"));
+            assertTrue(reportes.get(TipoReporte.DISTRIBUCION_ESTADO).contains("- ACTIVA: 1"));
+            assertTrue(reportes.get(TipoReporte.DISTRIBUCION_TIPO_RESERVA).contains("- Clase: 2"));
+            //Los reportes de activas no la cuentan
+            assertTrue(gestor.generarReporteTopAulas().contains("(Total min: 60)"));
+        }
+    }
+
+    @Test
+    void retencionPasaLasCompletadasAlHistorico() throws Exception {
+        try (GestorReservas gestor = abrir(ModoPersistencia.ARCHIVO)) {
+            gestor.completarVencidas();
+            gestor.aplicarRetencion(LocalDate.now());
+
+            assertEquals(EstadoReserva.COMPLETADA, gestor.buscarReservaPorId("R1").get().getEstado()); //Leida del historico
+            assertEquals(Collections.singletonList("R1"), ids(gestor.consultarHistorico("A1", null, null)));
+            assertEquals(0, gestor.minutosReservados("A1", AYER, AYER));
+            assertEquals(0, (int) gestor.contarPorEstado().get(EstadoReserva.COMPLETADA));
+        }
+        assertFalse(leer(completadas).contains("R1,"));
+    }
+
+    @Test
+    void enMemoriaLaRetencionDescartaLasCompletadas() throws Exception {
+        try (GestorReservas gestor = abrir(ModoPersistencia.MEMORIA)) {
+            gestor.completarVencidas();
+            assertTrue(gestor.buscarReservaPorId("R1").isPresent());
+            gestor.aplicarRetencion(LocalDate.now());
+            assertFalse(gestor.buscarReservaPorId("R1").isPresent());
+            assertEquals(Collections.singletonList("R2"), ids(gestor.listarReservas("id", true)));
+        }
+    }
+
+    @Test
+    void completadaEnReservasTxtPasaAlAlmacenAlCargar() throws Exception {
+        editar("R1,A1," + AYER + ",08:00,09:00,Ana,Algebra,20,ACTIVA", "R1,A1," + AYER + ",08:00,09:00,Ana,Algebra,20,COMPLETADA");
+        try (GestorReservas gestor = abrir(ModoPersistencia.ARCHIVO)) {
+            assertEquals(Collections.singletonList("R2"), ids(gestor.listarReservas("id", true)));
+            assertEquals(EstadoReserva.COMPLETADA, gestor.buscarReservaPorId("R1").get().getEstado());
+        }
+        //Se escribe en el almacen al iniciar; reservas.txt no se toca hasta el primer cambio
+        assertTrue(leer(completadas).contains("R1,A1," + AYER));
+        assertTrue(leer(reservas).contains("R1,A1," + AYER));
+        try (GestorReservas gestor = abrir(ModoPersistencia.ARCHIVO)) {
+            assertEquals(1, (int) gestor.contarPorEstado().get(EstadoReserva.COMPLETADA));
+            gestor.cancelarReserva("R2");
+        }
+        assertFalse(leer(reservas).contains("R1,A1,"));
+    }
+}
@@ -0,0 +1,130 @@
+package GestorReservarAula.services;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import GestorReservarAula.exceptions.ConflictoDeHorarioException;
+import GestorReservarAula.exceptions.ValidacionDeReservaException;
+import GestorReservarAula.interfaces.ServicioReservas;
+import GestorReservarAula.models.Reserva;
+import GestorReservarAula.persistence.ModoPersistencia;
+import GestorReservarAula.util.TipoAula;
+import GestorReservarAula.util.TipoEvento;
+
+//Eventos en varias aulas: quedan todas reservadas o ninguna, tambien repartidas entre fragmentos
+class EventoMultipleTest {
+    private static final LocalDate FECHA = LocalDate.now().plusDays(6);
+    private static final LocalTime DIEZ = LocalTime.of(10, 0);
+    private static final LocalTime DOCE = LocalTime.of(12, 0);
+
+    @TempDir
+    Path directorio;
+
+    private GestorReservas abrir() throws Exception {
+        return new GestorReservas(directorio.resolve("aulas.txt").toString(), directorio.resolve("reservas.txt").toString(),
+            ModoPersistencia.ARCHIVO);
+    }
+
+    private GestorReservasFragmentado abrirFragmentado() throws Exception {
+        return GestorReservasFragmentado.porPrefijo(directorio.toString(), ModoPersistencia.ARCHIVO, "A", "B");
+    }
+
+    private static void registrarAulas(ServicioReservas servicio) throws Exception {
+        for (String codigo : Arrays.asList("A1", "B1", "C1")) {
+            servicio.registrarAula(codigo, "Aula " + codigo, 50, TipoAula.LABORATORIO);
+        }
+    }
+
+    //Evento de las 10 a las 12 con las aulas en el orden dado
+    private static List<String> evento(ServicioReservas servicio, String... aulas) throws Exception {
+        Map<String, Integer> asistentes = new LinkedHashMap<>();
+        for (String aula : aulas) asistentes.put(aula, 40);
+        return servicio.registrarReservaEventoMultiple(asistentes, FECHA, DIEZ, DOCE, "Ana", TipoEvento.CONFERENCIA);
+    }
+
+    private static List<String> aulasReservadas(ServicioReservas servicio) {
+        return servicio.listarReservas("id", true).stream().map(r -> r.getAula().getCodigo()).sorted().collect(Collectors.toList());
+    }
+
+    @Test
+    void conflictoEnUnaAulaNoReservaNingunaNiGastaIds() throws Exception {
+        try (GestorReservas gestor = abrir()) {
+            registrarAulas(gestor);
+            assertEquals("R1", gestor.registrarReservaClase("B1", FECHA, LocalTime.of(11, 0), DOCE, "Luis", "Fisica", 20));
+            ConflictoDeHorarioException conflicto = assertThrows(ConflictoDeHorarioException.class, () -> evento(gestor, "C1", "B1", "A1"));
+            assertTrue(conflicto.getMessage().contains("B1"));
+            assertNull(conflicto.getReservaRechazada());
+            assertEquals(Arrays.asList("B1"), aulasReservadas(gestor));
+            //El evento rechazado no gasto IDs
+            assertEquals("R2", gestor.registrarReservaClase("C1", FECHA, LocalTime.of(8, 0), LocalTime.of(9, 0), "Eva", "Arte", 10));
+        }
+        try (GestorReservas gestor = abrir()) {
+            assertEquals(Arrays.asList("B1", "C1"), aulasReservadas(gestor));
+        }
+    }
+
+    @Test
+    void validaEnOrdenDeCodigoYRechazaAulasRepetidas() throws Exception {
+        try (GestorReservas gestor = abrir()) {
+            registrarAulas(gestor);
+            gestor.registrarReservaClase("C1", FECHA, DIEZ, DOCE, "Luis", "Fisica", 20);
+            gestor.registrarReservaClase("B1", FECHA, DIEZ, DOCE, "Eva", "Arte", 20);
+            //Las dos chocan; el mensaje es el de la primera por codigo, sin importar el orden del mapa
+            ConflictoDeHorarioException conflicto = assertThrows(ConflictoDeHorarioException.class, () -> evento(gestor, "C1", "A1", "B1"));
+            assertTrue(conflicto.getMessage().contains("B1"));
+            assertFalse(conflicto.getMessage().contains("C1"));
+
+            assertThrows(ValidacionDeReservaException.class, () -> evento(gestor, "A1", "a1"));
+            assertThrows(ValidacionDeReservaException.class, () -> evento(gestor, "A1", "Z9"));
+            assertEquals(Arrays.asList("B1", "C1"), aulasReservadas(gestor));
+        }
+    }
+
+    @Test
+    void idsEnOrdenDelMapaTrasReiniciar() throws Exception {
+        List<String> ids;
+        try (GestorReservas gestor = abrir()) {
+            registrarAulas(gestor);
+            ids = evento(gestor, "C1", "A1", "B1");
+            assertEquals(3, ids.stream().distinct().count());
+        }
+        try (GestorReservas gestor = abrir()) {
+            assertEquals(Arrays.asList("C1", "A1", "B1"), ids.stream()
+                .map(id -> gestor.buscarReservaPorId(id).map(Reserva::getAula).get().getCodigo())
+                .collect(Collectors.toList()));
+        }
+    }
+
+    @Test
+    void entreFragmentosTodoONada() throws Exception {
+        List<String> ids;
+        try (GestorReservasFragmentado gestor = abrirFragmentado()) {
+            registrarAulas(gestor); //A1 y B1 en sus fragmentos, C1 en GENERAL
+            gestor.registrarReservaClase("C1", FECHA, DIEZ, LocalTime.of(11, 0), "Luis", "Fisica", 20);
+            assertThrows(ConflictoDeHorarioException.class, () -> evento(gestor, "B1", "C1", "A1"));
+            assertEquals(Arrays.asList("C1"), aulasReservadas(gestor));
+
+            gestor.cancelarReserva(gestor.listarReservas("id", true).get(0).getIdReserva());
+            ids = evento(gestor, "B1", "C1", "A1");
+        }
+        try (GestorReservasFragmentado gestor = abrirFragmentado()) {
+            assertEquals(Arrays.asList("B1", "C1", "A1"), ids.stream()
+                .map(id -> gestor.buscarReservaPorId(id).map(Reserva::getAula).get().getCodigo())
+                .collect(Collectors.toList()));
+            //Los IDs son unicos entre fragmentos y el siguiente no repite ninguno
+            String siguiente = gestor.registrarReservaClase("A1", FECHA, LocalTime.of(8, 0), LocalTime.of(9, 0), "Eva", "Arte", 10);
+            assertFalse(ids.contains(siguiente));
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package GestorReservarAula.services;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import GestorReservarAula.exceptions.ValidacionDeReservaException;
+import GestorReservarAula.persistence.ModoPersistencia;
+import GestorReservarAula.util.TipoAula;
+
+//Reparto de aulas entre fragmentos por prefijo
+class GestorReservasFragmentadoTest {
+    @TempDir
+    Path directorio;
+
+    @Test
+    void prefijoGeneralSeRechaza() {
+        //Con este prefijo el fragmento por defecto quedaba reemplazado y sus aulas cambiaban de archivo
+        assertThrows(ValidacionDeReservaException.class,
+            () -> GestorReservasFragmentado.porPrefijo(directorio.toString(), ModoPersistencia.MEMORIA, "A", "general"));
+        assertThrows(ValidacionDeReservaException.class,
+            () -> GestorReservasFragmentado.porPrefijo(directorio.toString(), ModoPersistencia.MEMORIA, "A", ""));
+        assertThrows(ValidacionDeReservaException.class,
+            () -> new GestorReservasFragmentado(Arrays.asList("A", "A"), codigo -> "A", directorio.toString(), ModoPersistencia.MEMORIA));
+    }
+
+    @Test
+    void aulasSinPrefijoVanAlFragmentoGeneral() throws Exception {
+        try (GestorReservasFragmentado gestor = GestorReservasFragmentado.porPrefijo(directorio.toString(), ModoPersistencia.ARCHIVO, "A", "GE")) {
+            gestor.registrarAula("A1", "Uno", 30, TipoAula.TEORICA);
+            gestor.registrarAula("GE1", "Dos", 30, TipoAula.TEORICA);
+            gestor.registrarAula("X1", "Tres", 30, TipoAula.TEORICA);
+        }
+        try (GestorReservasFragmentado gestor = GestorReservasFragmentado.porPrefijo(directorio.toString(), ModoPersistencia.ARCHIVO, "A", "GE")) {
+            assertEquals(3, gestor.listarAulas().size());
+        }
+        assertTrue(directorio.resolve("aulas_GENERAL.txt").toFile().exists());
+        assertTrue(directorio.resolve("aulas_GE.txt").toFile().exists());
+    }
+}
@@ -0,0 +1,114 @@
+package GestorReservarAula.services;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import GestorReservarAula.exceptions.ConflictoDeHorarioException;
+import GestorReservarAula.exceptions.ValidacionDeReservaException;
+import GestorReservarAula.models.AlternativaHorario;
+import GestorReservarAula.models.Aula;
+import GestorReservarAula.persistence.ModoPersistencia;
+import GestorReservarAula.util.TipoAula;
+
+//Reintentos con clave de idempotencia, tambien despues de reiniciar el gestor
+class IdempotenciaTest {
+    private static final LocalDate FECHA = LocalDate.now().plusDays(4);
+    private static final LocalTime OCHO = LocalTime.of(8, 0);
+    private static final LocalTime NUEVE = LocalTime.of(9, 0);
+
+    @TempDir
+    Path directorio;
+
+    private GestorReservas abrir() throws Exception {
+        return new GestorReservas(directorio.resolve("aulas.txt").toString(), directorio.resolve("reservas.txt").toString(),
+            ModoPersistencia.ARCHIVO);
+    }
+
+    private static List<String> alternativas(ConflictoDeHorarioException e) {
+        return e.getAlternativas().stream().map(AlternativaHorario::toString).collect(Collectors.toList());
+    }
+
+    @Test
+    void reintentoDevuelveElMismoIdAunTrasReiniciar() throws Exception {
+        String id;
+        try (GestorReservas gestor = abrir()) {
+            gestor.registrarAula("A1", "Uno", 30, TipoAula.TEORICA);
+            id = gestor.registrarReservaClase("k-1", "A1", FECHA, OCHO, NUEVE, "Ana", "Algebra", 20);
+            assertEquals(id, gestor.registrarReservaClase("k-1", "A1", FECHA, OCHO, NUEVE, "Ana", "Algebra", 20));
+        }
+        try (GestorReservas gestor = abrir()) {
+            assertEquals(id, gestor.registrarReservaClase("k-1", "A1", FECHA, OCHO, NUEVE, "Ana", "Algebra", 20));
+            assertEquals(1, gestor.listarReservas("id", true).size());
+        }
+    }
+
+    @Test
+    void conflictoRepetidoConservaSusAlternativas() throws Exception {
+        List<String> originales;
+        try (GestorReservas gestor = abrir()) {
+            gestor.registrarAula("A1", "Uno", 30, TipoAula.TEORICA);
+            gestor.registrarAula("A2", "Dos", 30, TipoAula.TEORICA);
+            gestor.registrarReservaClase("A1", FECHA, OCHO, NUEVE, "Ana", "Algebra", 20);
+            ConflictoDeHorarioException primero = assertThrows(ConflictoDeHorarioException.class,
+                () -> gestor.registrarReservaClase("k-2", "A1", FECHA, OCHO, NUEVE, "Luis", "Fisica", 20));
+            originales = alternativas(primero);
+            assertFalse(originales.isEmpty());
+
+            ConflictoDeHorarioException repetido = assertThrows(ConflictoDeHorarioException.class,
+                () -> gestor.registrarReservaClase("k-2", "A1", FECHA, OCHO, NUEVE, "Luis", "Fisica", 20));
+            assertEquals(primero.getMessage(), repetido.getMessage());
+            assertEquals(originales, alternativas(repetido));
+        }
+        try (GestorReservas gestor = abrir()) {
+            //A2 se ocupa despues: el reintento recibe las alternativas de la primera respuesta, sin volver a validar
+            gestor.registrarReservaClase("A2", FECHA, OCHO, NUEVE, "Eva", "Arte", 10);
+            ConflictoDeHorarioException repetido = assertThrows(ConflictoDeHorarioException.class,
+                () -> gestor.registrarReservaClase("k-2", "A1", FECHA, OCHO, NUEVE, "Luis", "Fisica", 20));
+            assertEquals(originales, alternativas(repetido));
+        }
+    }
+
+    @Test
+    void claveReutilizadaConOtrosDatosSeRechaza() throws Exception {
+        try (GestorReservas gestor = abrir()) {
+            gestor.registrarAula("A1", "Uno", 30, TipoAula.TEORICA);
+            gestor.registrarReservaClase("k-3", "A1", FECHA, OCHO, NUEVE, "Ana, Paz", "Algebra", 20);
+            //Con un separador solo estos parametros se escribian igual que los originales
+            assertThrows(ValidacionDeReservaException.class,
+                () -> gestor.registrarReservaClase("k-3", "A1", FECHA, OCHO, NUEVE, "Ana", "Paz, Algebra", 20));
+            assertThrows(ValidacionDeReservaException.class,
+                () -> gestor.registrarReservaEvento("k-3", "A1", FECHA, OCHO, NUEVE, "Ana, Paz", null, 20));
+            assertEquals(1, gestor.listarReservas("id", true).size());
+        }
+    }
+
+    @Test
+    void huellaDe128BitsYFormatoAnterior() {
+        String huella = CacheIdempotencia.huella("A1", FECHA, "Ana, Paz", "Algebra");
+        assertTrue(huella.matches("[0-9a-f]{" + CacheIdempotencia.LONGITUD_HUELLA + "}"));
+        assertNotEquals(huella, CacheIdempotencia.huella("A1", FECHA, "Ana", "Paz, Algebra"));
+        assertNotEquals(CacheIdempotencia.huella("null"), CacheIdempotencia.huella((Object) null));
+
+        //Una clave guardada con la huella anterior se conserva, con su mensaje completo, pero no coincide con ninguna nueva
+        CacheIdempotencia cache = new CacheIdempotencia();
+        long ahora = System.currentTimeMillis();
+        cache.cargar(Arrays.asList("vieja,CLASE,1a2b3c4d,VALIDACION," + ahora + ",Aula no encontrada: X, Y",
+            "nueva,CLASE," + huella + ",CONFLICTO," + ahora + ",OTRA_AULA;A2;" + FECHA + ";08:00;09:00;0,Conflicto, sin lugar"));
+        CacheIdempotencia.Entrada vieja = cache.buscar("vieja");
+        assertEquals("Aula no encontrada: X, Y", vieja.valor);
+        assertNotEquals(huella, vieja.huella);
+        CacheIdempotencia.Entrada nueva = cache.buscar("nueva");
+        assertEquals("Conflicto, sin lugar", nueva.valor);
+        assertEquals(1, CacheIdempotencia.decodificar(nueva.alternativas, codigo -> new Aula(codigo, codigo, 30, TipoAula.TEORICA)).size());
+        assertEquals(cache.lineas().get(1), nueva.toCsvString("nueva"));
+    }
+}
@@ -0,0 +1,83 @@
+package GestorReservarAula.services;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+
+import GestorReservarAula.exceptions.ConflictoDeHorarioException;
+import GestorReservarAula.models.AlternativaHorario;
+import GestorReservarAula.models.Aula;
+import GestorReservarAula.persistence.ModoPersistencia;
+import GestorReservarAula.util.PoliticaCambioAula;
+import GestorReservarAula.util.TipoAlternativa;
+import GestorReservarAula.util.TipoAula;
+
+//Aulas por tipo y capacidad para la busqueda de aulas equivalentes
+class IndiceCapacidadTest {
+    private static final LocalDate FECHA = LocalDate.now().plusDays(3);
+
+    private static List<String> recorrer(IndiceCapacidad indice, EnumSet<TipoAula> tipos, int capacidad, int maximo) {
+        List<String> vistas = new ArrayList<>();
+        indice.recorrer(tipos, capacidad, maximo, a -> vistas.add(a.getCodigo()));
+        return vistas;
+    }
+
+    @Test
+    void recorreDesdeLaCapacidadPedidaMezclandoTipos() {
+        IndiceCapacidad indice = new IndiceCapacidad();
+        indice.agregar(new Aula("T40", "", 40, TipoAula.TEORICA));
+        indice.agregar(new Aula("T20", "", 20, TipoAula.TEORICA));
+        indice.agregar(new Aula("L30", "", 30, TipoAula.LABORATORIO));
+        indice.agregar(new Aula("A30", "", 30, TipoAula.TEORICA));
+        indice.agregar(new Aula("X99", "", 99, TipoAula.AUDITORIO));
+
+        assertEquals(Arrays.asList("A30", "L30", "T40"), recorrer(indice, EnumSet.of(TipoAula.TEORICA, TipoAula.LABORATORIO), 25, 10));
+        assertEquals(Arrays.asList("A30", "T40"), recorrer(indice, EnumSet.of(TipoAula.TEORICA), 25, 10));
+        assertEquals(Arrays.asList("T20", "A30"), recorrer(indice, EnumSet.of(TipoAula.TEORICA), 0, 2)); //Corte por cantidad
+        assertTrue(recorrer(indice, EnumSet.of(TipoAula.LABORATORIO), 31, 10).isEmpty());
+    }
+
+    @Test
+    void removerAntesDeCambiarLaCapacidad() {
+        IndiceCapacidad indice = new IndiceCapacidad();
+        Aula aula = new Aula("T20", "", 20, TipoAula.TEORICA);
+        indice.agregar(aula);
+        indice.remover(aula);
+        aula.setCapacidad(50);
+        indice.agregar(aula);
+        assertEquals(Arrays.asList("T20"), recorrer(indice, EnumSet.of(TipoAula.TEORICA), 45, 10));
+        assertEquals(1, recorrer(indice, EnumSet.of(TipoAula.TEORICA), 0, 10).size());
+    }
+
+    @Test
+    void conflictoSugiereLaMenorAulaSuficienteDelMismoTipo() throws Exception {
+        try (GestorReservas gestor = new GestorReservas(ModoPersistencia.MEMORIA)) {
+            gestor.registrarAula("T1", "Pedida", 40, TipoAula.TEORICA);
+            gestor.registrarAula("T2", "Chica", 20, TipoAula.TEORICA);
+            gestor.registrarAula("T3", "Justa", 35, TipoAula.TEORICA);
+            gestor.registrarAula("T4", "Grande", 80, TipoAula.TEORICA);
+            gestor.registrarAula("L1", "Laboratorio", 35, TipoAula.LABORATORIO);
+            gestor.registrarReservaClase("T1", FECHA, LocalTime.of(8, 0), LocalTime.of(10, 0), "Ana", "Algebra", 30);
+            gestor.registrarReservaClase("T3", FECHA, LocalTime.of(9, 0), LocalTime.of(10, 0), "Luis", "Fisica", 30);
+            //T4 subio de capacidad despues de registrarse: el indice tiene que verla con la nueva
+            gestor.modificarAula("T4", "Grande", 90, TipoAula.TEORICA, PoliticaCambioAula.RECHAZAR);
+
+            ConflictoDeHorarioException conflicto = assertThrows(ConflictoDeHorarioException.class, () ->
+                gestor.registrarReservaClase("T1", FECHA, LocalTime.of(8, 0), LocalTime.of(9, 0), "Eva", "Quimica", 30));
+            List<String> otrasAulas = conflicto.getAlternativas().stream()
+                .filter(a -> a.getTipo() == TipoAlternativa.OTRA_AULA)
+                .map(AlternativaHorario::getAula).map(Aula::getCodigo)
+                .collect(Collectors.toList());
+            //T2 no alcanza, L1 es de otro tipo y T3 esta libre a esa hora: T3 y despues T4
+            assertEquals(Arrays.asList("T3", "T4"), otrasAulas);
+        }
+    }
+}
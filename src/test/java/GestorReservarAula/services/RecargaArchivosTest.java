@@ -0,0 +1,177 @@
+package GestorReservarAula.services;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import GestorReservarAula.models.Aula;
+import GestorReservarAula.models.Reserva;
+import GestorReservarAula.models.ReservaClase;
+import GestorReservarAula.persistence.ArchivoBloques;
+import GestorReservarAula.persistence.ModoPersistencia;
+import GestorReservarAula.util.EstadoReserva;
+import GestorReservarAula.util.TipoAula;
+
+//Ediciones externas de aulas.txt y reservas.txt con el gestor en marcha
+class RecargaArchivosTest {
+    private static final LocalDate FECHA = LocalDate.now().plusDays(7);
+
+    @TempDir
+    Path directorio;
+    private GestorReservas gestor;
+
+    @AfterEach
+    void cerrar() {
+        if (gestor != null) gestor.close();
+    }
+
+    private GestorReservas abrir(ModoPersistencia modo) throws Exception {
+        gestor = new GestorReservas(archivo("aulas.txt"), archivo("reservas.txt"), modo);
+        gestor.registrarAula("A1", "Uno", 30, TipoAula.TEORICA);
+        gestor.registrarAula("B2", "Dos", 30, TipoAula.TEORICA);
+        gestor.registrarReservaClase("A1", FECHA, LocalTime.of(8, 0), LocalTime.of(9, 0), "Ana", "Algebra", 20);
+        gestor.registrarReservaClase("A1", FECHA, LocalTime.of(10, 0), LocalTime.of(11, 0), "Luis", "Fisica", 20);
+        gestor.registrarReservaClase("B2", FECHA, LocalTime.of(8, 0), LocalTime.of(9, 0), "Eva", "Quimica", 20);
+        gestor.confirmarPersistencia().get();
+        return gestor;
+    }
+
+    private String archivo(String nombre) {
+        return directorio.resolve(nombre).toString();
+    }
+
+    //Edita el archivo como lo haria una persona: reemplaza texto en las filas y guarda sin tocar las lineas de control
+    private void editar(String nombre, String buscado, String reemplazo) throws Exception {
+        Path ruta = directorio.resolve(nombre);
+        String texto = new String(Files.readAllBytes(ruta), StandardCharsets.UTF_8);
+        assertTrue(texto.contains(buscado), "No esta " + buscado);
+        Files.write(ruta, texto.replace(buscado, reemplazo).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private Reserva reserva(String id) {
+        return gestor.buscarReservaPorId(id).orElseThrow(() -> new AssertionError("No esta " + id));
+    }
+
+    @Test
+    void soloSeAplicanLasFilasQueCambiaron() throws Exception {
+        abrir(ModoPersistencia.ARCHIVO);
+        editar("reservas.txt", "R1,A1," + FECHA + ",08:00,09:00,Ana", "R1,A1," + FECHA + ",12:00,13:00,Ana");
+        editar("reservas.txt", "CLASE,R3,B2," + FECHA + ",08:00,09:00,Eva,Quimica,20,ACTIVA\n", "");
+        editar("reservas.txt", "CLASE,R2,", "CLASE,R50,B2," + FECHA + ",15:00,16:00,Mia,Arte,10,ACTIVA\nCLASE,R2,");
+
+        assertTrue(gestor.incorporarEdicionesExternas(true));
+        assertEquals(LocalTime.of(12, 0), reserva("R1").getHoraInicio());
+        assertFalse(gestor.buscarReservaPorId("R3").isPresent());
+        assertEquals("Mia", reserva("R50").getResponsable());
+        assertEquals(3, gestor.listarReservas("id", true).size());
+        //El ID agregado a mano no se vuelve a emitir
+        String nuevo = gestor.registrarReservaClase("B2", FECHA, LocalTime.of(17, 0), LocalTime.of(18, 0), "Sol", "Arte", 10);
+        assertEquals("R51", nuevo);
+
+        //El archivo se reescribio desde la memoria con checksums nuevos: se vuelve a leer sin perdidas ni ediciones
+        ArchivoBloques.Lectura lectura = ArchivoBloques.leer(archivo("reservas.txt"));
+        assertTrue(lectura.getPerdidas().isEmpty());
+        assertEquals(4, lectura.getFilas().size());
+        //Sin otra edicion no hay nada que aplicar
+        assertTrue(gestor.incorporarEdicionesExternas(true));
+        assertEquals(4, gestor.listarReservas("id", true).size());
+    }
+
+    @Test
+    void filasInvalidasSeRechazanSinTocarLaMemoria() throws Exception {
+        abrir(ModoPersistencia.ARCHIVO);
+        editar("reservas.txt", "R2,A1," + FECHA + ",10:00,11:00", "R2,A1," + FECHA + ",08:30,09:30"); //Se solapa con R1
+        editar("reservas.txt", "CLASE,R3,B2,", "CLASE,R3,Z9,"); //Aula inexistente
+        editar("aulas.txt", "A1,Uno,30,TEORICA\n", ""); //Tiene reservas: no se borra
+
+        assertTrue(gestor.incorporarEdicionesExternas(true));
+        assertEquals(LocalTime.of(10, 0), reserva("R2").getHoraInicio());
+        assertEquals("B2", reserva("R3").getAula().getCodigo());
+        assertEquals(2, gestor.listarAulas().size());
+    }
+
+    @Test
+    void edicionNoSePierdeSiElGestorEscribePrimero() throws Exception {
+        abrir(ModoPersistencia.ARCHIVO);
+        editar("reservas.txt", "Luis,Fisica", "Luisa,Fisica");
+        editar("aulas.txt", "B2,Dos,30", "B2,Dos renovada,40");
+
+        //Sin hilo de recarga: la siguiente escritura incorpora la edicion antes de escribir
+        gestor.registrarReservaClase("B2", FECHA, LocalTime.of(12, 0), LocalTime.of(13, 0), "Sol", "Arte", 25);
+        assertEquals("Luisa", reserva("R2").getResponsable());
+        assertEquals(40, gestor.listarAulas().stream().filter(a -> a.getCodigo().equals("B2")).findFirst().get().getCapacidad());
+        String reservas = new String(Files.readAllBytes(directorio.resolve("reservas.txt")), StandardCharsets.UTF_8);
+        assertTrue(reservas.contains("Luisa,Fisica"));
+        assertTrue(reservas.contains("Sol,Arte,25"));
+        String aulas = new String(Files.readAllBytes(directorio.resolve("aulas.txt")), StandardCharsets.UTF_8);
+        assertTrue(aulas.contains("B2,Dos renovada,40"));
+    }
+
+    @Test
+    void edicionNoSePierdeConEscrituraDiferida() throws Exception {
+        abrir(ModoPersistencia.DIFERIDA);
+        editar("reservas.txt", "Eva,Quimica", "Eva Paz,Quimica");
+        gestor.cancelarReserva("R1");
+        gestor.confirmarPersistencia().get();
+
+        assertEquals("Eva Paz", reserva("R3").getResponsable());
+        String reservas = new String(Files.readAllBytes(directorio.resolve("reservas.txt")), StandardCharsets.UTF_8);
+        assertTrue(reservas.contains("Eva Paz,Quimica"));
+        assertTrue(reservas.contains("R1,A1," + FECHA + ",08:00,09:00,Ana,Algebra,20,CANCELADA"));
+    }
+
+    @Test
+    void reservaMovidaPorFueraPromueveLaListaDeEspera() throws Exception {
+        abrir(ModoPersistencia.ARCHIVO);
+        Aula a1 = gestor.listarAulas().stream().filter(a -> a.getCodigo().equals("A1")).findFirst().get();
+        Reserva enEspera = new ReservaClase("R900", a1, FECHA, LocalTime.of(8, 0), LocalTime.of(9, 0), "Leo", "Historia", 15);
+        assertFalse(gestor.encolarEnListaEspera(enEspera));
+
+        editar("reservas.txt", "R1,A1," + FECHA + ",08:00,09:00", "R1,A1," + FECHA + ",14:00,15:00");
+        assertTrue(gestor.incorporarEdicionesExternas(true));
+
+        assertEquals(LocalTime.of(14, 0), reserva("R1").getHoraInicio());
+        Optional<Reserva> promovida = gestor.buscarReservaPorId("R900");
+        assertTrue(promovida.isPresent());
+        assertEquals(EstadoReserva.ACTIVA, promovida.get().getEstado());
+        assertTrue(gestor.listarListaEspera().isEmpty());
+    }
+
+    @Test
+    void reservaCanceladaPorFueraPromueveLaListaDeEspera() throws Exception {
+        abrir(ModoPersistencia.ARCHIVO);
+        Aula b2 = gestor.listarAulas().stream().filter(a -> a.getCodigo().equals("B2")).findFirst().get();
+        assertFalse(gestor.encolarEnListaEspera(new ReservaClase("R901", b2, FECHA, LocalTime.of(8, 0), LocalTime.of(9, 0), "Leo", "Historia", 15)));
+
+        editar("reservas.txt", "Eva,Quimica,20,ACTIVA", "Eva,Quimica,20,CANCELADA");
+        assertTrue(gestor.incorporarEdicionesExternas(true));
+
+        assertEquals(EstadoReserva.CANCELADA, reserva("R3").getEstado());
+        assertTrue(gestor.buscarReservaPorId("R901").isPresent());
+    }
+
+    @Test
+    void hiloDeRecargaAplicaLaEdicion() throws Exception {
+        abrir(ModoPersistencia.ARCHIVO);
+        gestor.iniciarRecargaArchivos();
+        editar("reservas.txt", "Ana,Algebra", "Ana Ruiz,Algebra");
+
+        long limite = System.currentTimeMillis() + 10_000;
+        while (!reserva("R1").getResponsable().equals("Ana Ruiz") && System.currentTimeMillis() < limite) {
+            Thread.sleep(50);
+        }
+        assertEquals("Ana Ruiz", reserva("R1").getResponsable());
+        List<Reserva> todas = gestor.listarReservas("id", true);
+        assertEquals(3, todas.size());
+    }
+}
@@ -0,0 +1,129 @@
+package GestorReservarAula.services;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import GestorReservarAula.models.Aula;
+import GestorReservarAula.persistence.ModoPersistencia;
+import GestorReservarAula.util.TipoAula;
+
+//Carga de aulas.txt y reservas.txt danados o editados a mano con el gestor detenido
+class RecuperacionArchivosTest {
+    private static final LocalDate FECHA = LocalDate.now().plusDays(7);
+
+    @TempDir
+    Path directorio;
+    private Path aulas;
+    private Path reservas;
+
+    @BeforeEach
+    void preparar() throws Exception {
+        aulas = directorio.resolve("aulas.txt");
+        reservas = directorio.resolve("reservas.txt");
+        try (GestorReservas gestor = abrir()) {
+            gestor.registrarAula("A1", "Uno", 30, TipoAula.TEORICA);
+            gestor.registrarAula("B2", "Dos", 30, TipoAula.TEORICA);
+            gestor.registrarReservaClase("A1", FECHA, LocalTime.of(8, 0), LocalTime.of(9, 0), "Ana", "Algebra", 20);
+            gestor.registrarReservaClase("B2", FECHA, LocalTime.of(8, 0), LocalTime.of(9, 0), "Luis", "Fisica", 20);
+        }
+    }
+
+    private GestorReservas abrir() throws Exception {
+        return new GestorReservas(aulas.toString(), reservas.toString(), ModoPersistencia.ARCHIVO);
+    }
+
+    private static String leer(Path archivo) throws Exception {
+        return new String(Files.readAllBytes(archivo), StandardCharsets.UTF_8);
+    }
+
+    private static void escribir(Path archivo, String texto) throws Exception {
+        Files.write(archivo, texto.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void edicionAManoSeConservaAlReiniciar() throws Exception {
+        escribir(aulas, leer(aulas).replace("A1,Uno,30,TEORICA", "A1,Uno,45,TEORICA"));
+
+        try (GestorReservas gestor = abrir()) {
+            Aula a1 = gestor.listarAulas().stream().filter(a -> a.getCodigo().equals("A1")).findFirst().get();
+            assertEquals(45, a1.getCapacidad());
+            assertEquals(2, gestor.listarAulas().size());
+            assertEquals(2, gestor.listarReservas("id", true).size());
+        }
+        assertFalse(Files.exists(directorio.resolve("aulas.txt.danado")));
+    }
+
+    @Test
+    void bloqueDanadoSinEdicionSeDescartaAunqueSeInterprete() throws Exception {
+        //Un digito cambiado en el disco: mismo tamano, misma fecha de modificacion, el archivo no se edito
+        FileTime modificado = Files.getLastModifiedTime(reservas);
+        String original = leer(reservas);
+        String danado = original.replace("Ana,Algebra,20", "Ana,Algebra,29");
+        assertNotEquals(original, danado);
+        escribir(reservas, danado);
+        Files.setLastModifiedTime(reservas, modificado);
+
+        try (GestorReservas gestor = abrir()) {
+            assertTrue(gestor.listarReservas("id", true).isEmpty()); //Un solo bloque: se pierde entero
+        }
+        assertTrue(leer(directorio.resolve("reservas.txt.danado")).contains("Ana,Algebra,29"));
+
+        //El mismo cambio hecho a mano (cambia la fecha de modificacion) se conserva
+        escribir(reservas, original.replace("Ana,Algebra,20", "Ana,Algebra,25"));
+        try (GestorReservas gestor = abrir()) {
+            assertEquals(2, gestor.listarReservas("id", true).size());
+        }
+    }
+
+    @Test
+    void reservaDeAulaBorradaVaAlArchivoDanado() throws Exception {
+        escribir(aulas, leer(aulas).replace("B2,Dos,30,TEORICA\n", ""));
+        String reservasAntes = leer(reservas);
+
+        try (GestorReservas gestor = abrir()) {
+            List<String> ids = gestor.listarReservas("id", true).stream().map(r -> r.getAula().getCodigo()).collect(Collectors.toList());
+            assertEquals(1, ids.size());
+            assertEquals("A1", ids.get(0));
+        }
+        String danado = leer(directorio.resolve("reservas.txt.danado"));
+        assertTrue(danado.contains("#filas de aulas que no existen"));
+        assertTrue(danado.contains(",B2," + FECHA + ",08:00,09:00,Luis,Fisica,20"));
+        //Sin cambios el archivo no se reescribe: la fila sigue ahi para recuperarla
+        assertEquals(reservasAntes, leer(reservas));
+    }
+
+    @Test
+    void bloqueIlegibleSeDescartaSinReescribirAlIniciar() throws Exception {
+        String danado = leer(aulas).replace("B2,Dos,30,TEORICA", "B2,Dos,treinta,TEORICA");
+        escribir(aulas, danado);
+
+        try (GestorReservas gestor = abrir()) {
+            assertTrue(gestor.listarAulas().isEmpty()); //Un solo bloque: se pierde entero
+            assertEquals(danado, leer(aulas));
+        }
+        String copia = leer(directorio.resolve("aulas.txt.danado"));
+        assertTrue(copia.contains("A1,Uno,30,TEORICA"));
+        assertTrue(copia.contains("B2,Dos,treinta,TEORICA"));
+    }
+
+    @Test
+    void archivosQueFaltanSeCreanAlIniciar() throws Exception {
+        Path otroAulas = directorio.resolve("otro_aulas.txt");
+        Path otroReservas = directorio.resolve("otro_reservas.txt");
+        new GestorReservas(otroAulas.toString(), otroReservas.toString(), ModoPersistencia.ARCHIVO).close();
+        assertTrue(Files.exists(otroAulas));
+        assertTrue(Files.exists(otroReservas));
+    }
+}
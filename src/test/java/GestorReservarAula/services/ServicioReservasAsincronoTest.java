@@ -0,0 +1,134 @@
+package GestorReservarAula.services;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Test;
+
+import GestorReservarAula.exceptions.ConflictoDeHorarioException;
+import GestorReservarAula.models.ResultadoOperacion;
+import GestorReservarAula.persistence.ModoPersistencia;
+import GestorReservarAula.util.TipoAula;
+import GestorReservarAula.util.TipoResultado;
+
+//Registros que se deciden a la vez bajo el cerrojo de lectura y se confirman bajo el de escritura
+class ServicioReservasAsincronoTest {
+    private static final LocalDate FECHA = LocalDate.now().plusDays(5);
+    private static final int AULAS = 20;
+    private static final int HILOS = 8;
+
+    private static GestorReservas gestorConAulas() throws Exception {
+        GestorReservas gestor = new GestorReservas(ModoPersistencia.MEMORIA);
+        for (int i = 0; i < AULAS; i++) {
+            gestor.registrarAula("A" + i, "Aula " + i, 40, TipoAula.TEORICA);
+        }
+        return gestor;
+    }
+
+    @Test
+    void carrilesDeAulasDistintasNoDuplicanNiPierdenReservas() throws Exception {
+        try (GestorReservas gestor = gestorConAulas();
+             ServicioReservasAsincrono servicio = new ServicioReservasAsincrono(gestor)) {
+            List<CompletableFuture<ResultadoOperacion<String>>> futuros = new ArrayList<>();
+            for (int i = 0; i < AULAS; i++) {
+                for (int h = 8; h < 12; h++) {
+                    futuros.add(servicio.reservarClase(null, "A" + i, FECHA, LocalTime.of(h, 0), LocalTime.of(h + 1, 0), "Ana", "Algebra", 20));
+                }
+                //Pisa la primera hora del aula: va al mismo carril, detras, y choca
+                futuros.add(servicio.reservarClase(null, "A" + i, FECHA, LocalTime.of(8, 30), LocalTime.of(9, 30), "Luis", "Fisica", 20));
+            }
+            Set<String> ids = new HashSet<>();
+            int conflictos = 0;
+            for (CompletableFuture<ResultadoOperacion<String>> futuro : futuros) {
+                ResultadoOperacion<String> resultado = futuro.get();
+                if (resultado.isExito()) {
+                    assertTrue(ids.add(resultado.getValor()));
+                } else {
+                    assertEquals(TipoResultado.CONFLICTO, resultado.getTipo());
+                    assertFalse(resultado.getAlternativas().isEmpty());
+                    conflictos++;
+                }
+            }
+            assertEquals(AULAS * 4, ids.size());
+            assertEquals(AULAS, conflictos);
+            assertEquals(AULAS * 4, gestor.listarReservas("id", true).size());
+        }
+    }
+
+    @Test
+    void decisionesConcurrentesDelMismoHorarioConfirmanUnaSola() throws Exception {
+        //Sin carriles: varios hilos deciden el mismo horario a la vez y solo la primera confirmacion gana
+        try (GestorReservas gestor = gestorConAulas()) {
+            ExecutorService pool = Executors.newFixedThreadPool(HILOS);
+            try {
+                for (int ronda = 0; ronda < 20; ronda++) {
+                    LocalTime inicio = LocalTime.of(7, 0).plusMinutes(30L * ronda);
+                    CountDownLatch largada = new CountDownLatch(1);
+                    List<Future<String>> intentos = new ArrayList<>();
+                    for (int h = 0; h < HILOS; h++) {
+                        intentos.add(pool.submit(registro(largada, gestor, "A0", inicio)));
+                    }
+                    largada.countDown();
+                    int ganadas = 0;
+                    for (Future<String> intento : intentos) {
+                        if (intento.get() != null) ganadas++;
+                    }
+                    assertEquals(1, ganadas, "Ronda " + ronda);
+                }
+            } finally {
+                pool.shutdown();
+            }
+            assertEquals(20, gestor.listarReservas("id", true).size());
+        }
+    }
+
+    @Test
+    void reintentosConcurrentesConLaMismaClaveRegistranUnaVez() throws Exception {
+        try (GestorReservas gestor = gestorConAulas()) {
+            ExecutorService pool = Executors.newFixedThreadPool(HILOS);
+            try {
+                CountDownLatch largada = new CountDownLatch(1);
+                List<Future<String>> intentos = new ArrayList<>();
+                for (int h = 0; h < HILOS; h++) {
+                    intentos.add(pool.submit(() -> {
+                        largada.await();
+                        return gestor.registrarReservaClase("pedido-1", "A3", FECHA, LocalTime.of(10, 0), LocalTime.of(11, 0), "Ana", "Algebra", 20);
+                    }));
+                }
+                largada.countDown();
+                Set<String> ids = new HashSet<>();
+                for (Future<String> intento : intentos) {
+                    ids.add(intento.get());
+                }
+                assertEquals(1, ids.size());
+            } finally {
+                pool.shutdown();
+            }
+            assertEquals(1, gestor.listarReservas("id", true).size());
+        }
+    }
+
+    //Registra en el horario dado; devuelve el ID o null si hubo conflicto
+    private static Callable<String> registro(CountDownLatch largada, GestorReservas gestor, String aula, LocalTime inicio) {
+        return () -> {
+            largada.await();
+            try {
+                return gestor.registrarReservaClase(aula, FECHA, inicio, inicio.plusMinutes(30), "Ana", "Algebra", 20);
+            } catch (ConflictoDeHorarioException e) {
+                return null;
+            }
+        };
+    }
+}